@@ -28,12 +28,15 @@ import java.util.stream.Collectors;
  * Cache layer for product-related data.
  *
  * Key pattern: "branch_products_by_shop_branch" ::
- *   "{shopId}:all:p{page}:s{size}:{sort}"
- *   "{shopId}:{branchId}:p{page}:s{size}:{sort}"
- *   "{shopId}:search:{branchId}:kw=...:cat=...:act=...:minP=...:maxP=...:p{page}:s{size}:{sort}"
+ *   "{shopId}:g{shopGen}:all:kw=null:p{page}:s{size}:{sort}"
+ *   "{shopId}:g{shopGen}:search:br=*:b{branchGen}:all:kw=...:p{page}:s{size}:{sort}"
+ *   "{shopId}:g{shopGen}:br={branchId}:b{branchGen}:kw=...:p{page}:s{size}:{sort}"
+ *   "{shopId}:g{shopGen}:search:br={branchId|*}:b{branchGen}:kw=...:cat=...:act=...:minP=...:maxP=...:sb={sortBy}:{sortDir}:p{page}:s{size}:{sort}"
  *
  * Paging info được đưa vào key để mỗi trang có entry riêng biệt trong cache.
- * evictByShop(shopId) scan prefix "{shopId}:" để xóa toàn bộ entries của shop (bao gồm cả search keys).
+ * Generation do {@link ProductCacheKeys} quản lý: evictByShop/evictByBranch chỉ tăng generation của
+ * đúng shop/chi nhánh đó (O(1), kể cả trên Redis) nên không ảnh hưởng cache của shop khác.
+ * Hit/miss được đếm qua {@link ProductCacheMetrics}.
  */
 @Component
 public class ProductCache {
@@ -46,27 +49,33 @@ public class ProductCache {
     private final ProductMapper productMapper;
     private final ProductSearchHelper productSearchHelper;
     private final CacheManager cacheManager;
+    private final ProductCacheKeys productCacheKeys;
 
     public ProductCache(BranchProductRepository branchProductRepository,
                         ProductRepository productRepository,
                         ShopRepository shopRepository,
                         ProductMapper productMapper,
                         ProductSearchHelper productSearchHelper,
-                        CacheManager cacheManager) {
+                        CacheManager cacheManager,
+                        ProductCacheKeys productCacheKeys) {
         this.branchProductRepository = branchProductRepository;
         this.productRepository = productRepository;
         this.shopRepository = shopRepository;
         this.productMapper = productMapper;
         this.productSearchHelper = productSearchHelper;
         this.cacheManager = cacheManager;
+        this.productCacheKeys = productCacheKeys;
     }
 
     /**
      * Lấy danh sách sản phẩm toàn shop (cấp Product, không phân biệt chi nhánh).
      * Khi có keyword sẽ tìm theo name/SKU/barcode trên collection products.
-     * Cache key: "{shopId}:all:kw={keyword}:p{page}:s{size}:{sort}"
+     * Kết quả tìm theo keyword chứa tồn của mọi chi nhánh nên key dùng bucket search "*" (tăng cùng mọi lần
+     * evictByBranch), còn danh sách không keyword chỉ phụ thuộc generation của shop.
+     * Cache key: "{shopId}:g{shopGen}:all:kw=null:p{page}:s{size}:{sort}"
+     *         | "{shopId}:g{shopGen}:search:br=*:b{branchGen}:all:kw={keyword}:p{page}:s{size}:{sort}"
      */
-    @Cacheable(value = CACHE_NAME, key = "#shopId + ':all:kw=' + #keyword + ':p' + #pageable.pageNumber + ':s' + #pageable.pageSize + ':' + #pageable.sort")
+    @Cacheable(value = CACHE_NAME, cacheResolver = "productCacheResolver", key = "(T(org.springframework.util.StringUtils).hasText(#keyword) ? @productCacheKeys.search(#shopId, null) : @productCacheKeys.shop(#shopId)) + ':all:kw=' + #keyword + ':p' + #pageable.pageNumber + ':s' + #pageable.pageSize + ':' + #pageable.sort")
     public Page<ProductResponse> getAllByShop(String shopId, String keyword, Pageable pageable) {
         if (!StringUtils.hasText(keyword)) {
             // Fast path: không có keyword → query trực tiếp
@@ -86,9 +95,9 @@ public class ProductCache {
     /**
      * Lấy danh sách sản phẩm theo chi nhánh cụ thể.
      * Khi có keyword sẽ tìm theo name/SKU/barcode trên collection products.
-     * Cache key: "{shopId}:{branchId}:kw={keyword}:p{page}:s{size}:{sort}"
+     * Cache key: "{shopId}:g{shopGen}:br={branchId}:b{branchGen}:kw={keyword}:p{page}:s{size}:{sort}"
      */
-    @Cacheable(value = CACHE_NAME, key = "#shopId + ':' + #branchId + ':kw=' + #keyword + ':p' + #pageable.pageNumber + ':s' + #pageable.pageSize + ':' + #pageable.sort")
+    @Cacheable(value = CACHE_NAME, cacheResolver = "productCacheResolver", key = "@productCacheKeys.branch(#shopId, #branchId) + ':kw=' + #keyword + ':p' + #pageable.pageNumber + ':s' + #pageable.pageSize + ':' + #pageable.sort")
     public Page<ProductResponse> getAllByBranch(String shopId, String branchId, String keyword, Pageable pageable) {
         if (!StringUtils.hasText(keyword)) {
             // Fast path: không có keyword → query trực tiếp
@@ -104,10 +113,9 @@ public class ProductCache {
 
     /**
      * Tìm kiếm sản phẩm theo keyword, category, price range, active, branchId...
-     * Cache key: "{shopId}:search:{branchId}:kw=...:cat=...:act=...:minP=...:maxP=...:p{page}:s{size}:{sort}"
-     * Key bắt đầu bằng "{shopId}:" nên evictByShop() sẽ xóa đúng.
+     * Cache key: "{shopId}:g{shopGen}:search:br={branchId|*}:b{branchGen}:kw=...:cat=...:act=...:minP=...:maxP=...:sb={sortBy}:{sortDir}:p{page}:s{size}:{sort}"
      */
-    @Cacheable(value = CACHE_NAME, key = "#shopId + ':search:' + (#branchId ?: '') + ':kw=' + #request.keyword + ':cat=' + #request.category + ':act=' + #request.active + ':minP=' + #request.minPrice + ':maxP=' + #request.maxPrice + ':p' + #pageable.pageNumber + ':s' + #pageable.pageSize + ':' + #pageable.sort")
+    @Cacheable(value = CACHE_NAME, cacheResolver = "productCacheResolver", key = "@productCacheKeys.search(#shopId, #branchId) + ':kw=' + #request.keyword + ':cat=' + #request.category + ':act=' + #request.active + ':minP=' + #request.minPrice + ':maxP=' + #request.maxPrice + ':sb=' + #request.sortBy + ':' + #request.sortDir + ':p' + #pageable.pageNumber + ':s' + #pageable.pageSize + ':' + #pageable.sort")
     public Page<ProductResponse> searchProducts(String shopId, String branchId,
                                                 ProductSearchRequest request, Pageable pageable) {
         return doSearch(shopId, branchId, request, pageable);
@@ -166,46 +174,39 @@ public class ProductCache {
     }
 
     /**
-     * Xóa toàn bộ cache entries thuộc về shopId (cả "shopId:all" lẫn "shopId:branchXxx").
+     * Vô hiệu toàn bộ cache entries thuộc về shopId (cả "all", theo chi nhánh lẫn search).
      * Gọi sau mọi thao tác create / update / delete product.
      */
     public void evictByShop(String shopId) {
-        org.springframework.cache.Cache cache = cacheManager.getCache(CACHE_NAME);
-        if (cache == null) return;
-
-        // Với ConcurrentMapCache (simple) — evict từng key đã biết không đủ,
-        // nên kiểm tra nativeCache để scan prefix.
-        Object nativeCache = cache.getNativeCache();
-
-        if (nativeCache instanceof java.util.concurrent.ConcurrentMap) {
-            // spring.cache.type=simple  →  ConcurrentMapCache
-            @SuppressWarnings("unchecked")
-            java.util.concurrent.ConcurrentMap<Object, Object> map =
-                    (java.util.concurrent.ConcurrentMap<Object, Object>) nativeCache;
-            String prefix = shopId + ":";
-            map.keySet().removeIf(k -> k.toString().startsWith(prefix));
-        } else {
-            // spring.cache.type=redis  →  RedisCache  (native = RedisOperations)
-            // Dùng allEntries evict sẽ xóa toàn bộ cache; hoặc evict key cụ thể nếu biết.
-            // Cách an toàn nhất với Redis là clear toàn bộ cache (ít entry nên chấp nhận được).
-            cache.clear();
-        }
+        productCacheKeys.bumpShop(shopId);
+        String prefix = shopId + ":";
+        removeLocalEntries(k -> k.startsWith(prefix));
     }
 
+    /**
+     * Vô hiệu cache của một chi nhánh (và search toàn shop, kể cả "all" theo keyword, vốn gộp tồn mọi chi nhánh).
+     * Danh sách cấp shop không keyword không chứa tồn chi nhánh nên được giữ nguyên.
+     */
     public void evictByBranch(String shopId, String branchId) {
+        productCacheKeys.bumpBranch(shopId, branchId);
+        String prefix = shopId + ":";
+        String branchSegment = ":br=" + branchId + ":";
+        String allBranchesSegment = ":br=" + ProductCacheKeys.ALL_BRANCHES + ":";
+        removeLocalEntries(k -> k.startsWith(prefix)
+                && (k.contains(branchSegment) || k.contains(allBranchesSegment)));
+    }
+
+    /**
+     * Với spring.cache.type=simple (ConcurrentMapCache) không có TTL, nên entry của generation cũ
+     * phải được xóa ngay. Với Redis, entry cũ không còn được đọc và tự hết hạn theo
+     * spring.cache.redis.time-to-live.
+     */
+    private void removeLocalEntries(java.util.function.Predicate<String> stale) {
+        if (!productCacheKeys.isLocal()) return;
         org.springframework.cache.Cache cache = cacheManager.getCache(CACHE_NAME);
         if (cache == null) return;
-
-        Object nativeCache = cache.getNativeCache();
-        if (nativeCache instanceof java.util.concurrent.ConcurrentMap) {
-            @SuppressWarnings("unchecked")
-            java.util.concurrent.ConcurrentMap<Object, Object> map =
-                    (java.util.concurrent.ConcurrentMap<Object, Object>) nativeCache;
-            String prefix = shopId + ":" + branchId + ":";
-            map.keySet().removeIf(k -> k.toString().startsWith(prefix));
-        } else {
-            // Với Redis, không có cách nào để evict theo prefix, nên phải clear toàn bộ cache (bao gồm cả shopId:all).
-            cache.clear();
+        if (cache.getNativeCache() instanceof java.util.concurrent.ConcurrentMap<?, ?> map) {
+            map.keySet().removeIf(k -> stale.test(k.toString()));
         }
     }
 
@@ -221,10 +222,14 @@ public class ProductCache {
 
     /**
      * Evict cache khi xóa một BranchProduct.
+     * Giữ lại để tương thích với code cũ gọi remove(shopId, null).
      */
-    @CacheEvict(value = CACHE_NAME, key = "#shopId + ':' + (#branchId != null ? #branchId : 'all')")
     public void remove(String shopId, String branchId) {
-        // handled by annotation — giữ lại để tương thích với code cũ gọi remove(shopId, null)
+        if (branchId != null) {
+            evictByBranch(shopId, branchId);
+        } else {
+            evictByShop(shopId);
+        }
     }
 
     /**
@@ -0,0 +1,131 @@
+// File: src/main/java/com/example/sales/cache/ProductCacheKeys.java
+package com.example.sales.cache;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bộ đếm "thế hệ" (generation) theo shop và theo chi nhánh cho cache "branch_products_by_shop_branch".
+ *
+ * Mỗi cache key của {@link ProductCache} nhúng generation hiện tại:
+ *   "{shopId}:g{shopGen}:all:..."
+ *   "{shopId}:g{shopGen}:br={branchId}:b{branchGen}:..."
+ *   "{shopId}:g{shopGen}:search:br={branchId|*}:b{branchGen}:..."
+ *
+ * Evict = tăng generation (O(1)): các key cũ không còn được đọc và tự hết hạn theo TTL của Redis,
+ * thay vì {@code cache.clear()} xóa cache của mọi shop. Search toàn shop (không chọn chi nhánh)
+ * dùng bucket chi nhánh "*" — bucket này tăng cùng mọi lần evict chi nhánh.
+ *
+ * Với spring.cache.type=simple, generation nằm trong bộ nhớ; với Redis, generation là key Redis
+ * ("product_cache_gen:...") dùng chung giữa các node.
+ */
+@Component("productCacheKeys")
+public class ProductCacheKeys {
+
+    static final String ALL_BRANCHES = "*";
+    private static final String GEN_KEY_PREFIX = "product_cache_gen:";
+
+    private final CacheManager cacheManager;
+    private final ObjectProvider<StringRedisTemplate> redisTemplateProvider;
+    private final ConcurrentMap<String, AtomicLong> localGenerations = new ConcurrentHashMap<>();
+    private volatile Boolean local;
+
+    public ProductCacheKeys(CacheManager cacheManager, ObjectProvider<StringRedisTemplate> redisTemplateProvider) {
+        this.cacheManager = cacheManager;
+        this.redisTemplateProvider = redisTemplateProvider;
+    }
+
+    /** Tiền tố key cho dữ liệu cấp shop: "{shopId}:g{shopGen}". */
+    public String shop(String shopId) {
+        return shopId + ":g" + get(shopKey(shopId));
+    }
+
+    /** Tiền tố key cho dữ liệu theo chi nhánh (null = toàn shop): "{shopId}:g{shopGen}:br={branchId}:b{branchGen}". */
+    public String branch(String shopId, String branchId) {
+        String bucket = branchId != null && !branchId.isEmpty() ? branchId : ALL_BRANCHES;
+        long[] gens = get(shopKey(shopId), branchKey(shopId, bucket));
+        return shopId + ":g" + gens[0] + ":br=" + bucket + ":b" + gens[1];
+    }
+
+    /** Tiền tố key cho search: "{shopId}:g{shopGen}:search:br={branchId|*}:b{branchGen}". */
+    public String search(String shopId, String branchId) {
+        String branchPrefix = branch(shopId, branchId);
+        int split = branchPrefix.indexOf(":br=");
+        return branchPrefix.substring(0, split) + ":search" + branchPrefix.substring(split);
+    }
+
+    /** Generation hiện tại của shop — tăng sau mọi lần ghi sản phẩm (evictByShop). */
+    public long shopGeneration(String shopId) {
+        return get(shopKey(shopId));
+    }
+
+    void bumpShop(String shopId) {
+        incr(shopKey(shopId));
+    }
+
+    void bumpBranch(String shopId, String branchId) {
+        incr(branchKey(shopId, branchId));
+        incr(branchKey(shopId, ALL_BRANCHES));
+    }
+
+    /** true khi backend cache là ConcurrentMap (simple) — caller dọn entry cũ trực tiếp vì không có TTL. */
+    boolean isLocal() {
+        Boolean value = local;
+        if (value == null) {
+            Cache cache = cacheManager.getCache(ProductCache.CACHE_NAME);
+            value = cache == null
+                    || cache.getNativeCache() instanceof ConcurrentMap
+                    || redisTemplateProvider.getIfAvailable() == null;
+            local = value;
+        }
+        return value;
+    }
+
+    private static String shopKey(String shopId) {
+        return GEN_KEY_PREFIX + shopId;
+    }
+
+    private static String branchKey(String shopId, String branchId) {
+        return GEN_KEY_PREFIX + shopId + ":" + branchId;
+    }
+
+    private long get(String key) {
+        if (isLocal()) {
+            AtomicLong gen = localGenerations.get(key);
+            return gen != null ? gen.get() : 0L;
+        }
+        return parse(redisTemplateProvider.getObject().opsForValue().get(key));
+    }
+
+    private long[] get(String first, String second) {
+        if (isLocal()) {
+            return new long[]{get(first), get(second)};
+        }
+        // Một round trip (MGET) cho cả 2 generation
+        List<String> values = redisTemplateProvider.getObject().opsForValue().multiGet(List.of(first, second));
+        return new long[]{
+                parse(values != null ? values.get(0) : null),
+                parse(values != null ? values.get(1) : null)
+        };
+    }
+
+    private void incr(String key) {
+        if (isLocal()) {
+            localGenerations.computeIfAbsent(key, k -> new AtomicLong()).incrementAndGet();
+            return;
+        }
+        redisTemplateProvider.getObject().opsForValue().increment(key);
+    }
+
+    private static long parse(String value) {
+        return value != null ? Long.parseLong(value) : 0L;
+    }
+}
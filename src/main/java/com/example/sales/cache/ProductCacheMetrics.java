@@ -0,0 +1,135 @@
+// File: src/main/java/com/example/sales/cache/ProductCacheMetrics.java
+package com.example.sales.cache;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.interceptor.CacheOperationInvocationContext;
+import org.springframework.cache.interceptor.CacheResolver;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * CacheResolver cho {@link ProductCache}: bọc cache thật để đếm hit/miss.
+ *
+ * Metric: "product.cache.lookups" với tag {@code result} = hit | miss; hit rate = hit / (hit + miss).
+ * Không gắn tag theo shop: số giá trị tag sẽ tăng theo số tenant, và /actuator/metrics sẽ liệt kê
+ * shopId + lưu lượng của mọi shop.
+ */
+@Component("productCacheResolver")
+public class ProductCacheMetrics implements CacheResolver {
+
+    static final String METRIC_NAME = "product.cache.lookups";
+
+    private final CacheManager cacheManager;
+    private final MeterRegistry meterRegistry;
+    private final Map<Cache, Cache> metered = new ConcurrentHashMap<>();
+    private final Counter hits;
+    private final Counter misses;
+
+    public ProductCacheMetrics(CacheManager cacheManager, MeterRegistry meterRegistry) {
+        this.cacheManager = cacheManager;
+        this.meterRegistry = meterRegistry;
+        this.hits = meterRegistry.counter(METRIC_NAME, "result", "hit");
+        this.misses = meterRegistry.counter(METRIC_NAME, "result", "miss");
+    }
+
+    @Override
+    public Collection<? extends Cache> resolveCaches(CacheOperationInvocationContext<?> context) {
+        Cache cache = cacheManager.getCache(ProductCache.CACHE_NAME);
+        if (cache == null) {
+            return List.of();
+        }
+        return List.of(metered.computeIfAbsent(cache, MeteredCache::new));
+    }
+
+    public double hitCount() {
+        return count("hit");
+    }
+
+    public double missCount() {
+        return count("miss");
+    }
+
+    private double count(String result) {
+        Counter counter = meterRegistry.find(METRIC_NAME).tags("result", result).counter();
+        return counter != null ? counter.count() : 0d;
+    }
+
+    private void record(boolean hit) {
+        (hit ? hits : misses).increment();
+    }
+
+    /** Ủy quyền toàn bộ cho cache thật, chỉ chen thêm đếm ở {@link #get(Object)}. */
+    private final class MeteredCache implements Cache {
+
+        private final Cache delegate;
+
+        private MeteredCache(Cache delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public String getName() {
+            return delegate.getName();
+        }
+
+        @Override
+        public Object getNativeCache() {
+            return delegate.getNativeCache();
+        }
+
+        @Override
+        public ValueWrapper get(Object key) {
+            ValueWrapper value = delegate.get(key);
+            record(value != null);
+            return value;
+        }
+
+        @Override
+        public <T> T get(Object key, Class<T> type) {
+            return delegate.get(key, type);
+        }
+
+        @Override
+        public <T> T get(Object key, Callable<T> valueLoader) {
+            return delegate.get(key, valueLoader);
+        }
+
+        @Override
+        public void put(Object key, Object value) {
+            delegate.put(key, value);
+        }
+
+        @Override
+        public ValueWrapper putIfAbsent(Object key, Object value) {
+            return delegate.putIfAbsent(key, value);
+        }
+
+        @Override
+        public void evict(Object key) {
+            delegate.evict(key);
+        }
+
+        @Override
+        public boolean evictIfPresent(Object key) {
+            return delegate.evictIfPresent(key);
+        }
+
+        @Override
+        public void clear() {
+            delegate.clear();
+        }
+
+        @Override
+        public boolean invalidate() {
+            return delegate.invalidate();
+        }
+    }
+}
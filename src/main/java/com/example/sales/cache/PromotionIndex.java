@@ -0,0 +1,123 @@
+// File: src/main/java/com/example/sales/cache/PromotionIndex.java
+package com.example.sales.cache;
+
+import com.example.sales.model.Promotion;
+import com.example.sales.repository.PromotionRepository;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Chỉ mục khuyến mãi đang bật theo shop, dùng khi tính giá dòng đơn hàng.
+ *
+ * Mỗi shop được nạp một lần (chỉ promotion active, chưa xóa) thành:
+ *   productId → danh sách promotion áp dụng cho sản phẩm đó
+ *   + danh sách promotion áp dụng cho mọi sản phẩm (applicableProductIds rỗng)
+ * Mỗi entry giữ thứ tự nạp từ DB và cửa sổ [startDate, endDate] đã chuẩn hóa, nên tra cứu chỉ duyệt
+ * vài ứng viên của đúng sản phẩm thay vì toàn bộ promotion của shop.
+ *
+ * PromotionService gọi {@link #evictShop(String)} sau create/update/delete. Khi chạy near-cache Redis
+ * ({@link TwoLevelCacheManager}), lần evict được phát qua kênh pub/sub của near-cache để node khác bỏ index
+ * của shop ngay; {@link #RELOAD_AFTER} chỉ còn là giới hạn độ cũ khi lỡ message.
+ */
+@Component
+public class PromotionIndex {
+
+    static final Duration RELOAD_AFTER = Duration.ofMinutes(5);
+    static final String INVALIDATION_NAME = "index:promotions";
+
+    private final PromotionRepository promotionRepository;
+    private final ObjectProvider<TwoLevelCacheManager> nearCacheProvider;
+    private final LoadingCache<String, ShopPromotions> byShop;
+
+    public PromotionIndex(PromotionRepository promotionRepository,
+                          ObjectProvider<TwoLevelCacheManager> nearCacheProvider) {
+        this.promotionRepository = promotionRepository;
+        this.nearCacheProvider = nearCacheProvider;
+        this.byShop = Caffeine.newBuilder()
+                .maximumSize(10_000)
+                .expireAfterWrite(RELOAD_AFTER)
+                .build(this::load);
+        nearCacheProvider.ifAvailable(nearCache -> nearCache.registerLocalIndex(INVALIDATION_NAME, this::invalidateLocal));
+    }
+
+    /**
+     * Promotion đầu tiên (theo thứ tự trong DB) đang hiệu lực tại {@code now} cho sản phẩm ở chi nhánh.
+     * Promotion có branchId = null áp dụng cho toàn shop.
+     */
+    public Promotion findApplicable(String shopId, String branchId, String productId, LocalDateTime now) {
+        ShopPromotions index = byShop.get(shopId);
+        Entry best = firstMatch(index.byProduct().get(productId), branchId, now, null);
+        best = firstMatch(index.allProducts(), branchId, now, best);
+        return best != null ? best.promotion() : null;
+    }
+
+    public void evictShop(String shopId) {
+        byShop.invalidate(shopId);
+        nearCacheProvider.ifAvailable(nearCache -> nearCache.publishLocalIndexInvalidation(INVALIDATION_NAME, shopId));
+    }
+
+    private void invalidateLocal(String shopId) {
+        if (shopId == null) {
+            byShop.invalidateAll();
+        } else {
+            byShop.invalidate(shopId);
+        }
+    }
+
+    private ShopPromotions load(String shopId) {
+        List<Promotion> promotions = promotionRepository.findByShopIdAndActiveTrueAndDeletedFalse(shopId);
+        Map<String, List<Entry>> byProduct = new HashMap<>();
+        List<Entry> allProducts = new ArrayList<>();
+        for (int i = 0; i < promotions.size(); i++) {
+            Promotion p = promotions.get(i);
+            Entry entry = new Entry(i, p,
+                    p.getStartDate() != null ? p.getStartDate() : LocalDateTime.MIN,
+                    p.getEndDate() != null ? p.getEndDate() : LocalDateTime.MAX);
+            if (p.getApplicableProductIds() == null || p.getApplicableProductIds().isEmpty()) {
+                allProducts.add(entry);
+                continue;
+            }
+            for (String productId : p.getApplicableProductIds()) {
+                byProduct.computeIfAbsent(productId, k -> new ArrayList<>()).add(entry);
+            }
+        }
+        return new ShopPromotions(byProduct, allProducts);
+    }
+
+    /** Entry sớm nhất trong {@code entries} (đã theo thứ tự) thỏa chi nhánh + thời gian, nếu sớm hơn {@code current}. */
+    private static Entry firstMatch(List<Entry> entries, String branchId, LocalDateTime now, Entry current) {
+        if (entries == null) {
+            return current;
+        }
+        for (Entry e : entries) {
+            if (current != null && e.order() > current.order()) {
+                return current;
+            }
+            if (e.appliesTo(branchId, now)) {
+                return e;
+            }
+        }
+        return current;
+    }
+
+    private record ShopPromotions(Map<String, List<Entry>> byProduct, List<Entry> allProducts) {
+    }
+
+    private record Entry(int order, Promotion promotion, LocalDateTime start, LocalDateTime end) {
+        boolean appliesTo(String branchId, LocalDateTime now) {
+            String scope = promotion.getBranchId();
+            return (scope == null || scope.equals(branchId))
+                    && !start.isAfter(now)
+                    && !end.isBefore(now);
+        }
+    }
+}
@@ -0,0 +1,42 @@
+// File: src/main/java/com/example/sales/cache/ShopUserAccess.java
+package com.example.sales.cache;
+
+import com.example.sales.constant.Permission;
+import com.example.sales.constant.ShopRole;
+
+import java.io.Serializable;
+import java.util.Set;
+
+/**
+ * Quyền của một user trong một shop, gọn để cache: role + bitset theo {@link Permission#ordinal()}.
+ * {@code role == null} nghĩa là user không thuộc shop (cũng được cache để chặn truy vấn lặp).
+ */
+public record ShopUserAccess(ShopRole role, long permissionBits) implements Serializable {
+
+    public static final ShopUserAccess NONE = new ShopUserAccess(null, 0L);
+
+    static {
+        // Bitset dùng một long: enum Permission phải có tối đa 64 giá trị
+        if (Permission.values().length > Long.SIZE) {
+            throw new IllegalStateException("Permission enum exceeds " + Long.SIZE + " values");
+        }
+    }
+
+    public static ShopUserAccess of(ShopRole role, Set<Permission> permissions) {
+        long bits = 0L;
+        if (permissions != null) {
+            for (Permission p : permissions) {
+                bits |= 1L << p.ordinal();
+            }
+        }
+        return new ShopUserAccess(role, bits);
+    }
+
+    public boolean isMember() {
+        return role != null;
+    }
+
+    public boolean has(Permission permission) {
+        return (permissionBits & (1L << permission.ordinal())) != 0;
+    }
+}
@@ -4,7 +4,9 @@ package com.example.sales.cache;
 import com.example.sales.constant.ShopRole;
 import com.example.sales.repository.ShopUserRepository;
 import com.example.sales.service.BaseService;
+import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.Cacheable;
+import org.springframework.cache.annotation.Caching;
 import org.springframework.stereotype.Component;
 
 @Component
@@ -20,4 +22,23 @@ public class ShopUserCache extends BaseService {
     public ShopRole getUserRoleInShop(String shopId, String userId) {
         return checkShopUserExists(shopUserRepository, shopId, userId).getRole();
     }
+
+    /**
+     * Role + bitset quyền của user trong shop, dùng cho PermissionChecker ở mọi request @RequirePermission.
+     * Trả về {@link ShopUserAccess#NONE} (không ném lỗi) khi user không thuộc shop.
+     */
+    @Cacheable(value = "shopUserAccess", key = "#shopId + '-' + #userId")
+    public ShopUserAccess getAccess(String shopId, String userId) {
+        return shopUserRepository.findByShopIdAndUserIdAndDeletedFalse(shopId, userId)
+                .map(su -> ShopUserAccess.of(su.getRole(), su.getPermissions()))
+                .orElse(ShopUserAccess.NONE);
+    }
+
+    /** Gọi sau mọi thay đổi role / permissions / thêm / xóa user khỏi shop. */
+    @Caching(evict = {
+            @CacheEvict(value = "shopUsers", key = "#shopId + '-' + #userId"),
+            @CacheEvict(value = "shopUserAccess", key = "#shopId + '-' + #userId")
+    })
+    public void evict(String shopId, String userId) {
+    }
 }
@@ -0,0 +1,49 @@
+// File: src/main/java/com/example/sales/cache/SubscriptionStatusCache.java
+package com.example.sales.cache;
+
+import com.example.sales.constant.SubscriptionStatus;
+import com.example.sales.model.Subscription;
+import com.example.sales.repository.SubscriptionRepository;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * Trạng thái subscription theo shopId cho SubscriptionGuardInterceptor (chạy ở mọi request ghi).
+ *
+ * Node thực hiện chuyển trạng thái (SubscriptionService, PlanExpiryScheduler qua markExpired)
+ * cập nhật entry ngay qua {@link #refresh(Subscription)}; các node khác thấy thay đổi chậm nhất
+ * sau {@link #MAX_STALENESS} khi entry hết hạn và được nạp lại từ DB.
+ * Shop chưa có subscription được cache là rỗng (guard coi như TRIAL).
+ */
+@Component
+public class SubscriptionStatusCache {
+
+    static final Duration MAX_STALENESS = Duration.ofSeconds(60);
+
+    private final SubscriptionRepository subscriptionRepository;
+    private final LoadingCache<String, Optional<SubscriptionStatus>> byShop;
+
+    public SubscriptionStatusCache(SubscriptionRepository subscriptionRepository) {
+        this.subscriptionRepository = subscriptionRepository;
+        this.byShop = Caffeine.newBuilder()
+                .maximumSize(100_000)
+                .expireAfterWrite(MAX_STALENESS)
+                .build(shopId -> this.subscriptionRepository.findByShopId(shopId).map(Subscription::getStatus));
+    }
+
+    /** Trạng thái hiện tại, hoặc null nếu shop chưa có subscription. */
+    public SubscriptionStatus getStatus(String shopId) {
+        return byShop.get(shopId).orElse(null);
+    }
+
+    /** Gọi sau khi lưu subscription để node hiện tại thấy trạng thái mới ngay. */
+    public void refresh(Subscription subscription) {
+        if (subscription != null && subscription.getShopId() != null) {
+            byShop.put(subscription.getShopId(), Optional.ofNullable(subscription.getStatus()));
+        }
+    }
+}
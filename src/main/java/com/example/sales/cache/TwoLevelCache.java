@@ -0,0 +1,164 @@
+// File: src/main/java/com/example/sales/cache/TwoLevelCache.java
+package com.example.sales.cache;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.cache.Cache;
+import org.springframework.cache.support.SimpleValueWrapper;
+import org.springframework.core.serializer.support.DeserializingConverter;
+import org.springframework.core.serializer.support.SerializingConverter;
+
+import java.util.concurrent.Callable;
+import java.util.function.BiConsumer;
+
+/**
+ * Cache hai tầng: L1 Caffeine trong process, L2 là cache Redis (hoặc bất kỳ {@link Cache} nào).
+ *
+ * Đọc: L1 → L2 (hit L2 thì nạp lên L1). Ghi/xóa: ghi L2 trước, cập nhật L1 của node này,
+ * rồi phát thông báo vô hiệu để các node khác bỏ bản L1 của key đó.
+ *
+ * L1 giữ bản serialize (Java serialization, cùng yêu cầu Serializable như L2 Redis) và deserialize ở mỗi lần đọc:
+ * mỗi caller nhận một bản sao riêng, nên code sửa entity vừa đọc từ cache (vd: OrderService đổi trạng thái đơn
+ * trước khi save) không làm hỏng bản L1 mà request khác đang đọc.
+ *
+ * Key L1 được chuẩn hóa bằng {@code String.valueOf(key)} để khớp với key trong thông báo pub/sub.
+ * {@link #getNativeCache()} trả về native của L2 để code kiểm tra loại backend (vd: ProductCacheKeys) vẫn đúng.
+ */
+public class TwoLevelCache implements Cache {
+
+    private static final SerializingConverter SERIALIZER = new SerializingConverter();
+    private static final DeserializingConverter DESERIALIZER =
+            new DeserializingConverter(TwoLevelCache.class.getClassLoader());
+
+    private final String name;
+    /** Giá trị là {@code byte[]} đã serialize (null = cache giá trị null). */
+    private final com.github.benmanes.caffeine.cache.Cache<String, ValueWrapper> l1;
+    private final Cache l2;
+    private final BiConsumer<String, String> invalidationPublisher;
+    private final Counter l2Hits;
+    private final Counter l2Misses;
+
+    public TwoLevelCache(String name,
+                         com.github.benmanes.caffeine.cache.Cache<String, ValueWrapper> l1,
+                         Cache l2,
+                         BiConsumer<String, String> invalidationPublisher,
+                         MeterRegistry meterRegistry) {
+        this.name = name;
+        this.l1 = l1;
+        this.l2 = l2;
+        this.invalidationPublisher = invalidationPublisher;
+        this.l2Hits = meterRegistry.counter("cache.l2.lookups", "cache", name, "result", "hit");
+        this.l2Misses = meterRegistry.counter("cache.l2.lookups", "cache", name, "result", "miss");
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public Object getNativeCache() {
+        return l2.getNativeCache();
+    }
+
+    @Override
+    public ValueWrapper get(Object key) {
+        String localKey = String.valueOf(key);
+        ValueWrapper local = l1.getIfPresent(localKey);
+        if (local != null) {
+            return new SimpleValueWrapper(copyOf(local));
+        }
+        ValueWrapper remote = l2.get(key);
+        if (remote == null) {
+            l2Misses.increment();
+            return null;
+        }
+        l2Hits.increment();
+        l1.put(localKey, serialized(remote.get()));
+        return remote;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Class<T> type) {
+        ValueWrapper wrapper = get(key);
+        Object value = wrapper != null ? wrapper.get() : null;
+        if (value != null && type != null && !type.isInstance(value)) {
+            throw new IllegalStateException("Cached value is not of required type [" + type.getName() + "]: " + value);
+        }
+        return (T) value;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        ValueWrapper wrapper = get(key);
+        if (wrapper != null) {
+            return (T) wrapper.get();
+        }
+        T value = l2.get(key, valueLoader);
+        l1.put(String.valueOf(key), serialized(value));
+        return value;
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        l2.put(key, value);
+        String localKey = String.valueOf(key);
+        l1.put(localKey, serialized(value));
+        invalidationPublisher.accept(name, localKey);
+    }
+
+    @Override
+    public ValueWrapper putIfAbsent(Object key, Object value) {
+        ValueWrapper existing = l2.putIfAbsent(key, value);
+        String localKey = String.valueOf(key);
+        l1.invalidate(localKey);
+        if (existing == null) {
+            invalidationPublisher.accept(name, localKey);
+        }
+        return existing;
+    }
+
+    @Override
+    public void evict(Object key) {
+        l2.evict(key);
+        String localKey = String.valueOf(key);
+        l1.invalidate(localKey);
+        invalidationPublisher.accept(name, localKey);
+    }
+
+    @Override
+    public boolean evictIfPresent(Object key) {
+        boolean present = l2.evictIfPresent(key);
+        String localKey = String.valueOf(key);
+        l1.invalidate(localKey);
+        invalidationPublisher.accept(name, localKey);
+        return present;
+    }
+
+    @Override
+    public void clear() {
+        l2.clear();
+        l1.invalidateAll();
+        invalidationPublisher.accept(name, null);
+    }
+
+    private static ValueWrapper serialized(Object value) {
+        return new SimpleValueWrapper(value != null ? SERIALIZER.convert(value) : null);
+    }
+
+    private static Object copyOf(ValueWrapper local) {
+        byte[] bytes = (byte[]) local.get();
+        return bytes != null ? DESERIALIZER.convert(bytes) : null;
+    }
+
+    /** Áp dụng thông báo từ node khác: chỉ xóa L1, không đụng L2. {@code key == null} = xóa hết. */
+    void invalidateLocal(String key) {
+        if (key == null) {
+            l1.invalidateAll();
+        } else {
+            l1.invalidate(key);
+        }
+    }
+}
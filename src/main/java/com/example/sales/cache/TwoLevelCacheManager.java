@@ -0,0 +1,117 @@
+// File: src/main/java/com/example/sales/cache/TwoLevelCacheManager.java
+package com.example.sales.cache;
+
+import com.example.sales.config.NearCacheProperties;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+
+import java.util.Collection;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Consumer;
+
+/**
+ * CacheManager hai tầng: mỗi cache của {@code l2Manager} (Redis) được bọc bởi một {@link TwoLevelCache}
+ * có L1 Caffeine giới hạn kích thước và TTL.
+ *
+ * Thông báo vô hiệu có dạng "{nodeId}|{cacheName}|{key}" (không có phần key = xóa toàn bộ cache).
+ * {@link #handleInvalidation(String)} bỏ qua thông báo do chính node này phát.
+ *
+ * Chỉ mục trong bộ nhớ không đi qua Spring Cache (vd: {@link PromotionIndex}) dùng chung kênh này qua
+ * {@link #registerLocalIndex} / {@link #publishLocalIndexInvalidation}; tên chỉ mục không được trùng tên cache.
+ *
+ * Metrics: L1 qua {@link CaffeineCacheMetrics} (cache.gets hit/miss, cache.evictions... với tag
+ * cache={name}, tier=l1); L2 qua "cache.l2.lookups" (xem {@link TwoLevelCache}).
+ */
+@Slf4j
+public class TwoLevelCacheManager implements CacheManager {
+
+    private static final String SEPARATOR = "|";
+
+    private final CacheManager l2Manager;
+    private final NearCacheProperties properties;
+    private final MeterRegistry meterRegistry;
+    private final Consumer<String> publisher;
+    private final String nodeId = UUID.randomUUID().toString();
+    private final ConcurrentMap<String, TwoLevelCache> caches = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Consumer<String>> localIndexes = new ConcurrentHashMap<>();
+
+    public TwoLevelCacheManager(CacheManager l2Manager, NearCacheProperties properties,
+                                MeterRegistry meterRegistry, Consumer<String> publisher) {
+        this.l2Manager = l2Manager;
+        this.properties = properties;
+        this.meterRegistry = meterRegistry;
+        this.publisher = publisher;
+    }
+
+    @Override
+    public Cache getCache(String name) {
+        TwoLevelCache existing = caches.get(name);
+        if (existing != null) {
+            return existing;
+        }
+        Cache l2 = l2Manager.getCache(name);
+        if (l2 == null) {
+            return null;
+        }
+        return caches.computeIfAbsent(name, n -> createCache(n, l2));
+    }
+
+    @Override
+    public Collection<String> getCacheNames() {
+        return l2Manager.getCacheNames();
+    }
+
+    /** Nhận thông báo pub/sub từ node khác và xóa bản L1 tương ứng. */
+    public void handleInvalidation(String message) {
+        String[] parts = message.split("\\" + SEPARATOR, 3);
+        if (parts.length < 2 || nodeId.equals(parts[0])) {
+            return;
+        }
+        String key = parts.length == 3 ? parts[2] : null;
+        TwoLevelCache cache = caches.get(parts[1]);
+        if (cache != null) {
+            cache.invalidateLocal(key);
+            return;
+        }
+        Consumer<String> index = localIndexes.get(parts[1]);
+        if (index != null) {
+            index.accept(key);
+        }
+    }
+
+    /** Nhận thông báo vô hiệu của node khác cho chỉ mục {@code name}; {@code invalidator} nhận key (null = xóa hết). */
+    public void registerLocalIndex(String name, Consumer<String> invalidator) {
+        localIndexes.put(name, invalidator);
+    }
+
+    /** Báo các node khác bỏ entry {@code key} của chỉ mục {@code name} (node này tự xóa bản của mình). */
+    public void publishLocalIndexInvalidation(String name, String key) {
+        publish(name, key);
+    }
+
+    private TwoLevelCache createCache(String name, Cache l2) {
+        com.github.benmanes.caffeine.cache.Cache<String, Cache.ValueWrapper> l1 = Caffeine.newBuilder()
+                .maximumSize(properties.getMaximumSize())
+                .expireAfterWrite(properties.getTimeToLive())
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, l1, name, "tier", "l1");
+        return new TwoLevelCache(name, l1, l2, this::publish, meterRegistry);
+    }
+
+    private void publish(String cacheName, String key) {
+        String message = nodeId + SEPARATOR + cacheName + (key != null ? SEPARATOR + key : "");
+        try {
+            publisher.accept(message);
+        } catch (RuntimeException e) {
+            // L2 đã được cập nhật; node khác sẽ tự hết hạn L1 theo TTL
+            log.warn("Không phát được thông báo vô hiệu near-cache {}: {}", cacheName, e.getMessage());
+        }
+    }
+}
@@ -6,6 +6,7 @@ import org.springframework.scheduling.annotation.EnableAsync;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 
 import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadPoolExecutor;
 
 @Configuration
 @EnableAsync
@@ -21,4 +22,68 @@ public class AsyncConfig {
         executor.initialize();
         return executor;
     }
-}
\ No newline at end of file
+
+    /**
+     * Pool riêng cho job import sản phẩm (xem {@link ProductImportProperties}).
+     * Không có CallerRuns: khi hàng đợi đầy, submit bị từ chối thay vì chạy trên thread HTTP.
+     */
+    @Bean(name = "productImportExecutor")
+    public ThreadPoolTaskExecutor productImportExecutor(ProductImportProperties properties) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(properties.getPoolSize());
+        executor.setMaxPoolSize(properties.getPoolSize());
+        executor.setQueueCapacity(properties.getQueueCapacity());
+        executor.setThreadNamePrefix("product-import-");
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(60);
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * Pool chạy job broadcast (xem {@link BroadcastProperties}): mỗi thread điều phối một broadcast,
+     * các broadcast sau xếp hàng chờ.
+     */
+    @Bean(name = "broadcastExecutor")
+    public ThreadPoolTaskExecutor broadcastExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(1);
+        executor.setMaxPoolSize(1);
+        executor.setQueueCapacity(100);
+        executor.setThreadNamePrefix("broadcast-");
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * Pool xử lý chunk recipient của broadcast. Đủ thread cho {@code parallelism} chunk một lượt;
+     * CallerRuns để thread điều phối tự xử lý chunk nếu pool bận thay vì bỏ chunk.
+     */
+    @Bean(name = "broadcastChunkExecutor")
+    public ThreadPoolTaskExecutor broadcastChunkExecutor(BroadcastProperties properties) {
+        int threads = Math.max(1, properties.getParallelism());
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(threads);
+        executor.setThreadNamePrefix("broadcast-chunk-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * Thread chạy backfill rollup doanh số (xem {@code SalesRollupBackfillService}) — một job mỗi node,
+     * không chạy trong thread khởi động / HTTP.
+     */
+    @Bean(name = "rollupBackfillExecutor")
+    public ThreadPoolTaskExecutor rollupBackfillExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(1);
+        executor.setMaxPoolSize(1);
+        executor.setQueueCapacity(1);
+        executor.setThreadNamePrefix("rollup-backfill-");
+        executor.initialize();
+        return executor;
+    }
+}
@@ -0,0 +1,51 @@
+package com.example.sales.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * Cấu hình ghi audit log bất đồng bộ ({@code AuditLogService.log}).
+ * <p>
+ * Log được đưa vào hàng đợi có giới hạn và một thread nền ghi theo lô bằng {@code insertMany}.
+ * Khi hàng đợi đầy, {@link #overflowPolicy} quyết định: ghi đồng bộ trong thread gọi, chờ rồi bỏ, hoặc bỏ ngay.
+ */
+@Getter
+@Setter
+@Configuration
+@ConfigurationProperties(prefix = "app.audit.async")
+public class AuditLogProperties {
+
+    /** false = ghi đồng bộ như trước (mỗi lần log một lệnh insert). */
+    private boolean enabled = true;
+
+    /** Số log tối đa chờ ghi trong bộ nhớ. */
+    private int queueCapacity = 10_000;
+
+    /** Số log tối đa trong một lệnh insertMany. */
+    private int batchSize = 200;
+
+    /** Thời gian tối đa một log nằm chờ trước khi lô được ghi (khi chưa đủ batchSize). */
+    private Duration flushInterval = Duration.ofMillis(200);
+
+    /** Hành vi khi hàng đợi đầy. */
+    private OverflowPolicy overflowPolicy = OverflowPolicy.CALLER_RUNS;
+
+    /** Thời gian chờ chỗ trống với {@link OverflowPolicy#BLOCK} trước khi bỏ log. */
+    private Duration blockTimeout = Duration.ofMillis(50);
+
+    /** Thời gian tối đa chờ ghi hết hàng đợi khi tắt ứng dụng. */
+    private Duration shutdownTimeout = Duration.ofSeconds(10);
+
+    public enum OverflowPolicy {
+        /** Ghi đồng bộ trong thread gọi — không mất log, request chậm lại (backpressure). */
+        CALLER_RUNS,
+        /** Chờ tối đa blockTimeout, hết chỗ thì bỏ log. */
+        BLOCK,
+        /** Bỏ log ngay. */
+        DROP
+    }
+}
@@ -0,0 +1,41 @@
+package com.example.sales.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * Cấu hình job gửi broadcast nền ({@link com.example.sales.service.admin.BroadcastDeliveryService}).
+ * <p>
+ * Recipient được duyệt theo {@code _id} thành từng chunk; mỗi lượt chạy song song tối đa {@code parallelism}
+ * chunk rồi lưu tiến độ (cursor) vào broadcast. Node đang gửi giữ lease {@code leaseTimeout}, gia hạn sau
+ * mỗi lượt; lease hết hạn (node chết) thì node khác nhận tiếp từ cursor đã lưu. Chunk gửi lỗi giữ cursor lại
+ * trước nó và nhả lease, để lượt quét sau gửi lại (tối đa {@code maxRetries} lần).
+ */
+@Getter
+@Setter
+@Configuration
+@ConfigurationProperties(prefix = "app.broadcast")
+public class BroadcastProperties {
+
+    /** Số recipient mỗi chunk (một lần insertMany notification + một bulk insert dedupe key). */
+    private int chunkSize = 500;
+
+    /** Số chunk xử lý song song của một broadcast. */
+    private int parallelism = 4;
+
+    /** Lease của node đang gửi; quá hạn mà không gia hạn thì broadcast được coi là bị bỏ dở. */
+    private Duration leaseTimeout = Duration.ofMinutes(2);
+
+    /** Chu kỳ quét broadcast SENDING bị bỏ dở để gửi tiếp. */
+    private Duration resumeInterval = Duration.ofMinutes(1);
+
+    /**
+     * Số lần một broadcast được dừng ở chunk gửi lỗi để gửi lại ở lượt quét sau; hết lượt thì recipient của
+     * chunk lỗi được đếm vào failedCount và job đi tiếp.
+     */
+    private int maxRetries = 3;
+}
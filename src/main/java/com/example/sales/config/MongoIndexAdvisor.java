@@ -0,0 +1,247 @@
+// File: src/main/java/com/example/sales/config/MongoIndexAdvisor.java
+package com.example.sales.config;
+
+import com.example.sales.model.AuditLog;
+import com.example.sales.model.Customer;
+import com.example.sales.model.InventoryTransaction;
+import com.example.sales.model.NextSequence;
+import com.example.sales.model.NotificationDedupe;
+import com.example.sales.model.Product;
+import com.example.sales.model.ProductDailyRollup;
+import com.example.sales.model.ProductImportJob;
+import com.example.sales.model.SalesDailyRollup;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexDefinition;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.index.IndexResolver;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Kiểm tra index của các collection nóng lúc khởi động:
+ * <ol>
+ *   <li>Tạo các index khai báo bằng {@code @CompoundIndex} cho {@link #INDEXED_TYPES} và các index được chọn
+ *       theo tên trong {@link #NAMED_INDEXES} (auto-index-creation không bật, createIndex idempotent).</li>
+ *   <li>Chạy {@code explain} (queryPlanner) cho các query chính của OrderRepository, ReportService,
+ *       lịch sử tồn kho, audit log (cả dạng keyset), delta của index tìm kiếm sản phẩm và danh sách khách hàng;
+ *       query nào có stage COLLSCAN được log cảnh báo.</li>
+ * </ol>
+ * Giá trị trong query mẫu chỉ là placeholder — planner chọn index theo hình dạng query, không theo giá trị.
+ * Lỗi tạo index / explain chỉ được log, không chặn khởi động (trừ {@code failOnCollscan}).
+ */
+@Slf4j
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 50)
+@RequiredArgsConstructor
+public class MongoIndexAdvisor implements ApplicationRunner {
+
+    static final List<Class<?>> INDEXED_TYPES = List.of(
+            com.example.sales.model.Order.class,
+            InventoryTransaction.class,
+            Customer.class,
+            SalesDailyRollup.class,
+            ProductDailyRollup.class,
+            AuditLog.class,
+            NotificationDedupe.class,
+            NextSequence.class,
+            ProductImportJob.class);
+
+    /**
+     * Collection chỉ tạo một số index khai báo (theo tên) — không tạo hết như {@link #INDEXED_TYPES}.
+     * products: các unique index {shopId, sku} / {shopId, barcode} chưa từng được tạo và không đúng với
+     * dữ liệu hiện tại (barcode null, sản phẩm đã xóa mềm giữ SKU) nên không được tạo ở đây.
+     */
+    static final Map<Class<?>, Set<String>> NAMED_INDEXES = Map.of(
+            Product.class, Set.of("idx_shop_updated"));
+
+    private static final String SAMPLE_ID = "__index_advisor__";
+    private static final List<String> CLOSED_STATUSES = List.of("COMPLETED", "CANCELLED");
+
+    private final MongoTemplate mongoTemplate;
+    private final MongoIndexAdvisorProperties properties;
+
+    /** Một query nóng: filter + sort giống query thật của repository / service. */
+    record HotQuery(String name, Class<?> type, Document filter, Document sort) {
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!properties.isEnabled()) return;
+
+        if (properties.isCreateIndexes()) {
+            createIndexes();
+        }
+
+        List<HotQuery> queries = hotQueries();
+        List<String> collscans = new ArrayList<>();
+        for (HotQuery query : queries) {
+            try {
+                Document explain = mongoTemplate.getCollection(mongoTemplate.getCollectionName(query.type()))
+                        .find(query.filter())
+                        .sort(query.sort())
+                        .explain();
+                Object winningPlan = explain.get("queryPlanner", Document.class) != null
+                        ? explain.get("queryPlanner", Document.class).get("winningPlan")
+                        : null;
+                if (hasCollscan(winningPlan)) {
+                    collscans.add(query.name());
+                    log.warn("[MongoIndexAdvisor] COLLSCAN: {} — filter={} sort={}",
+                            query.name(), query.filter().toJson(), query.sort().toJson());
+                }
+            } catch (RuntimeException e) {
+                log.warn("[MongoIndexAdvisor] không explain được '{}': {}", query.name(), e.getMessage());
+            }
+        }
+
+        if (!collscans.isEmpty() && properties.isFailOnCollscan()) {
+            throw new IllegalStateException("Query không dùng index: " + collscans);
+        }
+        log.info("[MongoIndexAdvisor] đã kiểm tra {} query, {} COLLSCAN.", queries.size(), collscans.size());
+    }
+
+    private void createIndexes() {
+        IndexResolver resolver = IndexResolver.create(mongoTemplate.getConverter().getMappingContext());
+        indexesToCreate(resolver).forEach((type, definitions) -> {
+            IndexOperations ops = mongoTemplate.indexOps(type);
+            for (IndexDefinition definition : definitions) {
+                try {
+                    ops.createIndex(definition);
+                } catch (RuntimeException e) {
+                    log.warn("[MongoIndexAdvisor] không tạo được index {} cho {}: {}",
+                            definition.getIndexKeys().toJson(), type.getSimpleName(), e.getMessage());
+                }
+            }
+        });
+    }
+
+    /** Index sẽ được tạo: mọi index khai báo của {@link #INDEXED_TYPES} + index được chọn trong {@link #NAMED_INDEXES}. */
+    static Map<Class<?>, List<IndexDefinition>> indexesToCreate(IndexResolver resolver) {
+        Map<Class<?>, List<IndexDefinition>> result = new LinkedHashMap<>();
+        for (Class<?> type : INDEXED_TYPES) {
+            List<IndexDefinition> definitions = new ArrayList<>();
+            resolver.resolveIndexFor(type).forEach(definitions::add);
+            result.put(type, definitions);
+        }
+        NAMED_INDEXES.forEach((type, names) -> {
+            List<IndexDefinition> definitions = new ArrayList<>();
+            for (IndexDefinition definition : resolver.resolveIndexFor(type)) {
+                String name = definition.getIndexOptions().getString("name");
+                if (name != null && names.contains(name)) {
+                    definitions.add(definition);
+                }
+            }
+            if (definitions.size() != names.size()) {
+                log.warn("[MongoIndexAdvisor] {} thiếu index khai báo trong {}", type.getSimpleName(), names);
+            }
+            result.put(type, definitions);
+        });
+        return result;
+    }
+
+    static List<HotQuery> hotQueries() {
+        Date from = Date.from(LocalDate.now().minusDays(30).atStartOfDay(ZoneId.systemDefault()).toInstant());
+        Date to = new Date();
+        Document newestFirst = new Document("createdAt", -1);
+        Document keysetOrder = new Document("createdAt", -1).append("_id", -1);
+        Document afterCursor = new Document("$or", List.of(
+                new Document("createdAt", new Document("$lt", to)),
+                new Document("createdAt", to).append("_id", new Document("$lt", new ObjectId()))));
+        Document noSort = new Document();
+        Class<?> order = com.example.sales.model.Order.class;
+
+        return List.of(
+                new HotQuery("orders theo shop", order,
+                        new Document("shopId", SAMPLE_ID).append("deleted", false), newestFirst),
+                new HotQuery("orders theo chi nhánh", order,
+                        new Document("shopId", SAMPLE_ID).append("branchId", SAMPLE_ID).append("deleted", false),
+                        newestFirst),
+                new HotQuery("orders theo shop + trạng thái", order,
+                        new Document("shopId", SAMPLE_ID).append("status", "PENDING").append("deleted", false),
+                        newestFirst),
+                new HotQuery("orders theo chi nhánh + trạng thái", order,
+                        new Document("shopId", SAMPLE_ID).append("branchId", SAMPLE_ID)
+                                .append("status", "PENDING").append("deleted", false),
+                        newestFirst),
+                new HotQuery("orders theo shop (keyset)", order,
+                        new Document("shopId", SAMPLE_ID).append("deleted", false).append("$and", List.of(afterCursor)),
+                        keysetOrder),
+                new HotQuery("orders theo chi nhánh + trạng thái (keyset)", order,
+                        new Document("shopId", SAMPLE_ID).append("branchId", SAMPLE_ID)
+                                .append("status", "PENDING").append("deleted", false)
+                                .append("$and", List.of(afterCursor)),
+                        keysetOrder),
+                new HotQuery("orders đang mở", order,
+                        new Document("shopId", SAMPLE_ID).append("branchId", SAMPLE_ID).append("deleted", false)
+                                .append("isPaid", false)
+                                .append("status", new Document("$nin", CLOSED_STATUSES)),
+                        noSort),
+                new HotQuery("order theo mã", order,
+                        new Document("shopId", SAMPLE_ID)
+                                .append("orderCode", Pattern.compile("^DH-1$", Pattern.CASE_INSENSITIVE))
+                                .append("deleted", false),
+                        noSort),
+                new HotQuery("báo cáo theo shop", order,
+                        new Document("shopId", SAMPLE_ID)
+                                .append("status", new Document("$ne", "CANCELLED"))
+                                .append("createdAt", new Document("$gte", from).append("$lte", to)),
+                        noSort),
+                new HotQuery("báo cáo theo chi nhánh", order,
+                        new Document("shopId", SAMPLE_ID).append("branchId", SAMPLE_ID)
+                                .append("status", new Document("$ne", "CANCELLED"))
+                                .append("createdAt", new Document("$gte", from).append("$lte", to)),
+                        noSort),
+                new HotQuery("lịch sử tồn kho", InventoryTransaction.class,
+                        new Document("productId", SAMPLE_ID).append("shopId", SAMPLE_ID).append("branchId", SAMPLE_ID),
+                        newestFirst),
+                new HotQuery("lịch sử tồn kho (keyset)", InventoryTransaction.class,
+                        new Document("productId", SAMPLE_ID).append("shopId", SAMPLE_ID).append("branchId", SAMPLE_ID)
+                                .append("$and", List.of(afterCursor)),
+                        keysetOrder),
+                new HotQuery("audit log (keyset)", AuditLog.class,
+                        new Document("deleted", new Document("$ne", true)).append("$and", List.of(afterCursor)),
+                        keysetOrder),
+                new HotQuery("sản phẩm đổi từ mốc (index tìm kiếm)", Product.class,
+                        new Document("shopId", SAMPLE_ID).append("updatedAt", new Document("$gte", from)),
+                        noSort),
+                new HotQuery("khách hàng theo chi nhánh", Customer.class,
+                        new Document("shopId", SAMPLE_ID).append("deleted", false).append("branchId", SAMPLE_ID),
+                        newestFirst),
+                new HotQuery("rollup doanh số", SalesDailyRollup.class,
+                        new Document("shopId", SAMPLE_ID)
+                                .append("date", new Document("$gte", from).append("$lte", to)),
+                        noSort)
+        );
+    }
+
+    /** Duyệt đệ quy cây plan (inputStage / inputStages / queryPlan của SBE) tìm stage COLLSCAN. */
+    static boolean hasCollscan(Object plan) {
+        if (plan instanceof Document doc) {
+            if ("COLLSCAN".equals(doc.get("stage"))) return true;
+            for (Object child : doc.values()) {
+                if (hasCollscan(child)) return true;
+            }
+        } else if (plan instanceof List<?> list) {
+            for (Object child : list) {
+                if (hasCollscan(child)) return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,28 @@
+package com.example.sales.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Kiểm tra index MongoDB lúc khởi động ({@link MongoIndexAdvisor}).
+ * <p>
+ * {@code spring.data.mongodb.auto-index-creation} không bật nên {@code @CompoundIndex} chỉ là khai báo;
+ * advisor tạo các index đó cho những collection nóng rồi {@code explain} các query chính để cảnh báo COLLSCAN.
+ */
+@Getter
+@Setter
+@Configuration
+@ConfigurationProperties(prefix = "app.mongo.index-advisor")
+public class MongoIndexAdvisorProperties {
+
+    /** Chạy advisor khi khởi động. */
+    private boolean enabled = true;
+
+    /** Tạo index khai báo bằng annotation cho các collection nóng (createIndex idempotent). */
+    private boolean createIndexes = true;
+
+    /** Dừng khởi động nếu còn query nóng bị COLLSCAN (dùng cho môi trường staging / CI). */
+    private boolean failOnCollscan = false;
+}
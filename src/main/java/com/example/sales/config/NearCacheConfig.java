@@ -0,0 +1,63 @@
+package com.example.sales.config;
+
+import com.example.sales.cache.TwoLevelCacheManager;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.autoconfigure.cache.CacheProperties;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.cache.RedisCacheConfiguration;
+import org.springframework.data.redis.cache.RedisCacheManager;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Near-cache cho môi trường Redis: thay CacheManager mặc định bằng {@link TwoLevelCacheManager}
+ * (L1 Caffeine + L2 Redis) và lắng nghe kênh pub/sub để giữ L1 của các node nhất quán.
+ * <p>
+ * Chỉ bật khi {@code spring.cache.type=redis} và {@code app.cache.near.enabled=true}; khi đó
+ * auto-config cache của Spring Boot lùi lại nên RedisCacheManager được dựng tại đây với cùng TTL.
+ */
+@Configuration
+@EnableConfigurationProperties(CacheProperties.class)
+@ConditionalOnExpression("'${spring.cache.type:simple}' == 'redis' and ${app.cache.near.enabled:true}")
+public class NearCacheConfig {
+
+    @Bean
+    public TwoLevelCacheManager cacheManager(RedisConnectionFactory connectionFactory,
+                                             CacheProperties cacheProperties,
+                                             NearCacheProperties nearCacheProperties,
+                                             MeterRegistry meterRegistry,
+                                             StringRedisTemplate stringRedisTemplate) {
+        RedisCacheConfiguration redisConfig = RedisCacheConfiguration.defaultCacheConfig(getClass().getClassLoader());
+        CacheProperties.Redis redis = cacheProperties.getRedis();
+        if (redis.getTimeToLive() != null) {
+            redisConfig = redisConfig.entryTtl(redis.getTimeToLive());
+        }
+        RedisCacheManager redisCacheManager = RedisCacheManager.builder(connectionFactory)
+                .cacheDefaults(redisConfig)
+                .build();
+        redisCacheManager.afterPropertiesSet();
+
+        String channel = nearCacheProperties.getChannel();
+        return new TwoLevelCacheManager(redisCacheManager, nearCacheProperties, meterRegistry,
+                message -> stringRedisTemplate.convertAndSend(channel, message));
+    }
+
+    @Bean
+    public RedisMessageListenerContainer nearCacheInvalidationListener(RedisConnectionFactory connectionFactory,
+                                                                       TwoLevelCacheManager cacheManager,
+                                                                       NearCacheProperties nearCacheProperties) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        container.addMessageListener(
+                (message, pattern) -> cacheManager.handleInvalidation(new String(message.getBody(), StandardCharsets.UTF_8)),
+                new ChannelTopic(nearCacheProperties.getChannel()));
+        return container;
+    }
+}
@@ -0,0 +1,33 @@
+package com.example.sales.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * Cấu hình near-cache (L1 Caffeine trong process) đặt trước Redis khi {@code spring.cache.type=redis}.
+ * <p>
+ * L1 chỉ là bản sao ngắn hạn: mỗi put/evict/clear được phát qua Redis pub/sub để các node khác xóa
+ * bản L1 của mình; {@code timeToLive} giới hạn độ cũ tối đa nếu một message bị lỡ.
+ */
+@Getter
+@Setter
+@Configuration
+@ConfigurationProperties(prefix = "app.cache.near")
+public class NearCacheProperties {
+
+    /** Bật L1 trước Redis. Không có tác dụng với spring.cache.type=simple. */
+    private boolean enabled = true;
+
+    /** Số entry tối đa của mỗi cache L1. */
+    private long maximumSize = 10_000;
+
+    /** Thời gian sống của entry L1 kể từ lúc ghi. */
+    private Duration timeToLive = Duration.ofSeconds(60);
+
+    /** Kênh Redis pub/sub phát thông báo vô hiệu L1 giữa các node. */
+    private String channel = "cache:invalidate";
+}
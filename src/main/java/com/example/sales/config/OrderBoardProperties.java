@@ -0,0 +1,33 @@
+package com.example.sales.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * Cấu hình board đơn đang mở theo chi nhánh ({@link com.example.sales.service.OpenOrderBoardService}).
+ * <p>
+ * Board của một chi nhánh được nạp từ DB ở lần đọc / thay đổi đầu tiên rồi giữ trong bộ nhớ, cập nhật theo
+ * lifecycle đơn; chi nhánh không có truy cập trong {@code idleTimeout} bị bỏ khỏi bộ nhớ.
+ */
+@Getter
+@Setter
+@Configuration
+@ConfigurationProperties(prefix = "app.order-board")
+public class OrderBoardProperties {
+
+    /** Tắt thì endpoint board luôn đọc thẳng DB và không push delta. */
+    private boolean enabled = true;
+
+    /** Số chi nhánh tối đa giữ board trong bộ nhớ. */
+    private long maxBranches = 5_000;
+
+    /** Board không được đọc / cập nhật trong khoảng này thì bị bỏ, lần sau nạp lại từ DB. */
+    private Duration idleTimeout = Duration.ofMinutes(30);
+
+    /** Số thay đổi gần nhất giữ lại để trả delta cho "since version N"; cũ hơn thì trả snapshot đầy đủ. */
+    private int changeLogSize = 500;
+}
@@ -0,0 +1,40 @@
+package com.example.sales.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * Cấu hình job import sản phẩm từ Excel chạy nền ({@code product_import_jobs}).
+ * <p>
+ * Import chạy trên pool riêng (không chiếm thread Tomcat, không tranh với {@code taskExecutor}).
+ * {@code maxJobsPerShop} giới hạn số job đang chờ + đang chạy của một shop trên mỗi node để một shop
+ * upload liên tục không chiếm hết pool của các shop khác.
+ */
+@Getter
+@Setter
+@Configuration
+@ConfigurationProperties(prefix = "app.product-import")
+public class ProductImportProperties {
+
+    /** Số job import chạy song song trên mỗi node. */
+    private int poolSize = 2;
+
+    /** Số job được xếp hàng chờ khi pool bận; vượt quá sẽ bị từ chối (PRODUCT_IMPORT_QUEUE_FULL). */
+    private int queueCapacity = 20;
+
+    /** Số job chờ + đang chạy tối đa của một shop trên mỗi node. */
+    private int maxJobsPerShop = 1;
+
+    /**
+     * Job RUNNING không có heartbeat, hoặc PENDING chưa được chạy, quá thời gian này bị coi là mất
+     * (node chết / restart) và được đánh dấu FAILED.
+     */
+    private Duration staleTimeout = Duration.ofMinutes(30);
+
+    /** Chu kỳ quét job bị mất. */
+    private Duration sweepInterval = Duration.ofMinutes(5);
+}
@@ -0,0 +1,43 @@
+package com.example.sales.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * Cấu hình index tìm kiếm sản phẩm trong bộ nhớ ({@link com.example.sales.helper.ProductSearchIndex}).
+ * <p>
+ * Index của một shop được dựng từ DB ở lần tìm đầu tiên, sau đó chỉ đọc lại các sản phẩm đổi từ mốc
+ * {@code updatedAt} gần nhất mỗi khi generation cache sản phẩm của shop tăng (mọi lần ghi sản phẩm).
+ */
+@Getter
+@Setter
+@Configuration
+@ConfigurationProperties(prefix = "app.product-search")
+public class ProductSearchProperties {
+
+    /** Tắt thì tìm theo keyword quay về regex trên collection products. */
+    private boolean enabled = true;
+
+    /** Tổng số sản phẩm tối đa giữ trong index (mọi shop cộng lại); vượt thì shop ít dùng nhất bị bỏ. */
+    private long maxIndexedProducts = 2_000_000;
+
+    /**
+     * Khi sắp theo độ liên quan, chỉ bấy nhiêu id liên quan nhất được xếp hạng trong aggregate branch_products
+     * ({@code $indexOfArray} trên mảng id); các kết quả còn lại vẫn được lọc / đếm / phân trang đủ, xếp sau theo
+     * {@code _id}. Không giới hạn số kết quả.
+     */
+    private int maxRankedResults = 1_000;
+
+    /** Index của shop không được tìm trong khoảng này thì bị bỏ, lần sau dựng lại. */
+    private Duration idleTimeout = Duration.ofMinutes(30);
+
+    /** Dựng lại toàn bộ sau khoảng này — lưới an toàn cho thay đổi ghi thẳng vào DB, không qua service. */
+    private Duration maxAge = Duration.ofHours(6);
+
+    /** Lùi mốc updatedAt khi đọc delta, bù lệch đồng hồ giữa các node ghi sản phẩm. */
+    private Duration watermarkOverlap = Duration.ofMinutes(2);
+}
@@ -0,0 +1,34 @@
+package com.example.sales.config;
+
+import com.example.sales.service.realtime.RedisRealtimeClusterBridge;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+/**
+ * Bắc cầu event realtime giữa các node qua Redis pub/sub khi {@code app.realtime.cluster.mode=redis}.
+ * Không bật thì {@code RealtimeEventDispatcher} chỉ gửi cho simple broker local như trước.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "app.realtime.cluster", name = "mode", havingValue = "redis")
+public class RealtimeClusterConfig {
+
+    @Bean
+    public RedisRealtimeClusterBridge realtimeClusterBridge(StringRedisTemplate stringRedisTemplate,
+                                                            RealtimeClusterProperties properties) {
+        return new RedisRealtimeClusterBridge(stringRedisTemplate, properties.getChannel());
+    }
+
+    @Bean
+    public RedisMessageListenerContainer realtimeClusterListener(RedisConnectionFactory connectionFactory,
+                                                                 RedisRealtimeClusterBridge bridge) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        container.addMessageListener(bridge, new ChannelTopic(bridge.getChannel()));
+        return container;
+    }
+}
@@ -0,0 +1,30 @@
+package com.example.sales.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Chế độ broker realtime khi chạy nhiều node.
+ * <p>
+ * {@code SIMPLE}: simple broker trong process, chỉ phù hợp một node (event không tới client kết nối node khác).
+ * {@code REDIS}: vẫn simple broker trên từng node, event {@code /topic/shops/...} được bắc cầu giữa các node
+ * qua Redis pub/sub ({@code RedisRealtimeClusterBridge}).
+ */
+@Getter
+@Setter
+@Configuration
+@ConfigurationProperties(prefix = "app.realtime.cluster")
+public class RealtimeClusterProperties {
+
+    private Mode mode = Mode.SIMPLE;
+
+    /** Kênh Redis pub/sub dùng chung của các node. */
+    private String channel = "realtime:broadcast";
+
+    public enum Mode {
+        SIMPLE,
+        REDIS
+    }
+}
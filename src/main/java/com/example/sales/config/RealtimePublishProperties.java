@@ -0,0 +1,37 @@
+package com.example.sales.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * Cấu hình tầng gửi event realtime bất đồng bộ ({@code RealtimeEventDispatcher}).
+ * <p>
+ * Event được đưa vào hàng đợi có giới hạn và một thread nền serialize + gửi lên broker.
+ * Các event dạng "trạng thái mới nhất" cùng loại của cùng một đơn / bàn trên cùng destination trong
+ * {@link #coalesceWindow} được gộp lại, chỉ gửi bản cuối. Khi hàng đợi đầy event bị bỏ (đếm ở metric realtime.publish.dropped).
+ */
+@Getter
+@Setter
+@Configuration
+@ConfigurationProperties(prefix = "app.realtime.publish")
+public class RealtimePublishProperties {
+
+    /** false = gửi đồng bộ trong thread gọi như trước. */
+    private boolean async = true;
+
+    /** Số event tối đa chờ gửi. */
+    private int queueCapacity = 10_000;
+
+    /** Số event tối đa gửi trong một lượt của thread nền. */
+    private int batchSize = 100;
+
+    /** Thời gian giữ event cập nhật để gộp các cập nhật tiếp theo của cùng đơn / bàn. */
+    private Duration coalesceWindow = Duration.ofMillis(50);
+
+    /** Thời gian tối đa chờ gửi hết hàng đợi khi tắt ứng dụng. */
+    private Duration shutdownTimeout = Duration.ofSeconds(5);
+}
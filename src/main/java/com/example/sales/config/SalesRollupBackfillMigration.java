@@ -0,0 +1,35 @@
+// File: src/main/java/com/example/sales/config/SalesRollupBackfillMigration.java
+package com.example.sales.config;
+
+import com.example.sales.service.SalesRollupBackfillService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+/**
+ * Khi bật {@code app.report.rollup.backfill-on-startup}, đưa backfill rollup lịch sử
+ * ({@link SalesRollupBackfillService}) vào chạy nền — không chặn khởi động / readiness, và chỉ một node làm
+ * (khóa backfill). Mặc định tắt; admin chạy qua POST /api/admin/reports/rollup-backfill.
+ */
+@Slf4j
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 40)
+@RequiredArgsConstructor
+public class SalesRollupBackfillMigration implements ApplicationRunner {
+
+    private final SalesRollupBackfillService backfillService;
+    private final SalesRollupProperties properties;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!properties.isBackfillOnStartup()) return;
+
+        if (backfillService.start()) {
+            log.info("[SalesRollupBackfillMigration] đã đưa backfill rollup doanh số vào chạy nền.");
+        }
+    }
+}
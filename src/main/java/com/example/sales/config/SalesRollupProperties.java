@@ -0,0 +1,45 @@
+package com.example.sales.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * Cấu hình bảng tổng hợp doanh số theo ngày ({@code sales_daily_rollups}, {@code product_daily_rollups}).
+ * <p>
+ * Mỗi lần lưu đơn, ngày của đơn được đánh dấu "bẩn" và được dựng lại sau {@code flushInterval};
+ * báo cáo đọc từ rollup khi {@code enabled}. Tắt {@code enabled} để quay về aggregate trực tiếp trên {@code orders}.
+ */
+@Getter
+@Setter
+@Configuration
+@ConfigurationProperties(prefix = "app.report.rollup")
+public class SalesRollupProperties {
+
+    /** Báo cáo đọc từ rollup (false = aggregate trực tiếp trên orders như trước). */
+    private boolean enabled = true;
+
+    /** Chu kỳ dựng lại các ngày có đơn thay đổi. */
+    private Duration flushInterval = Duration.ofSeconds(5);
+
+    /**
+     * Khi khởi động, chạy nền backfill rollup cho các shop chưa có rollup nào (lịch sử). Mặc định tắt: backfill
+     * aggregate toàn bộ lịch sử đơn của từng shop; chạy một lần qua POST /api/admin/reports/rollup-backfill.
+     */
+    private boolean backfillOnStartup = false;
+
+    /** Số ngày gần nhất được bộ kiểm tra nhất quán so sánh với dữ liệu gốc mỗi đêm. */
+    private int checkDays = 3;
+
+    /** Bộ kiểm tra tự dựng lại ngày bị lệch. */
+    private boolean autoRepair = true;
+
+    /** Thời hạn khóa dựng rollup của một shop — phải dài hơn lần dựng lâu nhất (backfill cả lịch sử shop). */
+    private Duration lockLease = Duration.ofMinutes(15);
+
+    /** Dựng lại theo yêu cầu (kiểm tra nhất quán, backfill) chờ khóa tối đa bao lâu; flush định kỳ không chờ. */
+    private Duration lockWait = Duration.ofMinutes(2);
+}
@@ -47,6 +47,7 @@ public class SecurityConfig {
                                 "/api/auth/**", "/api/webhook/**"
                         ).permitAll()
                         .requestMatchers("/api/admin/**").hasRole("ADMIN")
+                        .requestMatchers("/actuator/metrics/**").hasRole("ADMIN")
                         .anyRequest().authenticated()
                 )
 
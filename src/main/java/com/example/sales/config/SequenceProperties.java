@@ -0,0 +1,23 @@
+package com.example.sales.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Cấu hình bộ sinh số thứ tự ({@code next_sequences}).
+ * <p>
+ * {@code orderBlockSize > 1} cho phép mỗi node đặt trước một khối số thứ tự đơn hàng bằng một lệnh
+ * {@code $inc} và phát mã từ bộ nhớ. Mã vẫn duy nhất giữa các node (các khối không giao nhau) nhưng
+ * không còn tăng liên tục theo thời gian, và số chưa dùng của khối sẽ bị bỏ qua khi node khởi động lại.
+ */
+@Getter
+@Setter
+@Configuration
+@ConfigurationProperties(prefix = "app.sequence")
+public class SequenceProperties {
+
+    /** Số thứ tự đơn hàng đặt trước mỗi lần gọi DB. 1 = không đặt trước (liên tục, mỗi đơn 1 round trip). */
+    private int orderBlockSize = 1;
+}
@@ -25,6 +25,10 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
                 .withSockJS(); // fallback cho trình duyệt cũ
     }
 
+    /**
+     * Simple broker trên từng node. Chạy nhiều node thì bật {@code app.realtime.cluster.mode=redis}:
+     * event {@code /topic/shops/...} được bắc cầu giữa các node (xem {@link RealtimeClusterConfig}).
+     */
     @Override
     public void configureMessageBroker(MessageBrokerRegistry config) {
         config.enableSimpleBroker("/topic", "/queue"); // bật thêm /queue cho user-destination
@@ -3,6 +3,7 @@ package com.example.sales.config.ws;
 import com.example.sales.cache.ShopUserCache;
 import com.example.sales.constant.ShopRole;
 import com.example.sales.security.JwtUtil;
+import com.example.sales.security.VerifiedToken;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.messaging.Message;
@@ -70,12 +71,13 @@ public class StompAuthChannelInterceptor implements ChannelInterceptor {
             log.debug("STOMP CONNECT without Authorization header — anonymous session");
             return;
         }
-        if (!jwtUtil.isTokenValid(token)) {
+        VerifiedToken verified = jwtUtil.verify(token).orElse(null);
+        if (verified == null) {
             log.warn("STOMP CONNECT rejected: invalid JWT");
             throw new MessagingException("Invalid JWT");
         }
-        String userId = jwtUtil.extractUserId(token);
-        String role = jwtUtil.extractRole(token);
+        String userId = verified.userId();
+        String role = verified.role();
         StompPrincipal principal = new StompPrincipal(userId, role);
         accessor.setUser(principal);
         log.debug("STOMP CONNECT authenticated userId={}, role={}", userId, role);
@@ -109,7 +109,16 @@ public enum ApiCode {
     BARCODE_INVALID_GSIN("4160", "Mã vạch không hợp lệ chuẩn GS1 (sai chữ số kiểm tra). Hãy nhập đúng số in trên bao bì hoặc quét lại."),
     SUBSCRIPTION_EXPIRED("4161", "Gói dịch vụ đã hết hạn. Vui lòng thanh toán để tiếp tục sử dụng."),
     SUBSCRIPTION_NOT_FOUND("4162", "Không tìm thấy gói dịch vụ của cửa hàng."),
-    PAYMENT_GATEWAY_ERROR("4163", "Không khởi tạo được cổng thanh toán, vui lòng thử lại sau.");
+    PAYMENT_GATEWAY_ERROR("4163", "Không khởi tạo được cổng thanh toán, vui lòng thử lại sau."),
+    PRODUCT_IMPORT_JOB_ACCEPTED("2017", "Product import job accepted"),
+    PRODUCT_IMPORT_JOB_NOT_FOUND("4164", "Product import job not found"),
+    PRODUCT_IMPORT_JOB_LIMIT("4165", "Cửa hàng đang có file import chưa xử lý xong, vui lòng chờ."),
+    PRODUCT_IMPORT_QUEUE_FULL("4166", "Hệ thống đang bận xử lý import, vui lòng thử lại sau."),
+    INVALID_CURSOR("4167", "Cursor phân trang không hợp lệ, vui lòng tải lại từ trang đầu."),
+    REPORT_ROLLUP_BACKFILL_STARTED("2018", "Sales rollup backfill started"),
+    REPORT_ROLLUP_BACKFILL_RUNNING("4168", "Backfill rollup doanh số đang chạy trên node này, vui lòng chờ."),
+    PRODUCT_IMPORT_JOB_FAILED("4169", "Import thất bại do lỗi hệ thống, vui lòng thử lại."),
+    PRODUCT_IMPORT_JOB_INTERRUPTED("4170", "Import bị gián đoạn (máy chủ khởi động lại), vui lòng tải file lên lại.");
 
     private final String code;
     private final String message;
@@ -0,0 +1,9 @@
+// File: src/main/java/com/example/sales/constant/ProductImportJobStatus.java
+package com.example.sales.constant;
+
+public enum ProductImportJobStatus {
+    PENDING,
+    RUNNING,
+    COMPLETED,
+    FAILED
+}
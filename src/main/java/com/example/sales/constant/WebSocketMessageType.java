@@ -13,6 +13,7 @@ public enum WebSocketMessageType {
     ORDER_UPDATED,
     ORDER_STATUS_CHANGED,
     ORDER_DELETED,
+    ORDER_BOARD_DELTA,
 
     // Table lifecycle (per-branch topic)
     TABLE_CREATED,
@@ -23,5 +24,10 @@ public enum WebSocketMessageType {
 
     // Payment (per-branch topic; đi kèm ORDER_STATUS_CHANGED tương ứng)
     PAYMENT_SUCCEEDED,
-    PAYMENT_FAILED
+    PAYMENT_FAILED,
+
+    // Product import job (shop topic /topic/shops/{shopId}/product-imports)
+    PRODUCT_IMPORT_PROGRESS,
+    PRODUCT_IMPORT_COMPLETED,
+    PRODUCT_IMPORT_FAILED
 }
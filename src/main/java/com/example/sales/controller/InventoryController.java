@@ -5,6 +5,7 @@ import com.example.sales.constant.ApiCode;
 import com.example.sales.constant.InventoryType;
 import com.example.sales.constant.Permission;
 import com.example.sales.dto.ApiResponseDto;
+import com.example.sales.dto.CursorPage;
 import com.example.sales.dto.inventory.InventoryRequest;
 import com.example.sales.dto.inventory.InventoryTransactionResponse;
 import com.example.sales.dto.inventory.InventoryWeightRequest;
@@ -179,4 +180,27 @@ public class InventoryController {
         Page<InventoryTransactionResponse> history = inventoryService.getTransactionHistory(user.getId(), shopId, branchId, branchProductId, pageable);
         return ApiResponseDto.success(ApiCode.SUCCESS, history);
     }
-}
\ No newline at end of file
+
+    @GetMapping("/branches/{branchId}/products/{branchProductId}/history/cursor")
+    @RequirePermission(Permission.INVENTORY_VIEW)
+    @Operation(summary = "Lấy lịch sử giao dịch tồn kho theo cursor", description = "Như /history nhưng phân trang keyset theo nextCursor; trang sâu không chậm hơn trang đầu.")
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Lịch sử giao dịch tồn kho được trả về thành công"),
+            @ApiResponse(responseCode = "400", description = "Cursor không hợp lệ"),
+            @ApiResponse(responseCode = "401", description = "Không có quyền truy cập"),
+            @ApiResponse(responseCode = "403", description = "Không có quyền thực hiện hành động này"),
+            @ApiResponse(responseCode = "404", description = "Sản phẩm không tìm thấy")
+    })
+    public ApiResponseDto<CursorPage<InventoryTransactionResponse>> getHistoryByCursor(
+            @AuthenticationPrincipal @Parameter(hidden = true) CustomUserDetails user,
+            @Parameter(description = "ID của cửa hàng") @PathVariable String shopId,
+            @Parameter(description = "ID của chi nhánh") @PathVariable String branchId,
+            @Parameter(description = "ID của BranchProduct") @PathVariable String branchProductId,
+            @Parameter(description = "nextCursor của trang trước; bỏ qua = trang đầu") @RequestParam(required = false) String cursor,
+            @Parameter(description = "Số giao dịch mỗi trang (mặc định 20, tối đa 100)") @RequestParam(required = false) Integer size,
+            @Parameter(description = "Đếm tổng số giao dịch (chỉ ở trang đầu)") @RequestParam(defaultValue = "false") boolean withTotal) {
+        CursorPage<InventoryTransactionResponse> history = inventoryService.getTransactionHistoryByCursor(
+                user.getId(), shopId, branchId, branchProductId, cursor, size, withTotal);
+        return ApiResponseDto.success(ApiCode.SUCCESS, history);
+    }
+}
@@ -5,6 +5,8 @@ import com.example.sales.constant.ApiCode;
 import com.example.sales.constant.OrderStatus;
 import com.example.sales.constant.Permission;
 import com.example.sales.dto.ApiResponseDto;
+import com.example.sales.dto.CursorPage;
+import com.example.sales.dto.order.OpenOrderBoardResponse;
 import com.example.sales.dto.order.OrderFulfillmentPatchRequest;
 import com.example.sales.dto.order.OrderRequest;
 import com.example.sales.dto.order.OrderResponse;
@@ -16,7 +18,9 @@ import com.example.sales.model.tax.OrderTaxSnapshot;
 import com.example.sales.service.tax.OrderTaxApplier;
 import com.example.sales.security.CustomUserDetails;
 import com.example.sales.security.RequirePermission;
+import com.example.sales.service.OpenOrderBoardService;
 import com.example.sales.service.OrderService;
+import com.example.sales.service.OrderSummaryService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
@@ -39,6 +43,8 @@ public class OrderController {
 
     private final OrderService orderService;
     private final OrderTaxApplier orderTaxApplier;
+    private final OrderSummaryService orderSummaryService;
+    private final OpenOrderBoardService openOrderBoardService;
 
     @GetMapping
     @RequirePermission(Permission.ORDER_VIEW)
@@ -49,15 +55,41 @@ public class OrderController {
             @ApiResponse(responseCode = "403", description = "Không có quyền thực hiện hành động này"),
             @ApiResponse(responseCode = "404", description = "Cửa hàng không tìm thấy")
     })
-    public ApiResponseDto<Page<OrderResponse>> getShopOrders(
+    public ApiResponseDto<Page<?>> getShopOrders(
             @AuthenticationPrincipal @Parameter(description = "Thông tin người dùng hiện tại") CustomUserDetails user,
             @RequestParam @Parameter(description = "ID của cửa hàng") String shopId,
             @RequestParam(required = false) @Parameter(description = "Lọc theo chi nhánh; bỏ qua = tất cả chi nhánh") String branchId,
+            @RequestParam(required = false) @Parameter(description = "Trả OrderSummary (projection) thay cho đơn đầy đủ: \"summary\" hoặc danh sách field, vd. orderCode,tableId,status,totalPrice") String fields,
             @Parameter(description = "Thông tin phân trang (page, size, sort)") Pageable pageable) {
+        if (fields != null) {
+            return ApiResponseDto.success(ApiCode.ORDER_LIST,
+                    orderSummaryService.getShopOrders(shopId, branchId, null, fields, pageable));
+        }
         Page<OrderResponse> orders = orderService.getShopOrders(shopId, branchId, pageable);
         return ApiResponseDto.success(ApiCode.ORDER_LIST, orders);
     }
 
+    @GetMapping("/cursor")
+    @RequirePermission(Permission.ORDER_VIEW)
+    @Operation(summary = "Lấy danh sách đơn hàng theo cursor",
+            description = "Phân trang keyset (createdAt, id): truyền nextCursor của trang trước; trang sâu không chậm hơn trang đầu")
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Danh sách đơn hàng được trả về thành công"),
+            @ApiResponse(responseCode = "400", description = "Cursor không hợp lệ"),
+            @ApiResponse(responseCode = "401", description = "Không có quyền truy cập"),
+            @ApiResponse(responseCode = "403", description = "Không có quyền thực hiện hành động này")
+    })
+    public ApiResponseDto<CursorPage<OrderResponse>> getShopOrdersByCursor(
+            @AuthenticationPrincipal @Parameter(description = "Thông tin người dùng hiện tại") CustomUserDetails user,
+            @RequestParam @Parameter(description = "ID của cửa hàng") String shopId,
+            @RequestParam(required = false) @Parameter(description = "Lọc theo chi nhánh; bỏ qua = tất cả chi nhánh") String branchId,
+            @RequestParam(required = false) @Parameter(description = "nextCursor của trang trước; bỏ qua = trang đầu") String cursor,
+            @RequestParam(required = false) @Parameter(description = "Số đơn mỗi trang (mặc định 20, tối đa 100)") Integer size,
+            @RequestParam(defaultValue = "false") @Parameter(description = "Đếm tổng số đơn (chỉ ở trang đầu)") boolean withTotal) {
+        CursorPage<OrderResponse> orders = orderService.getShopOrdersByCursor(shopId, branchId, null, cursor, size, withTotal);
+        return ApiResponseDto.success(ApiCode.ORDER_LIST, orders);
+    }
+
     @GetMapping("/lookup")
     @RequirePermission(Permission.ORDER_VIEW)
     @Operation(summary = "Tra cứu đơn cho POS", description = "Theo orderCode hoặc orderId; chỉ đơn chưa thanh toán")
@@ -152,15 +184,40 @@ public class OrderController {
             @ApiResponse(responseCode = "401", description = "Không có quyền truy cập"),
             @ApiResponse(responseCode = "403", description = "Không có quyền thực hiện hành động này")
     })
-    public ApiResponseDto<Page<OrderResponse>> getOpenOrders(
+    public ApiResponseDto<Page<?>> getOpenOrders(
             @AuthenticationPrincipal @Parameter(description = "Thông tin người dùng hiện tại") CustomUserDetails user,
             @RequestParam @Parameter(description = "ID của cửa hàng") String shopId,
             @RequestParam @Parameter(description = "ID của chi nhánh") String branchId,
+            @RequestParam(required = false) @Parameter(description = "Trả OrderSummary (projection) thay cho đơn đầy đủ: \"summary\" hoặc danh sách field, vd. orderCode,tableId,status,totalPrice") String fields,
             @Parameter(description = "Thông tin phân trang (page, size, sort)") Pageable pageable) {
+        if (fields != null) {
+            return ApiResponseDto.success(ApiCode.ORDER_LIST,
+                    orderSummaryService.getOpenOrders(shopId, branchId, fields, pageable));
+        }
         Page<OrderResponse> orders = orderService.getOpenOrders(shopId, branchId, pageable);
         return ApiResponseDto.success(ApiCode.ORDER_LIST, orders);
     }
 
+    @GetMapping("/open/board")
+    @RequirePermission(Permission.ORDER_VIEW)
+    @Operation(summary = "Board đơn đang mở (bộ nhớ, có version)",
+            description = "Không có since (hoặc since/epoch không còn dùng được) → snapshot đầy đủ; ngược lại chỉ trả đơn thay đổi / đã đóng kể từ version đó. Delta tiếp theo được push qua WebSocket (ORDER_BOARD_DELTA).")
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Board được trả về thành công"),
+            @ApiResponse(responseCode = "400", description = "branchId không hợp lệ"),
+            @ApiResponse(responseCode = "401", description = "Không có quyền truy cập"),
+            @ApiResponse(responseCode = "403", description = "Không có quyền thực hiện hành động này")
+    })
+    public ApiResponseDto<OpenOrderBoardResponse> getOpenOrderBoard(
+            @AuthenticationPrincipal @Parameter(description = "Thông tin người dùng hiện tại") CustomUserDetails user,
+            @RequestParam @Parameter(description = "ID của cửa hàng") String shopId,
+            @RequestParam @Parameter(description = "ID của chi nhánh") String branchId,
+            @RequestParam(required = false) @Parameter(description = "Version client đang có") Long since,
+            @RequestParam(required = false) @Parameter(description = "Epoch đi kèm version client đang có") String epoch) {
+        OpenOrderBoardResponse board = openOrderBoardService.getBoard(shopId, branchId, since, epoch);
+        return ApiResponseDto.success(ApiCode.ORDER_LIST, board);
+    }
+
     @GetMapping("/preview-tax")
     @RequirePermission(Permission.ORDER_CREATE)
     @Operation(summary = "Xem trước thuế đơn hàng", description = "Tính thuế theo chính sách hiện hành từ tổng tiền hàng (chưa cộng thuế hoặc đã gồm thuế tùy cấu hình cửa hàng)")
@@ -303,13 +360,39 @@ public class OrderController {
             @ApiResponse(responseCode = "403", description = "Không có quyền thực hiện hành động này"),
             @ApiResponse(responseCode = "404", description = "Cửa hàng không tìm thấy")
     })
-    public ApiResponseDto<Page<OrderResponse>> getByStatus(
+    public ApiResponseDto<Page<?>> getByStatus(
             @AuthenticationPrincipal @Parameter(description = "Thông tin người dùng hiện tại") CustomUserDetails user,
             @RequestParam @Parameter(description = "ID của cửa hàng") String shopId,
             @RequestParam @Parameter(description = "Trạng thái đơn hàng (PENDING, COMPLETED, CANCELLED, v.v.)") OrderStatus status,
             @RequestParam(required = false) @Parameter(description = "ID của chi nhánh (tùy chọn)") String branchId,
+            @RequestParam(required = false) @Parameter(description = "Trả OrderSummary (projection) thay cho đơn đầy đủ: \"summary\" hoặc danh sách field, vd. orderCode,tableId,status,totalPrice") String fields,
             @Parameter(description = "Thông tin phân trang (page, size, sort)") Pageable pageable) {
+        if (fields != null) {
+            return ApiResponseDto.success(ApiCode.ORDER_LIST,
+                    orderSummaryService.getShopOrders(shopId, branchId, status, fields, pageable));
+        }
         Page<OrderResponse> filtered = orderService.getOrdersByStatus(shopId, status, branchId, pageable);
         return ApiResponseDto.success(ApiCode.ORDER_LIST, filtered);
     }
+
+    @GetMapping("/filter/cursor")
+    @RequirePermission(Permission.ORDER_VIEW)
+    @Operation(summary = "Lấy đơn hàng theo trạng thái (cursor)", description = "Như /filter nhưng phân trang keyset theo nextCursor")
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Danh sách đơn hàng được trả về thành công"),
+            @ApiResponse(responseCode = "400", description = "Cursor không hợp lệ"),
+            @ApiResponse(responseCode = "401", description = "Không có quyền truy cập"),
+            @ApiResponse(responseCode = "403", description = "Không có quyền thực hiện hành động này")
+    })
+    public ApiResponseDto<CursorPage<OrderResponse>> getByStatusByCursor(
+            @AuthenticationPrincipal @Parameter(description = "Thông tin người dùng hiện tại") CustomUserDetails user,
+            @RequestParam @Parameter(description = "ID của cửa hàng") String shopId,
+            @RequestParam @Parameter(description = "Trạng thái đơn hàng (PENDING, COMPLETED, CANCELLED, v.v.)") OrderStatus status,
+            @RequestParam(required = false) @Parameter(description = "ID của chi nhánh (tùy chọn)") String branchId,
+            @RequestParam(required = false) @Parameter(description = "nextCursor của trang trước; bỏ qua = trang đầu") String cursor,
+            @RequestParam(required = false) @Parameter(description = "Số đơn mỗi trang (mặc định 20, tối đa 100)") Integer size,
+            @RequestParam(defaultValue = "false") @Parameter(description = "Đếm tổng số đơn (chỉ ở trang đầu)") boolean withTotal) {
+        CursorPage<OrderResponse> filtered = orderService.getShopOrdersByCursor(shopId, branchId, status, cursor, size, withTotal);
+        return ApiResponseDto.success(ApiCode.ORDER_LIST, filtered);
+    }
 }
@@ -4,6 +4,7 @@ package com.example.sales.controller.admin;
 import com.example.sales.constant.AdminPermission;
 import com.example.sales.constant.ApiCode;
 import com.example.sales.dto.ApiResponseDto;
+import com.example.sales.dto.CursorPage;
 import com.example.sales.dto.admin.AdminAuditLogResponse;
 import com.example.sales.model.AuditLog;
 import com.example.sales.security.RequireAdminPermission;
@@ -47,6 +48,25 @@ public class AdminAuditController {
         return ApiResponseDto.success(ApiCode.SUCCESS, data.map(this::toResponse));
     }
 
+    @GetMapping("/cursor")
+    @Operation(summary = "Liệt kê audit log theo cursor (keyset createdAt + id), cùng filter với danh sách thường")
+    @RequireAdminPermission(AdminPermission.AUDIT_VIEW)
+    public ApiResponseDto<CursorPage<AdminAuditLogResponse>> listByCursor(
+            @RequestParam(required = false) String actorId,
+            @RequestParam(required = false) String resource,
+            @RequestParam(required = false) String action,
+            @RequestParam(required = false) String targetId,
+            @RequestParam(required = false) Instant from,
+            @RequestParam(required = false) Instant to,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer size,
+            @RequestParam(defaultValue = "false") boolean withTotal
+    ) {
+        CursorPage<AuditLog> data = adminAuditService.listByCursor(
+                actorId, resource, action, targetId, from, to, cursor, size, withTotal);
+        return ApiResponseDto.success(ApiCode.SUCCESS, data.map(this::toResponse));
+    }
+
     private AdminAuditLogResponse toResponse(AuditLog log) {
         return AdminAuditLogResponse.builder()
                 .id(log.getId())
@@ -42,7 +42,7 @@ public class AdminBroadcastController {
     }
 
     @PostMapping
-    @Operation(summary = "Gửi broadcast ngay")
+    @Operation(summary = "Gửi broadcast (chạy nền, theo dõi tiến độ qua danh sách)")
     @RequireAdminPermission(AdminPermission.BROADCAST_SEND)
     @Audited(resource = "BROADCAST", action = "SEND", targetLabelExpr = "#req.title")
     public ApiResponseDto<AdminBroadcastResponse> send(
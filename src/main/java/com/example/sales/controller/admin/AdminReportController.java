@@ -0,0 +1,39 @@
+// File: src/main/java/com/example/sales/controller/admin/AdminReportController.java
+package com.example.sales.controller.admin;
+
+import com.example.sales.constant.AdminPermission;
+import com.example.sales.constant.ApiCode;
+import com.example.sales.dto.ApiResponseDto;
+import com.example.sales.exception.BusinessException;
+import com.example.sales.security.Audited;
+import com.example.sales.security.RequireAdminPermission;
+import com.example.sales.service.SalesRollupBackfillService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * Vận hành dữ liệu báo cáo (rollup doanh số).
+ */
+@RestController
+@RequestMapping("/api/admin/reports")
+@RequiredArgsConstructor
+@Tag(name = "Admin — Report", description = "Vận hành dữ liệu báo cáo")
+public class AdminReportController {
+
+    private final SalesRollupBackfillService backfillService;
+
+    @PostMapping("/rollup-backfill")
+    @Operation(summary = "Dựng rollup doanh số cho lịch sử của các shop chưa có rollup (chạy nền)")
+    @RequireAdminPermission(AdminPermission.SYSTEM_SETTINGS)
+    @Audited(resource = "REPORT", action = "ROLLUP_BACKFILL")
+    public ApiResponseDto<Void> backfillRollups() {
+        if (!backfillService.start()) {
+            throw new BusinessException(ApiCode.REPORT_ROLLUP_BACKFILL_RUNNING);
+        }
+        return ApiResponseDto.success(ApiCode.REPORT_ROLLUP_BACKFILL_STARTED);
+    }
+}
@@ -4,21 +4,23 @@ package com.example.sales.controller.product;
 import com.example.sales.constant.ApiCode;
 import com.example.sales.constant.Permission;
 import com.example.sales.dto.ApiResponseDto;
+import com.example.sales.dto.product.ProductImportJobResponse;
+import com.example.sales.dto.product.ProductImportResult;
 import com.example.sales.security.CustomUserDetails;
 import com.example.sales.security.RequirePermission;
 import com.example.sales.service.ExcelExportService;
 import com.example.sales.service.ExcelImportService;
+import com.example.sales.service.ProductImportJobService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
-import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
-import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.io.IOException;
 
@@ -29,6 +31,7 @@ public class ProductImportExportController {
 
     private final ExcelImportService excelImportService;
     private final ExcelExportService excelExportService;
+    private final ProductImportJobService productImportJobService;
 
     @Operation(summary = "Nhập sản phẩm từ file Excel vào một chi nhánh cụ thể")
     @ApiResponses({
@@ -38,7 +41,7 @@ public class ProductImportExportController {
     })
     @PostMapping("/import")
     @RequirePermission(Permission.PRODUCT_IMPORT)
-    public ResponseEntity<ApiResponseDto<Integer>> importProducts(
+    public ResponseEntity<ApiResponseDto<ProductImportResult>> importProducts(
             @AuthenticationPrincipal @Parameter(hidden = true) CustomUserDetails user,
             @Parameter(description = "ID cửa hàng") @RequestParam String shopId,
             @Parameter(description = "File Excel chứa dữ liệu sản phẩm") @RequestParam("file") MultipartFile file) {
@@ -46,13 +49,48 @@ public class ProductImportExportController {
             throw new IllegalArgumentException("File không được để trống.");
         }
         try {
-            int importedCount = excelImportService.importProducts(shopId, file.getInputStream());
-            return ResponseEntity.ok(ApiResponseDto.success(ApiCode.PRODUCT_IMPORTED, importedCount));
+            ProductImportResult result = excelImportService.importProducts(shopId, file.getInputStream());
+            return ResponseEntity.ok(ApiResponseDto.success(ApiCode.PRODUCT_IMPORTED, result));
         } catch (IOException e) {
             throw new IllegalArgumentException("Không thể đọc file hoặc xử lý dữ liệu: " + e.getMessage(), e);
         }
     }
 
+    @Operation(summary = "Tạo job import sản phẩm từ file Excel (chạy nền)",
+            description = "Trả về jobId ngay. Theo dõi tiến độ qua GET /import-jobs/{jobId} hoặc topic /topic/shops/{shopId}/product-imports")
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Đã nhận file, job đang chờ xử lý"),
+            @ApiResponse(responseCode = "400", description = "File không hợp lệ"),
+            @ApiResponse(responseCode = "403", description = "Không có quyền nhập"),
+            @ApiResponse(responseCode = "429", description = "Shop đang có job import chưa xong hoặc hệ thống đang bận")
+    })
+    @PostMapping("/import-jobs")
+    @RequirePermission(Permission.PRODUCT_IMPORT)
+    public ResponseEntity<ApiResponseDto<ProductImportJobResponse>> submitImportJob(
+            @AuthenticationPrincipal @Parameter(hidden = true) CustomUserDetails user,
+            @Parameter(description = "ID cửa hàng") @RequestParam String shopId,
+            @Parameter(description = "File Excel chứa dữ liệu sản phẩm") @RequestParam("file") MultipartFile file) {
+        if (file.isEmpty()) {
+            throw new IllegalArgumentException("File không được để trống.");
+        }
+        ProductImportJobResponse job = productImportJobService.submit(shopId, user.getId(), file);
+        return ResponseEntity.ok(ApiResponseDto.success(ApiCode.PRODUCT_IMPORT_JOB_ACCEPTED, job));
+    }
+
+    @Operation(summary = "Trạng thái job import sản phẩm (tiến độ, kết quả, lỗi theo dòng)")
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Trạng thái job"),
+            @ApiResponse(responseCode = "404", description = "Không tìm thấy job")
+    })
+    @GetMapping("/import-jobs/{jobId}")
+    @RequirePermission(Permission.PRODUCT_IMPORT)
+    public ResponseEntity<ApiResponseDto<ProductImportJobResponse>> getImportJob(
+            @AuthenticationPrincipal @Parameter(hidden = true) CustomUserDetails user,
+            @Parameter(description = "ID cửa hàng") @RequestParam String shopId,
+            @Parameter(description = "ID job import") @PathVariable String jobId) {
+        return ResponseEntity.ok(ApiResponseDto.success(ApiCode.SUCCESS, productImportJobService.getJob(shopId, jobId)));
+    }
+
     @Operation(summary = "Xuất sản phẩm ra file Excel cho một cửa hàng hoặc một chi nhánh cụ thể")
     @ApiResponses({
             @ApiResponse(responseCode = "200", description = "Xuất file Excel thành công"),
@@ -60,19 +98,11 @@ public class ProductImportExportController {
     })
     @GetMapping("/export")
     @RequirePermission(Permission.PRODUCT_EXPORT)
-    public void exportProducts(
+    public ResponseEntity<StreamingResponseBody> exportProducts(
             @AuthenticationPrincipal @Parameter(hidden = true) CustomUserDetails user,
             @Parameter(description = "ID cửa hàng") @RequestParam String shopId,
             @Parameter(description = "ID chi nhánh (tùy chọn). Nếu không cung cấp, sẽ xuất tất cả sản phẩm của shop trên mọi chi nhánh.")
-            @RequestParam(required = false) String branchId,
-            HttpServletResponse response) throws IOException {
-
-        ResponseEntity<byte[]> excelResponse = excelExportService.exportProducts(shopId, branchId);
-
-        response.setContentType(excelResponse.getHeaders().getContentType().toString());
-        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, excelResponse.getHeaders().getFirst(HttpHeaders.CONTENT_DISPOSITION));
-        response.setContentLength(excelResponse.getBody().length);
-        response.getOutputStream().write(excelResponse.getBody());
-        response.getOutputStream().flush();
+            @RequestParam(required = false) String branchId) {
+        return excelExportService.exportProducts(shopId, branchId);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,26 @@
+// File: src/main/java/com/example/sales/dto/CursorPage.java
+package com.example.sales.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Một trang kết quả phân trang theo keyset (createdAt, _id) thay cho offset.
+ * Trang tiếp theo gọi lại endpoint với {@code cursor = nextCursor}; {@code total} chỉ có khi client
+ * yêu cầu {@code withTotal=true} ở trang đầu, các trang sau là null.
+ */
+@Getter
+@AllArgsConstructor
+public class CursorPage<T> {
+    private List<T> content;
+    private String nextCursor;
+    private boolean hasNext;
+    private Long total;
+
+    public <R> CursorPage<R> map(Function<? super T, ? extends R> mapper) {
+        return new CursorPage<>(content.stream().<R>map(mapper).toList(), nextCursor, hasNext, total);
+    }
+}
@@ -21,6 +21,12 @@ public class AdminBroadcastResponse {
     private BroadcastStatus status;
     private Integer recipientCount;
     private LocalDateTime sentAt;
+    private Integer totalRecipients;
+    private int processedCount;
+    private int failedCount;
+    private LocalDateTime startedAt;
+    private LocalDateTime finishedAt;
+    private String errorMessage;
     private LocalDateTime createdAt;
     private String createdBy;
 }
@@ -64,6 +64,13 @@ public class NotificationEnvelope {
     @Singular("forceChannel")
     private final Set<NotificationChannel> forcedChannels;
 
+    /**
+     * Channel producer tắt cho riêng envelope này (áp sau router + forcedChannels).
+     * Ví dụ: ticket chỉ gửi email khi HIGH/URGENT — ticket thường tắt EMAIL.
+     */
+    @Singular("suppressChannel")
+    private final Set<NotificationChannel> suppressedChannels;
+
     /**
      * Khóa idempotency (nullable). Khi được cung cấp, dispatcher sẽ bỏ qua
      * nếu đã gửi envelope cùng key (trong TTL) — tránh double-send cho
@@ -0,0 +1,32 @@
+// File: src/main/java/com/example/sales/dto/order/OpenOrderBoardResponse.java
+package com.example.sales.dto.order;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Snapshot hoặc delta của board đơn đang mở một chi nhánh.
+ * <p>
+ * {@code full = true}: {@code orders} là toàn bộ đơn đang mở, client thay thế danh sách của mình.
+ * {@code full = false}: {@code orders} là các đơn thêm / đổi, {@code removedIds} là đơn đã đóng (thanh toán,
+ * hoàn tất, hủy) kể từ version client gửi lên. Delta push qua WebSocket có {@code previousVersion}; client
+ * đang ở version khác (hoặc khác {@code epoch}) thì gọi lại endpoint board với {@code since} để đồng bộ.
+ * Delta push không có {@code previousVersion} là tín hiệu đồng bộ lại: đơn vừa đổi ở node khác.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class OpenOrderBoardResponse {
+    /** Định danh board trên node trả về; version chỉ so sánh được trong cùng epoch. */
+    private String epoch;
+    private long version;
+    private Long previousVersion;
+    private boolean full;
+    private List<OrderSummary> orders;
+    private List<String> removedIds;
+}
@@ -0,0 +1,37 @@
+// File: src/main/java/com/example/sales/dto/order/OrderSummary.java
+package com.example.sales.dto.order;
+
+import com.example.sales.constant.OrderStatus;
+import com.example.sales.constant.PaymentStatus;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Bản tóm tắt đơn cho danh sách / board bếp-bàn: chỉ mã, bàn, trạng thái, tổng tiền và thời gian —
+ * không có items, toppings, taxSnapshot. Đọc bằng projection Mongo (xem OrderSummaryService);
+ * field không được chọn qua {@code fields=} là null và không xuất hiện trong JSON.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class OrderSummary {
+    private String id;
+    private String orderCode;
+    private String branchId;
+    private String tableId;
+    private OrderStatus status;
+    private Boolean paid;
+    private PaymentStatus paymentStatus;
+    private Double totalAmount;
+    private Double totalPrice;
+    private String guestName;
+    private LocalDateTime createdAt;
+    private LocalDateTime updatedAt;
+}
@@ -0,0 +1,35 @@
+package com.example.sales.dto.product;
+
+import com.example.sales.constant.ProductImportJobStatus;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Trạng thái job import sản phẩm — trả về khi upload, khi poll và trong event STOMP.
+ * Event tiến độ (PRODUCT_IMPORT_PROGRESS) không kèm danh sách lỗi.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductImportJobResponse {
+    private String jobId;
+    private String shopId;
+    private String fileName;
+    private ProductImportJobStatus status;
+    private int processedRows;
+    private int importedCount;
+    private int createdCount;
+    private int updatedCount;
+    private int failedCount;
+    private List<ProductImportResult.RowError> errors;
+    private String errorMessage;
+    private LocalDateTime createdAt;
+    private LocalDateTime startedAt;
+    private LocalDateTime finishedAt;
+}
@@ -0,0 +1,42 @@
+package com.example.sales.dto.product;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Kết quả import sản phẩm từ Excel.
+ * Các dòng lỗi không làm hỏng cả file — mỗi dòng lỗi được báo lại kèm số dòng trong Excel.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductImportResult {
+    /** Số dòng dữ liệu đã đọc (không tính header / ghi chú) */
+    private int totalRows;
+    /** Số dòng nhập thành công (Product + BranchProduct của mọi chi nhánh) */
+    private int importedCount;
+    /** Số Product tạo mới */
+    private int createdCount;
+    /** Số Product đã có (theo SKU) được cập nhật */
+    private int updatedCount;
+    /** Số dòng lỗi / bị bỏ qua */
+    private int failedCount;
+    /** Chi tiết lỗi theo dòng (tối đa ExcelImportServiceImpl.MAX_REPORTED_ERRORS dòng) */
+    @Builder.Default
+    private List<RowError> errors = new ArrayList<>();
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class RowError {
+        /** Số dòng trong file Excel (1-based, như Excel hiển thị) */
+        private int row;
+        private String message;
+    }
+}
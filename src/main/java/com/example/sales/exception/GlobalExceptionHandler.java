@@ -118,14 +118,15 @@ public class GlobalExceptionHandler {
             case ACCESS_DENIED -> HttpStatus.FORBIDDEN;
             case NOT_FOUND, USER_NOT_FOUND, SHOP_NOT_FOUND, PRODUCT_NOT_FOUND, ORDER_NOT_FOUND,
                     TABLE_NOT_FOUND, BRANCH_NOT_FOUND, CUSTOMER_NOT_FOUND, PROMOTION_NOT_FOUND,
-                    SUBSCRIPTION_NOT_FOUND ->
+                    SUBSCRIPTION_NOT_FOUND, PRODUCT_IMPORT_JOB_NOT_FOUND ->
                     HttpStatus.NOT_FOUND;
+            case PRODUCT_IMPORT_JOB_LIMIT, PRODUCT_IMPORT_QUEUE_FULL -> HttpStatus.TOO_MANY_REQUESTS;
             case SUBSCRIPTION_EXPIRED -> HttpStatus.PAYMENT_REQUIRED;
             case VALIDATION_ERROR, INVALID_TOKEN, ACCOUNT_LOCKED, REFRESH_TOKEN_EXPIRED,
                     REFRESH_TOKEN_INVALID, INCORRECT_PASSWORD, VALIDATION_FILE_ERROR,
                     PLAN_UPGRADE_REQUIRED, ORDER_ALREADY_PAID, INVALID_STATUS_TRANSITION,
                     PRODUCT_OUT_OF_STOCK, DUPLICATE_DATA, CANNOT_DELETE_SELF, SHOP_ALREADY_EXISTS,
-                    EMAIL_EXISTS, ALREADY_VERIFIED, TOKEN_EXPIRED, EMAIL_NOT_VERIFIED ->
+                    EMAIL_EXISTS, ALREADY_VERIFIED, TOKEN_EXPIRED, EMAIL_NOT_VERIFIED, INVALID_CURSOR ->
                     HttpStatus.BAD_REQUEST;
             case INTERNAL_ERROR, FILE_UPLOAD_FAILED, FILE_TYPE_NOT_ALLOWED ->
                     HttpStatus.INTERNAL_SERVER_ERROR;
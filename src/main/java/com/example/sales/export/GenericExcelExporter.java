@@ -2,15 +2,24 @@
 package com.example.sales.export;
 
 import org.apache.poi.ss.usermodel.*;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
 import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 
 import java.io.IOException;
 import java.io.OutputStream;
+import java.util.Iterator;
 import java.util.List;
 import java.util.function.Function;
+import java.util.stream.Stream;
 
 public class GenericExcelExporter<T> {
 
+    /** Số dòng SXSSF giữ trong bộ nhớ; các dòng cũ hơn được flush ra file tạm. */
+    static final int ROW_WINDOW = 100;
+
+    /** Độ rộng cột tối đa (số ký tự) khi ước lượng thay cho autoSizeColumn. */
+    static final int MAX_COLUMN_CHARS = 60;
+
     /**
      * Xuất dữ liệu vào file Excel (không có dòng ghi chú).
      * Cấu trúc: Row 0 = header, Row 1+ = data.
@@ -73,4 +82,60 @@ public class GenericExcelExporter<T> {
             workbook.write(outputStream);
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Xuất dạng streaming: dùng SXSSFWorkbook (chỉ giữ {@link #ROW_WINDOW} dòng trong heap) và đọc
+     * dữ liệu lần lượt từ {@code rows} (vd. Mongo cursor), nên bộ nhớ không tăng theo số dòng.
+     * Cấu trúc sheet giống {@link #export(String, List, String, List, Function, OutputStream)}.
+     *
+     * Không gọi autoSizeColumn (phải đo font từng ô, rất chậm và chỉ thấy các dòng còn trong window);
+     * độ rộng cột được ước lượng theo độ dài chuỗi dài nhất của mỗi cột, tối đa {@link #MAX_COLUMN_CHARS}.
+     * Stream {@code rows} do phía gọi đóng.
+     */
+    public void exportStreaming(String sheetName,
+                                List<String> headers,
+                                String noteRow,
+                                Stream<T> rows,
+                                Function<T, List<String>> rowMapper,
+                                OutputStream outputStream) throws IOException {
+        SXSSFWorkbook workbook = new SXSSFWorkbook(ROW_WINDOW);
+        workbook.setCompressTempFiles(true);
+        try {
+            Sheet sheet = workbook.createSheet(sheetName);
+            int[] widths = new int[headers.size()];
+
+            Row headerRow = sheet.createRow(0);
+            for (int i = 0; i < headers.size(); i++) {
+                headerRow.createCell(i).setCellValue(headers.get(i));
+                widths[i] = headers.get(i).length();
+            }
+
+            int rowNum = 1;
+            if (noteRow != null) {
+                sheet.createRow(rowNum++).createCell(0).setCellValue(noteRow);
+            }
+
+            Iterator<T> it = rows.iterator();
+            while (it.hasNext()) {
+                Row row = sheet.createRow(rowNum++);
+                List<String> rowData = rowMapper.apply(it.next());
+                for (int i = 0; i < rowData.size(); i++) {
+                    String value = rowData.get(i);
+                    row.createCell(i).setCellValue(value);
+                    if (i < widths.length && value != null && value.length() > widths[i]) {
+                        widths[i] = value.length();
+                    }
+                }
+            }
+
+            for (int i = 0; i < widths.length; i++) {
+                sheet.setColumnWidth(i, (Math.min(widths[i], MAX_COLUMN_CHARS) + 2) * 256);
+            }
+
+            workbook.write(outputStream);
+        } finally {
+            workbook.close();
+            workbook.dispose();
+        }
+    }
+}
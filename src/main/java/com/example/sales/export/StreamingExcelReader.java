@@ -0,0 +1,282 @@
+// File: src/main/java/com/example/sales/export/StreamingExcelReader.java
+package com.example.sales.export;
+
+import org.apache.poi.openxml4j.exceptions.OpenXML4JException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.poifs.filesystem.FileMagic;
+import org.apache.poi.ss.usermodel.*;
+import org.apache.poi.ss.util.CellReference;
+import org.apache.poi.ss.util.NumberToTextConverter;
+import org.apache.poi.util.XMLHelper;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.eventusermodel.XSSFSheetXMLHandler;
+import org.apache.poi.xssf.model.SharedStrings;
+import org.apache.poi.xssf.model.StylesTable;
+import org.apache.poi.xssf.usermodel.XSSFComment;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTSheet;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.STSheetState;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.WorkbookDocument;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+
+import javax.xml.parsers.ParserConfigurationException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.*;
+import java.util.function.Predicate;
+
+/**
+ * Đọc một sheet Excel theo từng dòng mà không dựng toàn bộ Workbook trong bộ nhớ.
+ *
+ * File .xlsx được đọc bằng SAX (XSSFReader + XSSFSheetXMLHandler): mỗi dòng được chuyển thành
+ * danh sách chuỗi theo chỉ số cột rồi đưa cho {@link RowHandler}, không giữ lại các dòng đã đọc.
+ * File .xls (OLE2) không có API SAX tương đương nên vẫn dùng usermodel, cùng quy ước giá trị ô.
+ *
+ * Quy ước giá trị ô (giống nhau cho cả hai định dạng):
+ *   - ô trống → null, chuỗi được trim
+ *   - số → dạng text không format ("12", "1.5"), ô định dạng ngày → yyyy-MM-dd
+ *   - boolean → "TRUE"/"FALSE", công thức → kết quả đã cache
+ *
+ * Chọn sheet: sheet tên {@code preferredSheet} → sheet hiển thị đầu tiên có header khớp
+ * {@code headerMatcher} → sheet hiển thị đầu tiên → sheet đầu tiên.
+ */
+public final class StreamingExcelReader {
+
+    @FunctionalInterface
+    public interface RowHandler {
+        /**
+         * @param rowIndex chỉ số dòng 0-based trong sheet (dòng 0 là header)
+         * @param cells    giá trị theo chỉ số cột; phần tử null nếu ô trống
+         */
+        void row(int rowIndex, List<String> cells);
+    }
+
+    private StreamingExcelReader() {
+    }
+
+    public static void read(InputStream inputStream,
+                            String preferredSheet,
+                            Predicate<List<String>> headerMatcher,
+                            RowHandler handler) throws IOException {
+        InputStream in = FileMagic.prepareToCheckMagic(inputStream);
+        if (FileMagic.valueOf(in) == FileMagic.OOXML) {
+            readXlsx(in, preferredSheet, headerMatcher, handler);
+        } else {
+            readWithUserModel(in, preferredSheet, headerMatcher, handler);
+        }
+    }
+
+    // ─────────────────────────────────────────────────────────────────────────
+    // .xlsx — SAX
+    // ─────────────────────────────────────────────────────────────────────────
+
+    private static void readXlsx(InputStream in, String preferredSheet,
+                                 Predicate<List<String>> headerMatcher, RowHandler handler) throws IOException {
+        try (OPCPackage pkg = OPCPackage.open(in)) {
+            XSSFReader reader = new XSSFReader(pkg);
+            SharedStrings strings = reader.getSharedStringsTable();
+            StylesTable styles = reader.getStylesTable();
+            Set<String> hiddenSheets = hiddenSheetNames(reader);
+
+            List<String> names = new ArrayList<>();
+            XSSFReader.SheetIterator it = reader.getSheetIterator();
+            while (it.hasNext()) {
+                it.next().close();
+                names.add(it.getSheetName());
+            }
+
+            String chosen = null;
+            if (names.contains(preferredSheet)) {
+                chosen = preferredSheet;
+            } else {
+                for (String name : names) {
+                    if (hiddenSheets.contains(name)) continue;
+                    if (headerMatcher.test(readHeader(reader, name, strings, styles))) {
+                        chosen = name;
+                        break;
+                    }
+                }
+                if (chosen == null) {
+                    chosen = names.stream().filter(n -> !hiddenSheets.contains(n)).findFirst()
+                            .orElse(names.isEmpty() ? null : names.get(0));
+                }
+            }
+            if (chosen == null) return;
+
+            parseSheet(reader, chosen, strings, styles, handler);
+        } catch (OpenXML4JException | SAXException | ParserConfigurationException e) {
+            throw new IOException("File Excel không hợp lệ: " + e.getMessage(), e);
+        }
+    }
+
+    private static Set<String> hiddenSheetNames(XSSFReader reader) throws IOException {
+        Set<String> hidden = new HashSet<>();
+        try (InputStream wb = reader.getWorkbookData()) {
+            for (CTSheet sheet : WorkbookDocument.Factory.parse(wb).getWorkbook().getSheets().getSheetArray()) {
+                if (sheet.getState() != null && sheet.getState() != STSheetState.VISIBLE) {
+                    hidden.add(sheet.getName());
+                }
+            }
+        } catch (Exception e) {
+            // Không đọc được trạng thái ẩn → coi mọi sheet là hiển thị
+        }
+        return hidden;
+    }
+
+    private static List<String> readHeader(XSSFReader reader, String sheetName,
+                                           SharedStrings strings, StylesTable styles)
+            throws IOException, OpenXML4JException, SAXException, ParserConfigurationException {
+        List<List<String>> header = new ArrayList<>(1);
+        try {
+            parseSheet(reader, sheetName, strings, styles, (rowIndex, cells) -> {
+                if (rowIndex == 0) header.add(cells);
+                throw new StopParsing();
+            });
+        } catch (StopParsing ignored) {
+            // chỉ cần dòng đầu tiên
+        }
+        return header.isEmpty() ? List.of() : header.get(0);
+    }
+
+    private static void parseSheet(XSSFReader reader, String sheetName, SharedStrings strings,
+                                   StylesTable styles, RowHandler handler)
+            throws IOException, OpenXML4JException, SAXException, ParserConfigurationException {
+        try (InputStream sheet = sheetStream(reader, sheetName)) {
+            XMLReader parser = XMLHelper.newXMLReader();
+            parser.setContentHandler(new XSSFSheetXMLHandler(
+                    styles, strings, new RowCollector(handler), new RawValueFormatter(), false));
+            parser.parse(new InputSource(sheet));
+        }
+    }
+
+    private static InputStream sheetStream(XSSFReader reader, String sheetName)
+            throws IOException, OpenXML4JException {
+        XSSFReader.SheetIterator it = reader.getSheetIterator();
+        while (it.hasNext()) {
+            InputStream sheet = it.next();
+            if (sheetName.equals(it.getSheetName())) {
+                return sheet;
+            }
+            sheet.close();
+        }
+        throw new IOException("Không tìm thấy sheet '" + sheetName + "'");
+    }
+
+    /** Gom các ô của một dòng SAX thành List theo chỉ số cột. */
+    private static final class RowCollector implements XSSFSheetXMLHandler.SheetContentsHandler {
+        private final RowHandler handler;
+        private final List<String> cells = new ArrayList<>();
+        private int nextColumn;
+
+        RowCollector(RowHandler handler) {
+            this.handler = handler;
+        }
+
+        @Override
+        public void startRow(int rowNum) {
+            cells.clear();
+            nextColumn = 0;
+        }
+
+        @Override
+        public void endRow(int rowNum) {
+            handler.row(rowNum, new ArrayList<>(cells));
+        }
+
+        @Override
+        public void cell(String cellReference, String formattedValue, XSSFComment comment) {
+            int column = cellReference != null ? new CellReference(cellReference).getCol() : nextColumn;
+            nextColumn = column + 1;
+            while (cells.size() < column) cells.add(null);
+            cells.add(normalize(formattedValue));
+        }
+    }
+
+    /**
+     * XSSFSheetXMLHandler format số theo style của ô ("1,000", "31/12/24"...). Import cần giá trị gốc
+     * nên số được trả nguyên dạng, riêng ô định dạng ngày trả về yyyy-MM-dd.
+     */
+    private static final class RawValueFormatter extends DataFormatter {
+        @Override
+        public String formatRawCellContents(double value, int formatIndex, String formatString) {
+            return rawNumber(value, formatIndex, formatString);
+        }
+
+        @Override
+        public String formatRawCellContents(double value, int formatIndex, String formatString, boolean use1904Windowing) {
+            return rawNumber(value, formatIndex, formatString);
+        }
+    }
+
+    private static String rawNumber(double value, int formatIndex, String formatString) {
+        if (formatString != null && DateUtil.isADateFormat(formatIndex, formatString) && DateUtil.isValidExcelDate(value)) {
+            return DateUtil.getLocalDateTime(value).toLocalDate().toString();
+        }
+        return NumberToTextConverter.toText(value);
+    }
+
+    /** Dừng parse SAX sớm khi đã đọc đủ (vd. chỉ cần header). */
+    private static final class StopParsing extends RuntimeException {
+        StopParsing() {
+            super(null, null, false, false);
+        }
+    }
+
+    // ─────────────────────────────────────────────────────────────────────────
+    // .xls — usermodel
+    // ─────────────────────────────────────────────────────────────────────────
+
+    private static void readWithUserModel(InputStream in, String preferredSheet,
+                                          Predicate<List<String>> headerMatcher, RowHandler handler) throws IOException {
+        try (Workbook workbook = WorkbookFactory.create(in)) {
+            Sheet sheet = workbook.getSheet(preferredSheet);
+            Sheet firstVisible = null;
+            for (int i = 0; sheet == null && i < workbook.getNumberOfSheets(); i++) {
+                if (workbook.isSheetHidden(i)) continue;
+                Sheet s = workbook.getSheetAt(i);
+                if (firstVisible == null) firstVisible = s;
+                Row header = s.getRow(0);
+                if (header != null && headerMatcher.test(rowValues(header))) {
+                    sheet = s;
+                }
+            }
+            if (sheet == null) sheet = firstVisible;
+            if (sheet == null) {
+                if (workbook.getNumberOfSheets() == 0) return;
+                sheet = workbook.getSheetAt(0);
+            }
+
+            for (Row row : sheet) {
+                handler.row(row.getRowNum(), rowValues(row));
+            }
+        }
+    }
+
+    private static List<String> rowValues(Row row) {
+        List<String> cells = new ArrayList<>();
+        for (int c = 0; c < Math.max(row.getLastCellNum(), 0); c++) {
+            cells.add(cellValue(row.getCell(c)));
+        }
+        return cells;
+    }
+
+    private static String cellValue(Cell cell) {
+        if (cell == null) return null;
+        CellType type = cell.getCellType() == CellType.FORMULA ? cell.getCachedFormulaResultType() : cell.getCellType();
+        return switch (type) {
+            case STRING  -> normalize(cell.getStringCellValue());
+            case NUMERIC -> DateUtil.isCellDateFormatted(cell)
+                    ? cell.getLocalDateTimeCellValue().toLocalDate().toString()
+                    : NumberToTextConverter.toText(cell.getNumericCellValue());
+            case BOOLEAN -> cell.getBooleanCellValue() ? "TRUE" : "FALSE";
+            default      -> null;
+        };
+    }
+
+    private static String normalize(String value) {
+        if (value == null) return null;
+        String trimmed = value.trim();
+        return trimmed.isEmpty() ? null : trimmed;
+    }
+}
@@ -0,0 +1,150 @@
+// File: src/main/java/com/example/sales/helper/BranchProductStockHelper.java
+package com.example.sales.helper;
+
+import com.example.sales.model.BranchProduct;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Thao tác tồn kho nguyên tử trên collection "branch_products".
+ *
+ * Mọi thay đổi tồn đều là một lệnh {@code findAndModify} với {@code $inc}/{@code $set} trên đúng trường
+ * tồn kho — không bao giờ đọc cả document rồi save lại, nên không ghi đè {@code priceHistory}/{@code variants}
+ * và không mất cập nhật khi nhiều đơn bán cùng lúc.
+ *
+ * Các lệnh {@code dec*} có điều kiện {@code field >= n} trong filter: nếu không đủ tồn thì không match và
+ * trả về null, caller tự quyết định ném INSUFFICIENT_STOCK. Kết quả trả về chỉ chứa các trường tồn kho (projection).
+ */
+@Component
+@RequiredArgsConstructor
+public class BranchProductStockHelper {
+
+    private static final String[] STOCK_FIELDS = {"productId", "shopId", "branchId", "quantity", "variants", "stockInBaseUnits"};
+
+    private final MongoTemplate mongoTemplate;
+
+    /** Nạp BranchProduct (chỉ các trường tồn kho, bỏ priceHistory) để validate trước khi thay đổi tồn. */
+    public Optional<BranchProduct> findForStock(String shopId, String branchId, String branchProductId) {
+        Query query = stockFields(new Query(Criteria.where("_id").is(branchProductId)
+                .and("shopId").is(shopId)
+                .and("branchId").is(branchId)
+                .and("deleted").is(false)));
+        return Optional.ofNullable(mongoTemplate.findOne(query, BranchProduct.class));
+    }
+
+    /** Bản $in của {@link #findForStock} cho nhiều BranchProduct cùng chi nhánh. */
+    public List<BranchProduct> findAllForStock(Collection<String> branchProductIds, String shopId, String branchId) {
+        Query query = stockFields(new Query(Criteria.where("_id").in(branchProductIds)
+                .and("shopId").is(shopId)
+                .and("branchId").is(branchId)
+                .and("deleted").is(false)));
+        return mongoTemplate.find(query, BranchProduct.class);
+    }
+
+    /** {@code $inc quantity} không điều kiện (nhập kho, hoàn kho, đồng bộ tổng sau khi chỉnh biến thể). */
+    public BranchProduct incQuantity(String branchProductId, int delta) {
+        return modify(Criteria.where("_id").is(branchProductId), new Update().inc("quantity", delta), true);
+    }
+
+    /**
+     * Trừ {@code quantity} đi {@code amount} chỉ khi {@code quantity >= amount}.
+     *
+     * @return tồn sau cập nhật, hoặc null nếu không đủ tồn / không tìm thấy.
+     */
+    public BranchProduct decQuantity(String branchProductId, int amount) {
+        return modify(Criteria.where("_id").is(branchProductId).and("quantity").gte(amount),
+                new Update().inc("quantity", -amount), true);
+    }
+
+    /**
+     * {@code $inc variants.$.quantity} và {@code quantity} (tổng chi nhánh) cùng một lượng,
+     * để tổng luôn bằng tổng các biến thể.
+     *
+     * @return tồn sau cập nhật, hoặc null nếu không tìm thấy biến thể.
+     */
+    public BranchProduct incVariantQuantity(String branchProductId, String variantId, int delta) {
+        Criteria criteria = Criteria.where("_id").is(branchProductId)
+                .and("variants").elemMatch(Criteria.where("variantId").is(variantId));
+        return modify(criteria, new Update().inc("variants.$.quantity", delta).inc("quantity", delta), true);
+    }
+
+    /**
+     * Trừ tồn biến thể (và tổng chi nhánh) chỉ khi tồn biến thể {@code >= amount}.
+     *
+     * @return tồn sau cập nhật, hoặc null nếu không đủ tồn / không tìm thấy biến thể.
+     */
+    public BranchProduct decVariantQuantity(String branchProductId, String variantId, int amount) {
+        Criteria criteria = Criteria.where("_id").is(branchProductId)
+                .and("variants").elemMatch(Criteria.where("variantId").is(variantId).and("quantity").gte(amount));
+        return modify(criteria, new Update().inc("variants.$.quantity", -amount).inc("quantity", -amount), true);
+    }
+
+    /**
+     * {@code $inc stockInBaseUnits} cho SP bán theo cân (nhập/hoàn kho).
+     * Document legacy có {@code stockInBaseUnits = null} không thể {@code $inc} → {@code $set} giá trị đầu.
+     *
+     * @return tồn sau cập nhật, hoặc null nếu không tìm thấy.
+     */
+    public BranchProduct incStockInBaseUnits(String branchProductId, long delta) {
+        BranchProduct updated = modify(
+                Criteria.where("_id").is(branchProductId).and("stockInBaseUnits").ne(null),
+                new Update().inc("stockInBaseUnits", delta), true);
+        if (updated != null) {
+            return updated;
+        }
+        updated = modify(Criteria.where("_id").is(branchProductId).and("stockInBaseUnits").is(null),
+                new Update().set("stockInBaseUnits", delta), true);
+        if (updated != null) {
+            return updated;
+        }
+        // Node khác vừa khởi tạo giá trị giữa 2 lệnh trên → $inc lại.
+        return modify(Criteria.where("_id").is(branchProductId),
+                new Update().inc("stockInBaseUnits", delta), true);
+    }
+
+    /**
+     * Trừ {@code stockInBaseUnits} chỉ khi đủ tồn.
+     *
+     * @return tồn sau cập nhật, hoặc null nếu không đủ tồn / không tìm thấy.
+     */
+    public BranchProduct decStockInBaseUnits(String branchProductId, long amount) {
+        return modify(Criteria.where("_id").is(branchProductId).and("stockInBaseUnits").gte(amount),
+                new Update().inc("stockInBaseUnits", -amount), true);
+    }
+
+    /** {@code $set quantity}. Trả về tồn TRƯỚC cập nhật để caller tính chênh lệch. */
+    public BranchProduct setQuantity(String branchProductId, int quantity) {
+        return modify(Criteria.where("_id").is(branchProductId), new Update().set("quantity", quantity), false);
+    }
+
+    /**
+     * {@code $set variants.$.quantity}. Trả về tồn TRƯỚC cập nhật; caller dùng chênh lệch để
+     * {@link #incQuantity} tổng chi nhánh.
+     */
+    public BranchProduct setVariantQuantity(String branchProductId, String variantId, int quantity) {
+        Criteria criteria = Criteria.where("_id").is(branchProductId)
+                .and("variants").elemMatch(Criteria.where("variantId").is(variantId));
+        return modify(criteria, new Update().set("variants.$.quantity", quantity), false);
+    }
+
+    private BranchProduct modify(Criteria criteria, Update update, boolean returnNew) {
+        update.set("updatedAt", LocalDateTime.now());
+        return mongoTemplate.findAndModify(stockFields(new Query(criteria)), update,
+                FindAndModifyOptions.options().returnNew(returnNew), BranchProduct.class);
+    }
+
+    private static Query stockFields(Query query) {
+        query.fields().include(STOCK_FIELDS);
+        return query;
+    }
+}
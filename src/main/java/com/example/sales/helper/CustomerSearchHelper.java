@@ -9,11 +9,13 @@ import org.springframework.data.mongodb.core.MongoTemplate;
 import org.springframework.data.mongodb.core.aggregation.Aggregation;
 import org.springframework.data.mongodb.core.aggregation.MatchOperation;
 import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.stereotype.Component;
 
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 import static org.springframework.data.mongodb.core.aggregation.Aggregation.*;
 
@@ -53,16 +55,21 @@ public class CustomerSearchHelper {
         ).map(d -> ((Number) d.get("total")).longValue()).orElse(0L);
     }
 
-    public List<Customer> exportAll(String shopId, String branchId, CustomerSearchRequest req) {
-        Aggregation agg = newAggregation(
-                buildMatch(shopId, branchId, req),
-                sort(Sort.Direction.ASC, "name")
-        );
-
-        return mongoTemplate.aggregate(agg, "customers", Customer.class).getMappedResults();
+    /**
+     * Toàn bộ khách hàng khớp bộ lọc (sắp theo tên) để export, đọc qua Mongo cursor thay vì gom vào List.
+     * Stream phải được đóng sau khi dùng (giải phóng cursor).
+     */
+    public Stream<Customer> streamAll(String shopId, String branchId, CustomerSearchRequest req) {
+        Query query = new Query(buildCriteria(shopId, branchId, req))
+                .with(Sort.by(Sort.Direction.ASC, "name"));
+        return mongoTemplate.stream(query, Customer.class);
     }
 
     private MatchOperation buildMatch(String shopId, String branchId, CustomerSearchRequest req) {
+        return match(buildCriteria(shopId, branchId, req));
+    }
+
+    private Criteria buildCriteria(String shopId, String branchId, CustomerSearchRequest req) {
         String keyword = Optional.ofNullable(req.getKeyword()).orElse("").trim();
 
         List<Criteria> andConditions = new ArrayList<>();
@@ -92,6 +99,6 @@ public class CustomerSearchHelper {
             andConditions.add(dateCriteria);
         }
 
-        return match(new Criteria().andOperator(andConditions.toArray(new Criteria[0])));
+        return new Criteria().andOperator(andConditions.toArray(new Criteria[0]));
     }
 }
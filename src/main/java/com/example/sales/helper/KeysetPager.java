@@ -0,0 +1,103 @@
+package com.example.sales.helper;
+
+import com.example.sales.constant.ApiCode;
+import com.example.sales.dto.CursorPage;
+import com.example.sales.exception.BusinessException;
+import com.example.sales.model.base.BaseEntity;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Phân trang keyset theo (createdAt desc, _id desc): trang sau lọc {@code createdAt < c OR (createdAt = c AND _id < id)}
+ * nên Mongo đi thẳng tới vị trí trên index, không skip — trang 500 tốn như trang 1 (cần index kết thúc bằng
+ * {@code createdAt: -1, _id: -1}). Lấy dư 1 bản ghi để biết còn trang sau, không cần count.
+ *
+ * Cursor là base64url của {@code createdAt|id} của bản ghi cuối trang; client coi như chuỗi mờ.
+ */
+@Component
+public class KeysetPager {
+
+    public static final int DEFAULT_SIZE = 20;
+    public static final int MAX_SIZE = 100;
+
+    private static final Sort NEWEST_FIRST = Sort.by(Sort.Order.desc("createdAt"), Sort.Order.desc("_id"));
+
+    private final MongoTemplate mongoTemplate;
+
+    public KeysetPager(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    record Cursor(LocalDateTime createdAt, String id) {
+    }
+
+    /**
+     * @param filter    điều kiện lọc gốc (không chứa sort / phân trang)
+     * @param cursor    null hoặc rỗng = trang đầu
+     * @param withTotal đếm tổng theo filter — chỉ chạy ở trang đầu
+     */
+    public <T extends BaseEntity> CursorPage<T> fetch(Criteria filter, Class<T> type, Function<T, String> idOf,
+                                                      String cursor, Integer size, boolean withTotal) {
+        int limit = clampSize(size);
+        Cursor after = StringUtils.hasText(cursor) ? decode(cursor) : null;
+
+        Query query = Query.query(after == null ? filter : new Criteria().andOperator(filter, after(after)))
+                .with(NEWEST_FIRST)
+                .limit(limit + 1);
+        List<T> rows = mongoTemplate.find(query, type);
+
+        boolean hasNext = rows.size() > limit;
+        List<T> content = hasNext ? rows.subList(0, limit) : rows;
+        String nextCursor = null;
+        if (hasNext) {
+            T last = content.get(content.size() - 1);
+            nextCursor = encode(last.getCreatedAt(), idOf.apply(last));
+        }
+        Long total = withTotal && after == null ? mongoTemplate.count(Query.query(filter), type) : null;
+        return new CursorPage<>(List.copyOf(content), nextCursor, hasNext, total);
+    }
+
+    static int clampSize(Integer size) {
+        if (size == null || size <= 0) return DEFAULT_SIZE;
+        return Math.min(size, MAX_SIZE);
+    }
+
+    static Criteria after(Cursor cursor) {
+        return new Criteria().orOperator(
+                Criteria.where("createdAt").lt(cursor.createdAt()),
+                Criteria.where("createdAt").is(cursor.createdAt()).and("_id").lt(cursor.id()));
+    }
+
+    static String encode(LocalDateTime createdAt, String id) {
+        if (createdAt == null || id == null) {
+            // Bản ghi cũ thiếu createdAt không thể làm mốc keyset
+            throw new IllegalStateException("Bản ghi thiếu createdAt/id, không tạo được cursor");
+        }
+        String raw = createdAt + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static Cursor decode(String token) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int sep = raw.indexOf('|');
+            if (sep <= 0 || sep == raw.length() - 1) {
+                throw new BusinessException(ApiCode.INVALID_CURSOR);
+            }
+            return new Cursor(LocalDateTime.parse(raw.substring(0, sep)), raw.substring(sep + 1));
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            throw new BusinessException(ApiCode.INVALID_CURSOR);
+        }
+    }
+}
@@ -0,0 +1,289 @@
+// File: src/main/java/com/example/sales/helper/ProductNgramIndex.java
+package com.example.sales.helper;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Index n-gram trong bộ nhớ cho sản phẩm của một shop (name / sku / barcode), thay cho regex {@code .*kw.*}.
+ *
+ * Chuẩn hóa: bỏ dấu tiếng Việt (NFD + bỏ combining mark, đ → d), chữ thường, ký tự khác chữ/số thành khoảng trắng
+ * — "Cà Phê Sữa Đá" và "ca phe sua da" cùng thành token [ca, phe, sua, da]; SKU "CA_PHE_01" thành [ca, phe, 01].
+ *
+ * Mỗi token được index bằng trigram ("phe" → "phe"; "sua" → "sua"; "banh" → "ban", "anh") và tiền tố 1–2 ký tự
+ * ("^p", "^ph"). Keyword được tách token giống vậy, mọi token phải khớp (AND):
+ * token ≥ 3 ký tự khớp khi là chuỗi con của một token sản phẩm (giao posting trigram rồi kiểm tra lại),
+ * token 1–2 ký tự khớp khi là tiền tố của một token sản phẩm.
+ *
+ * Xếp hạng: trùng SKU/barcode > trùng tên > tên bắt đầu bằng keyword > token trùng / tiền tố / chuỗi con,
+ * cùng điểm thì tên ngắn hơn trước. Keyword quá rộng (vd. một ký tự) chỉ trả về {@code limit} kết quả đầu.
+ *
+ * Không thread-safe — {@link ProductSearchIndex} bọc bằng ReadWriteLock. Sửa / xóa để lại tombstone trong posting,
+ * được dọn khi số tombstone vượt số sản phẩm còn sống.
+ */
+final class ProductNgramIndex {
+
+    private static final int GRAM = 3;
+    private static final int MIN_TOMBSTONES_TO_COMPACT = 1_024;
+    private static final int MAX_SCORE = 0x7FFF;
+
+    /** Dữ liệu nguồn của một sản phẩm (chưa chuẩn hóa). */
+    record Entry(String productId, String name, String sku, String barcode, String category) {
+    }
+
+    private record Doc(Entry source, String name, String sku, String barcode, String[] tokens) {
+    }
+
+    /** docId → Doc; null = đã bị thay / xóa (tombstone). */
+    private final List<Doc> docs = new ArrayList<>();
+    private final Map<String, Integer> docIds = new HashMap<>();
+    private final Map<String, IntList> postings = new HashMap<>();
+    private int tombstones;
+
+    int size() {
+        return docIds.size();
+    }
+
+    /** Thêm hoặc thay sản phẩm; không làm gì nếu name / sku / barcode / category không đổi. */
+    void put(Entry entry) {
+        Integer existing = docIds.get(entry.productId());
+        if (existing != null) {
+            if (docs.get(existing).source().equals(entry)) {
+                return;
+            }
+            docs.set(existing, null);
+            tombstones++;
+        }
+        add(entry);
+        compactIfNeeded();
+    }
+
+    void remove(String productId) {
+        Integer existing = docIds.remove(productId);
+        if (existing != null) {
+            docs.set(existing, null);
+            tombstones++;
+            compactIfNeeded();
+        }
+    }
+
+    /**
+     * Id sản phẩm khớp keyword (và category nếu có), theo thứ tự liên quan giảm dần, tối đa {@code limit} id.
+     * Keyword không có chữ / số nào → danh sách rỗng.
+     */
+    List<String> search(String keyword, String category, int limit) {
+        String query = normalize(keyword);
+        if (query.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+        String[] terms = new LinkedHashSet<>(Arrays.asList(query.split(" "))).toArray(String[]::new);
+
+        // Giao posting từ nhỏ tới lớn
+        Set<String> grams = new LinkedHashSet<>();
+        for (String term : terms) {
+            grams.addAll(queryGrams(term));
+        }
+        List<IntList> lists = new ArrayList<>(grams.size());
+        for (String gram : grams) {
+            IntList posting = postings.get(gram);
+            if (posting == null) {
+                return List.of();
+            }
+            lists.add(posting);
+        }
+        lists.sort(Comparator.comparingInt(IntList::size));
+        int[] candidates = lists.get(0).toArray();
+        int count = candidates.length;
+        for (int i = 1; i < lists.size() && count > 0; i++) {
+            count = lists.get(i).retainIn(candidates, count);
+        }
+
+        // Khóa sắp xếp gói trong một long: điểm giảm dần, tên ngắn trước, docId tăng dần
+        long[] ranked = new long[count];
+        int matches = 0;
+        for (int i = 0; i < count; i++) {
+            int docId = candidates[i];
+            Doc doc = docs.get(docId);
+            if (doc == null || (category != null && !category.equals(doc.source().category()))) {
+                continue;
+            }
+            int score = score(doc, query, terms);
+            if (score > 0) {
+                ranked[matches++] = ((long) (MAX_SCORE - Math.min(score, MAX_SCORE)) << 48)
+                        | ((long) Math.min(doc.name().length(), 0xFFFF) << 32)
+                        | docId;
+            }
+        }
+        Arrays.sort(ranked, 0, matches);
+        int size = Math.min(matches, limit);
+        List<String> ids = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            ids.add(docs.get((int) ranked[i]).source().productId());
+        }
+        return ids;
+    }
+
+    /** Bỏ dấu tiếng Việt, chữ thường, gom ký tự không phải chữ/số thành một khoảng trắng. */
+    static String normalize(String text) {
+        if (text == null || text.isEmpty()) {
+            return "";
+        }
+        String decomposed = Normalizer.normalize(text, Normalizer.Form.NFD);
+        StringBuilder out = new StringBuilder(decomposed.length());
+        boolean space = false;
+        for (int i = 0; i < decomposed.length(); i++) {
+            char c = decomposed.charAt(i);
+            int type = Character.getType(c);
+            if (type == Character.NON_SPACING_MARK || type == Character.COMBINING_SPACING_MARK
+                    || type == Character.ENCLOSING_MARK) {
+                continue;
+            }
+            // đ/Đ không được NFD tách dấu
+            if (c == 'đ' || c == 'Đ') {
+                c = 'd';
+            } else if (c >= 'A' && c <= 'Z') {
+                c = (char) (c + ('a' - 'A'));
+            }
+            if ((c >= 'a' && c <= 'z') || (c >= '0' && c <= '9')) {
+                if (space && !out.isEmpty()) {
+                    out.append(' ');
+                }
+                out.append(c);
+                space = false;
+            } else {
+                space = true;
+            }
+        }
+        return out.toString();
+    }
+
+    /** 0 = không khớp (một term không nằm trong token nào của sản phẩm). */
+    private static int score(Doc doc, String query, String[] terms) {
+        int score = 0;
+        for (String term : terms) {
+            int best = 0;
+            for (String token : doc.tokens()) {
+                if (token.equals(term)) {
+                    best = 30;
+                    break;
+                }
+                if (token.startsWith(term)) {
+                    best = Math.max(best, 20);
+                } else if (term.length() >= GRAM && token.contains(term)) {
+                    best = Math.max(best, 10);
+                }
+            }
+            if (best == 0) {
+                return 0;
+            }
+            score += best;
+        }
+        if (query.equals(doc.sku()) || query.equals(doc.barcode())) {
+            score += 1_000;
+        }
+        if (query.equals(doc.name())) {
+            score += 500;
+        } else if (doc.name().startsWith(query)) {
+            score += 300;
+        }
+        return score;
+    }
+
+    private void add(Entry entry) {
+        String name = normalize(entry.name());
+        String sku = normalize(entry.sku());
+        String barcode = normalize(entry.barcode());
+        Set<String> tokens = new LinkedHashSet<>();
+        for (String field : new String[]{name, sku, barcode}) {
+            if (!field.isEmpty()) {
+                tokens.addAll(Arrays.asList(field.split(" ")));
+            }
+        }
+        int docId = docs.size();
+        docs.add(new Doc(entry, name, sku, barcode, tokens.toArray(String[]::new)));
+        docIds.put(entry.productId(), docId);
+
+        Set<String> grams = new LinkedHashSet<>();
+        for (String token : tokens) {
+            grams.add("^" + token.substring(0, 1));
+            if (token.length() >= 2) {
+                grams.add("^" + token.substring(0, 2));
+            }
+            for (int i = 0; i + GRAM <= token.length(); i++) {
+                grams.add(token.substring(i, i + GRAM));
+            }
+        }
+        // docId tăng dần nên mỗi posting luôn được sắp xếp
+        for (String gram : grams) {
+            postings.computeIfAbsent(gram, g -> new IntList()).add(docId);
+        }
+    }
+
+    private static List<String> queryGrams(String term) {
+        if (term.length() < GRAM) {
+            return List.of("^" + term);
+        }
+        List<String> grams = new ArrayList<>(term.length() - GRAM + 1);
+        for (int i = 0; i + GRAM <= term.length(); i++) {
+            grams.add(term.substring(i, i + GRAM));
+        }
+        return grams;
+    }
+
+    private void compactIfNeeded() {
+        if (tombstones < MIN_TOMBSTONES_TO_COMPACT || tombstones < docIds.size()) {
+            return;
+        }
+        List<Entry> live = docs.stream().filter(Objects::nonNull).map(Doc::source).toList();
+        docs.clear();
+        docIds.clear();
+        postings.clear();
+        tombstones = 0;
+        live.forEach(this::add);
+    }
+
+    /** Danh sách int tăng dần, gọn hơn List&lt;Integer&gt; cho posting lớn. */
+    private static final class IntList {
+        private int[] values = new int[4];
+        private int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        int size() {
+            return size;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+
+        /** Giữ lại trong {@code target[0..count)} các phần tử có trong list này; trả số phần tử còn lại. */
+        int retainIn(int[] target, int count) {
+            int kept = 0;
+            int j = 0;
+            for (int i = 0; i < count && j < size; i++) {
+                int value = target[i];
+                while (j < size && values[j] < value) {
+                    j++;
+                }
+                if (j < size && values[j] == value) {
+                    target[kept++] = value;
+                }
+            }
+            return kept;
+        }
+    }
+}
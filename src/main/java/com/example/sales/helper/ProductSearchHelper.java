@@ -1,19 +1,28 @@
 // File: src/main/java/com/example/sales/helper/ProductSearchHelper.java
 package com.example.sales.helper;
 
+import com.example.sales.config.ProductSearchProperties;
 import com.example.sales.dto.product.ProductSearchRequest;
 import com.example.sales.model.BranchProduct;
 import com.example.sales.model.Product;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationExpression;
+import org.springframework.data.mongodb.core.aggregation.ArrayOperators;
+import org.springframework.data.mongodb.core.aggregation.ComparisonOperators;
+import org.springframework.data.mongodb.core.aggregation.ConditionalOperators;
+import org.springframework.data.mongodb.core.aggregation.Fields;
 import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.stereotype.Component;
 import org.springframework.util.StringUtils;
 
 import java.util.*;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 /**
@@ -22,16 +31,24 @@ import java.util.stream.Collectors;
  * Bước 1 — findMatchingProductIds():
  *   Tìm productIds từ collection "products" theo các tiêu chí thuộc Product
  *   (keyword: name/sku/barcode, category). Trả về null nếu không có filter → lấy tất cả.
+ *   Có keyword thì tra {@link ProductSearchIndex} (n-gram trong bộ nhớ, không phân biệt dấu),
+ *   kết quả theo thứ tự liên quan; index tắt / lỗi thì quay về regex trên collection products.
  *
  * Bước 2 — searchBranchProducts() / countBranchProducts():
  *   Lọc BranchProduct theo (shopId, branchId, productIds, price range, activeInBranch).
  *   productIds = null → không lọc theo sản phẩm cụ thể.
  */
+@Slf4j
 @Component
 @RequiredArgsConstructor
 public class ProductSearchHelper {
 
+    /** sortBy giữ thứ tự liên quan của keyword (chỉ có tác dụng khi tìm theo keyword). */
+    public static final String SORT_RELEVANCE = "relevance";
+
     private final MongoTemplate mongoTemplate;
+    private final ProductSearchIndex productSearchIndex;
+    private final ProductSearchProperties productSearchProperties;
 
     /**
      * Bước 1: Tìm productIds từ collection "products" theo keyword và category.
@@ -44,12 +61,21 @@ public class ProductSearchHelper {
 
         if (!hasKeyword && !hasCategory) return null; // Không có filter Product → lấy tất cả
 
+        if (hasKeyword && productSearchIndex.isEnabled()) {
+            try {
+                return new LinkedHashSet<>(productSearchIndex.search(shopId, req.getKeyword(),
+                        hasCategory ? req.getCategory() : null));
+            } catch (RuntimeException e) {
+                log.warn("[ProductSearchHelper] index tìm kiếm lỗi, dùng regex cho shop {}: {}", shopId, e.getMessage());
+            }
+        }
+
         List<Criteria> criteriaList = new ArrayList<>();
         criteriaList.add(Criteria.where("shopId").is(shopId));
         criteriaList.add(Criteria.where("deleted").ne(true));
 
         if (hasKeyword) {
-            String pattern = ".*" + req.getKeyword().trim() + ".*";
+            String pattern = Pattern.quote(req.getKeyword().trim());
             criteriaList.add(new Criteria().orOperator(
                     Criteria.where("name").regex(pattern, "i"),
                     Criteria.where("sku").regex(pattern, "i"),
@@ -73,6 +99,9 @@ public class ProductSearchHelper {
      * Bước 2: Tìm BranchProduct theo các tiêu chí thuộc BranchProduct
      * (shopId, branchId, price range, activeInBranch) + productIds từ bước 1.
      *
+     * sortBy = "relevance" và có productIds: sắp theo thứ tự của productIds (thứ tự liên quan từ bước 1).
+     * Chỉ {@code maxRankedResults} id đầu được xếp hạng; id sau đó vẫn khớp bộ lọc nhưng xếp sau, theo _id.
+     *
      * @param productIds null = không lọc theo productId; Set rỗng = không có kết quả nào
      */
     public List<BranchProduct> searchBranchProducts(String shopId, String branchId,
@@ -80,6 +109,25 @@ public class ProductSearchHelper {
                                                      ProductSearchRequest req, Pageable pageable) {
         if (productIds != null && productIds.isEmpty()) return List.of();
 
+        if (SORT_RELEVANCE.equals(req.getSortBy()) && productIds != null) {
+            List<String> ranked = productIds.stream()
+                    .limit(Math.max(0, productSearchProperties.getMaxRankedResults()))
+                    .toList();
+            AggregationExpression position = ArrayOperators.arrayOf(ranked).indexOf(Fields.field("productId"));
+            Aggregation agg = Aggregation.newAggregation(
+                    Aggregation.match(buildBranchCriteria(shopId, branchId, productIds, req)),
+                    Aggregation.addFields().addField("_rank")
+                            .withValue(ConditionalOperators.when(ComparisonOperators.valueOf(position).lessThanValue(0))
+                                    .then(ranked.size())
+                                    .otherwiseValueOf(position))
+                            .build(),
+                    Aggregation.sort(Sort.by(Sort.Direction.ASC, "_rank", "_id")),
+                    Aggregation.skip((long) pageable.getPageNumber() * pageable.getPageSize()),
+                    Aggregation.limit(pageable.getPageSize())
+            );
+            return mongoTemplate.aggregate(agg, "branch_products", BranchProduct.class).getMappedResults();
+        }
+
         Query query = new Query(buildBranchCriteria(shopId, branchId, productIds, req))
                 .with(Sort.by(Sort.Direction.fromString(req.getSortDir()), resolveSortField(req.getSortBy())))
                 .skip((long) pageable.getPageNumber() * pageable.getPageSize())
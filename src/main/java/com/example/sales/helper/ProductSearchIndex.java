@@ -0,0 +1,148 @@
+// File: src/main/java/com/example/sales/helper/ProductSearchIndex.java
+package com.example.sales.helper;
+
+import com.example.sales.cache.ProductCacheKeys;
+import com.example.sales.config.ProductSearchProperties;
+import com.example.sales.model.Product;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+/**
+ * Index tìm kiếm sản phẩm theo shop ({@link ProductNgramIndex}), giữ trong bộ nhớ của node.
+ *
+ * Lần tìm đầu tiên của shop dựng index từ collection products (chỉ đọc name / sku / barcode / category).
+ * Sau đó mỗi lần tìm so generation của shop trong {@link ProductCacheKeys} — generation tăng sau mọi lần ghi
+ * sản phẩm (kể cả import Excel), và dùng chung giữa các node khi cache chạy Redis. Generation đổi thì chỉ đọc lại
+ * các sản phẩm có {@code updatedAt} từ mốc lần đọc trước (lùi {@code watermarkOverlap}): sản phẩm đã xóa bị bỏ
+ * khỏi index, còn lại được thêm / thay.
+ *
+ * Generation được đọc TRƯỚC khi query DB: lần ghi xen giữa sẽ làm generation lệch và được đọc ở lần tìm sau.
+ */
+@Slf4j
+@Component
+public class ProductSearchIndex {
+
+    private static final String[] FIELDS = {"name", "sku", "barcode", "category", "deleted"};
+
+    private final MongoTemplate mongoTemplate;
+    private final ProductCacheKeys productCacheKeys;
+    private final ProductSearchProperties properties;
+    private final Cache<String, ShopIndex> shops;
+
+    static final class ShopIndex {
+        final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+        ProductNgramIndex index = new ProductNgramIndex();
+        volatile boolean loaded;
+        volatile long generation;
+        volatile long loadedAtNanos;
+        /** Thời điểm bắt đầu lần đọc DB gần nhất — sản phẩm ghi sau mốc này có updatedAt lớn hơn. */
+        LocalDateTime watermark;
+    }
+
+    public ProductSearchIndex(MongoTemplate mongoTemplate,
+                              ProductCacheKeys productCacheKeys,
+                              ProductSearchProperties properties) {
+        this.mongoTemplate = mongoTemplate;
+        this.productCacheKeys = productCacheKeys;
+        this.properties = properties;
+        // Trọng số = số sản phẩm lúc dựng index (shop được put lại sau mỗi lần dựng)
+        this.shops = Caffeine.newBuilder()
+                .maximumWeight(properties.getMaxIndexedProducts())
+                .weigher((String shopId, ShopIndex shop) -> Math.max(1, shop.index.size()))
+                .expireAfterAccess(properties.getIdleTimeout())
+                .build();
+    }
+
+    public boolean isEnabled() {
+        return properties.isEnabled();
+    }
+
+    /**
+     * Mọi id sản phẩm (chưa xóa) của shop khớp keyword, thuộc category nếu có — liên quan nhất trước.
+     * Không cắt bớt: kết quả dùng làm bộ lọc {@code $in} nên tổng số / phân trang phải đủ.
+     */
+    public List<String> search(String shopId, String keyword, String category) {
+        ShopIndex shop = shops.get(shopId, k -> new ShopIndex());
+        refresh(shopId, shop);
+        shop.lock.readLock().lock();
+        try {
+            return shop.index.search(keyword, category, Integer.MAX_VALUE);
+        } finally {
+            shop.lock.readLock().unlock();
+        }
+    }
+
+    private void refresh(String shopId, ShopIndex shop) {
+        long generation = productCacheKeys.shopGeneration(shopId);
+        if (shop.loaded && shop.generation == generation && !expired(shop)) {
+            return;
+        }
+        shop.lock.writeLock().lock();
+        try {
+            if (!shop.loaded || expired(shop)) {
+                load(shopId, shop);
+                shops.put(shopId, shop);
+            } else if (shop.generation != generation) {
+                applyChanges(shopId, shop);
+            }
+            shop.generation = generation;
+        } finally {
+            shop.lock.writeLock().unlock();
+        }
+    }
+
+    private boolean expired(ShopIndex shop) {
+        return System.nanoTime() - shop.loadedAtNanos > properties.getMaxAge().toNanos();
+    }
+
+    private void load(String shopId, ShopIndex shop) {
+        long start = System.nanoTime();
+        LocalDateTime startedAt = LocalDateTime.now();
+        Query query = new Query(Criteria.where("shopId").is(shopId).and("deleted").ne(true));
+        query.fields().include(FIELDS);
+
+        ProductNgramIndex index = new ProductNgramIndex();
+        try (Stream<Product> products = mongoTemplate.stream(query, Product.class)) {
+            products.forEach(product -> index.put(entry(product)));
+        }
+        shop.index = index;
+        shop.watermark = startedAt;
+        shop.loadedAtNanos = System.nanoTime();
+        shop.loaded = true;
+        log.info("[ProductSearchIndex] dựng index shop {}: {} sản phẩm trong {} ms",
+                shopId, index.size(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private void applyChanges(String shopId, ShopIndex shop) {
+        LocalDateTime startedAt = LocalDateTime.now();
+        Query query = new Query(Criteria.where("shopId").is(shopId)
+                .and("updatedAt").gte(shop.watermark.minus(properties.getWatermarkOverlap())));
+        query.fields().include(FIELDS);
+
+        try (Stream<Product> products = mongoTemplate.stream(query, Product.class)) {
+            products.forEach(product -> {
+                if (product.isDeleted()) {
+                    shop.index.remove(product.getId());
+                } else {
+                    shop.index.put(entry(product));
+                }
+            });
+        }
+        shop.watermark = startedAt;
+    }
+
+    private static ProductNgramIndex.Entry entry(Product product) {
+        return new ProductNgramIndex.Entry(product.getId(), product.getName(), product.getSku(),
+                product.getBarcode(), product.getCategory());
+    }
+}
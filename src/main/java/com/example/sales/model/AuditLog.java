@@ -4,6 +4,7 @@ package com.example.sales.model;
 import com.example.sales.model.base.BaseEntity;
 import lombok.*;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
 import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
@@ -22,6 +23,7 @@ import java.util.Map;
 @AllArgsConstructor
 @NoArgsConstructor
 @Document("audit_logs")
+@CompoundIndex(def = "{'createdAt': -1, '_id': -1}", name = "idx_created_id")
 public class AuditLog extends BaseEntity {
 
     @Id
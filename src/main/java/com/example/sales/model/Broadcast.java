@@ -44,8 +44,36 @@ public class Broadcast extends BaseEntity {
     @Builder.Default
     private BroadcastStatus status = BroadcastStatus.DRAFT;
 
-    /** Snapshot tại thời điểm gửi để audit. */
+    /** Số recipient đã nhận notification (cập nhật dần trong lúc gửi). */
     private Integer recipientCount;
 
     private LocalDateTime sentAt;
+
+    // ── Tiến độ job gửi nền ──────────────────────────────────────────────
+
+    /** Số recipient dự kiến, đếm khi job bắt đầu. */
+    private Integer totalRecipients;
+
+    /** Số recipient đã xử lý (gửi, bỏ qua vì đã gửi, hoặc lỗi). */
+    @Builder.Default
+    private int processedCount = 0;
+
+    @Builder.Default
+    private int failedCount = 0;
+
+    /** Số lần job dừng ở một chunk gửi lỗi để gửi lại chunk đó ở lượt quét sau (tối đa app.broadcast.max-retries). */
+    @Builder.Default
+    private int retryCount = 0;
+
+    /** {@code _id} của document nguồn (user / shop) cuối cùng đã xử lý xong — job gửi tiếp từ đây. */
+    private String lastCursor;
+
+    /** Node đang giữ job và hạn lease; lease quá hạn thì node khác được nhận tiếp. */
+    private String claimedBy;
+    private LocalDateTime leaseUntil;
+
+    private LocalDateTime startedAt;
+    private LocalDateTime finishedAt;
+
+    private String errorMessage;
 }
@@ -4,6 +4,8 @@ package com.example.sales.model;
 import com.example.sales.model.base.BaseEntity;
 import lombok.*;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 @Getter
@@ -14,6 +16,10 @@ import org.springframework.data.mongodb.core.mapping.Document;
 @AllArgsConstructor
 @NoArgsConstructor
 @Document("customers")
+@CompoundIndexes({
+        @CompoundIndex(def = "{'shopId': 1, 'deleted': 1, 'createdAt': -1}", name = "idx_shop_deleted_created"),
+        @CompoundIndex(def = "{'shopId': 1, 'branchId': 1, 'deleted': 1, 'createdAt': -1}", name = "idx_shop_branch_deleted_created")
+})
 public class Customer extends BaseEntity {
 
     @Id
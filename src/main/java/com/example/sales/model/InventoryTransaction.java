@@ -5,6 +5,8 @@ import com.example.sales.constant.InventoryType;
 import com.example.sales.model.base.BaseEntity;
 import lombok.*;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 @Getter
@@ -15,6 +17,10 @@ import org.springframework.data.mongodb.core.mapping.Document;
 @NoArgsConstructor
 @AllArgsConstructor
 @Document("inventory_transactions")
+@CompoundIndexes({
+        @CompoundIndex(def = "{'productId': 1, 'shopId': 1, 'branchId': 1, 'createdAt': -1, '_id': -1}", name = "idx_product_shop_branch_created_id"),
+        @CompoundIndex(def = "{'productId': 1, 'createdAt': -1}", name = "idx_product_created")
+})
 public class InventoryTransaction extends BaseEntity {
 
     @Id
@@ -12,6 +12,7 @@ import java.time.Instant;
  * gọi sender. Nếu key đã tồn tại → duplicate key exception → skip.
  *
  * TTL auto-xóa bản ghi sau 30 ngày để collection không phình.
+ * Auto-index-creation không bật — unique index và TTL index do MongoIndexAdvisor tạo lúc khởi động.
  */
 @Document(collection = "notification_dedupe")
 @Data
@@ -7,6 +7,8 @@ import com.example.sales.model.base.BaseEntity;
 import com.example.sales.model.tax.OrderTaxSnapshot;
 import lombok.*;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.time.LocalDateTime;
@@ -20,6 +22,17 @@ import java.util.List;
 @AllArgsConstructor
 @NoArgsConstructor
 @Document("orders")
+// Equality (shopId, branchId, status, deleted, isPaid) trước, createdAt sau để vừa lọc khoảng ngày của báo cáo
+// vừa trả danh sách đã sắp xếp mà không sort trong bộ nhớ; _id cuối cùng làm tie-break cho phân trang keyset
+// (KeysetPager). Xem MongoIndexAdvisor cho các query tương ứng.
+@CompoundIndexes({
+        @CompoundIndex(def = "{'shopId': 1, 'deleted': 1, 'createdAt': -1, '_id': -1}", name = "idx_shop_deleted_created_id"),
+        @CompoundIndex(def = "{'shopId': 1, 'branchId': 1, 'deleted': 1, 'createdAt': -1, '_id': -1}", name = "idx_shop_branch_deleted_created_id"),
+        @CompoundIndex(def = "{'shopId': 1, 'status': 1, 'deleted': 1, 'createdAt': -1, '_id': -1}", name = "idx_shop_status_deleted_created_id"),
+        @CompoundIndex(def = "{'shopId': 1, 'branchId': 1, 'status': 1, 'deleted': 1, 'createdAt': -1, '_id': -1}", name = "idx_shop_branch_status_deleted_created_id"),
+        @CompoundIndex(def = "{'shopId': 1, 'branchId': 1, 'deleted': 1, 'isPaid': 1, 'status': 1}", name = "idx_shop_branch_open"),
+        @CompoundIndex(def = "{'shopId': 1, 'orderCode': 1}", name = "idx_shop_order_code")
+})
 public class Order extends BaseEntity {
     @Id
     private String id;
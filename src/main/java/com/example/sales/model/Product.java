@@ -22,6 +22,7 @@ import java.util.Map;
 @Document("products")
 @CompoundIndex(def = "{'shopId': 1, 'sku': 1}", unique = true)
 @CompoundIndex(def = "{'shopId': 1, 'barcode': 1}", unique = true)
+@CompoundIndex(def = "{'shopId': 1, 'updatedAt': 1}", name = "idx_shop_updated")
 public class Product extends BaseEntity {
     @Id
     private String id;
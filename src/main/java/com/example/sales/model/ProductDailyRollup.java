@@ -0,0 +1,50 @@
+// File: src/main/java/com/example/sales/model/ProductDailyRollup.java
+package com.example.sales.model;
+
+import com.example.sales.constant.OrderStatus;
+import lombok.*;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Tổng hợp số lượng / doanh thu theo sản phẩm trong một ngày (shop / chi nhánh / trạng thái đơn),
+ * phục vụ báo cáo sản phẩm bán chạy.
+ *
+ * {@code _id} = {@code shopId|branchId|yyyy-MM-dd|status|productId}.
+ * {@code quantity} là số lượng hiệu dụng: trọng lượng với sản phẩm bán theo cân, ngược lại quantity.
+ */
+@Getter
+@Setter
+@ToString
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@Document("product_daily_rollups")
+@CompoundIndexes({
+        @CompoundIndex(def = "{'shopId': 1, 'date': 1}", name = "idx_shop_date"),
+        @CompoundIndex(def = "{'shopId': 1, 'branchId': 1, 'date': 1}", name = "idx_shop_branch_date")
+})
+public class ProductDailyRollup {
+    @Id
+    private String id;
+
+    private String shopId;
+    private String branchId;
+    private LocalDate date;
+    private OrderStatus status;
+
+    private String productId;
+    /** Tên sản phẩm theo dòng đơn gần nhất trong ngày */
+    private String productName;
+    private double quantity;
+    /** Tổng quantity hiệu dụng × priceAfterDiscount */
+    private double revenue;
+
+    private String revision;
+    private LocalDateTime computedAt;
+}
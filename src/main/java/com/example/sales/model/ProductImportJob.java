@@ -0,0 +1,70 @@
+// File: src/main/java/com/example/sales/model/ProductImportJob.java
+package com.example.sales.model;
+
+import com.example.sales.constant.ProductImportJobStatus;
+import com.example.sales.dto.product.ProductImportResult;
+import com.example.sales.model.base.BaseEntity;
+import lombok.*;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Một lần import sản phẩm từ Excel chạy nền. Client poll trạng thái qua API hoặc nghe
+ * topic {@code /topic/shops/{shopId}/product-imports}.
+ *
+ * TTL tự xóa job 7 ngày sau khi kết thúc.
+ * Auto-index-creation không bật — TTL index và idx_shop_created do MongoIndexAdvisor tạo lúc khởi động.
+ */
+@Getter
+@Setter
+@ToString
+@EqualsAndHashCode(callSuper = true)
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@Document("product_import_jobs")
+@CompoundIndex(def = "{'shopId': 1, 'createdAt': -1}", name = "idx_shop_created")
+public class ProductImportJob extends BaseEntity {
+    @Id
+    private String id;
+
+    private String shopId;
+
+    private String userId;
+
+    private String fileName;
+
+    @Builder.Default
+    private ProductImportJobStatus status = ProductImportJobStatus.PENDING;
+
+    /** Số dòng dữ liệu đã xử lý (cập nhật sau mỗi lô) */
+    private int processedRows;
+
+    private int importedCount;
+    private int createdCount;
+    private int updatedCount;
+    private int failedCount;
+
+    @Builder.Default
+    private List<ProductImportResult.RowError> errors = new ArrayList<>();
+
+    /** Lỗi làm hỏng cả job (file không đọc được, shop không tồn tại...) */
+    private String errorMessage;
+
+    private LocalDateTime startedAt;
+
+    /**
+     * Lần cuối job còn chạy (lúc bắt đầu và sau mỗi lô). Job RUNNING không cập nhật quá
+     * app.product-import.stale-timeout (node chết / restart) bị ProductImportJobSweepScheduler đánh dấu FAILED.
+     */
+    private LocalDateTime heartbeatAt;
+
+    @Indexed(expireAfterSeconds = 7 * 24 * 60 * 60)
+    private LocalDateTime finishedAt;
+}
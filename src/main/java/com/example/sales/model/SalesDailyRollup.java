@@ -0,0 +1,53 @@
+// File: src/main/java/com/example/sales/model/SalesDailyRollup.java
+package com.example.sales.model;
+
+import com.example.sales.constant.OrderStatus;
+import lombok.*;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Tổng hợp doanh số theo shop / chi nhánh / ngày / trạng thái đơn, dựng sẵn từ {@code orders}
+ * để báo cáo chỉ phải đọc O(số ngày) document thay vì quét toàn bộ đơn.
+ *
+ * {@code _id} = {@code shopId|branchId|yyyy-MM-dd|status} nên mỗi bucket có đúng một document.
+ * Ngày tính theo múi giờ của JVM (cùng quy ước với khoảng ngày trong {@code ReportRequest}).
+ */
+@Getter
+@Setter
+@ToString
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@Document("sales_daily_rollups")
+@CompoundIndexes({
+        @CompoundIndex(def = "{'shopId': 1, 'date': 1}", name = "idx_shop_date"),
+        @CompoundIndex(def = "{'shopId': 1, 'branchId': 1, 'date': 1}", name = "idx_shop_branch_date")
+})
+public class SalesDailyRollup {
+    @Id
+    private String id;
+
+    private String shopId;
+    private String branchId;
+    private LocalDate date;
+    private OrderStatus status;
+
+    /** Số đơn */
+    private long orderCount;
+    /** Tổng items.quantity */
+    private long productsSold;
+    /** Tổng totalPrice */
+    private double revenue;
+    /** Tổng totalAmount (gồm thuế) */
+    private double amount;
+
+    /** Lần dựng lại gần nhất — document của bucket không có trong lần dựng mới bị xóa theo revision */
+    private String revision;
+    private LocalDateTime computedAt;
+}
@@ -7,9 +7,11 @@ import org.springframework.data.domain.Pageable;
 import org.springframework.data.mongodb.repository.MongoRepository;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
+import java.util.stream.Stream;
 
 @Repository
 public interface BranchProductRepository extends MongoRepository<BranchProduct, String> {
@@ -17,12 +19,21 @@ public interface BranchProductRepository extends MongoRepository<BranchProduct,
     // Tìm BranchProduct theo productId và branchId (đảm bảo duy nhất)
     Optional<BranchProduct> findByProductIdAndBranchIdAndDeletedFalse(String productId, String branchId);
 
+    // Lấy BranchProduct của nhiều productId trong cùng chi nhánh ($in) — dùng khi resolve các dòng đơn hàng
+    List<BranchProduct> findByProductIdInAndBranchIdAndDeletedFalse(Collection<String> productIds, String branchId);
+
+    // Lấy nhiều BranchProduct theo ID trong cùng shop/chi nhánh ($in) — dùng khi xuất/nhập kho theo đơn
+    List<BranchProduct> findByIdInAndShopIdAndBranchIdAndDeletedFalse(Collection<String> ids, String shopId, String branchId);
+
     // Tìm BranchProduct theo ID của BranchProduct, shopId và branchId
     Optional<BranchProduct> findByIdAndShopIdAndBranchIdAndDeletedFalse(String id, String shopId, String branchId);
 
     // Tìm tất cả BranchProduct trong một shop và branch cụ thể
     Page<BranchProduct> findByShopIdAndBranchIdAndDeletedFalse(String shopId, String branchId, Pageable pageable);
 
+    // Duyệt BranchProduct của chi nhánh bằng cursor (export streaming) — Stream phải được đóng sau khi dùng
+    Stream<BranchProduct> streamByShopIdAndBranchIdAndDeletedFalse(String shopId, String branchId);
+
     // Tìm tất cả BranchProduct trong một shop (không lọc theo branchId)
     Page<BranchProduct> findByShopIdAndDeletedFalse(String shopId, Pageable pageable);
 
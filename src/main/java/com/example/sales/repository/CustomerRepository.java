@@ -4,6 +4,7 @@ package com.example.sales.repository;
 import com.example.sales.model.Customer;
 import org.springframework.data.mongodb.repository.MongoRepository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -12,4 +13,6 @@ public interface CustomerRepository extends MongoRepository<Customer, String> {
     List<Customer> findByShopIdAndBranchIdAndDeletedFalse(String shopId, String branchId);
 
     Optional<Customer> findByIdAndDeletedFalse(String id);
+
+    List<Customer> findByIdInAndDeletedFalse(Collection<String> ids);
 }
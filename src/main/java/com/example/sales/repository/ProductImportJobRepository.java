@@ -0,0 +1,13 @@
+// File: src/main/java/com/example/sales/repository/ProductImportJobRepository.java
+package com.example.sales.repository;
+
+import com.example.sales.model.ProductImportJob;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+@Repository
+public interface ProductImportJobRepository extends MongoRepository<ProductImportJob, String> {
+    Optional<ProductImportJob> findByIdAndShopId(String id, String shopId);
+}
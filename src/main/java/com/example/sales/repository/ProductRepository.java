@@ -7,8 +7,10 @@ import org.springframework.data.domain.Pageable;
 import org.springframework.data.mongodb.repository.MongoRepository;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface ProductRepository extends MongoRepository<Product, String> {
@@ -16,15 +18,27 @@ public interface ProductRepository extends MongoRepository<Product, String> {
     // Tìm Product theo ID và ShopId
     Optional<Product> findByIdAndShopIdAndDeletedFalse(String id, String shopId);
 
+    // Lấy nhiều Product của shop trong một lần ($in) — dùng khi resolve các dòng đơn hàng
+    List<Product> findByIdInAndShopIdAndDeletedFalse(Collection<String> ids, String shopId);
+
+    // Lấy nhiều Product theo id ($in) — enrichment dòng đơn cho cả trang đơn hàng
+    List<Product> findByIdInAndDeletedFalse(Collection<String> ids);
+
     // Lấy tất cả Product của shop (cấp shop, không phân biệt chi nhánh)
     Page<Product> findByShopIdAndDeletedFalse(String shopId, Pageable pageable);
 
+    // Duyệt Product của shop bằng cursor (export streaming) — Stream phải được đóng sau khi dùng
+    Stream<Product> streamByShopIdAndDeletedFalse(String shopId);
+
     // Lấy toàn bộ Product (không phân trang) — dùng khi cần seed BranchProduct cho branch mới
     List<Product> findAllByShopIdAndDeletedFalse(String shopId);
 
     // Tìm Product theo ShopId và SKU
     Optional<Product> findByShopIdAndSkuAndDeletedFalse(String shopId, String sku);
 
+    // Lấy nhiều Product theo SKU trong một lần ($in) — dùng khi import Excel theo lô
+    List<Product> findByShopIdAndSkuInAndDeletedFalse(String shopId, Collection<String> skus);
+
     // Tìm Product theo ShopId và Barcode
     Optional<Product> findByShopIdAndBarcodeAndDeletedFalse(String shopId, String barcode);
 
@@ -7,14 +7,19 @@ import org.springframework.data.domain.Pageable;
 import org.springframework.data.mongodb.repository.MongoRepository;
 import org.springframework.data.mongodb.repository.Query;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 public interface PromotionRepository extends MongoRepository<Promotion, String> {
     List<Promotion> findByShopIdAndDeletedFalse(String shopId);
 
+    List<Promotion> findByShopIdAndActiveTrueAndDeletedFalse(String shopId);
+
     Optional<Promotion> findByIdAndDeletedFalse(String id);
 
+    List<Promotion> findByIdInAndDeletedFalse(Collection<String> ids);
+
     Page<Promotion> findByShopIdAndDeletedFalse(String shopId, Pageable pageable);
 
     @Query("{ 'shopId': ?0, '$or': [ { 'branchId': ?1 }, { 'branchId': null } ], 'deleted': false }")
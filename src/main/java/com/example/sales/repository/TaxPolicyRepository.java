@@ -71,5 +71,7 @@ public interface TaxPolicyRepository extends MongoRepository<TaxPolicy, String>
 
 
     List<TaxPolicy> findAllByShopIdOrderByEffectiveFromDesc(String shopId);
+
+    List<TaxPolicy> findByShopIdAndActiveTrue(String shopId);
 }
 
@@ -0,0 +1,31 @@
+// File: src/main/java/com/example/sales/scheduler/BroadcastResumeScheduler.java
+package com.example.sales.scheduler;
+
+import com.example.sales.service.admin.BroadcastDeliveryService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Quét broadcast SENDING không có node nào giữ lease (node gửi chết / restart giữa chừng, hoặc pool
+ * broadcast từng đầy) và đưa lại vào hàng đợi — job gửi tiếp từ cursor đã lưu, không gửi lại từ đầu.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class BroadcastResumeScheduler {
+
+    private final BroadcastDeliveryService deliveryService;
+
+    @Scheduled(fixedDelayString = "${app.broadcast.resume-interval:1m}",
+            initialDelayString = "${app.broadcast.resume-interval:1m}")
+    public void resumeAbandonedBroadcasts() {
+        List<String> ids = deliveryService.findAbandoned();
+        if (ids.isEmpty()) return;
+        log.info("[Scheduler] gửi tiếp {} broadcast bị bỏ dở: {}", ids.size(), ids);
+        ids.forEach(deliveryService::submit);
+    }
+}
@@ -40,16 +40,16 @@ public class PlanExpiryScheduler {
         for (Subscription sub : trialExpired) {
             log.info("[Scheduler] TRIAL kết thúc cho shop {} (trialEndsAt={})",
                     sub.getShopId(), sub.getTrialEndsAt());
-            subscriptionService.markExpired(sub, true);
         }
+        subscriptionService.markExpiredAll(trialExpired, true);
 
         List<Subscription> activeExpired = subscriptionRepository
                 .findByStatusAndCurrentPeriodEndBefore(SubscriptionStatus.ACTIVE, now);
         for (Subscription sub : activeExpired) {
             log.info("[Scheduler] ACTIVE hết hạn cho shop {} (periodEnd={})",
                     sub.getShopId(), sub.getCurrentPeriodEnd());
-            subscriptionService.markExpired(sub, false);
         }
+        subscriptionService.markExpiredAll(activeExpired, false);
 
         if (!trialExpired.isEmpty() || !activeExpired.isEmpty()) {
             log.info("[Scheduler] đã expire {} TRIAL + {} ACTIVE",
@@ -17,6 +17,7 @@ import org.springframework.stereotype.Component;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 
@@ -34,6 +35,8 @@ import java.util.Optional;
 public class PlanReminderScheduler {
 
     private static final int[] REMIND_DAY_OFFSETS = { 3, 1 };
+    /** Số nhắc nhở tối đa mỗi lần dispatchAll. */
+    static final int DISPATCH_CHUNK_SIZE = 100;
 
     private final SubscriptionRepository subscriptionRepository;
     private final ShopRepository shopRepository;
@@ -43,35 +46,63 @@ public class PlanReminderScheduler {
     public void remindExpiringSubscriptions() {
         LocalDate today = LocalDate.now();
 
+        List<NotificationEnvelope> reminders = new ArrayList<>();
         List<Subscription> active = subscriptionRepository.findByStatus(SubscriptionStatus.ACTIVE);
         for (Subscription sub : active) {
-            remindIfMatchesOffset(sub, sub.getCurrentPeriodEnd(), today, false);
+            collect(reminders, sub, sub.getCurrentPeriodEnd(), today, false);
         }
         List<Subscription> trials = subscriptionRepository.findByStatus(SubscriptionStatus.TRIAL);
         for (Subscription sub : trials) {
-            remindIfMatchesOffset(sub, sub.getTrialEndsAt(), today, true);
+            collect(reminders, sub, sub.getTrialEndsAt(), today, true);
         }
+        flush(reminders);
     }
 
-    private void remindIfMatchesOffset(Subscription sub,
-                                       LocalDateTime dueAt,
-                                       LocalDate today,
-                                       boolean isTrial) {
-        if (dueAt == null || sub.getOwnerId() == null) return;
+    /** Lỗi của một shop chỉ bỏ nhắc của shop đó; đủ chunk thì gửi ngay để lỗi về sau không kéo theo nhắc đã dựng. */
+    private void collect(List<NotificationEnvelope> reminders, Subscription sub, LocalDateTime dueAt,
+                         LocalDate today, boolean isTrial) {
+        try {
+            reminderIfMatchesOffset(sub, dueAt, today, isTrial).ifPresent(reminders::add);
+        } catch (Exception ex) {
+            log.warn("Dựng nhắc hết hạn cho shop {} lỗi: {}", sub.getShopId(), ex.getMessage());
+        }
+        if (reminders.size() >= DISPATCH_CHUNK_SIZE) {
+            flush(reminders);
+        }
+    }
+
+    /** Một lượt dispatch cho cả chunk: dedupe + in-app + email (nhóm theo template). */
+    private void flush(List<NotificationEnvelope> reminders) {
+        if (reminders.isEmpty()) return;
+        try {
+            notificationDispatcher.dispatchAll(reminders);
+        } catch (Exception ex) {
+            log.warn("Gửi {} nhắc hết hạn lỗi: {}", reminders.size(), ex.getMessage());
+        }
+        reminders.clear();
+    }
+
+    private Optional<NotificationEnvelope> reminderIfMatchesOffset(Subscription sub,
+                                                                   LocalDateTime dueAt,
+                                                                   LocalDate today,
+                                                                   boolean isTrial) {
+        if (dueAt == null || sub.getOwnerId() == null) return Optional.empty();
         LocalDate expiryDate = dueAt.toLocalDate();
         long daysUntilExpiry = ChronoUnit.DAYS.between(today, expiryDate);
         int matchingOffset = matchesReminderOffset(daysUntilExpiry);
-        if (matchingOffset < 0) return;
+        if (matchingOffset < 0) return Optional.empty();
 
         Optional<Shop> shopOpt = shopRepository.findByIdAndDeletedFalse(sub.getShopId());
-        if (shopOpt.isEmpty()) return;
+        if (shopOpt.isEmpty()) return Optional.empty();
         Shop shop = shopOpt.get();
 
         boolean isUrgent = matchingOffset == 1;
         String title = buildTitle(isTrial, isUrgent);
         String message = buildMessage(shop.getName(), expiryDate, isTrial, isUrgent, matchingOffset);
 
-        notificationDispatcher.dispatch(NotificationEnvelope.builder()
+        log.info("📧 Nhắc shop {} (T-{} ngày) hết hạn {} ({})",
+                shop.getName(), matchingOffset, expiryDate, isTrial ? "TRIAL" : "ACTIVE");
+        return Optional.of(NotificationEnvelope.builder()
                 .type(NotificationType.BILLING_PLAN_EXPIRING_SOON)
                 .shopId(sub.getShopId())
                 .recipient(sub.getOwnerId())
@@ -86,8 +117,6 @@ public class PlanReminderScheduler {
                 .dedupeKey("BILLING_EXPIRING_SOON:T-" + matchingOffset + ":"
                         + sub.getShopId() + ":" + expiryDate)
                 .build());
-        log.info("📧 Nhắc shop {} (T-{} ngày) hết hạn {} ({})",
-                shop.getName(), matchingOffset, expiryDate, isTrial ? "TRIAL" : "ACTIVE");
     }
 
     private int matchesReminderOffset(long daysUntilExpiry) {
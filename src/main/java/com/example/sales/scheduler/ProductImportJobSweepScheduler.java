@@ -0,0 +1,23 @@
+// File: src/main/java/com/example/sales/scheduler/ProductImportJobSweepScheduler.java
+package com.example.sales.scheduler;
+
+import com.example.sales.service.ProductImportJobService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Đánh dấu FAILED các job import bị bỏ dở (node chạy job chết / restart): không còn hiện "đang chạy"
+ * mãi với client và có finishedAt để TTL dọn. Lần quét đầu chạy ngay sau khởi động.
+ */
+@Component
+@RequiredArgsConstructor
+public class ProductImportJobSweepScheduler {
+
+    private final ProductImportJobService productImportJobService;
+
+    @Scheduled(fixedDelayString = "${app.product-import.sweep-interval:5m}", initialDelayString = "1m")
+    public void failStaleJobs() {
+        productImportJobService.failStaleJobs();
+    }
+}
@@ -0,0 +1,65 @@
+// File: src/main/java/com/example/sales/scheduler/SalesRollupConsistencyScheduler.java
+package com.example.sales.scheduler;
+
+import com.example.sales.config.SalesRollupProperties;
+import com.example.sales.model.Order;
+import com.example.sales.model.SalesDailyRollup;
+import com.example.sales.service.SalesRollupService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Mỗi ngày 02:30 so rollup doanh số của {@code checkDays} ngày gần nhất với aggregate trực tiếp trên
+ * {@code orders}. Bucket lệch được log và (nếu {@code autoRepair}) dựng lại — bù cho các bucket bẩn bị mất
+ * khi node dừng giữa chừng hoặc đơn bị sửa ngoài repository.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class SalesRollupConsistencyScheduler {
+
+    private final MongoTemplate mongoTemplate;
+    private final SalesRollupService salesRollupService;
+    private final SalesRollupProperties properties;
+
+    @Scheduled(cron = "0 30 2 * * *")
+    public void checkRecentRollups() {
+        LocalDate to = LocalDate.now();
+        LocalDate from = to.minusDays(Math.max(1, properties.getCheckDays()) - 1L);
+
+        Set<String> shopIds = new TreeSet<>(mongoTemplate.findDistinct(
+                new Query(Criteria.where("createdAt").gte(from.atStartOfDay())), "shopId", Order.class, String.class));
+        shopIds.addAll(mongoTemplate.findDistinct(
+                new Query(Criteria.where("date").gte(from)), "shopId", SalesDailyRollup.class, String.class));
+
+        int mismatched = 0;
+        for (String shopId : shopIds) {
+            try {
+                Set<SalesRollupService.DayBucket> buckets = salesRollupService.findInconsistentBuckets(shopId, from, to);
+                for (SalesRollupService.DayBucket bucket : buckets) {
+                    log.warn("[Scheduler] rollup lệch so với orders: {}", bucket);
+                    if (properties.isAutoRepair()) {
+                        salesRollupService.rebuildBucket(bucket);
+                    }
+                }
+                mismatched += buckets.size();
+            } catch (RuntimeException e) {
+                log.error("[Scheduler] lỗi kiểm tra rollup shop {}: {}", shopId, e.getMessage(), e);
+            }
+        }
+
+        if (mismatched > 0) {
+            log.info("[Scheduler] rollup doanh số: {} bucket lệch trong {} shop ({} → {}){}",
+                    mismatched, shopIds.size(), from, to, properties.isAutoRepair() ? ", đã dựng lại" : "");
+        }
+    }
+}
@@ -49,16 +49,19 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         }
 
         String token = authHeader.substring(7);
-        if (!jwtUtil.isTokenValid(token)) {
+        // Một lần verify (hoặc một lookup cache) cho cả request
+        Optional<VerifiedToken> verified = jwtUtil.verify(token);
+        if (verified.isEmpty()) {
             log.warn("JWT không hợp lệ hoặc hết hạn: {}", token);
             filterChain.doFilter(request, response);
             return;
         }
 
         if (SecurityContextHolder.getContext().getAuthentication() == null) {
-            String userId = jwtUtil.extractUserId(token);
-            String email = jwtUtil.extractEmail(token);
-            String role = jwtUtil.extractRole(token);
+            VerifiedToken claims = verified.get();
+            String userId = claims.userId();
+            String email = claims.email();
+            String role = claims.role();
 
             // Chỉ load admin permissions từ DB khi role = ROLE_ADMIN. User thường
             // bỏ qua để tránh DB hit cho mỗi request; admin endpoint mới cần.
@@ -79,10 +82,10 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
                     adminPerms,
                     List.of(new SimpleGrantedAuthority(role))
             );
-            String impersonatedBy = jwtUtil.extractImpersonatedBy(token);
+            String impersonatedBy = claims.impersonatedBy();
             if (impersonatedBy != null && !impersonatedBy.isBlank()) {
                 userDetails.setImpersonatedBy(impersonatedBy);
-                userDetails.setImpersonatorEmail(jwtUtil.extractImpersonatorEmail(token));
+                userDetails.setImpersonatorEmail(claims.impersonatorEmail());
             }
             UsernamePasswordAuthenticationToken authToken =
                     new UsernamePasswordAuthenticationToken(userDetails, null, userDetails.getAuthorities());
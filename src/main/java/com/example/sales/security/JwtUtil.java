@@ -2,6 +2,9 @@
 package com.example.sales.security;
 
 import com.example.sales.model.User;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
 import io.jsonwebtoken.*;
 import io.jsonwebtoken.security.Keys;
 import jakarta.annotation.PostConstruct;
@@ -10,7 +13,9 @@ import org.springframework.stereotype.Component;
 
 import java.nio.charset.StandardCharsets;
 import java.security.Key;
+import java.time.Duration;
 import java.util.Date;
+import java.util.Optional;
 
 @Component
 public class JwtUtil {
@@ -19,6 +24,17 @@ public class JwtUtil {
     private String jwtSecret;
 
     private Key key;
+    private JwtParser parser;
+
+    /**
+     * Token đã xác thực → claims, để client gọi lặp (POS poll vài giây một lần) không phải verify HMAC lại.
+     * Mỗi entry hết hạn đúng lúc {@code exp} của token; không cache token không hợp lệ.
+     */
+    private final Cache<String, VerifiedToken> verifiedTokens = Caffeine.newBuilder()
+            .maximumSize(50_000)
+            .expireAfter(Expiry.creating((String token, VerifiedToken verified) ->
+                    Duration.ofMillis(Math.max(0, verified.expiresAtMillis() - System.currentTimeMillis()))))
+            .build();
 
     private static final long EXPIRATION_TIME = 1000 * 60 * 60 * 24; // 24h
     private static final long IMPERSONATION_EXPIRATION = 1000 * 60 * 60; // 1h
@@ -29,6 +45,9 @@ public class JwtUtil {
             throw new IllegalStateException("❌ JWT secret is missing. Please define 'app.jwt.secret' in application.properties.");
         }
         this.key = Keys.hmacShaKeyFor(jwtSecret.getBytes(StandardCharsets.UTF_8));
+        this.parser = Jwts.parserBuilder()
+                .setSigningKey(key)
+                .build();
     }
 
     public String generateToken(User user) {
@@ -60,6 +79,34 @@ public class JwtUtil {
                 .compact();
     }
 
+    /**
+     * Xác thực token một lần và trả về toàn bộ claims cần cho SecurityContext.
+     * Lần gọi sau với cùng token (chưa hết hạn) chỉ là một lookup trong cache.
+     *
+     * @return empty nếu token sai chữ ký, hết hạn hoặc không đọc được.
+     */
+    public Optional<VerifiedToken> verify(String token) {
+        VerifiedToken cached = verifiedTokens.getIfPresent(token);
+        if (cached != null && cached.expiresAtMillis() > System.currentTimeMillis()) {
+            return Optional.of(cached);
+        }
+        try {
+            Claims claims = getClaims(token);
+            Date exp = claims.getExpiration();
+            VerifiedToken verified = new VerifiedToken(
+                    claims.getSubject(),
+                    claims.get("email", String.class),
+                    claims.get("role", String.class),
+                    claims.get("impersonatedBy", String.class),
+                    claims.get("impersonatorEmail", String.class),
+                    exp != null ? exp.getTime() : System.currentTimeMillis() + EXPIRATION_TIME);
+            verifiedTokens.put(token, verified);
+            return Optional.of(verified);
+        } catch (JwtException | IllegalArgumentException e) {
+            return Optional.empty();
+        }
+    }
+
     public String extractUserId(String token) {
         return getClaims(token).getSubject();
     }
@@ -89,19 +136,11 @@ public class JwtUtil {
     }
 
     public boolean isTokenValid(String token) {
-        try {
-            getClaims(token);
-            return true;
-        } catch (JwtException e) {
-            return false;
-        }
+        return verify(token).isPresent();
     }
 
     private Claims getClaims(String token) {
-        return Jwts.parserBuilder()
-                .setSigningKey(key)
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
+        // JwtParser của jjwt là immutable/thread-safe → dùng chung một instance
+        return parser.parseClaimsJws(token).getBody();
     }
 }
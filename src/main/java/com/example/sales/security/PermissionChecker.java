@@ -1,31 +1,36 @@
 // File: src/main/java/com/example/sales/security/PermissionChecker.java
 package com.example.sales.security;
 
+import com.example.sales.cache.ShopUserCache;
 import com.example.sales.constant.Permission;
 import com.example.sales.constant.ShopRole;
-import com.example.sales.repository.BranchRepository;
-import com.example.sales.repository.ShopUserRepository;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Component;
 
-import java.util.Set;
-
+/**
+ * Kiểm tra role / permission của user trong shop qua {@link ShopUserCache#getAccess} (cache role + bitset),
+ * không truy vấn shop_users ở mỗi request. ShopUserService evict khi role / quyền thay đổi.
+ */
 @Component
 @RequiredArgsConstructor
 public class PermissionChecker {
 
-    private final ShopUserRepository shopUserRepository;
+    private final ShopUserCache shopUserCache;
 
     public boolean hasRole(String shopId, String userId, ShopRole... roles) {
-        Set<ShopRole> allowed = Set.of(roles);
-        return shopUserRepository.findByShopIdAndUserIdAndDeletedFalse(shopId, userId)
-                .map(user -> allowed.contains(user.getRole()))
-                .orElse(false);
+        ShopRole actual = shopUserCache.getAccess(shopId, userId).role();
+        if (actual == null) {
+            return false;
+        }
+        for (ShopRole role : roles) {
+            if (role == actual) {
+                return true;
+            }
+        }
+        return false;
     }
 
     public boolean hasPermission(String shopId, String userId, Permission permission) {
-        return shopUserRepository.findByShopIdAndUserIdAndDeletedFalse(shopId, userId)
-                .map(shopUser -> shopUser.getPermissions() != null && shopUser.getPermissions().contains(permission))
-                .orElse(false);
+        return shopUserCache.getAccess(shopId, userId).has(permission);
     }
 }
@@ -18,6 +18,8 @@ import org.springframework.web.bind.annotation.RequestParam;
 
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 @Aspect
 @Component
@@ -27,23 +29,20 @@ public class RequirePermissionAspect {
 
     private final PermissionChecker permissionChecker;
 
+    /**
+     * Vị trí tham số user / shopId và permission yêu cầu, phân tích bằng reflection một lần cho mỗi method
+     * (theo class target); request sau chỉ đọc args theo index.
+     */
+    private final Map<BindingKey, PermissionBinding> bindings = new ConcurrentHashMap<>();
+
     @Before("@annotation(com.example.sales.security.RequirePermission)")
-    public void checkPermission(JoinPoint joinPoint) throws NoSuchMethodException {
+    public void checkPermission(JoinPoint joinPoint) {
         MethodSignature signature = (MethodSignature) joinPoint.getSignature();
-        Method method = signature.getMethod();
-
-        if (method.getDeclaringClass().isInterface()) {
-            method = joinPoint.getTarget().getClass()
-                    .getMethod(method.getName(), method.getParameterTypes());
-        }
+        Class<?> targetClass = joinPoint.getTarget() != null ? joinPoint.getTarget().getClass() : null;
+        PermissionBinding binding = bindings.computeIfAbsent(
+                new BindingKey(targetClass, signature.getMethod()), k -> resolveBinding(k, signature));
 
-        RequirePermission annotation = method.getAnnotation(RequirePermission.class);
-        Permission requiredPermission = annotation.value();
-
-        Object[] args = joinPoint.getArgs();
-        Annotation[][] paramAnnotations = method.getParameterAnnotations();
-
-        ExtractedParams extracted = extractParams(args, paramAnnotations, signature);
+        ExtractedParams extracted = binding.extract(joinPoint.getArgs());
 
         if (extracted.user == null) {
             log.warn("Thiếu thông tin người dùng: user={}", (Object) null);
@@ -56,50 +55,70 @@ public class RequirePermissionAspect {
         }
 
         boolean hasPermission = permissionChecker.hasPermission(
-                extracted.shopId, extracted.user.getId(), requiredPermission);
+                extracted.shopId, extracted.user.getId(), binding.permission());
 
         if (!hasPermission) {
             log.warn("User {} bị từ chối quyền {} tại shop={}",
-                    extracted.user.getId(), requiredPermission, extracted.shopId);
+                    extracted.user.getId(), binding.permission(), extracted.shopId);
             throw new BusinessException(ApiCode.ACCESS_DENIED);
         }
     }
 
-    private ExtractedParams extractParams(Object[] args, Annotation[][] paramAnnotations, MethodSignature signature) {
-        CustomUserDetails user = null;
-        String shopId = null;
+    private PermissionBinding resolveBinding(BindingKey key, MethodSignature signature) {
+        Method method = key.method();
+        if (method.getDeclaringClass().isInterface() && key.targetClass() != null) {
+            try {
+                method = key.targetClass().getMethod(method.getName(), method.getParameterTypes());
+            } catch (NoSuchMethodException e) {
+                throw new IllegalStateException("Không tìm thấy method " + method.getName() + " trên " + key.targetClass(), e);
+            }
+        }
 
+        RequirePermission annotation = method.getAnnotation(RequirePermission.class);
+        Annotation[][] paramAnnotations = method.getParameterAnnotations();
         String[] paramNames = signature.getParameterNames();
 
-        for (int i = 0; i < args.length; i++) {
-            for (Annotation annotation : paramAnnotations[i]) {
-                if (annotation instanceof AuthenticationPrincipal && args[i] instanceof CustomUserDetails details) {
-                    user = details;
-                } else if (annotation instanceof PathVariable pv) {
-                    String marker = pathVariableName(pv, paramNames[i]);
-                    if ("shopId".equals(marker)) {
-                        shopId = args[i] != null ? String.valueOf(args[i]) : null;
-                    }
-                } else if (annotation instanceof RequestParam rp) {
-                    String marker = requestParamName(rp, paramNames[i]);
-                    if ("shopId".equals(marker)) {
-                        shopId = args[i] != null ? String.valueOf(args[i]) : null;
-                    }
+        int principalIndex = -1;
+        int shopIdIndex = -1;
+        for (int i = 0; i < paramAnnotations.length; i++) {
+            String paramName = paramNames != null ? paramNames[i] : null;
+            for (Annotation a : paramAnnotations[i]) {
+                if (a instanceof AuthenticationPrincipal) {
+                    principalIndex = i;
+                } else if (a instanceof PathVariable pv && "shopId".equals(pathVariableName(pv, paramName))) {
+                    shopIdIndex = i;
+                } else if (a instanceof RequestParam rp && "shopId".equals(requestParamName(rp, paramName))) {
+                    shopIdIndex = i;
                 }
             }
         }
+        return new PermissionBinding(annotation.value(), principalIndex, shopIdIndex);
+    }
+
+    private record BindingKey(Class<?> targetClass, Method method) {
+    }
+
+    private record PermissionBinding(Permission permission, int principalIndex, int shopIdIndex) {
 
-        if (user == null) {
-            Authentication auth = SecurityContextHolder.getContext().getAuthentication();
-            if (auth != null && auth.getPrincipal() instanceof CustomUserDetails details) {
+        ExtractedParams extract(Object[] args) {
+            CustomUserDetails user = null;
+            if (principalIndex >= 0 && args[principalIndex] instanceof CustomUserDetails details) {
                 user = details;
             }
-        }
+            String shopId = shopIdIndex >= 0 && args[shopIdIndex] != null ? String.valueOf(args[shopIdIndex]) : null;
 
-        log.debug("Extracted params: user={}, shopId={}",
-                user != null ? user.getId() : null, shopId);
+            if (user == null) {
+                Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+                if (auth != null && auth.getPrincipal() instanceof CustomUserDetails details) {
+                    user = details;
+                }
+            }
 
-        return new ExtractedParams(user, shopId);
+            log.debug("Extracted params: user={}, shopId={}",
+                    user != null ? user.getId() : null, shopId);
+
+            return new ExtractedParams(user, shopId);
+        }
     }
 
     private record ExtractedParams(CustomUserDetails user, String shopId) {
@@ -1,13 +1,12 @@
 // File: src/main/java/com/example/sales/security/SubscriptionGuardInterceptor.java
 package com.example.sales.security;
 
+import com.example.sales.cache.SubscriptionStatusCache;
 import com.example.sales.constant.ApiCode;
 import com.example.sales.constant.SubscriptionStatus;
 import com.example.sales.constant.UserRole;
 import com.example.sales.exception.BusinessException;
 import com.example.sales.model.Shop;
-import com.example.sales.model.Subscription;
-import com.example.sales.repository.SubscriptionRepository;
 import com.example.sales.service.ShopContextResolver;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
@@ -48,7 +47,7 @@ public class SubscriptionGuardInterceptor implements HandlerInterceptor {
             "/api/uploads/"
     );
 
-    private final SubscriptionRepository subscriptionRepository;
+    private final SubscriptionStatusCache subscriptionStatusCache;
     private final ShopContextResolver shopContextResolver;
 
     @Override
@@ -74,13 +73,14 @@ public class SubscriptionGuardInterceptor implements HandlerInterceptor {
             return true;
         }
 
-        Subscription sub = subscriptionRepository.findByShopId(shop.getId()).orElse(null);
-        if (sub == null) return true; // chưa có subscription → coi như TRIAL, cho qua.
+        // Đọc từ cache trong bộ nhớ (độ trễ tối đa xem SubscriptionStatusCache)
+        SubscriptionStatus status = subscriptionStatusCache.getStatus(shop.getId());
+        if (status == null) return true; // chưa có subscription → coi như TRIAL, cho qua.
 
-        if (sub.getStatus() == SubscriptionStatus.EXPIRED
-                || sub.getStatus() == SubscriptionStatus.CANCELLED) {
+        if (status == SubscriptionStatus.EXPIRED
+                || status == SubscriptionStatus.CANCELLED) {
             log.info("[SubscriptionGuard] chặn {} {} shop={} status={}",
-                    method, path, shop.getId(), sub.getStatus());
+                    method, path, shop.getId(), status);
             throw new BusinessException(ApiCode.SUBSCRIPTION_EXPIRED);
         }
         return true;
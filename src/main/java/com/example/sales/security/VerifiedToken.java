@@ -0,0 +1,16 @@
+// File: src/main/java/com/example/sales/security/VerifiedToken.java
+package com.example.sales.security;
+
+/**
+ * Claims của một JWT đã xác thực chữ ký + hạn dùng, đọc một lần rồi dùng lại trong request
+ * và trong cache của {@link JwtUtil#verify(String)}.
+ */
+public record VerifiedToken(
+        String userId,
+        String email,
+        String role,
+        String impersonatedBy,
+        String impersonatorEmail,
+        long expiresAtMillis
+) {
+}
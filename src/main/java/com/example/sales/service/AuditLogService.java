@@ -1,8 +1,11 @@
 // File: src/main/java/com/example/sales/service/AuditLogService.java
 package com.example.sales.service;
 
+import com.example.sales.config.AuditLogProperties;
+import com.example.sales.config.AuditorAwareImpl;
 import com.example.sales.model.AuditLog;
 import com.example.sales.repository.AuditLogRepository;
+import com.example.sales.service.audit.AuditLogWriter;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 
@@ -11,7 +14,14 @@ import org.springframework.stereotype.Service;
 public class AuditLogService {
 
     private final AuditLogRepository auditLogRepository;
+    private final AuditLogWriter auditLogWriter;
+    private final AuditLogProperties auditLogProperties;
+    private final AuditorAwareImpl auditorAware;
 
+    /**
+     * Ghi audit log. Mặc định đưa vào {@link AuditLogWriter} (ghi nền theo lô) để không chặn request;
+     * {@code app.audit.async.enabled=false} ghi đồng bộ như cũ.
+     */
     public void log(String userId, String shopId, String targetId, String targetType, String action, String description) {
         AuditLog log = AuditLog.builder()
                 .userId(userId)
@@ -22,6 +32,12 @@ public class AuditLogService {
                 .description(description)
                 .build();
 
-        auditLogRepository.save(log);
+        if (!auditLogProperties.isEnabled()) {
+            auditLogRepository.save(log);
+            return;
+        }
+        // Thread nền không có SecurityContext → gán createdBy từ request hiện tại
+        auditorAware.getCurrentAuditor().ifPresent(log::setCreatedBy);
+        auditLogWriter.submit(log);
     }
 }
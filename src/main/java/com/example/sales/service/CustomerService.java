@@ -16,6 +16,7 @@ import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.time.format.DateTimeFormatter;
 import java.util.List;
@@ -97,16 +98,16 @@ public class CustomerService {
                 String.format("Xoá mềm khách hàng: %s (%s)", customer.getName(), customer.getPhone()));
     }
 
-    public ResponseEntity<byte[]> exportCustomers(String shopId, String branchId, CustomerSearchRequest request) {
-        List<Customer> customers = customerSearchHelper.exportAll(shopId, branchId, request);
+    public ResponseEntity<StreamingResponseBody> exportCustomers(String shopId, String branchId, CustomerSearchRequest request) {
         DateTimeFormatter df = DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm");
 
-        return excelExportService.exportExcel(
+        return excelExportService.exportExcelStreaming(
                 "customers.xlsx",
                 "Khách hàng",
                 List.of("Tên", "Số điện thoại", "Email", "Địa chỉ", "Ghi chú", "Ngày tạo"),
-                customers,
-                c -> List.of(
+                null,
+                () -> customerSearchHelper.streamAll(shopId, branchId, request),
+                (Customer c) -> List.of(
                         safe(c.getName()),
                         safe(c.getPhone()),
                         safe(c.getEmail()),
@@ -1,21 +1,28 @@
 // File: src/main/java/com/example/sales/service/ExcelExportService.java
 package com.example.sales.service;
 
-import com.example.sales.cache.ProductCache;
+import com.example.sales.cache.ProductMapper;
 import com.example.sales.dto.product.ProductResponse;
 import com.example.sales.export.GenericExcelExporter;
+import com.example.sales.model.BranchProduct;
+import com.example.sales.model.Product;
+import com.example.sales.model.Shop;
+import com.example.sales.repository.BranchProductRepository;
+import com.example.sales.repository.ProductRepository;
+import com.example.sales.repository.ShopRepository;
 import lombok.RequiredArgsConstructor;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageRequest;
-import org.springframework.data.domain.Pageable;
 import org.springframework.http.*;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.io.ByteArrayOutputStream;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.*;
 import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Xuất sản phẩm ra file Excel với cấu trúc cột nhất quán với ExcelImportService:
@@ -37,12 +44,21 @@ import java.util.function.Function;
  *   Col 14  Mô tả               (Product.description)
  *   Col 15  Trạng thái SP       (Product.active)
  *   Col 16  Trạng thái chi nhánh (BranchProduct.activeInBranch)
+ *
+ * Export sản phẩm chạy ở chế độ streaming: đọc Mongo cursor, ghi SXSSF thẳng ra response
+ * ({@link StreamingResponseBody}), không gom toàn bộ sản phẩm vào List.
  */
 @Service
 @RequiredArgsConstructor
 public class ExcelExportService {
 
-    private final ProductCache productCache;
+    /** Số BranchProduct gom lại để nạp Product tương ứng bằng một truy vấn $in. */
+    static final int PRODUCT_LOOKUP_CHUNK = 500;
+
+    private final ProductRepository productRepository;
+    private final BranchProductRepository branchProductRepository;
+    private final ShopRepository shopRepository;
+    private final ProductMapper productMapper;
 
     private static final String PRODUCT_NOTE_ROW = "* Cột đỏ = bắt buộc (Tên sản phẩm, Danh mục)";
 
@@ -96,27 +112,14 @@ public class ExcelExportService {
     /**
      * Xuất sản phẩm cho một chi nhánh cụ thể hoặc toàn shop (khi branchId == null).
      * Khi không có branchId, các cột chi nhánh (giá bán chi nhánh, số lượng...) sẽ để trống.
+     * Dữ liệu được đọc và ghi dần khi response được gửi đi.
      */
-    public ResponseEntity<byte[]> exportProducts(String shopId, String branchId) {
-        List<ProductResponse> allProducts = fetchAll(shopId, branchId);
-
-        try (ByteArrayOutputStream bos = new ByteArrayOutputStream()) {
-            GenericExcelExporter<ProductResponse> exporter = new GenericExcelExporter<>();
-            exporter.export("Products", PRODUCT_HEADERS, PRODUCT_NOTE_ROW, allProducts, PRODUCT_ROW_MAPPER, bos);
-            byte[] content = bos.toByteArray();
-
-            String filename = StringUtils.hasText(branchId)
-                    ? "products_branch_" + branchId + ".xlsx"
-                    : "products_shop_" + shopId + ".xlsx";
-
-            return ResponseEntity.ok()
-                    .header(HttpHeaders.CONTENT_DISPOSITION,
-                            ContentDisposition.attachment().filename(filename).build().toString())
-                    .contentType(MediaType.APPLICATION_OCTET_STREAM)
-                    .body(content);
-        } catch (Exception e) {
-            throw new RuntimeException("Không thể export file Excel sản phẩm", e);
-        }
+    public ResponseEntity<StreamingResponseBody> exportProducts(String shopId, String branchId) {
+        String filename = StringUtils.hasText(branchId)
+                ? "products_branch_" + branchId + ".xlsx"
+                : "products_shop_" + shopId + ".xlsx";
+        return exportExcelStreaming(filename, "Products", PRODUCT_HEADERS, PRODUCT_NOTE_ROW,
+                () -> streamProducts(shopId, branchId), PRODUCT_ROW_MAPPER);
     }
 
     /**
@@ -142,24 +145,77 @@ public class ExcelExportService {
         }
     }
 
+    /**
+     * Phiên bản streaming của {@link #exportExcel}: {@code rows} chỉ được mở (vd. Mongo cursor) khi
+     * response bắt đầu ghi và được đóng sau khi ghi xong, heap không tăng theo số dòng.
+     */
+    public <T> ResponseEntity<StreamingResponseBody> exportExcelStreaming(String fileName,
+                                                                          String sheetName,
+                                                                          List<String> headers,
+                                                                          String noteRow,
+                                                                          Supplier<Stream<T>> rows,
+                                                                          Function<T, List<String>> rowMapper) {
+        StreamingResponseBody body = out -> {
+            try (Stream<T> data = rows.get()) {
+                new GenericExcelExporter<T>().exportStreaming(sheetName, headers, noteRow, data, rowMapper, out);
+            }
+        };
+
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        ContentDisposition.attachment().filename(fileName).build().toString())
+                .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                .body(body);
+    }
+
     // ─────────────────────────────────────────────────────────────────────────
     // Helpers
     // ─────────────────────────────────────────────────────────────────────────
 
-    private List<ProductResponse> fetchAll(String shopId, String branchId) {
-        List<ProductResponse> result = new ArrayList<>();
-        Pageable pageable = PageRequest.of(0, 500);
-        Page<ProductResponse> page;
-        do {
-            if (StringUtils.hasText(branchId)) {
-                page = productCache.getAllByBranch(shopId, branchId, "", pageable);
-            } else {
-                page = productCache.getAllByShop(shopId, "", pageable);
+    private Stream<ProductResponse> streamProducts(String shopId, String branchId) {
+        Shop shop = shopRepository.findByIdAndDeletedFalse(shopId).orElse(null);
+        if (!StringUtils.hasText(branchId)) {
+            return productRepository.streamByShopIdAndDeletedFalse(shopId)
+                    .map(p -> productMapper.toResponse(null, p, shop));
+        }
+        Stream<BranchProduct> branchProducts =
+                branchProductRepository.streamByShopIdAndBranchIdAndDeletedFalse(shopId, branchId);
+        return chunked(branchProducts, PRODUCT_LOOKUP_CHUNK, chunk -> toResponses(chunk, shop));
+    }
+
+    private List<ProductResponse> toResponses(List<BranchProduct> chunk, Shop shop) {
+        Set<String> productIds = chunk.stream().map(BranchProduct::getProductId).collect(Collectors.toSet());
+        Map<String, Product> productsMap = productRepository.findAllById(productIds).stream()
+                .collect(Collectors.toMap(Product::getId, Function.identity()));
+        return chunk.stream()
+                .map(bp -> productMapper.toResponse(bp, productsMap.get(bp.getProductId()), shop))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Gom {@code source} thành từng khối {@code size} phần tử, map mỗi khối một lần rồi trải phẳng lại.
+     * Đóng stream kết quả sẽ đóng {@code source}.
+     */
+    static <S, R> Stream<R> chunked(Stream<S> source, int size, Function<List<S>, List<R>> mapper) {
+        Iterator<S> it = source.iterator();
+        Iterator<List<R>> chunks = new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return it.hasNext();
+            }
+
+            @Override
+            public List<R> next() {
+                List<S> chunk = new ArrayList<>(size);
+                while (chunk.size() < size && it.hasNext()) {
+                    chunk.add(it.next());
+                }
+                return mapper.apply(chunk);
             }
-            result.addAll(page.getContent());
-            pageable = page.hasNext() ? page.nextPageable() : null;
-        } while (pageable != null);
-        return result;
+        };
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(chunks, Spliterator.ORDERED), false)
+                .flatMap(List::stream)
+                .onClose(source::close);
     }
 
     private static String safe(String value) {
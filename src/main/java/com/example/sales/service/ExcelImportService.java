@@ -1,16 +1,28 @@
 // File: src/main/java/com/example/sales/service/ExcelImportService.java
 package com.example.sales.service;
 
+import com.example.sales.dto.product.ProductImportResult;
+
 import java.io.InputStream;
+import java.util.function.IntConsumer;
 
 public interface ExcelImportService {
     /**
-     * Nhập sản phẩm từ file Excel vào một chi nhánh cụ thể của một cửa hàng.
-     * Mỗi dòng trong file Excel sẽ tạo/cập nhật một BranchProduct và định nghĩa Product chung nếu cần.
+     * Nhập sản phẩm từ file Excel vào tất cả chi nhánh active của một cửa hàng.
+     * Mỗi dòng trong file Excel sẽ tạo/cập nhật Product chung (theo SKU) và BranchProduct ở từng chi nhánh.
      *
      * @param shopId ID của cửa hàng.
      * @param inputStream InputStream của file Excel.
-     * @return Số lượng sản phẩm (BranchProduct) được nhập/cập nhật thành công.
+     * @return Số dòng nhập thành công, số Product tạo mới / cập nhật và lỗi theo từng dòng.
+     */
+    default ProductImportResult importProducts(String shopId, InputStream inputStream) {
+        return importProducts(shopId, inputStream, null);
+    }
+
+    /**
+     * Như {@link #importProducts(String, InputStream)}, kèm callback tiến độ.
+     *
+     * @param progress Nhận số dòng dữ liệu đã xử lý sau mỗi lô (có thể null).
      */
-    int importProducts(String shopId, InputStream inputStream);
+    ProductImportResult importProducts(String shopId, InputStream inputStream, IntConsumer progress);
 }
\ No newline at end of file
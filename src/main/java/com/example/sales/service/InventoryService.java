@@ -1,10 +1,14 @@
 // File: src/main/java/com/example/sales/service/InventoryService.java
 package com.example.sales.service;
 
+import com.example.sales.dto.CursorPage;
 import com.example.sales.dto.inventory.InventoryTransactionResponse;
+import com.example.sales.model.OrderItem;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 
+import java.util.List;
+
 public interface InventoryService {
 
     /**
@@ -81,6 +85,27 @@ public interface InventoryService {
                              String branchProductId, double weight, String unit,
                              String note);
 
+    /**
+     * Xuất kho cho nhiều dòng đơn hàng trong một lần: nạp toàn bộ BranchProduct/Product
+     * bằng một truy vấn {@code $in} mỗi collection, kiểm tra đủ tồn cho tất cả dòng trước khi trừ,
+     * ghi InventoryTransaction theo lô và evict cache chi nhánh một lần.
+     * Dòng bán theo cân trừ vào {@code stockInBaseUnits}; các dòng khác trừ {@code quantity}/biến thể.
+     * Caller chỉ truyền các dòng cần điều chỉnh tồn kho.
+     *
+     * @param quantityNote Ghi chú cho dòng đếm đơn vị.
+     * @param weightNote Ghi chú cho dòng bán theo cân.
+     * @param referenceId ID tham chiếu (ID đơn hàng).
+     */
+    void exportOrderLines(String userId, String shopId, String branchId, List<OrderItem> items,
+                          String quantityNote, String weightNote, String referenceId);
+
+    /**
+     * Hoàn kho cho nhiều dòng đơn hàng trong một lần (huỷ hoặc chỉnh đơn).
+     * Cùng cách nạp/ghi theo lô như {@link #exportOrderLines}.
+     */
+    void importOrderLines(String userId, String shopId, String branchId, List<OrderItem> items,
+                          String quantityNote, String weightNote);
+
     /**
      * Lấy lịch sử giao dịch tồn kho cho một sản phẩm cụ thể.
      *
@@ -89,4 +114,13 @@ public interface InventoryService {
      * @return Trang chứa danh sách các giao dịch tồn kho.
      */
     Page<InventoryTransactionResponse> getTransactionHistory(String userId, String shopId, String branchId, String branchProductId, Pageable pageable);
-}
\ No newline at end of file
+
+    /**
+     * Lịch sử giao dịch tồn kho phân trang theo cursor (createdAt, id) thay cho offset.
+     *
+     * @param cursor    nextCursor của trang trước; null = trang đầu.
+     * @param withTotal đếm tổng số giao dịch (chỉ ở trang đầu).
+     */
+    CursorPage<InventoryTransactionResponse> getTransactionHistoryByCursor(String userId, String shopId, String branchId, String branchProductId,
+                                                                           String cursor, Integer size, boolean withTotal);
+}
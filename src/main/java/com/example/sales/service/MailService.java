@@ -5,6 +5,7 @@ import jakarta.mail.MessagingException;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.mail.MailSendException;
 import org.springframework.mail.javamail.JavaMailSender;
 import org.springframework.mail.javamail.MimeMessageHelper;
 import org.springframework.scheduling.annotation.Async;
@@ -14,6 +15,8 @@ import jakarta.mail.internet.MimeMessage;
 import org.thymeleaf.TemplateEngine;
 import org.thymeleaf.context.Context;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 
 @Slf4j
@@ -27,6 +30,10 @@ public class MailService {
     @Value("${spring.mail.username}")
     private String from;
 
+    /** Một email trong lượt gửi cùng template ({@link #sendTemplateBatchAsync}). */
+    public record TemplateMail(String to, String subject, Map<String, Object> model) {
+    }
+
     public void send(String to, String subject, String htmlContent) {
         try {
             MimeMessage message = mailSender.createMimeMessage();
@@ -45,23 +52,53 @@ public class MailService {
 
     public void sendHtmlTemplate(String to, String subject, String templateName, Map<String, Object> model) {
         try {
-            Context context = new Context();
-            context.setVariables(model);
+            mailSender.send(buildTemplateMessage(to, subject, templateName, model));
+        } catch (MessagingException e) {
+            throw new RuntimeException("Không gửi được email", e);
+        }
+    }
+
+    /**
+     * Fire-and-forget gửi nhiều email cùng template: render từng email rồi gửi cả lượt qua một
+     * lần {@code JavaMailSender.send(MimeMessage...)} (dùng chung một kết nối SMTP).
+     * Email lỗi render / gửi chỉ được log, không chặn các email còn lại.
+     */
+    @Async
+    public void sendTemplateBatchAsync(String templateName, List<TemplateMail> mails) {
+        List<MimeMessage> messages = new ArrayList<>(mails.size());
+        for (TemplateMail mail : mails) {
+            try {
+                messages.add(buildTemplateMessage(mail.to(), mail.subject(), templateName, mail.model()));
+            } catch (Exception ex) {
+                log.warn("Failed to build email to {} (template={}): {}", mail.to(), templateName, ex.getMessage());
+            }
+        }
+        if (messages.isEmpty()) return;
+        try {
+            mailSender.send(messages.toArray(new MimeMessage[0]));
+        } catch (MailSendException ex) {
+            log.warn("Failed to send {}/{} emails (template={}): {}",
+                    ex.getFailedMessages().size(), messages.size(), templateName, ex.getMessage());
+        } catch (Exception ex) {
+            log.warn("Failed to send {} emails (template={}): {}", messages.size(), templateName, ex.getMessage());
+        }
+    }
 
-            String htmlContent = templateEngine.process(templateName, context);
+    private MimeMessage buildTemplateMessage(String to, String subject, String templateName,
+                                             Map<String, Object> model) throws MessagingException {
+        Context context = new Context();
+        context.setVariables(model);
 
-            MimeMessage message = mailSender.createMimeMessage();
-            MimeMessageHelper helper = new MimeMessageHelper(message, "utf-8");
+        String htmlContent = templateEngine.process(templateName, context);
 
-            helper.setTo(to);
-            helper.setSubject(subject);
-            helper.setFrom(from);
-            helper.setText(htmlContent, true);
+        MimeMessage message = mailSender.createMimeMessage();
+        MimeMessageHelper helper = new MimeMessageHelper(message, "utf-8");
 
-            mailSender.send(message);
-        } catch (MessagingException e) {
-            throw new RuntimeException("Không gửi được email", e);
-        }
+        helper.setTo(to);
+        helper.setSubject(subject);
+        helper.setFrom(from);
+        helper.setText(htmlContent, true);
+        return message;
     }
 
     /**
@@ -46,17 +46,34 @@ public class NotificationService {
                 .actorName(actorName)
                 .build();
 
-        notification = notificationRepository.save(notification);
+        push(notificationRepository.save(notification));
+    }
 
+    private void push(Notification notification) {
         try {
             NotificationResponse response = toResponse(notification);
             messagingTemplate.convertAndSend(
-                    "/topic/notifications/" + userId,
+                    "/topic/notifications/" + notification.getUserId(),
                     new WebSocketMessage<>(WebSocketMessageType.NOTIFICATION, response)
             );
         } catch (Exception e) {
-            log.warn("Failed to push WebSocket notification to user {}: {}", userId, e.getMessage());
+            log.warn("Failed to push WebSocket notification to user {}: {}", notification.getUserId(), e.getMessage());
+        }
+    }
+
+    /**
+     * Persist many prepared notifications with a single insertMany, then push each via WebSocket.
+     * Used by bulk producers (e.g. broadcast fan-out) instead of one save per recipient.
+     *
+     * @return number of notifications persisted
+     */
+    public int sendAll(List<Notification> notifications) {
+        if (notifications.isEmpty()) return 0;
+        List<Notification> saved = notificationRepository.insert(notifications);
+        for (Notification notification : saved) {
+            push(notification);
         }
+        return saved.size();
     }
 
     /**
@@ -0,0 +1,238 @@
+// File: src/main/java/com/example/sales/service/OpenOrderBoardService.java
+package com.example.sales.service;
+
+import com.example.sales.config.OrderBoardProperties;
+import com.example.sales.constant.ApiCode;
+import com.example.sales.constant.WebSocketMessageType;
+import com.example.sales.dto.order.OpenOrderBoardResponse;
+import com.example.sales.dto.order.OrderSummary;
+import com.example.sales.exception.BusinessException;
+import com.example.sales.model.Order;
+import com.example.sales.service.realtime.RealtimeEventDispatcher;
+import com.example.sales.service.realtime.RealtimeEventPublisher;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Board đơn đang mở theo chi nhánh, giữ trong bộ nhớ thay cho việc POS poll {@code GET /api/orders/open}
+ * (query {@code $nin} trạng thái + dựng OrderResponse đầy đủ mỗi lần).
+ *
+ * Board của chi nhánh được nạp một lần từ DB ({@link OrderSummaryService#findOpenOrders}) khi được đọc hoặc có
+ * đơn thay đổi, sau đó cập nhật từ {@link OrderService} mỗi khi đơn được tạo / sửa / tách / gộp / thanh toán / hủy.
+ * Mỗi thay đổi tăng version và được push dạng delta ({@link WebSocketMessageType#ORDER_BOARD_DELTA}) lên topic
+ * orders của chi nhánh; client đồng bộ bằng {@code since=<version>} và chỉ nhận phần thay đổi.
+ *
+ * Version lấy từ một bộ đếm chung của node nên luôn tăng, kể cả khi board bị bỏ khỏi bộ nhớ rồi nạp lại;
+ * {@code epoch} định danh node — version của node khác không so sánh được nên client gửi sai epoch nhận snapshot.
+ * Nhiều node: delta chỉ push cho client của node phát ({@link RealtimeEventPublisher#publishLocalOrderEvent}) —
+ * client ở node khác đang giữ version của epoch khác, nhận delta đó chỉ để đồng bộ lại vô ích. Event orders từ
+ * node khác (qua cluster bridge) làm board của chi nhánh đó bị nạp lại ở lần dùng sau, và node này push một
+ * tín hiệu đồng bộ lại (delta rỗng, không có previousVersion) cho client của mình.
+ */
+@Slf4j
+@Service
+public class OpenOrderBoardService {
+
+    private static final Pattern ORDERS_TOPIC = Pattern.compile("^/topic/shops/([^/]+)/branches/([^/]+)/orders$");
+
+    private final OrderSummaryService orderSummaryService;
+    private final RealtimeEventPublisher realtimeEventPublisher;
+    private final OrderBoardProperties properties;
+    private final Cache<String, BranchBoard> boards;
+    private final AtomicLong clock = new AtomicLong();
+    private final String epoch = UUID.randomUUID().toString().substring(0, 8);
+
+    /** Một thay đổi của board: đơn được thêm / cập nhật hoặc bị bỏ (removed). */
+    record Change(long version, String orderId) {
+    }
+
+    static final class BranchBoard {
+        boolean loaded;
+        /** Version lúc nạp hoặc của thay đổi cũ nhất đã bị cắt — since nhỏ hơn thì không trả được delta. */
+        long baseVersion;
+        long version;
+        final Map<String, OrderSummary> orders = new LinkedHashMap<>();
+        final ArrayDeque<Change> changes = new ArrayDeque<>();
+    }
+
+    public OpenOrderBoardService(OrderSummaryService orderSummaryService,
+                                 RealtimeEventPublisher realtimeEventPublisher,
+                                 RealtimeEventDispatcher realtimeEventDispatcher,
+                                 OrderBoardProperties properties) {
+        this.orderSummaryService = orderSummaryService;
+        this.realtimeEventPublisher = realtimeEventPublisher;
+        this.properties = properties;
+        this.boards = Caffeine.newBuilder()
+                .maximumSize(properties.getMaxBranches())
+                .expireAfterAccess(properties.getIdleTimeout())
+                .build();
+        realtimeEventDispatcher.addRemoteListener(this::onRemoteEvent);
+    }
+
+    /**
+     * Snapshot (since null / không dùng được) hoặc delta kể từ {@code since} của board chi nhánh.
+     */
+    public OpenOrderBoardResponse getBoard(String shopId, String branchId, Long since, String sinceEpoch) {
+        if (!StringUtils.hasText(branchId)) {
+            throw new BusinessException(ApiCode.VALIDATION_ERROR);
+        }
+        if (!properties.isEnabled()) {
+            return OpenOrderBoardResponse.builder()
+                    .epoch(epoch)
+                    .version(clock.incrementAndGet())
+                    .full(true)
+                    .orders(orderSummaryService.findOpenOrders(shopId, branchId))
+                    .removedIds(List.of())
+                    .build();
+        }
+        BranchBoard board = boards.get(key(shopId, branchId), k -> new BranchBoard());
+        synchronized (board) {
+            ensureLoaded(board, shopId, branchId);
+            boolean deltaPossible = since != null && epoch.equals(sinceEpoch)
+                    && since >= board.baseVersion && since <= board.version;
+            if (!deltaPossible) {
+                return OpenOrderBoardResponse.builder()
+                        .epoch(epoch)
+                        .version(board.version)
+                        .full(true)
+                        .orders(new ArrayList<>(board.orders.values()))
+                        .removedIds(List.of())
+                        .build();
+            }
+            Set<String> changed = new LinkedHashSet<>();
+            for (Change change : board.changes) {
+                if (change.version() > since) {
+                    changed.add(change.orderId());
+                }
+            }
+            List<OrderSummary> upserts = new ArrayList<>();
+            List<String> removed = new ArrayList<>();
+            for (String orderId : changed) {
+                OrderSummary current = board.orders.get(orderId);
+                if (current != null) {
+                    upserts.add(current);
+                } else {
+                    removed.add(orderId);
+                }
+            }
+            return OpenOrderBoardResponse.builder()
+                    .epoch(epoch)
+                    .version(board.version)
+                    .previousVersion(since)
+                    .full(false)
+                    .orders(upserts)
+                    .removedIds(removed)
+                    .build();
+        }
+    }
+
+    /**
+     * Gọi sau khi đơn đã được lưu: cập nhật board của chi nhánh và push delta. Best-effort — lỗi chỉ log,
+     * board bị bỏ để lần dùng sau nạp lại từ DB.
+     */
+    public void apply(Order order) {
+        if (!properties.isEnabled() || order == null || order.getId() == null
+                || !StringUtils.hasText(order.getShopId()) || !StringUtils.hasText(order.getBranchId())) {
+            return;
+        }
+        String key = key(order.getShopId(), order.getBranchId());
+        BranchBoard board = boards.get(key, k -> new BranchBoard());
+        try {
+            synchronized (board) {
+                // Vừa nạp (lần đầu / sau khi bị bỏ) thì DB đã có thay đổi này, nhưng vẫn push để client đang giữ
+                // version cũ thấy previousVersion lệch và đồng bộ lại
+                boolean reloaded = ensureLoaded(board, order.getShopId(), order.getBranchId());
+                boolean open = OrderSummaryService.isOpen(order);
+                OrderSummary summary = null;
+                if (open) {
+                    summary = OrderSummaryService.toSummary(order);
+                    if (summary.equals(board.orders.put(order.getId(), summary)) && !reloaded) {
+                        return;
+                    }
+                } else if (board.orders.remove(order.getId()) == null && !reloaded) {
+                    return;
+                }
+                long previous = board.version;
+                board.version = clock.incrementAndGet();
+                board.changes.addLast(new Change(board.version, order.getId()));
+                while (board.changes.size() > Math.max(1, properties.getChangeLogSize())) {
+                    board.baseVersion = board.changes.pollFirst().version();
+                }
+                // Publish trong lock để delta vào hàng đợi gửi đúng thứ tự version
+                realtimeEventPublisher.publishLocalOrderEvent(order.getShopId(), order.getBranchId(),
+                        WebSocketMessageType.ORDER_BOARD_DELTA, OpenOrderBoardResponse.builder()
+                                .epoch(epoch)
+                                .version(board.version)
+                                .previousVersion(previous)
+                                .full(false)
+                                .orders(open ? List.of(summary) : List.of())
+                                .removedIds(open ? List.of() : List.of(order.getId()))
+                                .build());
+            }
+        } catch (RuntimeException ex) {
+            boards.invalidate(key);
+            log.warn("Không cập nhật được board đơn mở {}: {}", key, ex.getMessage());
+        }
+    }
+
+    /**
+     * Đơn của chi nhánh vừa đổi ở node khác → board ở node này không còn đúng, nạp lại ở lần dùng sau;
+     * client của node này nhận tín hiệu đồng bộ lại và gọi endpoint board với {@code since} của mình.
+     */
+    void onRemoteEvent(String destination, String payloadJson) {
+        Matcher matcher = ORDERS_TOPIC.matcher(destination);
+        if (!properties.isEnabled() || !matcher.matches()) {
+            return;
+        }
+        String shopId = matcher.group(1);
+        String branchId = matcher.group(2);
+        BranchBoard board = boards.getIfPresent(key(shopId, branchId));
+        if (board != null) {
+            synchronized (board) {
+                board.loaded = false;
+                board.orders.clear();
+                board.changes.clear();
+            }
+        }
+        realtimeEventPublisher.publishLocalOrderEvent(shopId, branchId, WebSocketMessageType.ORDER_BOARD_DELTA,
+                OpenOrderBoardResponse.builder()
+                        .epoch(epoch)
+                        .version(clock.incrementAndGet())
+                        .full(false)
+                        .orders(List.of())
+                        .removedIds(List.of())
+                        .build());
+    }
+
+    /** @return true nếu board vừa được nạp từ DB */
+    private boolean ensureLoaded(BranchBoard board, String shopId, String branchId) {
+        if (board.loaded) {
+            return false;
+        }
+        List<OrderSummary> open = orderSummaryService.findOpenOrders(shopId, branchId);
+        open.forEach(summary -> board.orders.put(summary.getId(), summary));
+        board.version = clock.incrementAndGet();
+        board.baseVersion = board.version;
+        board.loaded = true;
+        return true;
+    }
+
+    private static String key(String shopId, String branchId) {
+        return shopId + "|" + branchId;
+    }
+}
@@ -2,6 +2,7 @@
 package com.example.sales.service;
 
 import com.example.sales.cache.OrderCache;
+import com.example.sales.cache.PromotionIndex;
 import com.example.sales.constant.ApiCode;
 import com.example.sales.constant.AppConstants;
 import com.example.sales.constant.DiscountType;
@@ -10,6 +11,7 @@ import com.example.sales.constant.PaymentStatus;
 import com.example.sales.constant.TableStatus;
 import com.example.sales.constant.WebSocketMessageType;
 import com.example.sales.service.realtime.RealtimeEventPublisher;
+import com.example.sales.dto.CursorPage;
 import com.example.sales.dto.order.OrderFulfillmentPatchRequest;
 import com.example.sales.dto.order.OrderLineToppingResponse;
 import com.example.sales.dto.order.OrderItemResponse;
@@ -18,6 +20,7 @@ import com.example.sales.dto.order.OrderResponse;
 import com.example.sales.dto.order.OrderUpdateRequest;
 import com.example.sales.exception.BusinessException;
 import com.example.sales.exception.ResourceNotFoundException;
+import com.example.sales.helper.KeysetPager;
 import com.example.sales.model.*;
 import com.example.sales.repository.*;
 import com.example.sales.service.tax.OrderTaxApplier;
@@ -29,6 +32,7 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.StringUtils;
@@ -37,6 +41,7 @@ import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Locale;
@@ -56,6 +61,7 @@ public class OrderService extends BaseService {
     private final ProductRepository productRepository;
     private final BranchProductRepository branchProductRepository;
     private final PromotionRepository promotionRepository;
+    private final PromotionIndex promotionIndex;
     private final AuditLogService auditLogService;
     private final ShopRepository shopRepository;
     private final InventoryService inventoryService;
@@ -65,6 +71,8 @@ public class OrderService extends BaseService {
     private final CustomerRepository customerRepository;
     private final SequenceService sequenceService;
     private final RealtimeEventPublisher realtimeEventPublisher;
+    private final KeysetPager keysetPager;
+    private final OpenOrderBoardService openOrderBoard;
 
     private static final DateTimeFormatter ORDER_CODE_DATE = DateTimeFormatter.BASIC_ISO_DATE;
 
@@ -113,16 +121,13 @@ public class OrderService extends BaseService {
 
         double[] totals = {0, 0};
 
-        List<OrderItem> orderItems = request.getItems().stream().map(reqItem -> {
-            // Lấy Product master
-            Product masterProduct = productRepository.findByIdAndDeletedFalse(reqItem.getProductId())
-                    .filter(p -> p.getShopId().equals(shopId))
-                    .orElseThrow(() -> new ResourceNotFoundException(ApiCode.PRODUCT_NOT_FOUND));
+        // Nạp Product master + BranchProduct của mọi dòng trong 2 truy vấn $in
+        OrderLineSources sources = resolveOrderLineSources(shopId, branchId,
+                request.getItems().stream().map(OrderRequest.OrderItemRequest::getProductId).toList());
 
-            // Lấy BranchProduct cho chi nhánh và sản phẩm cụ thể
-            BranchProduct branchProduct = branchProductRepository
-                    .findByProductIdAndBranchIdAndDeletedFalse(masterProduct.getId(), branchId)
-                    .orElseThrow(() -> new ResourceNotFoundException(ApiCode.PRODUCT_NOT_FOUND));
+        List<OrderItem> orderItems = request.getItems().stream().map(reqItem -> {
+            Product masterProduct = sources.requireProduct(reqItem.getProductId());
+            BranchProduct branchProduct = sources.requireBranchProduct(masterProduct.getId());
 
             OrderItem item = buildOrderItemLine(
                     orderShop,
@@ -160,21 +165,12 @@ public class OrderService extends BaseService {
             created = orderRepository.save(created);
         }
 
-        // Điều chỉnh tồn kho sau khi tạo đơn hàng
-        for (OrderItem item : created.getItems()) {
-            if (shouldAdjustInventory(item)) {
-                // Sử dụng BranchProduct ID để điều chỉnh tồn kho
-                inventoryService.exportProductQuantity(
-                        userId, shopId, created.getBranchId(), item.getBranchProductId(),
-                        item.getVariantId(),
-                        item.getQuantity(),
-                        "Xuất kho theo đơn hàng " + OrderDisplayUtils.displayOrderCode(created),
-                        created.getId());
-            } else if (shouldAdjustWeightInventory(item)) {
-                exportWeightInventoryForLine(userId, shopId, created.getBranchId(),
-                        item, OrderDisplayUtils.displayOrderCode(created), created.getId());
-            }
-        }
+        // Điều chỉnh tồn kho sau khi tạo đơn hàng (một lô cho mọi dòng)
+        String createdCode = OrderDisplayUtils.displayOrderCode(created);
+        exportInventoryForLines(userId, shopId, created.getBranchId(), created.getItems(),
+                "Xuất kho theo đơn hàng " + createdCode,
+                "Xuất tồn cân theo đơn hàng " + createdCode,
+                created.getId());
         occupyTable(created);
         auditLogService.log(userId, shopId, created.getId(), "ORDER", "CREATED", "Tạo đơn hàng mới");
         return publishOrderEvent(created, toResponse(created), WebSocketMessageType.ORDER_CREATED);
@@ -194,19 +190,10 @@ public class OrderService extends BaseService {
         orderCache.evict(orderId, shopId);
 
         // Hoàn kho khi hủy đơn hàng nếu shop có quản lý tồn kho
-        for (OrderItem item : order.getItems()) {
-            if (shouldAdjustInventory(item)) {
-                inventoryService.importProductQuantity(
-                        userId, shopId, order.getBranchId(), item.getBranchProductId(),
-                        item.getVariantId(),
-                        item.getQuantity(),
-                        "Hoàn kho khi hủy đơn hàng " + OrderDisplayUtils.displayOrderCode(order));
-            } else if (shouldAdjustWeightInventory(item)) {
-                importWeightInventoryForLine(userId, shopId, order.getBranchId(), item,
-                        "Hoàn tồn cân khi hủy đơn hàng "
-                                + OrderDisplayUtils.displayOrderCode(order));
-            }
-        }
+        String cancelledCode = OrderDisplayUtils.displayOrderCode(order);
+        importInventoryForLines(userId, shopId, order.getBranchId(), order.getItems(),
+                "Hoàn kho khi hủy đơn hàng " + cancelledCode,
+                "Hoàn tồn cân khi hủy đơn hàng " + cancelledCode);
 
         // Hoàn điểm khi hủy đơn hàng
         if (order.getCustomerId() != null && !order.getCustomerId().isBlank()) {
@@ -410,36 +397,45 @@ public class OrderService extends BaseService {
     }
 
     private Promotion findApplicablePromotion(String shopId, String branchId, String productId) {
-        LocalDateTime now = LocalDateTime.now();
-        return promotionRepository.findByShopIdAndDeletedFalse(shopId).stream()
-                .filter(Promotion::isActive)
-                .filter(p -> p.getBranchId() == null || p.getBranchId().equals(branchId)) // Khuyến mãi có thể áp dụng cho toàn bộ shop (branchId = null) hoặc riêng cho 1 branch
-                .filter(p -> !p.getStartDate().isAfter(now) && !p.getEndDate().isBefore(now))
-                .filter(p -> p.getApplicableProductIds() == null
-                        || p.getApplicableProductIds().isEmpty()
-                        || p.getApplicableProductIds().contains(productId)) // Áp dụng cho masterProduct ID
-                .findFirst()
-                .orElse(null);
+        // Khuyến mãi có thể áp dụng cho toàn bộ shop (branchId = null) hoặc riêng cho 1 branch; tra theo masterProduct ID
+        return promotionIndex.findApplicable(shopId, branchId, productId, LocalDateTime.now());
     }
 
     public Page<OrderResponse> getShopOrders(String shopId, String branchId, Pageable pageable) {
         if (StringUtils.hasText(branchId)) {
-            return orderRepository
-                    .findByShopIdAndBranchIdAndDeletedFalseOrderByCreatedAtDesc(shopId, branchId, pageable)
-                    .map(this::toResponse);
+            return toResponsePage(orderRepository
+                    .findByShopIdAndBranchIdAndDeletedFalseOrderByCreatedAtDesc(shopId, branchId, pageable));
         }
-        return orderRepository.findByShopIdAndDeletedFalseOrderByCreatedAtDesc(shopId, pageable)
-                .map(this::toResponse);
+        return toResponsePage(orderRepository.findByShopIdAndDeletedFalseOrderByCreatedAtDesc(shopId, pageable));
     }
 
     public Page<OrderResponse> getOrdersByStatus(String shopId, OrderStatus status, String branchId, Pageable pageable) {
         if (StringUtils.hasText(branchId)) {
-            return orderRepository
-                    .findByShopIdAndBranchIdAndStatusAndDeletedFalse(shopId, branchId, status, pageable)
-                    .map(this::toResponse);
+            return toResponsePage(orderRepository
+                    .findByShopIdAndBranchIdAndStatusAndDeletedFalse(shopId, branchId, status, pageable));
+        }
+        return toResponsePage(orderRepository
+                .findByShopIdAndStatusAndDeletedFalseOrderByCreatedAtDesc(shopId, status, pageable));
+    }
+
+    /**
+     * Danh sách đơn theo cursor (createdAt, _id) thay cho offset — cùng filter với {@link #getShopOrders}
+     * và {@link #getOrdersByStatus} (status null = mọi trạng thái).
+     */
+    public CursorPage<OrderResponse> getShopOrdersByCursor(String shopId, String branchId, OrderStatus status,
+                                                           String cursor, Integer size, boolean withTotal) {
+        Criteria filter = Criteria.where("shopId").is(shopId);
+        if (StringUtils.hasText(branchId)) {
+            filter.and("branchId").is(branchId);
+        }
+        if (status != null) {
+            filter.and("status").is(status);
         }
-        return orderRepository.findByShopIdAndStatusAndDeletedFalseOrderByCreatedAtDesc(shopId, status, pageable)
-                .map(this::toResponse);
+        filter.and("deleted").is(false);
+
+        CursorPage<Order> page = keysetPager.fetch(filter, Order.class, Order::getId, cursor, size, withTotal);
+        OrderEnrichment enrichment = loadEnrichment(page.getContent());
+        return page.map(order -> toResponse(order, enrichment));
     }
 
     public OrderResponse getOrderById(String shopId, String orderId) {
@@ -479,9 +475,8 @@ public class OrderService extends BaseService {
             throw new BusinessException(ApiCode.VALIDATION_ERROR);
         }
         List<OrderStatus> excluded = List.of(OrderStatus.CANCELLED, OrderStatus.COMPLETED);
-        return orderRepository
-                .findOpenOrdersByShopIdAndBranchId(shopId, branchId, excluded, pageable)
-                .map(this::toResponse);
+        return toResponsePage(orderRepository
+                .findOpenOrdersByShopIdAndBranchId(shopId, branchId, excluded, pageable));
     }
 
     @Transactional
@@ -675,19 +670,11 @@ public class OrderService extends BaseService {
         orderTaxApplier.applyTax(newOrder);
         Order created = orderRepository.save(newOrder);
 
-        for (OrderItem it : created.getItems()) {
-            if (shouldAdjustInventory(it)) {
-                inventoryService.exportProductQuantity(
-                        userId, shopId, created.getBranchId(), it.getBranchProductId(),
-                        it.getVariantId(),
-                        it.getQuantity(),
-                        "Xuất kho theo tách đơn " + OrderDisplayUtils.displayOrderCode(created),
-                        created.getId());
-            } else if (shouldAdjustWeightInventory(it)) {
-                exportWeightInventoryForLine(userId, shopId, created.getBranchId(), it,
-                        OrderDisplayUtils.displayOrderCode(created), created.getId());
-            }
-        }
+        String splitCode = OrderDisplayUtils.displayOrderCode(created);
+        exportInventoryForLines(userId, shopId, created.getBranchId(), created.getItems(),
+                "Xuất kho theo tách đơn " + splitCode,
+                "Xuất tồn cân theo đơn hàng " + splitCode,
+                created.getId());
         occupyTable(created);
 
         // Update original order using existing logic (imports old, exports remaining)
@@ -969,36 +956,23 @@ public class OrderService extends BaseService {
         }
 
         if (request.getItems() != null && !request.getItems().isEmpty()) {
+            String orderCode = OrderDisplayUtils.displayOrderCode(order);
             // 🔁 1. Hoàn tác lại tồn kho theo đơn hàng cũ (nếu shop có quản lý tồn kho)
-            for (OrderItem oldItem : order.getItems()) {
-                if (shouldAdjustInventory(oldItem)) {
-                    inventoryService.importProductQuantity(
-                        userId, shopId, order.getBranchId(), oldItem.getBranchProductId(), // Sử dụng BranchProduct ID
-                        oldItem.getVariantId(),
-                        oldItem.getQuantity(),
-                        "Hoàn kho khi cập nhật đơn hàng " + OrderDisplayUtils.displayOrderCode(order));
-                } else if (shouldAdjustWeightInventory(oldItem)) {
-                    importWeightInventoryForLine(userId, shopId, order.getBranchId(), oldItem,
-                            "Hoàn tồn cân khi cập nhật đơn hàng "
-                                    + OrderDisplayUtils.displayOrderCode(order));
-                }
-            }
+            importInventoryForLines(userId, shopId, order.getBranchId(), order.getItems(),
+                    "Hoàn kho khi cập nhật đơn hàng " + orderCode,
+                    "Hoàn tồn cân khi cập nhật đơn hàng " + orderCode);
             // 🔁 2. Áp dụng lại tồn kho cho danh sách mới và tính toán lại tổng tiền
             double[] totals = {0, 0};
 
             Shop orderShopForItems = shopRepository.findByIdAndDeletedFalse(shopId)
                     .orElseThrow(() -> new ResourceNotFoundException(ApiCode.SHOP_NOT_FOUND));
 
-            List<OrderItem> updatedItems = request.getItems().stream().map(reqItem -> {
-                // Lấy Product master
-                Product masterProduct = productRepository.findByIdAndDeletedFalse(reqItem.getProductId())
-                        .filter(p -> p.getShopId().equals(shopId))
-                        .orElseThrow(() -> new ResourceNotFoundException(ApiCode.PRODUCT_NOT_FOUND));
+            OrderLineSources sources = resolveOrderLineSources(shopId, order.getBranchId(),
+                    request.getItems().stream().map(OrderUpdateRequest.OrderItemUpdateRequest::getProductId).toList());
 
-                // Lấy BranchProduct cho chi nhánh và sản phẩm cụ thể
-                BranchProduct branchProduct = branchProductRepository
-                        .findByProductIdAndBranchIdAndDeletedFalse(masterProduct.getId(), order.getBranchId()) // Lấy branchId từ order
-                        .orElseThrow(() -> new ResourceNotFoundException(ApiCode.PRODUCT_NOT_FOUND));
+            List<OrderItem> updatedItems = request.getItems().stream().map(reqItem -> {
+                Product masterProduct = sources.requireProduct(reqItem.getProductId());
+                BranchProduct branchProduct = sources.requireBranchProduct(masterProduct.getId());
 
                 OrderItem item = buildOrderItemLine(
                         orderShopForItems,
@@ -1011,23 +985,17 @@ public class OrderService extends BaseService {
                         shopId,
                         order.getBranchId());
 
-                // Trừ kho mới (nếu shop có quản lý tồn kho)
-                if (shouldAdjustInventory(item)) {
-                    inventoryService.exportProductQuantity(
-                            userId, shopId, order.getBranchId(), item.getBranchProductId(), // Sử dụng BranchProduct ID
-                            item.getVariantId(),
-                            item.getQuantity(),
-                            "Xuất kho khi cập nhật đơn hàng " + OrderDisplayUtils.displayOrderCode(order),
-                            orderId);
-                } else if (shouldAdjustWeightInventory(item)) {
-                    exportWeightInventoryForLine(userId, shopId, order.getBranchId(), item,
-                            OrderDisplayUtils.displayOrderCode(order), orderId);
-                }
                 double lineQty = effectiveLineQty(item);
                 totals[0] += lineQty;
                 totals[1] += lineQty * item.getPriceAfterDiscount();
                 return item;
-            }).toList();    
+            }).toList();
+
+            // Trừ kho mới cho cả danh sách (nếu shop có quản lý tồn kho)
+            exportInventoryForLines(userId, shopId, order.getBranchId(), updatedItems,
+                    "Xuất kho khi cập nhật đơn hàng " + orderCode,
+                    "Xuất tồn cân theo đơn hàng " + orderCode,
+                    orderId);
 
             order.setItems(updatedItems);
             order.setTotalPrice(totals[1]);
@@ -1098,18 +1066,25 @@ public class OrderService extends BaseService {
     }
 
     private OrderResponse toResponse(Order order) {
-        Map<String, Product> productById = loadProductsForOrderLineEnrichment(order);
-        Map<String, Promotion> promotionById = loadPromotionsForOrderLineEnrichment(order.getItems());
+        return toResponse(order, loadEnrichment(List.of(order)));
+    }
+
+    /** Map cả trang đơn với một lần load product / promotion / customer cho toàn trang. */
+    private Page<OrderResponse> toResponsePage(Page<Order> page) {
+        OrderEnrichment enrichment = loadEnrichment(page.getContent());
+        return page.map(order -> toResponse(order, enrichment));
+    }
+
+    private OrderResponse toResponse(Order order, OrderEnrichment enrichment) {
+        Map<String, Product> productById = enrichment.products();
+        Map<String, Promotion> promotionById = enrichment.promotions();
         String customerName = null;
         String customerPhone = null;
         if (StringUtils.hasText(order.getCustomerId()) && StringUtils.hasText(order.getShopId())) {
-            var cOpt = customerRepository.findByIdAndDeletedFalse(order.getCustomerId());
-            if (cOpt.isPresent()) {
-                Customer c = cOpt.get();
-                if (order.getShopId().equals(c.getShopId())) {
-                    customerName = StringUtils.hasText(c.getName()) ? c.getName() : null;
-                    customerPhone = StringUtils.hasText(c.getPhone()) ? c.getPhone() : null;
-                }
+            Customer c = enrichment.customers().get(order.getCustomerId());
+            if (c != null && order.getShopId().equals(c.getShopId())) {
+                customerName = StringUtils.hasText(c.getName()) ? c.getName() : null;
+                customerPhone = StringUtils.hasText(c.getPhone()) ? c.getPhone() : null;
             }
         }
         return OrderResponse.builder()
@@ -1120,7 +1095,7 @@ public class OrderService extends BaseService {
                 .note(order.getNote())
                 .status(order.getStatus())
                 .paid(order.isPaid())
-                .paymentStatus(resolvePaymentStatus(order))
+                .paymentStatus(OrderDisplayUtils.resolvePaymentStatus(order))
                 .paymentMethod(order.getPaymentMethod())
                 .paymentId(order.getPaymentId())
                 .paymentTime(order.getPaymentTime())
@@ -1146,47 +1121,37 @@ public class OrderService extends BaseService {
                 .build();
     }
 
-    private PaymentStatus resolvePaymentStatus(Order order) {
-        if (order.getPaymentStatus() != null) {
-            return order.getPaymentStatus();
-        }
-        return order.isPaid() ? PaymentStatus.PAID : PaymentStatus.UNPAID;
-    }
-
-    private Map<String, Product> loadProductsForOrderLineEnrichment(Order order) {
-        if (order.getItems() == null || order.getItems().isEmpty()) {
-            return Map.of();
-        }
-        Set<String> productIds = order.getItems().stream()
-                .map(OrderItem::getProductId)
-                .filter(StringUtils::hasText)
-                .collect(Collectors.toSet());
-        if (productIds.isEmpty()) {
-            return Map.of();
-        }
-        Map<String, Product> map = new HashMap<>();
-        for (String id : productIds) {
-            productRepository.findByIdAndDeletedFalse(id).ifPresent(p -> map.put(id, p));
-        }
-        return map;
+    /** Product / promotion / customer tham chiếu bởi một nhóm đơn, mỗi loại một query {@code $in}. */
+    private record OrderEnrichment(Map<String, Product> products,
+                                   Map<String, Promotion> promotions,
+                                   Map<String, Customer> customers) {
     }
 
-    private Map<String, Promotion> loadPromotionsForOrderLineEnrichment(List<OrderItem> items) {
-        if (items == null || items.isEmpty()) {
-            return Map.of();
-        }
-        Set<String> promoIds = items.stream()
-                .map(OrderItem::getAppliedPromotionId)
-                .filter(StringUtils::hasText)
-                .collect(Collectors.toSet());
-        if (promoIds.isEmpty()) {
-            return Map.of();
-        }
-        Map<String, Promotion> map = new HashMap<>();
-        for (String id : promoIds) {
-            promotionRepository.findByIdAndDeletedFalse(id).ifPresent(p -> map.put(id, p));
+    private OrderEnrichment loadEnrichment(List<Order> orders) {
+        Set<String> productIds = new HashSet<>();
+        Set<String> promoIds = new HashSet<>();
+        Set<String> customerIds = new HashSet<>();
+        for (Order order : orders) {
+            if (order.getItems() != null) {
+                for (OrderItem item : order.getItems()) {
+                    if (StringUtils.hasText(item.getProductId())) productIds.add(item.getProductId());
+                    if (StringUtils.hasText(item.getAppliedPromotionId())) promoIds.add(item.getAppliedPromotionId());
+                }
+            }
+            if (StringUtils.hasText(order.getCustomerId()) && StringUtils.hasText(order.getShopId())) {
+                customerIds.add(order.getCustomerId());
+            }
         }
-        return map;
+        Map<String, Product> products = productIds.isEmpty() ? Map.of()
+                : productRepository.findByIdInAndDeletedFalse(productIds).stream()
+                        .collect(Collectors.toMap(Product::getId, p -> p, (a, b) -> a));
+        Map<String, Promotion> promotions = promoIds.isEmpty() ? Map.of()
+                : promotionRepository.findByIdInAndDeletedFalse(promoIds).stream()
+                        .collect(Collectors.toMap(Promotion::getId, p -> p, (a, b) -> a));
+        Map<String, Customer> customers = customerIds.isEmpty() ? Map.of()
+                : customerRepository.findByIdInAndDeletedFalse(customerIds).stream()
+                        .collect(Collectors.toMap(Customer::getId, c -> c, (a, b) -> a));
+        return new OrderEnrichment(products, promotions, customers);
     }
 
     private OrderItemResponse toItemResponse(
@@ -1364,26 +1329,71 @@ public class OrderService extends BaseService {
                 && item.getWeight() != null && item.getWeight() > 0;
     }
 
-    private void exportWeightInventoryForLine(String userId, String shopId, String branchId,
-                                              OrderItem item, String orderCode, String orderId) {
-        long baseUnits = com.example.sales.util.WeightUnitConverter
-                .toBaseUnits(item.getWeight(), item.getWeightUnit());
-        if (baseUnits <= 0) return;
-        inventoryService.exportProductWeightBaseUnits(
-                userId, shopId, branchId, item.getBranchProductId(),
-                baseUnits,
-                "Xuất tồn cân theo đơn hàng " + orderCode,
-                orderId);
+    private static List<OrderItem> inventoryTrackedLines(List<OrderItem> items) {
+        if (items == null || items.isEmpty()) {
+            return List.of();
+        }
+        return items.stream()
+                .filter(it -> shouldAdjustInventory(it) || shouldAdjustWeightInventory(it))
+                .toList();
+    }
+
+    /** Xuất kho một lô cho các dòng có theo dõi tồn kho (đếm đơn vị và bán theo cân). */
+    private void exportInventoryForLines(String userId, String shopId, String branchId, List<OrderItem> items,
+                                         String quantityNote, String weightNote, String orderId) {
+        List<OrderItem> tracked = inventoryTrackedLines(items);
+        if (tracked.isEmpty()) return;
+        inventoryService.exportOrderLines(userId, shopId, branchId, tracked, quantityNote, weightNote, orderId);
+    }
+
+    /** Hoàn kho một lô cho các dòng có theo dõi tồn kho (huỷ hoặc chỉnh đơn). */
+    private void importInventoryForLines(String userId, String shopId, String branchId, List<OrderItem> items,
+                                         String quantityNote, String weightNote) {
+        List<OrderItem> tracked = inventoryTrackedLines(items);
+        if (tracked.isEmpty()) return;
+        inventoryService.importOrderLines(userId, shopId, branchId, tracked, quantityNote, weightNote);
+    }
+
+    /**
+     * Nạp Product master và BranchProduct cho toàn bộ dòng của request bằng một truy vấn {@code $in}
+     * mỗi collection, thay vì 2 round trip cho từng dòng.
+     */
+    private OrderLineSources resolveOrderLineSources(String shopId, String branchId, List<String> productIds) {
+        Set<String> ids = productIds.stream()
+                .filter(StringUtils::hasText)
+                .collect(Collectors.toSet());
+        if (ids.isEmpty()) {
+            return new OrderLineSources(Map.of(), Map.of());
+        }
+        Map<String, Product> products = productRepository.findByIdInAndShopIdAndDeletedFalse(ids, shopId).stream()
+                .collect(Collectors.toMap(Product::getId, p -> p));
+        if (products.isEmpty()) {
+            return new OrderLineSources(products, Map.of());
+        }
+        Map<String, BranchProduct> branchProducts = branchProductRepository
+                .findByProductIdInAndBranchIdAndDeletedFalse(products.keySet(), branchId).stream()
+                .collect(Collectors.toMap(BranchProduct::getProductId, bp -> bp, (a, b) -> a));
+        return new OrderLineSources(products, branchProducts);
     }
 
-    private void importWeightInventoryForLine(String userId, String shopId, String branchId,
-                                              OrderItem item, String reason) {
-        long baseUnits = com.example.sales.util.WeightUnitConverter
-                .toBaseUnits(item.getWeight(), item.getWeightUnit());
-        if (baseUnits <= 0) return;
-        inventoryService.importProductWeightBaseUnits(
-                userId, shopId, branchId, item.getBranchProductId(),
-                baseUnits, reason);
+    /** Product master và BranchProduct (theo productId) đã nạp sẵn cho các dòng của một request. */
+    private record OrderLineSources(Map<String, Product> products, Map<String, BranchProduct> branchProducts) {
+
+        Product requireProduct(String productId) {
+            Product p = productId != null ? products.get(productId) : null;
+            if (p == null) {
+                throw new ResourceNotFoundException(ApiCode.PRODUCT_NOT_FOUND);
+            }
+            return p;
+        }
+
+        BranchProduct requireBranchProduct(String productId) {
+            BranchProduct bp = branchProducts.get(productId);
+            if (bp == null) {
+                throw new ResourceNotFoundException(ApiCode.PRODUCT_NOT_FOUND);
+            }
+            return bp;
+        }
     }
 
     private List<OrderLineTopping> resolveToppingSnapshots(Shop shop, Product product, List<String> requestedRaw) {
@@ -1557,18 +1567,18 @@ public class OrderService extends BaseService {
     }
 
     private String generateOrderCode(String shopId) {
-        String raw = sequenceService.getNextCode(shopId, "DH", AppConstants.SequenceTypes.SEQUENCE_TYPE_ORDER);
-        sequenceService.updateNextSequence(shopId, "DH", AppConstants.SequenceTypes.SEQUENCE_TYPE_ORDER);
+        String raw = sequenceService.nextCode(shopId, "DH", AppConstants.SequenceTypes.SEQUENCE_TYPE_ORDER);
         String tail = raw.contains("_") ? raw.substring(raw.lastIndexOf('_') + 1) : raw;
         return "DH-" + LocalDate.now().format(ORDER_CODE_DATE) + "-" + tail;
     }
 
     /**
      * Push event đơn hàng lên topic per-branch để mọi staff đang mở shop/branch
-     * này nhận cập nhật. Trả về chính {@code response} để caller dễ chain.
+     * này nhận cập nhật, đồng thời cập nhật board đơn đang mở (mọi thay đổi lifecycle đơn đều đi qua đây). Trả về chính {@code response} để caller dễ chain.
      */
     private OrderResponse publishOrderEvent(Order order, OrderResponse response, WebSocketMessageType type) {
         if (order == null || response == null) return response;
+        openOrderBoard.apply(order);
         realtimeEventPublisher.publishOrderEvent(order.getShopId(), order.getBranchId(), type, response);
         return response;
     }
@@ -0,0 +1,156 @@
+// File: src/main/java/com/example/sales/service/OrderSummaryService.java
+package com.example.sales.service;
+
+import com.example.sales.constant.ApiCode;
+import com.example.sales.constant.OrderStatus;
+import com.example.sales.dto.order.OrderSummary;
+import com.example.sales.exception.BusinessException;
+import com.example.sales.model.Order;
+import com.example.sales.util.OrderDisplayUtils;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.support.PageableExecutionUtils;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiConsumer;
+
+/**
+ * Danh sách đơn dạng {@link OrderSummary} cho màn danh sách và board: cùng filter với
+ * {@link OrderService#getShopOrders}, {@link OrderService#getOrdersByStatus} và {@link OrderService#getOpenOrders}
+ * nhưng chỉ đọc các field được chọn từ Mongo (projection) — không tải items/toppings/taxSnapshot,
+ * không dựng OrderItemResponse, không tra product/promotion/customer.
+ *
+ * {@code fields}: "summary" (hoặc rỗng) = mọi field của OrderSummary; hoặc danh sách tên cách nhau bởi dấu phẩy,
+ * vd. {@code fields=orderCode,tableId,status}. {@code id} luôn có.
+ */
+@Service
+@RequiredArgsConstructor
+public class OrderSummaryService {
+
+    public static final String ALL_FIELDS = "summary";
+
+    private record FieldSpec(List<String> properties, BiConsumer<OrderSummary.OrderSummaryBuilder, Order> copy) {
+    }
+
+    /** Tên field JSON của OrderSummary → property của Order cần đọc + cách copy sang summary. */
+    private static final Map<String, FieldSpec> FIELDS = new LinkedHashMap<>();
+
+    static {
+        // orderCode đơn cũ suy từ id nên chỉ cần orderCode (_id luôn được Mongo trả về)
+        FIELDS.put("orderCode", new FieldSpec(List.of("orderCode"),
+                (b, o) -> b.orderCode(OrderDisplayUtils.displayOrderCode(o))));
+        FIELDS.put("branchId", new FieldSpec(List.of("branchId"), (b, o) -> b.branchId(o.getBranchId())));
+        FIELDS.put("tableId", new FieldSpec(List.of("tableId"), (b, o) -> b.tableId(o.getTableId())));
+        FIELDS.put("status", new FieldSpec(List.of("status"), (b, o) -> b.status(o.getStatus())));
+        FIELDS.put("paid", new FieldSpec(List.of("isPaid"), (b, o) -> b.paid(o.isPaid())));
+        // đơn cũ chưa có paymentStatus → suy từ isPaid như response đầy đủ
+        FIELDS.put("paymentStatus", new FieldSpec(List.of("paymentStatus", "isPaid"),
+                (b, o) -> b.paymentStatus(OrderDisplayUtils.resolvePaymentStatus(o))));
+        FIELDS.put("totalAmount", new FieldSpec(List.of("totalAmount"), (b, o) -> b.totalAmount(o.getTotalAmount())));
+        FIELDS.put("totalPrice", new FieldSpec(List.of("totalPrice"), (b, o) -> b.totalPrice(o.getTotalPrice())));
+        FIELDS.put("guestName", new FieldSpec(List.of("guestName"), (b, o) -> b.guestName(o.getGuestName())));
+        FIELDS.put("createdAt", new FieldSpec(List.of("createdAt"), (b, o) -> b.createdAt(o.getCreatedAt())));
+        FIELDS.put("updatedAt", new FieldSpec(List.of("updatedAt"), (b, o) -> b.updatedAt(o.getUpdatedAt())));
+    }
+
+    private static final List<OrderStatus> CLOSED_STATUSES = List.of(OrderStatus.CANCELLED, OrderStatus.COMPLETED);
+
+    private final MongoTemplate mongoTemplate;
+
+    /** Danh sách đơn của shop (status null) hoặc theo trạng thái; mới nhất trước nếu không truyền sort. */
+    public Page<OrderSummary> getShopOrders(String shopId, String branchId, OrderStatus status,
+                                            String fields, Pageable pageable) {
+        Criteria criteria = Criteria.where("shopId").is(shopId);
+        if (StringUtils.hasText(branchId)) {
+            criteria.and("branchId").is(branchId);
+        }
+        if (status != null) {
+            criteria.and("status").is(status);
+        }
+        criteria.and("deleted").is(false);
+        Pageable sorted = pageable.getSort().isSorted()
+                ? pageable
+                : PageRequest.of(pageable.getPageNumber(), pageable.getPageSize(), Sort.by(Sort.Direction.DESC, "createdAt"));
+        return find(criteria, fields, sorted);
+    }
+
+    /** Đơn đang mở của chi nhánh (chưa thanh toán, chưa hoàn tất / hủy) — dùng cho board. */
+    public Page<OrderSummary> getOpenOrders(String shopId, String branchId, String fields, Pageable pageable) {
+        if (!StringUtils.hasText(branchId)) {
+            throw new BusinessException(ApiCode.VALIDATION_ERROR);
+        }
+        return find(openCriteria(shopId, branchId), fields, pageable);
+    }
+
+    /** Toàn bộ đơn đang mở của chi nhánh (mọi field summary), cũ nhất trước — nguồn nạp của board. */
+    public List<OrderSummary> findOpenOrders(String shopId, String branchId) {
+        Query query = Query.query(openCriteria(shopId, branchId)).with(Sort.by(Sort.Direction.ASC, "createdAt"));
+        FIELDS.values().forEach(spec -> spec.properties().forEach(query.fields()::include));
+        return mongoTemplate.find(query, Order.class).stream().map(OrderSummaryService::toSummary).toList();
+    }
+
+    /** Cùng điều kiện với query đang mở: chưa xóa, chưa thanh toán, chưa hoàn tất / hủy. */
+    public static boolean isOpen(Order order) {
+        return !order.isDeleted() && !order.isPaid() && !CLOSED_STATUSES.contains(order.getStatus());
+    }
+
+    public static OrderSummary toSummary(Order order) {
+        return toSummary(order, FIELDS.keySet());
+    }
+
+    private static Criteria openCriteria(String shopId, String branchId) {
+        return Criteria.where("shopId").is(shopId)
+                .and("branchId").is(branchId)
+                .and("deleted").is(false)
+                .and("isPaid").is(false)
+                .and("status").nin(CLOSED_STATUSES);
+    }
+
+    private Page<OrderSummary> find(Criteria criteria, String fields, Pageable pageable) {
+        Set<String> selected = parseFields(fields);
+        Query query = Query.query(criteria).with(pageable);
+        selected.forEach(name -> FIELDS.get(name).properties().forEach(query.fields()::include));
+
+        List<OrderSummary> content = mongoTemplate.find(query, Order.class).stream()
+                .map(order -> toSummary(order, selected))
+                .toList();
+        return PageableExecutionUtils.getPage(content, pageable,
+                () -> mongoTemplate.count(Query.query(criteria), Order.class));
+    }
+
+    static Set<String> parseFields(String fields) {
+        if (!StringUtils.hasText(fields) || ALL_FIELDS.equalsIgnoreCase(fields.trim())) {
+            return FIELDS.keySet();
+        }
+        Set<String> selected = new LinkedHashSet<>();
+        for (String name : Arrays.stream(fields.split(",")).map(String::trim).filter(StringUtils::hasText).toList()) {
+            if ("id".equals(name)) {
+                continue;
+            }
+            if (!FIELDS.containsKey(name)) {
+                throw new BusinessException(ApiCode.VALIDATION_ERROR);
+            }
+            selected.add(name);
+        }
+        return selected;
+    }
+
+    static OrderSummary toSummary(Order order, Set<String> selected) {
+        OrderSummary.OrderSummaryBuilder builder = OrderSummary.builder().id(order.getId());
+        selected.forEach(name -> FIELDS.get(name).copy().accept(builder, order));
+        return builder.build();
+    }
+}
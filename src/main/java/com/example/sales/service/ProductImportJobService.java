@@ -0,0 +1,270 @@
+// File: src/main/java/com/example/sales/service/ProductImportJobService.java
+package com.example.sales.service;
+
+import com.example.sales.config.ProductImportProperties;
+import com.example.sales.constant.ApiCode;
+import com.example.sales.constant.ProductImportJobStatus;
+import com.example.sales.constant.WebSocketMessageType;
+import com.example.sales.dto.product.ProductImportJobResponse;
+import com.example.sales.dto.product.ProductImportResult;
+import com.example.sales.exception.BusinessException;
+import com.example.sales.model.ProductImportJob;
+import com.example.sales.repository.ProductImportJobRepository;
+import com.example.sales.service.realtime.RealtimeEventPublisher;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.security.concurrent.DelegatingSecurityContextRunnable;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Import sản phẩm từ Excel dạng job nền: upload trả về jobId ngay, việc import chạy trên
+ * {@code productImportExecutor}. Tiến độ / kết quả được lưu ở {@link ProductImportJob} (poll qua API)
+ * và push lên {@code /topic/shops/{shopId}/product-imports}.
+ *
+ * File upload được chép ra file tạm trước khi trả response (MultipartFile hết hiệu lực sau request)
+ * và bị xóa khi job kết thúc. Giới hạn job theo shop tính trên từng node.
+ *
+ * Job chạy ghi {@code heartbeatAt} sau mỗi lô; job của node đã chết (PENDING / RUNNING mãi) được
+ * {@link #failStaleJobs()} đánh dấu FAILED để không hiện "đang chạy" vô hạn và được TTL dọn.
+ * Lỗi hệ thống chỉ được log — errorMessage gửi cho client là thông điệp của ApiCode.
+ */
+@Slf4j
+@Service
+public class ProductImportJobService {
+
+    static final String TOPIC_DOMAIN = "product-imports";
+
+    private final ProductImportJobRepository jobRepository;
+    private final MongoTemplate mongoTemplate;
+    private final ExcelImportService excelImportService;
+    private final RealtimeEventPublisher realtimeEventPublisher;
+    private final ProductImportProperties properties;
+    private final TaskExecutor executor;
+
+    /** Số job chờ + đang chạy theo shop trên node này */
+    private final ConcurrentMap<String, Integer> activeByShop = new ConcurrentHashMap<>();
+
+    public ProductImportJobService(ProductImportJobRepository jobRepository,
+                                   MongoTemplate mongoTemplate,
+                                   ExcelImportService excelImportService,
+                                   RealtimeEventPublisher realtimeEventPublisher,
+                                   ProductImportProperties properties,
+                                   @Qualifier("productImportExecutor") TaskExecutor executor) {
+        this.jobRepository = jobRepository;
+        this.mongoTemplate = mongoTemplate;
+        this.excelImportService = excelImportService;
+        this.realtimeEventPublisher = realtimeEventPublisher;
+        this.properties = properties;
+        this.executor = executor;
+    }
+
+    /**
+     * Tạo job và đưa vào hàng đợi. Ném PRODUCT_IMPORT_JOB_LIMIT nếu shop đã có đủ job chưa xong,
+     * PRODUCT_IMPORT_QUEUE_FULL nếu pool import đã đầy.
+     */
+    public ProductImportJobResponse submit(String shopId, String userId, MultipartFile file) {
+        if (!tryAcquire(shopId)) {
+            throw new BusinessException(ApiCode.PRODUCT_IMPORT_JOB_LIMIT);
+        }
+        Path tempFile = null;
+        boolean queued = false;
+        try {
+            tempFile = Files.createTempFile("product-import-", ".tmp");
+            file.transferTo(tempFile);
+
+            ProductImportJob job = jobRepository.save(ProductImportJob.builder()
+                    .shopId(shopId)
+                    .userId(userId)
+                    .fileName(file.getOriginalFilename())
+                    .build());
+
+            String jobId = job.getId();
+            Path input = tempFile;
+            try {
+                // Giữ SecurityContext để createdBy/updatedBy của Product vẫn là người upload
+                executor.execute(new DelegatingSecurityContextRunnable(() -> run(jobId, shopId, input)));
+            } catch (TaskRejectedException e) {
+                log.warn("Từ chối job import shop '{}': pool import đã đầy", shopId);
+                markFailed(jobId, ApiCode.PRODUCT_IMPORT_QUEUE_FULL.getMessage());
+                throw new BusinessException(ApiCode.PRODUCT_IMPORT_QUEUE_FULL);
+            }
+            queued = true;
+            return toResponse(job, true);
+        } catch (IOException e) {
+            throw new BusinessException(ApiCode.VALIDATION_FILE_ERROR);
+        } finally {
+            if (!queued) {
+                release(shopId);
+                deleteQuietly(tempFile);
+            }
+        }
+    }
+
+    public ProductImportJobResponse getJob(String shopId, String jobId) {
+        return jobRepository.findByIdAndShopId(jobId, shopId)
+                .map(job -> toResponse(job, true))
+                .orElseThrow(() -> new BusinessException(ApiCode.PRODUCT_IMPORT_JOB_NOT_FOUND));
+    }
+
+    void run(String jobId, String shopId, Path input) {
+        try (InputStream in = Files.newInputStream(input)) {
+            LocalDateTime now = LocalDateTime.now();
+            // Chỉ nhận job còn PENDING: job chờ quá lâu có thể đã bị failStaleJobs đánh dấu FAILED
+            boolean started = mongoTemplate.updateFirst(
+                    new Query(Criteria.where("_id").is(jobId).and("status").is(ProductImportJobStatus.PENDING)),
+                    new Update()
+                            .set("status", ProductImportJobStatus.RUNNING)
+                            .set("startedAt", now)
+                            .set("heartbeatAt", now), ProductImportJob.class).getModifiedCount() > 0;
+            if (!started) {
+                log.warn("Bỏ qua job import {} (shop '{}'): job không còn PENDING", jobId, shopId);
+                return;
+            }
+            publish(jobId, shopId, WebSocketMessageType.PRODUCT_IMPORT_PROGRESS);
+
+            ProductImportResult result = excelImportService.importProducts(shopId, in,
+                    processed -> onProgress(jobId, shopId, processed));
+
+            mongoTemplate.updateFirst(byId(jobId), new Update()
+                    .set("status", ProductImportJobStatus.COMPLETED)
+                    .set("processedRows", result.getTotalRows())
+                    .set("importedCount", result.getImportedCount())
+                    .set("createdCount", result.getCreatedCount())
+                    .set("updatedCount", result.getUpdatedCount())
+                    .set("failedCount", result.getFailedCount())
+                    .set("errors", result.getErrors())
+                    .set("finishedAt", LocalDateTime.now()), ProductImportJob.class);
+            publish(jobId, shopId, WebSocketMessageType.PRODUCT_IMPORT_COMPLETED);
+        } catch (Exception e) {
+            // Chỉ thông điệp ApiCode tới client; chi tiết lỗi (Mongo / driver...) chỉ nằm trong log
+            ApiCode error = e instanceof BusinessException be ? be.getError() : ApiCode.PRODUCT_IMPORT_JOB_FAILED;
+            log.error("Job import {} (shop '{}') thất bại: {}", jobId, shopId, e.getMessage(), e);
+            markFailed(jobId, error.getMessage());
+            publish(jobId, shopId, WebSocketMessageType.PRODUCT_IMPORT_FAILED);
+        } finally {
+            deleteQuietly(input);
+            release(shopId);
+        }
+    }
+
+    private void onProgress(String jobId, String shopId, int processedRows) {
+        mongoTemplate.updateFirst(byId(jobId), new Update()
+                .set("processedRows", processedRows)
+                .set("heartbeatAt", LocalDateTime.now()), ProductImportJob.class);
+        realtimeEventPublisher.publishShopEvent(shopId, TOPIC_DOMAIN, WebSocketMessageType.PRODUCT_IMPORT_PROGRESS,
+                ProductImportJobResponse.builder()
+                        .jobId(jobId)
+                        .shopId(shopId)
+                        .status(ProductImportJobStatus.RUNNING)
+                        .processedRows(processedRows)
+                        .build());
+    }
+
+    /**
+     * Đánh dấu FAILED các job bị mất: RUNNING không có heartbeat, hoặc PENDING chưa chạy, quá staleTimeout.
+     * Mỗi job được cập nhật có điều kiện (vẫn còn mất) rồi push PRODUCT_IMPORT_FAILED.
+     *
+     * @return số job đã đánh dấu
+     */
+    public int failStaleJobs() {
+        LocalDateTime threshold = LocalDateTime.now().minus(properties.getStaleTimeout());
+        Criteria stale = new Criteria().orOperator(
+                Criteria.where("status").is(ProductImportJobStatus.RUNNING).and("heartbeatAt").lt(threshold),
+                Criteria.where("status").is(ProductImportJobStatus.PENDING).and("createdAt").lt(threshold));
+        Query query = new Query(stale);
+        query.fields().include("_id", "shopId");
+        int failed = 0;
+        for (ProductImportJob job : mongoTemplate.find(query, ProductImportJob.class)) {
+            boolean marked = mongoTemplate.updateFirst(new Query(Criteria.where("_id").is(job.getId()).andOperator(stale)),
+                    new Update()
+                            .set("status", ProductImportJobStatus.FAILED)
+                            .set("errorMessage", ApiCode.PRODUCT_IMPORT_JOB_INTERRUPTED.getMessage())
+                            .set("finishedAt", LocalDateTime.now()),
+                    ProductImportJob.class).getModifiedCount() > 0;
+            if (marked) {
+                failed++;
+                publish(job.getId(), job.getShopId(), WebSocketMessageType.PRODUCT_IMPORT_FAILED);
+            }
+        }
+        if (failed > 0) {
+            log.warn("Đánh dấu FAILED {} job import bị gián đoạn", failed);
+        }
+        return failed;
+    }
+
+    private void markFailed(String jobId, String message) {
+        mongoTemplate.updateFirst(byId(jobId), new Update()
+                .set("status", ProductImportJobStatus.FAILED)
+                .set("errorMessage", message)
+                .set("finishedAt", LocalDateTime.now()), ProductImportJob.class);
+    }
+
+    private void publish(String jobId, String shopId, WebSocketMessageType type) {
+        jobRepository.findById(jobId).ifPresent(job -> realtimeEventPublisher.publishShopEvent(
+                shopId, TOPIC_DOMAIN, type, toResponse(job, type != WebSocketMessageType.PRODUCT_IMPORT_PROGRESS)));
+    }
+
+    /** Kiểm tra và tăng trong cùng compute — release xen giữa không thể bỏ bộ đếm khỏi map giữa hai bước. */
+    private boolean tryAcquire(String shopId) {
+        int limit = Math.max(1, properties.getMaxJobsPerShop());
+        boolean[] acquired = {false};
+        activeByShop.compute(shopId, (k, active) -> {
+            int current = active != null ? active : 0;
+            if (current >= limit) return active;
+            acquired[0] = true;
+            return current + 1;
+        });
+        return acquired[0];
+    }
+
+    private void release(String shopId) {
+        activeByShop.computeIfPresent(shopId, (k, active) -> active <= 1 ? null : active - 1);
+    }
+
+    private static Query byId(String jobId) {
+        return new Query(Criteria.where("_id").is(jobId));
+    }
+
+    private static void deleteQuietly(Path path) {
+        if (path == null) return;
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("Không xóa được file tạm {}: {}", path, e.getMessage());
+        }
+    }
+
+    private static ProductImportJobResponse toResponse(ProductImportJob job, boolean withErrors) {
+        return ProductImportJobResponse.builder()
+                .jobId(job.getId())
+                .shopId(job.getShopId())
+                .fileName(job.getFileName())
+                .status(job.getStatus())
+                .processedRows(job.getProcessedRows())
+                .importedCount(job.getImportedCount())
+                .createdCount(job.getCreatedCount())
+                .updatedCount(job.getUpdatedCount())
+                .failedCount(job.getFailedCount())
+                .errors(withErrors ? job.getErrors() : null)
+                .errorMessage(job.getErrorMessage())
+                .createdAt(job.getCreatedAt())
+                .startedAt(job.getStartedAt())
+                .finishedAt(job.getFinishedAt())
+                .build();
+    }
+}
@@ -1,6 +1,7 @@
 // File: src/main/java/com/example/sales/service/PromotionService.java
 package com.example.sales.service;
 
+import com.example.sales.cache.PromotionIndex;
 import com.example.sales.constant.ApiCode;
 import com.example.sales.dto.promotion.PromotionRequest;
 import com.example.sales.dto.promotion.PromotionResponse;
@@ -21,6 +22,7 @@ public class PromotionService {
 
     private final PromotionRepository promotionRepository;
     private final AuditLogService auditLogService;
+    private final PromotionIndex promotionIndex;
 
     public Page<PromotionResponse> getAll(String userId, String shopId, String branchId, Pageable pageable) {
         Page<Promotion> promotions;
@@ -49,6 +51,7 @@ public class PromotionService {
                 .build();
 
         Promotion saved = promotionRepository.save(promotion);
+        promotionIndex.evictShop(shopId);
         auditLogService.log(userId, shopId, saved.getId(), "PROMOTION", "CREATED",
                 String.format("Tạo khuyến mãi: %s (%.2f %s)%s",
                         saved.getName(),
@@ -76,6 +79,7 @@ public class PromotionService {
         promotion.setActive(request.isActive());
 
         Promotion saved = promotionRepository.save(promotion);
+        promotionIndex.evictShop(shopId);
         auditLogService.log(userId, shopId, saved.getId(), "PROMOTION", "UPDATED",
                 String.format("Cập nhật khuyến mãi: %s", saved.getName()));
         return toResponse(saved);
@@ -88,6 +92,7 @@ public class PromotionService {
 
         promotion.setDeleted(true);
         promotionRepository.save(promotion);
+        promotionIndex.evictShop(shopId);
         auditLogService.log(userId, shopId, promotion.getId(), "PROMOTION", "DELETED",
                 String.format("Xoá mềm khuyến mãi: %s", promotion.getName()));
     }
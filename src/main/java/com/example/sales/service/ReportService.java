@@ -1,11 +1,14 @@
 package com.example.sales.service;
 
+import com.example.sales.config.SalesRollupProperties;
 import com.example.sales.constant.OrderStatus;
 import com.example.sales.dto.report.DailyReportResponse;
 import com.example.sales.dto.report.ReportRequest;
 import com.example.sales.dto.report.ReportResponse;
 import com.example.sales.dto.report.TopProductResponse;
 import com.example.sales.model.Order;
+import com.example.sales.model.ProductDailyRollup;
+import com.example.sales.model.SalesDailyRollup;
 import lombok.RequiredArgsConstructor;
 import org.bson.Document;
 import org.springframework.data.domain.Sort;
@@ -25,33 +28,23 @@ import java.util.List;
 
 import static org.springframework.data.mongodb.core.aggregation.Aggregation.*;
 
+/**
+ * Báo cáo doanh số. Mặc định đọc từ rollup theo ngày ({@link SalesRollupService}) nên chi phí tỉ lệ với số ngày
+ * trong khoảng báo cáo; {@code app.report.rollup.enabled=false} quay về aggregate trực tiếp trên {@code orders}.
+ */
 @Service
 @RequiredArgsConstructor
 public class ReportService {
 
     private final MongoTemplate mongoTemplate;
     private final ExcelExportService excelExportService;
+    private final SalesRollupService salesRollupService;
+    private final SalesRollupProperties rollupProperties;
 
     public ReportResponse getReport(String shopId, ReportRequest request) {
-        MatchOperation match = buildMatchOperation(shopId, request);
-
-        Aggregation aggregation = newAggregation(
-                match,
-                project()
-                        .and("totalPrice").as("totalPrice")
-                        .and("totalAmount").as("totalAmount")
-                        .and(context -> new Document("$sum", "$items.quantity")).as("itemCount"),
-                group()
-                        .count().as("totalOrders")
-                        .sum("itemCount").as("totalProductsSold")
-                        .sum("totalPrice").as("totalRevenue")
-                        .sum("totalAmount").as("totalAmount")
-        );
-
-        AggregationResults<ReportResponse> results =
-                mongoTemplate.aggregate(aggregation, Order.class, ReportResponse.class);
-
-        ReportResponse response = results.getUniqueMappedResult();
+        ReportResponse response = rollupProperties.isEnabled()
+                ? reportFromRollups(shopId, request)
+                : reportFromOrders(shopId, request);
 
         if (response == null) {
             return ReportResponse.builder()
@@ -72,6 +65,97 @@ public class ReportService {
     }
 
     public List<DailyReportResponse> getDailyReport(String shopId, ReportRequest request) {
+        return rollupProperties.isEnabled()
+                ? dailyReportFromRollups(shopId, request)
+                : dailyReportFromOrders(shopId, request);
+    }
+
+    public List<TopProductResponse> getTopProducts(String shopId, ReportRequest request, int limit) {
+        return rollupProperties.isEnabled()
+                ? topProductsFromRollups(shopId, request, limit)
+                : topProductsFromOrders(shopId, request, limit);
+    }
+
+    // ─────────────────────────────────────────────────────────────────────────
+    // Đọc từ rollup theo ngày
+    // ─────────────────────────────────────────────────────────────────────────
+
+    private ReportResponse reportFromRollups(String shopId, ReportRequest request) {
+        salesRollupService.flushShop(shopId);
+        Aggregation aggregation = newAggregation(
+                buildRollupMatchOperation(shopId, request),
+                group()
+                        .sum("orderCount").as("totalOrders")
+                        .sum("productsSold").as("totalProductsSold")
+                        .sum("revenue").as("totalRevenue")
+                        .sum("amount").as("totalAmount")
+        );
+        return mongoTemplate.aggregate(aggregation, SalesDailyRollup.class, ReportResponse.class)
+                .getUniqueMappedResult();
+    }
+
+    private List<DailyReportResponse> dailyReportFromRollups(String shopId, ReportRequest request) {
+        salesRollupService.flushShop(shopId);
+        Aggregation aggregation = newAggregation(
+                buildRollupMatchOperation(shopId, request),
+                group("date")
+                        .sum("orderCount").as("totalOrders")
+                        .sum("productsSold").as("totalProductsSold")
+                        .sum("revenue").as("totalRevenue")
+                        .sum("amount").as("totalAmount"),
+                project("totalOrders", "totalProductsSold", "totalRevenue", "totalAmount")
+                        .and("date").previousOperation(),
+                sort(Sort.Direction.ASC, "date")
+        );
+        return mongoTemplate.aggregate(aggregation, SalesDailyRollup.class, DailyReportResponse.class)
+                .getMappedResults();
+    }
+
+    private List<TopProductResponse> topProductsFromRollups(String shopId, ReportRequest request, int limit) {
+        salesRollupService.flushShop(shopId);
+        Aggregation aggregation = newAggregation(
+                buildRollupMatchOperation(shopId, request),
+                group("productId")
+                        .last("productName").as("productName")
+                        .sum("quantity").as("totalQuantitySold")
+                        .sum("revenue").as("totalRevenue"),
+                sort(Sort.Direction.DESC, "totalQuantitySold"),
+                limit(limit),
+                project()
+                        .and("_id").as("productId")
+                        .andInclude("productName", "totalQuantitySold", "totalRevenue")
+        );
+        return mongoTemplate.aggregate(aggregation, ProductDailyRollup.class, TopProductResponse.class)
+                .getMappedResults();
+    }
+
+    // ─────────────────────────────────────────────────────────────────────────
+    // Aggregate trực tiếp trên orders
+    // ─────────────────────────────────────────────────────────────────────────
+
+    private ReportResponse reportFromOrders(String shopId, ReportRequest request) {
+        MatchOperation match = buildMatchOperation(shopId, request);
+
+        Aggregation aggregation = newAggregation(
+                match,
+                project()
+                        .and("totalPrice").as("totalPrice")
+                        .and("totalAmount").as("totalAmount")
+                        .and(context -> new Document("$sum", "$items.quantity")).as("itemCount"),
+                group()
+                        .count().as("totalOrders")
+                        .sum("itemCount").as("totalProductsSold")
+                        .sum("totalPrice").as("totalRevenue")
+                        .sum("totalAmount").as("totalAmount")
+        );
+
+        AggregationResults<ReportResponse> results =
+                mongoTemplate.aggregate(aggregation, Order.class, ReportResponse.class);
+
+        return results.getUniqueMappedResult();
+    }
+
+    private List<DailyReportResponse> dailyReportFromOrders(String shopId, ReportRequest request) {
         MatchOperation match = buildMatchOperation(shopId, request);
 
         Aggregation aggregation = newAggregation(
@@ -103,7 +187,7 @@ public class ReportService {
         return results.getMappedResults();
     }
 
-    public List<TopProductResponse> getTopProducts(String shopId, ReportRequest request, int limit) {
+    private List<TopProductResponse> topProductsFromOrders(String shopId, ReportRequest request, int limit) {
         MatchOperation match = buildMatchOperation(shopId, request);
 
         // Multiplier phản ánh trọng lượng cho sản phẩm bán theo cân (fallback quantity cho đơn cũ).
@@ -194,4 +278,25 @@ public class ReportService {
 
         return match(criteria);
     }
+
+    /** Cùng điều kiện với {@link #buildMatchOperation} nhưng trên rollup: khoảng ngày so theo {@code date}. */
+    private MatchOperation buildRollupMatchOperation(String shopId, ReportRequest request) {
+        Criteria criteria = Criteria.where("shopId").is(shopId);
+
+        if (request.getBranchId() != null && !request.getBranchId().isBlank()) {
+            criteria = criteria.and("branchId").is(request.getBranchId());
+        }
+
+        if (request.getStatus() != null) {
+            criteria = criteria.and("status").is(request.getStatus());
+        } else {
+            criteria = criteria.and("status").ne(OrderStatus.CANCELLED);
+        }
+
+        if (request.getStartDate() != null && request.getEndDate() != null) {
+            criteria = criteria.and("date").gte(request.getStartDate()).lte(request.getEndDate());
+        }
+
+        return match(criteria);
+    }
 }
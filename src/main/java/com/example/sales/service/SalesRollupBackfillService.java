@@ -0,0 +1,111 @@
+// File: src/main/java/com/example/sales/service/SalesRollupBackfillService.java
+package com.example.sales.service;
+
+import com.example.sales.model.SalesDailyRollup;
+import com.example.sales.model.Shop;
+import com.example.sales.repository.ShopRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Backfill rollup doanh số theo ngày cho lịch sử đơn của các shop chưa có rollup nào (guard bằng sự tồn tại của
+ * {@link SalesDailyRollup} theo shopId). Mỗi shop là một lần aggregate trên toàn bộ đơn của shop, từ ngày của
+ * đơn đầu tiên đến hôm nay — nên job chạy nền trên {@code rollupBackfillExecutor}, không chặn khởi động.
+ *
+ * Nhiều node: job giữ khóa {@link #LOCK_ID} trong {@code sales_rollup_locks} (gia hạn sau mỗi shop), node khác
+ * gặp khóa đang giữ thì bỏ qua. Node giữ khóa chết giữa chừng → khóa hết hạn, lần chạy sau bỏ qua các shop đã có rollup.
+ */
+@Slf4j
+@Service
+public class SalesRollupBackfillService {
+
+    static final String LOCK_ID = "backfill";
+
+    private final ShopRepository shopRepository;
+    private final MongoTemplate mongoTemplate;
+    private final SalesRollupService salesRollupService;
+    private final TaskExecutor executor;
+
+    /** Job đã đưa vào executor trên node này và chưa chạy xong */
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    public SalesRollupBackfillService(ShopRepository shopRepository,
+                                      MongoTemplate mongoTemplate,
+                                      SalesRollupService salesRollupService,
+                                      @Qualifier("rollupBackfillExecutor") TaskExecutor executor) {
+        this.shopRepository = shopRepository;
+        this.mongoTemplate = mongoTemplate;
+        this.salesRollupService = salesRollupService;
+        this.executor = executor;
+    }
+
+    /** Chạy nền backfill; false nếu node này đang chạy backfill. */
+    public boolean start() {
+        if (!running.compareAndSet(false, true)) return false;
+        try {
+            executor.execute(() -> {
+                try {
+                    backfillMissing();
+                } catch (RuntimeException e) {
+                    log.error("[SalesRollupBackfill] backfill thất bại: {}", e.getMessage(), e);
+                } finally {
+                    running.set(false);
+                }
+            });
+            return true;
+        } catch (TaskRejectedException e) {
+            running.set(false);
+            return false;
+        }
+    }
+
+    /** @return số shop đã dựng rollup; -1 nếu node khác đang giữ khóa backfill. */
+    int backfillMissing() {
+        String owner = new ObjectId().toHexString();
+        if (!salesRollupService.acquireLock(LOCK_ID, owner, false)) {
+            log.info("[SalesRollupBackfill] node khác đang chạy backfill, bỏ qua");
+            return -1;
+        }
+        int rebuilt = 0;
+        try {
+            for (Shop shop : shopRepository.findAll()) {
+                Query byShop = new Query(Criteria.where("shopId").is(shop.getId()));
+                if (mongoTemplate.exists(byShop, SalesDailyRollup.class)) continue;
+
+                com.example.sales.model.Order first = mongoTemplate.findOne(
+                        Query.of(byShop).with(Sort.by(Sort.Direction.ASC, "createdAt")).limit(1),
+                        com.example.sales.model.Order.class);
+                if (first == null || first.getCreatedAt() == null) continue;
+
+                try {
+                    salesRollupService.rebuildShop(shop.getId(), first.getCreatedAt().toLocalDate(), LocalDate.now());
+                    rebuilt++;
+                } catch (RuntimeException e) {
+                    log.error("[SalesRollupBackfill] lỗi dựng rollup shop {}: {}", shop.getId(), e.getMessage(), e);
+                }
+                if (!salesRollupService.renewLock(LOCK_ID, owner)) {
+                    log.warn("[SalesRollupBackfill] mất khóa backfill, dừng trên node này sau {} shop", rebuilt);
+                    return rebuilt;
+                }
+            }
+        } finally {
+            salesRollupService.releaseLock(LOCK_ID, owner);
+        }
+
+        if (rebuilt > 0) {
+            log.info("[SalesRollupBackfill] đã dựng rollup doanh số cho {} shop.", rebuilt);
+        }
+        return rebuilt;
+    }
+}
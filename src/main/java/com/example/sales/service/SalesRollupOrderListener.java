@@ -0,0 +1,24 @@
+// File: src/main/java/com/example/sales/service/SalesRollupOrderListener.java
+package com.example.sales.service;
+
+import com.example.sales.model.Order;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.mongodb.core.mapping.event.AbstractMongoEventListener;
+import org.springframework.data.mongodb.core.mapping.event.AfterSaveEvent;
+import org.springframework.stereotype.Component;
+
+/**
+ * Mọi lần lưu {@link Order} qua repository / MongoTemplate.save (tạo, hủy, thanh toán, đổi trạng thái,
+ * tách đơn...) đánh dấu ngày của đơn để {@link SalesRollupService} dựng lại rollup.
+ */
+@Component
+@RequiredArgsConstructor
+public class SalesRollupOrderListener extends AbstractMongoEventListener<Order> {
+
+    private final SalesRollupService salesRollupService;
+
+    @Override
+    public void onAfterSave(AfterSaveEvent<Order> event) {
+        salesRollupService.markDirty(event.getSource());
+    }
+}
@@ -0,0 +1,371 @@
+// File: src/main/java/com/example/sales/service/SalesRollupService.java
+package com.example.sales.service;
+
+import com.example.sales.config.SalesRollupProperties;
+import com.example.sales.constant.OrderStatus;
+import com.example.sales.model.Order;
+import com.example.sales.model.ProductDailyRollup;
+import com.example.sales.model.SalesDailyRollup;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndReplaceOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOptions;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.springframework.data.mongodb.core.aggregation.Aggregation.*;
+
+/**
+ * Dựng và duy trì rollup doanh số theo ngày ({@link SalesDailyRollup}, {@link ProductDailyRollup}).
+ *
+ * Cập nhật tăng dần theo ngày: mỗi lần lưu {@link Order} (xem {@link SalesRollupOrderListener}), bucket
+ * (shop, chi nhánh, ngày tạo đơn) được đánh dấu bẩn và được dựng lại từ {@code orders} ở lần flush kế tiếp.
+ * Dựng lại cả bucket thay vì cộng/trừ delta nên kết quả không phụ thuộc vào chỗ nào trong code đổi
+ * trạng thái / tổng tiền đơn, và lưu nhiều lần liên tiếp cùng ngày chỉ tốn một lần aggregate.
+ *
+ * Document của bucket được replace (upsert) theo {@code _id} cố định, sau đó xóa các document cũ của bucket
+ * không còn xuất hiện (theo {@code revision}) — người đọc luôn thấy giá trị cũ hoặc mới của từng document.
+ * Các lần dựng của cùng shop (flush trên nhiều node, kiểm tra nhất quán, backfill) được tuần tự hóa bằng khóa
+ * có hạn trong {@code sales_rollup_locks}: nếu chạy song song, lần này sẽ xóa document vừa ghi của lần kia
+ * vì khác {@code revision}. Flush gặp khóa đang bị giữ thì để bucket bẩn cho lần sau; dựng lại theo yêu cầu
+ * chờ tối đa {@code lockWait}.
+ * Tập bucket bẩn nằm trong bộ nhớ từng node: mất khi node dừng đột ngột, bộ kiểm tra nhất quán hằng đêm
+ * sẽ phát hiện và dựng lại.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class SalesRollupService {
+
+    private static final int BULK_BATCH_SIZE = 1000;
+    private static final double AMOUNT_TOLERANCE = 0.005;
+    static final String LOCK_COLLECTION = "sales_rollup_locks";
+    private static final long LOCK_POLL_MILLIS = 200;
+
+    private final MongoTemplate mongoTemplate;
+    private final SalesRollupProperties properties;
+
+    private final Set<DayBucket> dirty = ConcurrentHashMap.newKeySet();
+
+    /** Bucket rollup: branchId null = đơn không gắn chi nhánh (dữ liệu cũ). */
+    public record DayBucket(String shopId, String branchId, LocalDate date) {
+    }
+
+    public void markDirty(Order order) {
+        if (order == null || order.getShopId() == null || order.getCreatedAt() == null) return;
+        dirty.add(new DayBucket(order.getShopId(), order.getBranchId(), order.getCreatedAt().toLocalDate()));
+    }
+
+    @Scheduled(fixedDelayString = "${app.report.rollup.flush-interval:5s}")
+    public void flush() {
+        flushMatching(bucket -> true);
+    }
+
+    /** Dựng ngay các bucket bẩn của shop trên node này, để báo cáo thấy được đơn vừa lưu. */
+    public void flushShop(String shopId) {
+        flushMatching(bucket -> bucket.shopId().equals(shopId));
+    }
+
+    private void flushMatching(Predicate<DayBucket> filter) {
+        for (DayBucket bucket : List.copyOf(dirty)) {
+            if (!filter.test(bucket) || !dirty.remove(bucket)) continue;
+            try {
+                rebuild(bucket.shopId(), true, bucket.branchId(), bucket.date(), bucket.date(), false);
+            } catch (RuntimeException e) {
+                dirty.add(bucket);
+                log.warn("Không dựng được rollup {} — sẽ thử lại ở lần flush sau: {}", bucket, e.getMessage());
+            }
+        }
+    }
+
+    /** Dựng lại một bucket, chờ nếu shop đang được dựng ở nơi khác. */
+    public void rebuildBucket(DayBucket bucket) {
+        rebuild(bucket.shopId(), true, bucket.branchId(), bucket.date(), bucket.date(), true);
+    }
+
+    /** Dựng lại toàn bộ rollup của shop (mọi chi nhánh) trong khoảng ngày [from, to]. */
+    public void rebuildShop(String shopId, LocalDate from, LocalDate to) {
+        rebuild(shopId, false, null, from, to, true);
+    }
+
+    private void rebuild(String shopId, boolean branchScoped, String branchId, LocalDate from, LocalDate to,
+                         boolean wait) {
+        String revision = new ObjectId().toHexString();
+        if (!acquireLock(shopId, revision, wait)) {
+            throw new IllegalStateException("Rollup của shop " + shopId + " đang được dựng ở nơi khác");
+        }
+        try {
+            rebuildLocked(shopId, branchScoped, branchId, from, to, revision);
+        } finally {
+            releaseLock(shopId, revision);
+        }
+    }
+
+    private void rebuildLocked(String shopId, boolean branchScoped, String branchId, LocalDate from, LocalDate to,
+                               String revision) {
+        LocalDateTime now = LocalDateTime.now();
+        Criteria orders = orderCriteria(shopId, branchScoped, branchId, from, to);
+
+        try (Stream<SalesDailyRollup> rows = computeSales(shopId, orders)) {
+            replaceAll(SalesDailyRollup.class, rows.peek(r -> {
+                r.setRevision(revision);
+                r.setComputedAt(now);
+            }), SalesDailyRollup::getId);
+        }
+        try (Stream<ProductDailyRollup> rows = computeProducts(shopId, orders)) {
+            replaceAll(ProductDailyRollup.class, rows.peek(r -> {
+                r.setRevision(revision);
+                r.setComputedAt(now);
+            }), ProductDailyRollup::getId);
+        }
+
+        Query stale = new Query(rollupCriteria(shopId, branchScoped, branchId, from, to).and("revision").ne(revision));
+        mongoTemplate.remove(stale, SalesDailyRollup.class);
+        mongoTemplate.remove(stale, ProductDailyRollup.class);
+    }
+
+    /**
+     * Giữ khóa dựng rollup của shop tới {@code lockLease}. Upsert chỉ khớp khi khóa chưa có hoặc đã hết hạn;
+     * khóa còn hạn thì upsert chèn trùng {@code _id} → DuplicateKeyException = đang bị giữ.
+     */
+    boolean acquireLock(String shopId, String owner, boolean wait) {
+        long deadline = System.nanoTime() + properties.getLockWait().toNanos();
+        while (true) {
+            LocalDateTime now = LocalDateTime.now();
+            Query free = Query.query(Criteria.where("_id").is(shopId)
+                    .orOperator(Criteria.where("leaseUntil").is(null), Criteria.where("leaseUntil").lt(now)));
+            try {
+                mongoTemplate.upsert(free, new Update()
+                        .set("owner", owner)
+                        .set("leaseUntil", now.plus(properties.getLockLease())), LOCK_COLLECTION);
+                return true;
+            } catch (DuplicateKeyException e) {
+                if (!wait || System.nanoTime() > deadline) return false;
+            }
+            try {
+                Thread.sleep(LOCK_POLL_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+    }
+
+    /** Gia hạn khóa đang giữ thêm {@code lockLease}; false nếu khóa đã hết hạn và bị nơi khác nhận. */
+    boolean renewLock(String shopId, String owner) {
+        return mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is(shopId).and("owner").is(owner)),
+                new Update().set("leaseUntil", LocalDateTime.now().plus(properties.getLockLease())),
+                LOCK_COLLECTION).getMatchedCount() > 0;
+    }
+
+    void releaseLock(String shopId, String owner) {
+        try {
+            mongoTemplate.remove(Query.query(Criteria.where("_id").is(shopId).and("owner").is(owner)), LOCK_COLLECTION);
+        } catch (RuntimeException e) {
+            // Khóa tự hết hạn sau lockLease
+            log.warn("Không nhả được khóa rollup shop {}: {}", shopId, e.getMessage());
+        }
+    }
+
+    /**
+     * So rollup với aggregate trực tiếp trên {@code orders} trong khoảng ngày.
+     *
+     * @return các bucket bị lệch (thiếu, thừa hoặc khác số liệu)
+     */
+    public Set<DayBucket> findInconsistentBuckets(String shopId, LocalDate from, LocalDate to) {
+        Criteria orders = orderCriteria(shopId, false, null, from, to);
+        Query stored = new Query(rollupCriteria(shopId, false, null, from, to));
+        Set<DayBucket> mismatched = new LinkedHashSet<>();
+
+        Map<String, SalesDailyRollup> expectedSales;
+        try (Stream<SalesDailyRollup> rows = computeSales(shopId, orders)) {
+            expectedSales = rows.collect(Collectors.toMap(SalesDailyRollup::getId, Function.identity()));
+        }
+        for (SalesDailyRollup actual : mongoTemplate.find(stored, SalesDailyRollup.class)) {
+            SalesDailyRollup expected = expectedSales.remove(actual.getId());
+            if (expected == null
+                    || expected.getOrderCount() != actual.getOrderCount()
+                    || expected.getProductsSold() != actual.getProductsSold()
+                    || !closeTo(expected.getRevenue(), actual.getRevenue())
+                    || !closeTo(expected.getAmount(), actual.getAmount())) {
+                mismatched.add(new DayBucket(actual.getShopId(), actual.getBranchId(), actual.getDate()));
+            }
+        }
+        expectedSales.values().forEach(r -> mismatched.add(new DayBucket(r.getShopId(), r.getBranchId(), r.getDate())));
+
+        Map<String, ProductDailyRollup> expectedProducts;
+        try (Stream<ProductDailyRollup> rows = computeProducts(shopId, orders)) {
+            expectedProducts = rows.collect(Collectors.toMap(ProductDailyRollup::getId, Function.identity()));
+        }
+        for (ProductDailyRollup actual : mongoTemplate.find(stored, ProductDailyRollup.class)) {
+            ProductDailyRollup expected = expectedProducts.remove(actual.getId());
+            if (expected == null
+                    || !closeTo(expected.getQuantity(), actual.getQuantity())
+                    || !closeTo(expected.getRevenue(), actual.getRevenue())) {
+                mismatched.add(new DayBucket(actual.getShopId(), actual.getBranchId(), actual.getDate()));
+            }
+        }
+        expectedProducts.values().forEach(r -> mismatched.add(new DayBucket(r.getShopId(), r.getBranchId(), r.getDate())));
+        return mismatched;
+    }
+
+    // ─────────────────────────────────────────────────────────────────────────
+    // Aggregate từ orders
+    // ─────────────────────────────────────────────────────────────────────────
+
+    private Stream<SalesDailyRollup> computeSales(String shopId, Criteria orders) {
+        Aggregation aggregation = newAggregation(
+                match(orders),
+                project("branchId", "status", "totalPrice", "totalAmount")
+                        .and(context -> dayExpression()).as("day")
+                        .and(context -> new Document("$sum", "$items.quantity")).as("itemCount"),
+                group("branchId", "day", "status")
+                        .count().as("orderCount")
+                        .sum("itemCount").as("productsSold")
+                        .sum("totalPrice").as("revenue")
+                        .sum("totalAmount").as("amount")
+        ).withOptions(AggregationOptions.builder().allowDiskUse(true).build());
+
+        return mongoTemplate.aggregateStream(aggregation, Order.class, Document.class).map(doc -> {
+            Document key = doc.get("_id", Document.class);
+            String branchId = key.getString("branchId");
+            LocalDate date = LocalDate.parse(key.getString("day"));
+            OrderStatus status = OrderStatus.valueOf(key.getString("status"));
+            return SalesDailyRollup.builder()
+                    .id(rollupId(shopId, branchId, date, status))
+                    .shopId(shopId)
+                    .branchId(branchId)
+                    .date(date)
+                    .status(status)
+                    .orderCount(number(doc, "orderCount").longValue())
+                    .productsSold(number(doc, "productsSold").longValue())
+                    .revenue(number(doc, "revenue").doubleValue())
+                    .amount(number(doc, "amount").doubleValue())
+                    .build();
+        });
+    }
+
+    private Stream<ProductDailyRollup> computeProducts(String shopId, Criteria orders) {
+        // Cùng quy ước với báo cáo top sản phẩm: bán theo cân tính theo trọng lượng
+        Document effectiveQty = new Document("$cond", List.of(
+                new Document("$eq", List.of("$items.sellByWeight", true)),
+                new Document("$ifNull", List.of("$items.weight", 0)),
+                "$items.quantity"));
+
+        Aggregation aggregation = newAggregation(
+                match(orders),
+                unwind("items"),
+                project("branchId", "status")
+                        .and(context -> dayExpression()).as("day")
+                        .and("items.productId").as("productId")
+                        .and("items.productName").as("productName")
+                        .and(context -> effectiveQty).as("qty")
+                        .and(context -> new Document("$multiply",
+                                List.of(effectiveQty, "$items.priceAfterDiscount"))).as("lineRevenue"),
+                group("branchId", "day", "status", "productId")
+                        .last("productName").as("productName")
+                        .sum("qty").as("quantity")
+                        .sum("lineRevenue").as("revenue")
+        ).withOptions(AggregationOptions.builder().allowDiskUse(true).build());
+
+        return mongoTemplate.aggregateStream(aggregation, Order.class, Document.class).map(doc -> {
+            Document key = doc.get("_id", Document.class);
+            String branchId = key.getString("branchId");
+            LocalDate date = LocalDate.parse(key.getString("day"));
+            OrderStatus status = OrderStatus.valueOf(key.getString("status"));
+            String productId = key.getString("productId");
+            return ProductDailyRollup.builder()
+                    .id(rollupId(shopId, branchId, date, status) + "|" + productId)
+                    .shopId(shopId)
+                    .branchId(branchId)
+                    .date(date)
+                    .status(status)
+                    .productId(productId)
+                    .productName(doc.getString("productName"))
+                    .quantity(number(doc, "quantity").doubleValue())
+                    .revenue(number(doc, "revenue").doubleValue())
+                    .build();
+        });
+    }
+
+    private <T> void replaceAll(Class<T> type, Stream<T> rows, Function<T, String> idOf) {
+        BulkOperations ops = null;
+        int pending = 0;
+        for (Iterator<T> it = rows.iterator(); it.hasNext(); ) {
+            T row = it.next();
+            if (ops == null) ops = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, type);
+            ops.replaceOne(new Query(Criteria.where("_id").is(idOf.apply(row))), row,
+                    FindAndReplaceOptions.options().upsert());
+            if (++pending == BULK_BATCH_SIZE) {
+                ops.execute();
+                ops = null;
+                pending = 0;
+            }
+        }
+        if (ops != null) ops.execute();
+    }
+
+    // ─────────────────────────────────────────────────────────────────────────
+
+    private static Criteria orderCriteria(String shopId, boolean branchScoped, String branchId,
+                                          LocalDate from, LocalDate to) {
+        Criteria criteria = Criteria.where("shopId").is(shopId);
+        if (branchScoped) criteria = criteria.and("branchId").is(branchId);
+        return criteria.and("createdAt").gte(from.atStartOfDay()).lt(to.plusDays(1).atStartOfDay());
+    }
+
+    private static Criteria rollupCriteria(String shopId, boolean branchScoped, String branchId,
+                                           LocalDate from, LocalDate to) {
+        Criteria criteria = Criteria.where("shopId").is(shopId);
+        if (branchScoped) criteria = criteria.and("branchId").is(branchId);
+        return criteria.and("date").gte(from).lte(to);
+    }
+
+    static String rollupId(String shopId, String branchId, LocalDate date, OrderStatus status) {
+        return shopId + "|" + (branchId != null ? branchId : "") + "|" + date + "|" + status.name();
+    }
+
+    /** Ngày (yyyy-MM-dd) của createdAt theo múi giờ JVM — cùng múi giờ với LocalDateTime lưu xuống Mongo. */
+    private static Document dayExpression() {
+        return new Document("$dateToString", new Document("format", "%Y-%m-%d")
+                .append("date", "$createdAt")
+                .append("timezone", mongoTimezone()));
+    }
+
+    private static String mongoTimezone() {
+        ZoneId zone = ZoneId.systemDefault();
+        if (zone instanceof ZoneOffset offset) {
+            return offset.getTotalSeconds() == 0 ? "UTC" : offset.getId();
+        }
+        return zone.getId();
+    }
+
+    private static Number number(Document doc, String field) {
+        Object value = doc.get(field);
+        return value instanceof Number n ? n : 0;
+    }
+
+    private static boolean closeTo(double a, double b) {
+        return Math.abs(a - b) < AMOUNT_TOLERANCE;
+    }
+}
@@ -1,6 +1,19 @@
 package com.example.sales.service;
 
+import java.util.List;
+
 public interface SequenceService {
     String getNextCode(String shopId, String prefix, String type);
     void updateNextSequence(String shopId, String prefix, String type);
-}
\ No newline at end of file
+
+    /**
+     * Cấp và trả về mã kế tiếp trong một thao tác nguyên tử (không đọc-rồi-ghi),
+     * an toàn khi nhiều node/terminal gọi đồng thời.
+     */
+    String nextCode(String shopId, String prefix, String type);
+
+    /**
+     * Cấp liền {@code count} mã kế tiếp bằng một thao tác nguyên tử (dùng cho import hàng loạt).
+     */
+    List<String> nextCodes(String shopId, String prefix, String type, int count);
+}
@@ -2,6 +2,7 @@
 package com.example.sales.service;
 
 import com.example.sales.cache.ShopCache;
+import com.example.sales.cache.ShopUserCache;
 import com.example.sales.constant.ApiCode;
 import com.example.sales.exception.BusinessException;
 import com.example.sales.model.Shop;
@@ -30,6 +31,7 @@ public class ShopContextResolver {
     private final ShopRepository shopRepository;
     private final ShopCache shopCache;
     private final ShopUserRepository shopUserRepository;
+    private final ShopUserCache shopUserCache;
 
     /**
      * Gợi ý shopId: query {@code shopId} trước, sau đó header {@code X-Shop-Id}.
@@ -110,7 +112,8 @@ public class ShopContextResolver {
         if (userId.equals(shop.getOwnerId())) {
             return shop;
         }
-        if (shopUserRepository.findByShopIdAndUserIdAndDeletedFalse(shop.getId(), userId).isPresent()) {
+        // Chạy ở mọi request ghi → dùng cache quyền (ShopUserService evict khi thêm/xóa user)
+        if (shopUserCache.getAccess(shop.getId(), userId).isMember()) {
             return shop;
         }
         throw new BusinessException(ApiCode.ACCESS_DENIED);
@@ -64,6 +64,7 @@ public class ShopUserService extends BaseService {
                 shopUser.setRole(role);
                 shopUser.setPermissions(PermissionUtils.getDefaultPermissions(role));
                 shopUserRepository.save(shopUser);
+                shopUserCache.evict(shopId, userId);
                 auditLogService.log(performedByUserId, shopId, shopUser.getId(), "SHOP_USER", "RESTORED",
                         String.format("Khôi phục người dùng %s của cửa hàng %s với vai trò %s", userId, shopId, role));
             }
@@ -75,6 +76,7 @@ public class ShopUserService extends BaseService {
                     .permissions(PermissionUtils.getDefaultPermissions(role))
                     .build();
             shopUserRepository.save(newShopUser);
+            shopUserCache.evict(shopId, userId);
             auditLogService.log(performedByUserId, shopId, newShopUser.getId(), "SHOP_USER", "ADDED",
                     String.format("Thêm người dùng %s vào cửa hàng %s với vai trò %s", userId, shopId, role));
         }
@@ -106,6 +108,7 @@ public class ShopUserService extends BaseService {
             shopUser.setRole(role);
             shopUser.setPermissions(PermissionUtils.getDefaultPermissions(role));
             savedShopUser = shopUserRepository.save(shopUser);
+            shopUserCache.evict(shopId, user.getId());
             auditLogService.log(performedByUserId, shopId, shopUser.getId(), "SHOP_USER", "RESTORED",
                     String.format("Khôi phục người dùng %s vào cửa hàng %s với vai trò %s", email, shopId, role));
         } else {
@@ -116,6 +119,7 @@ public class ShopUserService extends BaseService {
                     .permissions(PermissionUtils.getDefaultPermissions(role))
                     .build();
             savedShopUser = shopUserRepository.save(newShopUser);
+            shopUserCache.evict(shopId, user.getId());
             auditLogService.log(performedByUserId, shopId, newShopUser.getId(), "SHOP_USER", "ADDED",
                     String.format("Thêm người dùng %s vào cửa hàng %s với vai trò %s", email, shopId, role));
         }
@@ -145,6 +149,7 @@ public class ShopUserService extends BaseService {
         target.setRole(newRole);
         target.setPermissions(PermissionUtils.getDefaultPermissions(newRole));
         shopUserRepository.save(target);
+        shopUserCache.evict(shopId, targetUserId);
 
         auditLogService.log(performedByUserId, shopId, target.getId(), "SHOP_USER", "ROLE_UPDATED",
                 String.format("Cập nhật vai trò từ %s thành %s cho người dùng %s", oldRole, newRole, targetUserId));
@@ -167,6 +172,7 @@ public class ShopUserService extends BaseService {
 
         target.setPermissions(permissions);
         shopUserRepository.save(target);
+        shopUserCache.evict(shopId, targetUserId);
 
         auditLogService.log(performedByUserId, shopId, target.getId(), "SHOP_USER", "PERMISSIONS_UPDATED",
                 String.format("Cập nhật quyền cho người dùng %s", targetUserId));
@@ -188,6 +194,7 @@ public class ShopUserService extends BaseService {
 
         shopUser.setDeleted(true);
         shopUserRepository.save(shopUser);
+        shopUserCache.evict(shopId, userId);
 
         auditLogService.log(performedByUserId, shopId, shopUser.getId(), "SHOP_USER", "REMOVED",
                 String.format("Xoá mềm người dùng %s khỏi cửa hàng %s", userId, shopId));
@@ -388,5 +395,6 @@ public class ShopUserService extends BaseService {
             shopUser.setDeleted(true);
         }
         shopUserRepository.saveAll(shopUsers);
+        shopUsers.forEach(su -> shopUserCache.evict(shopId, su.getUserId()));
     }
 }
@@ -1,6 +1,7 @@
 // File: src/main/java/com/example/sales/service/SubscriptionService.java
 package com.example.sales.service;
 
+import com.example.sales.cache.SubscriptionStatusCache;
 import com.example.sales.constant.ApiCode;
 import com.example.sales.constant.NotificationType;
 import com.example.sales.constant.PaymentGatewayType;
@@ -31,6 +32,7 @@ import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.time.temporal.ChronoUnit;
 import java.util.Collection;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.function.Function;
@@ -55,6 +57,8 @@ public class SubscriptionService {
     public static final long TRIAL_DAYS = 30L;
     public static final long BASIC_AMOUNT_VND = 99_000L;
     private static final int BILLING_CYCLE_MONTHS = 1;
+    /** Số subscription hết hạn mỗi lần dispatchAll thông báo. */
+    static final int EXPIRE_CHUNK_SIZE = 100;
 
     private final SubscriptionRepository subscriptionRepository;
     private final SubscriptionHistoryRepository historyRepository;
@@ -62,6 +66,7 @@ public class SubscriptionService {
     private final UserRepository userRepository;
     private final NotificationDispatcher notificationDispatcher;
     private final PaymentTransactionRepository paymentTransactionRepository;
+    private final SubscriptionStatusCache subscriptionStatusCache;
 
     private static final DateTimeFormatter FMT_DT = DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm");
     private static final DateTimeFormatter FMT_D = DateTimeFormatter.ofPattern("dd/MM/yyyy");
@@ -88,6 +93,7 @@ public class SubscriptionService {
                 .gateway(PaymentGatewayType.MANUAL)
                 .build();
         sub = subscriptionRepository.save(sub);
+        subscriptionStatusCache.refresh(sub);
         log.info("[Subscription] shop {} bắt đầu TRIAL tới {}", shop.getId(), trialEnd);
         return sub;
     }
@@ -126,6 +132,7 @@ public class SubscriptionService {
         sub.setAmountVnd(BASIC_AMOUNT_VND);
 
         subscriptionRepository.save(sub);
+        subscriptionStatusCache.refresh(sub);
 
         SubscriptionHistory history = SubscriptionHistory.builder()
                 .shopId(shopId)
@@ -251,6 +258,7 @@ public class SubscriptionService {
         sub.setNextBillingDate(nextEnd);
         sub.setNote(reason);
         subscriptionRepository.save(sub);
+        subscriptionStatusCache.refresh(sub);
 
         historyRepository.save(SubscriptionHistory.builder()
                 .shopId(shopId)
@@ -272,6 +280,7 @@ public class SubscriptionService {
         sub.setStatus(status);
         sub.setNote(reason);
         subscriptionRepository.save(sub);
+        subscriptionStatusCache.refresh(sub);
 
         historyRepository.save(SubscriptionHistory.builder()
                 .shopId(shopId)
@@ -285,31 +294,61 @@ public class SubscriptionService {
 
     /** Scheduler gọi để đánh dấu TRIAL/ACTIVE hết hạn. */
     public void markExpired(Subscription sub, boolean fromTrial) {
-        sub.setStatus(SubscriptionStatus.EXPIRED);
-        subscriptionRepository.save(sub);
+        markExpiredAll(List.of(sub), fromTrial);
+    }
 
-        historyRepository.save(SubscriptionHistory.builder()
-                .shopId(sub.getShopId())
-                .userId(sub.getOwnerId())
-                .actionType(fromTrial ? SubscriptionActionType.TRIAL_EXPIRED
-                        : SubscriptionActionType.PERIOD_EXPIRED)
-                .build());
+    /**
+     * Đánh dấu cả lượt subscription hết hạn; thông báo cho owner gửi bằng dispatchAll theo từng chunk
+     * {@link #EXPIRE_CHUNK_SIZE}, ngay sau các lần lưu của chunk đó. Subscription đã lưu EXPIRED không còn được
+     * scheduler chọn lại, nên lỗi ở một subscription (hay một lần dispatch) chỉ được log — không làm mất
+     * thông báo của những subscription đã lưu trước nó.
+     */
+    public void markExpiredAll(List<Subscription> subs, boolean fromTrial) {
+        for (int from = 0; from < subs.size(); from += EXPIRE_CHUNK_SIZE) {
+            List<Subscription> chunk = subs.subList(from, Math.min(from + EXPIRE_CHUNK_SIZE, subs.size()));
+            List<NotificationEnvelope> envelopes = new ArrayList<>(chunk.size());
+            for (Subscription sub : chunk) {
+                try {
+                    sub.setStatus(SubscriptionStatus.EXPIRED);
+                    subscriptionRepository.save(sub);
+                    // Đã lưu EXPIRED → owner phải được báo dù các bước sau lỗi
+                    if (sub.getOwnerId() != null) {
+                        envelopes.add(expiredEnvelope(sub, fromTrial));
+                    }
+                    subscriptionStatusCache.refresh(sub);
 
-        if (sub.getOwnerId() != null) {
-            notificationDispatcher.dispatch(NotificationEnvelope.builder()
-                    .type(NotificationType.BILLING_PLAN_EXPIRED)
-                    .shopId(sub.getShopId())
-                    .recipient(sub.getOwnerId())
-                    .title(fromTrial ? "Thời gian dùng thử đã kết thúc" : "Gói dịch vụ đã hết hạn")
-                    .message("Vui lòng thanh toán 99.000đ để tiếp tục sử dụng đầy đủ tính năng.")
-                    .referenceId(sub.getId())
-                    .referenceType("SUBSCRIPTION")
-                    .dedupeKey("BILLING_EXPIRED:" + sub.getShopId()
-                            + ":" + LocalDateTime.now().toLocalDate())
-                    .build());
+                    historyRepository.save(SubscriptionHistory.builder()
+                            .shopId(sub.getShopId())
+                            .userId(sub.getOwnerId())
+                            .actionType(fromTrial ? SubscriptionActionType.TRIAL_EXPIRED
+                                    : SubscriptionActionType.PERIOD_EXPIRED)
+                            .build());
+                } catch (Exception ex) {
+                    log.warn("[Subscription] expire shop {} lỗi: {}", sub.getShopId(), ex.getMessage());
+                }
+            }
+            try {
+                notificationDispatcher.dispatchAll(envelopes);
+            } catch (Exception ex) {
+                log.warn("[Subscription] gửi {} thông báo hết hạn lỗi: {}", envelopes.size(), ex.getMessage());
+            }
         }
     }
 
+    private static NotificationEnvelope expiredEnvelope(Subscription sub, boolean fromTrial) {
+        return NotificationEnvelope.builder()
+                .type(NotificationType.BILLING_PLAN_EXPIRED)
+                .shopId(sub.getShopId())
+                .recipient(sub.getOwnerId())
+                .title(fromTrial ? "Thời gian dùng thử đã kết thúc" : "Gói dịch vụ đã hết hạn")
+                .message("Vui lòng thanh toán 99.000đ để tiếp tục sử dụng đầy đủ tính năng.")
+                .referenceId(sub.getId())
+                .referenceType("SUBSCRIPTION")
+                .dedupeKey("BILLING_EXPIRED:" + sub.getShopId()
+                        + ":" + LocalDateTime.now().toLocalDate())
+                .build();
+    }
+
     public SubscriptionDto toDto(Subscription sub) {
         LocalDateTime now = LocalDateTime.now();
         long trialDays = 0L;
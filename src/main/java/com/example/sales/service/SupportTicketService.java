@@ -1,10 +1,12 @@
 package com.example.sales.service;
 
 import com.example.sales.constant.ApiCode;
+import com.example.sales.constant.NotificationChannel;
 import com.example.sales.constant.NotificationType;
 import com.example.sales.constant.TicketPriority;
 import com.example.sales.constant.TicketStatus;
 import com.example.sales.constant.UserRole;
+import com.example.sales.dto.notification.NotificationEnvelope;
 import com.example.sales.dto.support.*;
 import com.example.sales.exception.ResourceNotFoundException;
 import com.example.sales.model.Shop;
@@ -14,6 +16,7 @@ import com.example.sales.model.User;
 import com.example.sales.repository.ShopRepository;
 import com.example.sales.repository.SupportTicketRepository;
 import com.example.sales.repository.UserRepository;
+import com.example.sales.service.notification.NotificationDispatcher;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
@@ -43,9 +46,8 @@ public class SupportTicketService {
     private final ShopRepository shopRepository;
     private final MongoTemplate mongoTemplate;
     private final AuditLogService auditLogService;
-    private final NotificationService notificationService;
+    private final NotificationDispatcher notificationDispatcher;
     private final SupportRecipientResolver recipientResolver;
-    private final MailService mailService;
 
     @Value("${app.fe.url:}")
     private String frontendUrl;
@@ -270,20 +272,22 @@ public class SupportTicketService {
         List<String> adminIds = recipientResolver.getAdminUserIds().stream()
                 .filter(id -> !Objects.equals(id, creator.getId()))
                 .toList();
-
-        if (!adminIds.isEmpty()) {
-            notificationService.sendToMultiple(
-                    ticket.getShopId(), adminIds,
-                    NotificationType.TICKET_CREATED,
-                    "Yêu cầu hỗ trợ mới",
-                    ticket.getUserName() + " đã tạo ticket: " + ticket.getSubject(),
-                    ticket.getId(), "TICKET",
-                    creator.getId(), ticket.getUserName());
-        }
-
-        if (isHighPriority(ticket.getPriority())) {
-            sendTicketCreatedEmailsAsync(ticket, creator);
-        }
+        if (adminIds.isEmpty()) return;
+
+        notificationDispatcher.dispatch(ticketEnvelope(ticket, NotificationType.TICKET_CREATED,
+                isHighPriority(ticket.getPriority()))
+                .recipientUserIds(adminIds)
+                .title("Yêu cầu hỗ trợ mới")
+                .message(ticket.getUserName() + " đã tạo ticket: " + ticket.getSubject())
+                .actorId(creator.getId())
+                .actorName(ticket.getUserName())
+                .templateVar("shopName", resolveShopName(ticket.getShopId()))
+                .templateVar("creatorName", ticket.getUserName())
+                .templateVar("creatorEmail", ticket.getUserEmail())
+                .templateVar("category", ticket.getCategory() != null ? ticket.getCategory().name() : "")
+                .templateVar("message", ticket.getMessage())
+                .templateVar("ticketUrl", buildAdminTicketUrl(ticket.getId()))
+                .build());
     }
 
     private void fanOutReply(SupportTicket ticket, User replier, TicketReply reply) {
@@ -293,39 +297,39 @@ public class SupportTicketService {
         if (replierIsCreator) {
             // Creator (shop) phản hồi — ưu tiên báo cho assignee; nếu chưa assign thì fan-out tất cả admin.
             String assigneeId = ticket.getAssigneeId();
+            List<String> recipients;
+            String title;
             if (assigneeId != null && !assigneeId.isBlank()) {
-                notificationService.send(ticket.getShopId(), assigneeId,
-                        NotificationType.TICKET_REPLIED,
-                        "Phản hồi mới trên ticket",
-                        reply.getUserName() + " đã phản hồi: " + ticket.getSubject(),
-                        ticket.getId(), "TICKET",
-                        replier.getId(), reply.getUserName());
+                recipients = List.of(assigneeId);
+                title = "Phản hồi mới trên ticket";
             } else {
-                List<String> adminIds = recipientResolver.getAdminUserIds().stream()
+                recipients = recipientResolver.getAdminUserIds().stream()
                         .filter(id -> !Objects.equals(id, replier.getId()))
                         .toList();
-                if (!adminIds.isEmpty()) {
-                    notificationService.sendToMultiple(ticket.getShopId(), adminIds,
-                            NotificationType.TICKET_REPLIED,
-                            "Phản hồi mới trên ticket (chưa assign)",
-                            reply.getUserName() + " đã phản hồi: " + ticket.getSubject(),
-                            ticket.getId(), "TICKET",
-                            replier.getId(), reply.getUserName());
-                }
+                title = "Phản hồi mới trên ticket (chưa assign)";
             }
+            if (recipients.isEmpty()) return;
+            notificationDispatcher.dispatch(ticketEnvelope(ticket, NotificationType.TICKET_REPLIED, false)
+                    .recipientUserIds(recipients)
+                    .title(title)
+                    .message(reply.getUserName() + " đã phản hồi: " + ticket.getSubject())
+                    .actorId(replier.getId())
+                    .actorName(reply.getUserName())
+                    .build());
         } else {
             // Admin hoặc thành viên khác (non-creator) phản hồi → báo cho creator.
-            notificationService.send(ticket.getShopId(), ticket.getUserId(),
-                    NotificationType.TICKET_REPLIED,
-                    "Phản hồi mới trên ticket",
-                    reply.getUserName() + " đã phản hồi: " + ticket.getSubject(),
-                    ticket.getId(), "TICKET",
-                    replier.getId(), reply.getUserName());
-
-            if (replierIsAdmin && isHighPriority(ticket.getPriority())
-                    && ticket.getUserEmail() != null && !ticket.getUserEmail().isBlank()) {
-                sendTicketReplyEmailAsync(ticket, reply);
-            }
+            boolean email = replierIsAdmin && isHighPriority(ticket.getPriority());
+            notificationDispatcher.dispatch(ticketEnvelope(ticket, NotificationType.TICKET_REPLIED, email)
+                    .recipient(ticket.getUserId())
+                    .title("Phản hồi mới trên ticket")
+                    .message(reply.getUserName() + " đã phản hồi: " + ticket.getSubject())
+                    .actorId(replier.getId())
+                    .actorName(reply.getUserName())
+                    .templateVar("recipientName", ticket.getUserName())
+                    .templateVar("replierName", reply.getUserName())
+                    .templateVar("replyMessage", reply.getMessage())
+                    .templateVar("ticketUrl", buildShopTicketUrl(ticket.getId()))
+                    .build());
         }
     }
 
@@ -334,87 +338,41 @@ public class SupportTicketService {
         if (previous == next) return;
         if (ticket.getUserId().equals(actorId)) return;
 
-        notificationService.send(ticket.getShopId(), ticket.getUserId(),
-                NotificationType.TICKET_STATUS_CHANGED,
-                "Trạng thái ticket đã thay đổi",
-                "Ticket \"" + ticket.getSubject() + "\" đã chuyển sang " + next,
-                ticket.getId(), "TICKET",
-                actorId, null);
-
         boolean terminal = next == TicketStatus.RESOLVED || next == TicketStatus.CLOSED;
-        if (terminal && isHighPriority(ticket.getPriority())
-                && ticket.getUserEmail() != null && !ticket.getUserEmail().isBlank()) {
-            sendTicketStatusEmailAsync(ticket, next);
-        }
+        notificationDispatcher.dispatch(ticketEnvelope(ticket, NotificationType.TICKET_STATUS_CHANGED,
+                terminal && isHighPriority(ticket.getPriority()))
+                .recipient(ticket.getUserId())
+                .title("Trạng thái ticket đã thay đổi")
+                .message("Ticket \"" + ticket.getSubject() + "\" đã chuyển sang " + next)
+                .actorId(actorId)
+                .templateVar("recipientName", ticket.getUserName())
+                .templateVar("status", next.name())
+                .templateVar("ticketUrl", buildShopTicketUrl(ticket.getId()))
+                .build());
     }
 
     private static boolean isHighPriority(TicketPriority priority) {
         return priority == TicketPriority.HIGH || priority == TicketPriority.URGENT;
     }
 
-    private void sendTicketCreatedEmailsAsync(SupportTicket ticket, User creator) {
-        try {
-            List<User> admins = recipientResolver.getAdminUsers();
-            if (admins.isEmpty()) return;
-
-            String shopName = resolveShopName(ticket.getShopId());
-            String ticketUrl = buildAdminTicketUrl(ticket.getId());
-
-            for (User admin : admins) {
-                if (admin.getEmail() == null || admin.getEmail().isBlank()) continue;
-                if (Objects.equals(admin.getId(), creator.getId())) continue;
-
-                Map<String, Object> model = new HashMap<>();
-                model.put("adminName", buildFullName(admin));
-                model.put("shopName", shopName);
-                model.put("creatorName", ticket.getUserName());
-                model.put("creatorEmail", ticket.getUserEmail());
-                model.put("subject", ticket.getSubject());
-                model.put("priority", ticket.getPriority() != null ? ticket.getPriority().name() : "");
-                model.put("category", ticket.getCategory() != null ? ticket.getCategory().name() : "");
-                model.put("message", ticket.getMessage());
-                model.put("ticketUrl", ticketUrl);
-
-                mailService.sendTicketEmailAsync(
-                        admin.getEmail(),
-                        "[Hỗ trợ] " + ticket.getPriority() + " — " + ticket.getSubject(),
-                        "emails/ticket-created-admin",
-                        model);
-            }
-        } catch (Exception ex) {
-            log.warn("Failed to send ticket-created emails for ticket {}: {}",
-                    ticket.getId(), ex.getMessage());
+    /**
+     * Phần chung của envelope ticket. Router bật EMAIL cho mọi TICKET_*; producer tắt EMAIL
+     * khi không đủ điều kiện (chỉ ticket HIGH/URGENT mới gửi email).
+     */
+    private NotificationEnvelope.NotificationEnvelopeBuilder ticketEnvelope(SupportTicket ticket,
+                                                                           NotificationType type,
+                                                                           boolean email) {
+        NotificationEnvelope.NotificationEnvelopeBuilder builder = NotificationEnvelope.builder()
+                .type(type)
+                .shopId(ticket.getShopId())
+                .referenceId(ticket.getId())
+                .referenceType("TICKET")
+                .templateVar("subject", ticket.getSubject())
+                .templateVar("priority", ticket.getPriority() != null ? ticket.getPriority().name() : "");
+        if (!email) {
+            builder.suppressChannel(NotificationChannel.EMAIL);
         }
-    }
-
-    private void sendTicketReplyEmailAsync(SupportTicket ticket, TicketReply reply) {
-        Map<String, Object> model = new HashMap<>();
-        model.put("recipientName", ticket.getUserName());
-        model.put("subject", ticket.getSubject());
-        model.put("replierName", reply.getUserName());
-        model.put("replyMessage", reply.getMessage());
-        model.put("priority", ticket.getPriority() != null ? ticket.getPriority().name() : "");
-        model.put("ticketUrl", buildShopTicketUrl(ticket.getId()));
-
-        mailService.sendTicketEmailAsync(
-                ticket.getUserEmail(),
-                "[Hỗ trợ] Phản hồi mới — " + ticket.getSubject(),
-                "emails/ticket-replied",
-                model);
-    }
-
-    private void sendTicketStatusEmailAsync(SupportTicket ticket, TicketStatus next) {
-        Map<String, Object> model = new HashMap<>();
-        model.put("recipientName", ticket.getUserName());
-        model.put("subject", ticket.getSubject());
-        model.put("status", next.name());
-        model.put("ticketUrl", buildShopTicketUrl(ticket.getId()));
-
-        mailService.sendTicketEmailAsync(
-                ticket.getUserEmail(),
-                "[Hỗ trợ] Cập nhật trạng thái — " + ticket.getSubject(),
-                "emails/ticket-status-changed",
-                model);
+        return builder;
     }
 
     private String resolveShopName(String shopId) {
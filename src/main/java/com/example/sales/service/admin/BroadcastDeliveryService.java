@@ -0,0 +1,385 @@
+// File: src/main/java/com/example/sales/service/admin/BroadcastDeliveryService.java
+package com.example.sales.service.admin;
+
+import com.example.sales.config.BroadcastProperties;
+import com.example.sales.constant.BroadcastStatus;
+import com.example.sales.constant.NotificationChannel;
+import com.example.sales.constant.NotificationType;
+import com.example.sales.constant.UserRole;
+import com.example.sales.dto.notification.NotificationEnvelope;
+import com.example.sales.model.Broadcast;
+import com.example.sales.model.Notification;
+import com.example.sales.model.Shop;
+import com.example.sales.model.User;
+import com.example.sales.service.notification.NotificationDispatcher;
+import com.example.sales.service.notification.NotificationIdempotencyStore;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+
+/**
+ * Gửi broadcast dạng job nền, thay cho vòng lặp dispatch từng user trong thread HTTP của admin.
+ *
+ * Recipient (user hoặc owner của shop, tùy audience) được đọc theo {@code _id} tăng dần thành chunk
+ * {@code chunkSize}; mỗi lượt xử lý song song tối đa {@code parallelism} chunk trên {@code broadcastChunkExecutor}.
+ * Một chunk = một lượt {@link NotificationDispatcher#dispatchAll} (mỗi user một envelope có dedupeKey riêng):
+ * một bulk insert dedupe key, một insertMany notification in-app, email gom theo template (nếu bật).
+ *
+ * Sau mỗi lượt, cursor (_id cuối) và số đếm được lưu vào {@link Broadcast} cùng lúc gia hạn lease. Node chết
+ * giữa chừng → lease hết hạn → {@code BroadcastResumeScheduler} cho node khác nhận lại và gửi tiếp từ cursor.
+ * Lượt đầu sau khi nhận lại kiểm tra thêm notification đã có, vì dedupe key của lượt dở dang có thể đã được
+ * chèn trước khi notification kịp lưu.
+ *
+ * Chunk gửi lỗi (dispatchAll ném lỗi, hoặc sender của một channel lỗi): dedupe key chunk vừa giữ được trả lại,
+ * cursor dừng trước chunk đó và lease được nhả để lượt quét sau gửi lại (lượt kiểm tra notification đã có bỏ qua
+ * user của các chunk đã gửi xong sau nó). Hết {@code maxRetries} lần thì recipient của chunk được đếm là lỗi.
+ */
+@Slf4j
+@Service
+public class BroadcastDeliveryService {
+
+    static final String REFERENCE_TYPE = "BROADCAST";
+
+    private final MongoTemplate mongoTemplate;
+    private final NotificationIdempotencyStore idempotencyStore;
+    private final NotificationDispatcher dispatcher;
+    private final BroadcastProperties properties;
+    private final TaskExecutor executor;
+    private final Executor chunkExecutor;
+
+    private final String nodeId = UUID.randomUUID().toString();
+    /** Broadcast đã đưa vào executor trên node này và chưa chạy xong */
+    private final Set<String> inFlight = ConcurrentHashMap.newKeySet();
+
+    /** Một recipient và {@code _id} của document nguồn (user / shop) dùng làm cursor. */
+    record Recipient(String cursor, String userId) {
+    }
+
+    /** {@code delivered = false}: chunk gửi lỗi, key đã trả lại — cần gửi lại cả chunk. */
+    record ChunkResult(int processed, int sent, int failed, boolean delivered) {
+
+        ChunkResult(int processed, int sent) {
+            this(processed, sent, 0, true);
+        }
+    }
+
+    public BroadcastDeliveryService(MongoTemplate mongoTemplate,
+                                    NotificationIdempotencyStore idempotencyStore,
+                                    NotificationDispatcher dispatcher,
+                                    BroadcastProperties properties,
+                                    @Qualifier("broadcastExecutor") TaskExecutor executor,
+                                    @Qualifier("broadcastChunkExecutor") Executor chunkExecutor) {
+        this.mongoTemplate = mongoTemplate;
+        this.idempotencyStore = idempotencyStore;
+        this.dispatcher = dispatcher;
+        this.properties = properties;
+        this.executor = executor;
+        this.chunkExecutor = chunkExecutor;
+    }
+
+    /**
+     * Đưa broadcast (status SENDING) vào hàng đợi gửi. Nếu pool đầy, broadcast vẫn ở SENDING
+     * và được scheduler nhận lại ở chu kỳ sau.
+     */
+    public void submit(String broadcastId) {
+        if (!inFlight.add(broadcastId)) return;
+        try {
+            executor.execute(() -> {
+                try {
+                    run(broadcastId);
+                } finally {
+                    inFlight.remove(broadcastId);
+                }
+            });
+        } catch (TaskRejectedException e) {
+            inFlight.remove(broadcastId);
+            log.warn("[Broadcast] pool đầy, broadcast {} sẽ được gửi ở lượt quét sau", broadcastId);
+        }
+    }
+
+    void run(String broadcastId) {
+        Broadcast broadcast = claim(broadcastId);
+        if (broadcast == null) return;
+
+        try {
+            boolean recheck = broadcast.getStartedAt() != null;
+            if (!recheck) {
+                int total = (int) countRecipients(broadcast);
+                mongoTemplate.updateFirst(byClaim(broadcastId), new Update()
+                        .set("totalRecipients", total)
+                        .set("startedAt", LocalDateTime.now()), Broadcast.class);
+            } else {
+                log.info("[Broadcast] gửi tiếp {} từ cursor {}", broadcastId, broadcast.getLastCursor());
+            }
+
+            String cursor = broadcast.getLastCursor();
+            int sent = broadcast.getRecipientCount() != null ? broadcast.getRecipientCount() : 0;
+            int failed = broadcast.getFailedCount();
+            int retries = broadcast.getRetryCount();
+            int chunkSize = Math.max(1, properties.getChunkSize());
+            boolean exhausted = false;
+
+            while (!exhausted) {
+                String waveStart = cursor;
+                List<List<Recipient>> wave = new ArrayList<>();
+                while (wave.size() < Math.max(1, properties.getParallelism())) {
+                    List<Recipient> chunk = nextChunk(broadcast, cursor, chunkSize);
+                    if (!chunk.isEmpty()) {
+                        wave.add(chunk);
+                        cursor = chunk.get(chunk.size() - 1).cursor();
+                    }
+                    if (chunk.size() < chunkSize) {
+                        exhausted = true;
+                        break;
+                    }
+                }
+                if (wave.isEmpty()) break;
+
+                boolean checkExisting = recheck;
+                List<CompletableFuture<ChunkResult>> futures = wave.stream()
+                        .map(chunk -> CompletableFuture.supplyAsync(
+                                () -> deliverChunk(broadcast, chunk, checkExisting), chunkExecutor))
+                        .toList();
+                int processed = 0;
+                int waveSent = 0;
+                int waveFailed = 0;
+                // Cursor chỉ tiến tới hết chunk cuối liền mạch đã gửi xong; chunk lỗi đầu tiên giữ cursor lại
+                String committed = waveStart;
+                boolean retry = false;
+                for (int i = 0; i < futures.size(); i++) {
+                    ChunkResult result = futures.get(i).join();
+                    waveSent += result.sent();
+                    if (retry) {
+                        continue;
+                    }
+                    if (!result.delivered()) {
+                        if (retries < properties.getMaxRetries()) {
+                            retry = true;
+                            continue;
+                        }
+                        waveFailed += result.failed();
+                    }
+                    processed += result.processed();
+                    List<Recipient> chunk = wave.get(i);
+                    committed = chunk.get(chunk.size() - 1).cursor();
+                }
+                sent += waveSent;
+                failed += waveFailed;
+                recheck = false;
+                cursor = committed;
+
+                Update progress = new Update()
+                        .set("lastCursor", cursor)
+                        .inc("processedCount", processed)
+                        .inc("recipientCount", waveSent)
+                        .inc("failedCount", waveFailed);
+                if (retry) {
+                    // Nhả lease: BroadcastResumeScheduler nhận lại và gửi tiếp từ chunk lỗi (có kiểm tra notification đã có)
+                    mongoTemplate.updateFirst(byClaim(broadcastId), progress
+                            .inc("retryCount", 1)
+                            .unset("claimedBy")
+                            .unset("leaseUntil"), Broadcast.class);
+                    log.warn("[Broadcast] chunk của broadcast {} gửi lỗi, gửi lại từ cursor {} ở lượt quét sau ({}/{})",
+                            broadcastId, cursor, retries + 1, properties.getMaxRetries());
+                    return;
+                }
+                boolean stillOwned = mongoTemplate.updateFirst(byClaim(broadcastId),
+                        progress.set("leaseUntil", leaseDeadline()), Broadcast.class).getMatchedCount() > 0;
+                if (!stillOwned) {
+                    log.warn("[Broadcast] mất lease của broadcast {}, dừng gửi trên node này", broadcastId);
+                    return;
+                }
+            }
+
+            BroadcastStatus status = failed > 0 && sent == 0 ? BroadcastStatus.FAILED : BroadcastStatus.SENT;
+            LocalDateTime now = LocalDateTime.now();
+            mongoTemplate.updateFirst(byClaim(broadcastId), new Update()
+                    .set("status", status)
+                    .set("sentAt", now)
+                    .set("finishedAt", now)
+                    .unset("claimedBy")
+                    .unset("leaseUntil"), Broadcast.class);
+            log.info("[AdminBroadcast] id={} audience={} sent={} failed={} by adminId={}",
+                    broadcastId, broadcast.getAudience(), sent, failed, broadcast.getCreatedBy());
+        } catch (RuntimeException e) {
+            log.error("[Broadcast] gửi broadcast {} thất bại: {}", broadcastId, e.getMessage(), e);
+            mongoTemplate.updateFirst(byClaim(broadcastId), new Update()
+                    .set("status", BroadcastStatus.FAILED)
+                    .set("errorMessage", e.getMessage())
+                    .set("finishedAt", LocalDateTime.now())
+                    .unset("claimedBy")
+                    .unset("leaseUntil"), Broadcast.class);
+        }
+    }
+
+    /** Id các broadcast SENDING chưa có node nào giữ lease (mới tạo chưa chạy, hoặc node gửi đã chết). */
+    public List<String> findAbandoned() {
+        Query query = Query.query(Criteria.where("status").is(BroadcastStatus.SENDING)
+                .and("deleted").is(false)
+                .orOperator(Criteria.where("leaseUntil").is(null),
+                        Criteria.where("leaseUntil").lt(LocalDateTime.now())));
+        query.fields().include("_id");
+        return mongoTemplate.find(query, Broadcast.class).stream()
+                .map(Broadcast::getId)
+                .filter(id -> !inFlight.contains(id))
+                .toList();
+    }
+
+    ChunkResult deliverChunk(Broadcast broadcast, List<Recipient> chunk, boolean checkExisting) {
+        Set<String> userIds = new LinkedHashSet<>();
+        for (Recipient recipient : chunk) {
+            if (recipient.userId() != null && !recipient.userId().isBlank()) {
+                userIds.add(recipient.userId());
+            }
+        }
+        if (userIds.isEmpty()) return new ChunkResult(chunk.size(), 0);
+
+        List<NotificationEnvelope> envelopes = new ArrayList<>(userIds.size());
+        // Key lượt này giữ (tự acquire, hoặc do dispatcher acquire theo dedupeKey của envelope) — trả lại nếu gửi lỗi
+        List<String> heldKeys = new ArrayList<>(userIds.size());
+        if (checkExisting) {
+            // Lượt dở dang trước crash: dedupe key có thể đã chèn mà notification chưa kịp lưu
+            List<String> alreadyNotified = mongoTemplate.findDistinct(Query.query(
+                            Criteria.where("userId").in(userIds)
+                                    .and("referenceType").is(REFERENCE_TYPE)
+                                    .and("referenceId").is(broadcast.getId())),
+                    "userId", Notification.class, String.class);
+            alreadyNotified.forEach(userIds::remove);
+            Set<String> acquired = idempotencyStore.tryAcquireAll(
+                    userIds.stream().map(userId -> dedupeKey(broadcast.getId(), userId)).toList());
+            for (String userId : userIds) {
+                // Key đã có từ trước → user có thể đã nhận email, chỉ bù in-app
+                boolean fresh = acquired.contains(dedupeKey(broadcast.getId(), userId));
+                envelopes.add(envelope(broadcast, userId, null, fresh));
+            }
+            heldKeys.addAll(acquired);
+        } else {
+            for (String userId : userIds) {
+                String key = dedupeKey(broadcast.getId(), userId);
+                envelopes.add(envelope(broadcast, userId, key, true));
+                heldKeys.add(key);
+            }
+        }
+        if (envelopes.isEmpty()) return new ChunkResult(chunk.size(), 0);
+
+        try {
+            // strict: sender lỗi cũng là chunk lỗi, không đếm là đã gửi
+            return new ChunkResult(chunk.size(), dispatcher.dispatchAll(envelopes, true));
+        } catch (RuntimeException e) {
+            log.warn("[Broadcast] {} gửi chunk {} user thất bại: {}",
+                    broadcast.getId(), envelopes.size(), e.getMessage());
+            idempotencyStore.releaseAll(heldKeys);
+            return new ChunkResult(chunk.size(), 0, envelopes.size(), false);
+        }
+    }
+
+    // ───────────────────────────────────────────────────────────────────────
+
+    private Broadcast claim(String broadcastId) {
+        LocalDateTime now = LocalDateTime.now();
+        Query query = Query.query(Criteria.where("_id").is(broadcastId)
+                .and("status").is(BroadcastStatus.SENDING)
+                .orOperator(Criteria.where("leaseUntil").is(null), Criteria.where("leaseUntil").lt(now)));
+        return mongoTemplate.findAndModify(query,
+                new Update().set("claimedBy", nodeId).set("leaseUntil", leaseDeadline()),
+                FindAndModifyOptions.options().returnNew(true), Broadcast.class);
+    }
+
+    private Query byClaim(String broadcastId) {
+        return Query.query(Criteria.where("_id").is(broadcastId).and("claimedBy").is(nodeId));
+    }
+
+    private LocalDateTime leaseDeadline() {
+        return LocalDateTime.now().plus(properties.getLeaseTimeout());
+    }
+
+    private long countRecipients(Broadcast broadcast) {
+        return isShopAudience(broadcast)
+                ? mongoTemplate.count(Query.query(shopCriteria(broadcast)), Shop.class)
+                : mongoTemplate.count(Query.query(userCriteria(broadcast)), User.class);
+    }
+
+    /** Đọc chunk recipient tiếp theo sau cursor, theo {@code _id} tăng dần. */
+    private List<Recipient> nextChunk(Broadcast broadcast, String after, int limit) {
+        boolean shops = isShopAudience(broadcast);
+        Criteria criteria = shops ? shopCriteria(broadcast) : userCriteria(broadcast);
+        if (after != null) {
+            criteria = criteria.and("_id").gt(after);
+        }
+        Query query = Query.query(criteria).with(Sort.by(Sort.Direction.ASC, "_id")).limit(limit);
+        if (shops) {
+            query.fields().include("_id", "ownerId");
+            return mongoTemplate.find(query, Shop.class).stream()
+                    .map(shop -> new Recipient(shop.getId(), shop.getOwnerId()))
+                    .toList();
+        }
+        query.fields().include("_id");
+        return mongoTemplate.find(query, User.class).stream()
+                .map(user -> new Recipient(user.getId(), user.getId()))
+                .toList();
+    }
+
+    private static boolean isShopAudience(Broadcast broadcast) {
+        return switch (broadcast.getAudience()) {
+            case ALL_USERS, ADMINS -> false;
+            case SHOP_OWNERS, SHOPS_BY_PLAN -> true;
+        };
+    }
+
+    private static Criteria userCriteria(Broadcast broadcast) {
+        Criteria criteria = Criteria.where("deleted").is(false).and("active").is(true);
+        return switch (broadcast.getAudience()) {
+            case ADMINS -> criteria.and("role").is(UserRole.ROLE_ADMIN.name());
+            default -> criteria;
+        };
+    }
+
+    private static Criteria shopCriteria(Broadcast broadcast) {
+        Criteria criteria = Criteria.where("deleted").is(false).and("active").is(true);
+        return switch (broadcast.getAudience()) {
+            case SHOPS_BY_PLAN -> criteria.and("plan").is(broadcast.getPlan().name());
+            default -> criteria;
+        };
+    }
+
+    private static NotificationEnvelope envelope(Broadcast broadcast, String userId,
+                                                 String dedupeKey, boolean allowEmail) {
+        NotificationEnvelope.NotificationEnvelopeBuilder builder = NotificationEnvelope.builder()
+                .type(NotificationType.BROADCAST)
+                .recipient(userId)
+                .title(broadcast.getTitle())
+                .message(broadcast.getMessage())
+                .referenceId(broadcast.getId())
+                .referenceType(REFERENCE_TYPE)
+                .actorId(broadcast.getCreatedBy())
+                .dedupeKey(dedupeKey);
+        if (!allowEmail) {
+            builder.suppressChannel(NotificationChannel.EMAIL);
+        } else if (broadcast.isEmailEnabled()) {
+            builder.forceChannel(NotificationChannel.EMAIL);
+        }
+        return builder.build();
+    }
+
+    static String dedupeKey(String broadcastId, String userId) {
+        return "broadcast:" + broadcastId + ":" + userId;
+    }
+}
@@ -1,6 +1,8 @@
 // File: src/main/java/com/example/sales/service/audit/AdminAuditService.java
 package com.example.sales.service.audit;
 
+import com.example.sales.dto.CursorPage;
+import com.example.sales.helper.KeysetPager;
 import com.example.sales.model.AuditLog;
 import com.example.sales.repository.AuditLogRepository;
 import lombok.RequiredArgsConstructor;
@@ -34,6 +36,7 @@ public class AdminAuditService {
 
     private final AuditLogRepository repository;
     private final MongoTemplate mongoTemplate;
+    private final KeysetPager keysetPager;
 
     @Async
     public void record(AuditLog entry) {
@@ -46,6 +49,30 @@ public class AdminAuditService {
 
     public Page<AuditLog> list(String actorId, String resource, String action,
                                String targetId, Instant from, Instant to, Pageable pageable) {
+        Criteria c = filter(actorId, resource, action, targetId, from, to);
+
+        Pageable sorted = pageable.getSort().isSorted()
+                ? pageable
+                : PageRequest.of(pageable.getPageNumber(), pageable.getPageSize(),
+                Sort.by(Sort.Direction.DESC, "createdAt"));
+
+        long total = mongoTemplate.count(Query.query(c), AuditLog.class);
+        List<AuditLog> rows = mongoTemplate.find(Query.query(c).with(sorted), AuditLog.class);
+        return new PageImpl<>(rows, sorted, total);
+    }
+
+    /**
+     * Cùng filter với {@link #list} nhưng phân trang keyset (createdAt, id) mới nhất trước,
+     * chỉ đếm tổng khi {@code withTotal} ở trang đầu.
+     */
+    public CursorPage<AuditLog> listByCursor(String actorId, String resource, String action, String targetId,
+                                             Instant from, Instant to, String cursor, Integer size, boolean withTotal) {
+        return keysetPager.fetch(filter(actorId, resource, action, targetId, from, to),
+                AuditLog.class, AuditLog::getId, cursor, size, withTotal);
+    }
+
+    private Criteria filter(String actorId, String resource, String action,
+                            String targetId, Instant from, Instant to) {
         Criteria c = new Criteria();
         c.and("deleted").ne(true);
         if (StringUtils.hasText(actorId)) c.and("actorId").is(actorId);
@@ -58,15 +85,7 @@ public class AdminAuditService {
             if (to != null) createdAt = createdAt.lte(toLocal(to));
             c.andOperator(createdAt);
         }
-
-        Pageable sorted = pageable.getSort().isSorted()
-                ? pageable
-                : PageRequest.of(pageable.getPageNumber(), pageable.getPageSize(),
-                Sort.by(Sort.Direction.DESC, "createdAt"));
-
-        long total = mongoTemplate.count(Query.query(c), AuditLog.class);
-        List<AuditLog> rows = mongoTemplate.find(Query.query(c).with(sorted), AuditLog.class);
-        return new PageImpl<>(rows, sorted, total);
+        return c;
     }
 
     /**
@@ -0,0 +1,170 @@
+// File: src/main/java/com/example/sales/service/audit/AuditLogWriter.java
+package com.example.sales.service.audit;
+
+import com.example.sales.config.AuditLogProperties;
+import com.example.sales.model.AuditLog;
+import com.example.sales.repository.AuditLogRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hàng đợi + thread nền ghi audit log theo lô ({@code insertMany}) cho {@code AuditLogService.log}.
+ *
+ * Thread nền lấy log đầu tiên (chờ tối đa flushInterval), gom thêm tới batchSize rồi ghi một lệnh.
+ * Ghi lỗi chỉ log warning và đếm, không bao giờ làm hỏng luồng chính.
+ * Khi tắt ứng dụng (SmartLifecycle.stop, trước khi MongoClient đóng) thread ghi hết hàng đợi.
+ *
+ * Metrics: audit.log.queue.depth (gauge), audit.log.batch.size (summary),
+ * audit.log.dropped / audit.log.failed / audit.log.caller.runs (counter).
+ */
+@Slf4j
+@Component
+public class AuditLogWriter implements SmartLifecycle {
+
+    private final AuditLogRepository repository;
+    private final AuditLogProperties properties;
+    private final BlockingQueue<AuditLog> queue;
+    private final DistributionSummary batchSizes;
+    private final Counter dropped;
+    private final Counter failed;
+    private final Counter callerRuns;
+
+    private volatile boolean running;
+    private Thread worker;
+
+    public AuditLogWriter(AuditLogRepository repository, AuditLogProperties properties, MeterRegistry meterRegistry) {
+        this.repository = repository;
+        this.properties = properties;
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, properties.getQueueCapacity()));
+        Gauge.builder("audit.log.queue.depth", queue, BlockingQueue::size).register(meterRegistry);
+        this.batchSizes = DistributionSummary.builder("audit.log.batch.size").register(meterRegistry);
+        this.dropped = meterRegistry.counter("audit.log.dropped");
+        this.failed = meterRegistry.counter("audit.log.failed");
+        this.callerRuns = meterRegistry.counter("audit.log.caller.runs");
+    }
+
+    /** Đưa log vào hàng đợi; khi đầy xử lý theo overflowPolicy. */
+    public void submit(AuditLog entry) {
+        if (!running) {
+            // Chưa start / đã stop: ghi thẳng để không mất log
+            writeBatch(List.of(entry));
+            return;
+        }
+        if (queue.offer(entry)) {
+            return;
+        }
+        switch (properties.getOverflowPolicy()) {
+            case CALLER_RUNS -> {
+                callerRuns.increment();
+                writeBatch(List.of(entry));
+            }
+            case BLOCK -> {
+                try {
+                    if (!queue.offer(entry, properties.getBlockTimeout().toMillis(), TimeUnit.MILLISECONDS)) {
+                        drop(entry);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    drop(entry);
+                }
+            }
+            case DROP -> drop(entry);
+        }
+    }
+
+    int queueDepth() {
+        return queue.size();
+    }
+
+    @Override
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        worker = new Thread(this::drainLoop, "audit-log-writer");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    @Override
+    public synchronized void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        try {
+            worker.join(properties.getShutdownTimeout().toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (!queue.isEmpty()) {
+            // Thread nền không kịp ghi hết → ghi nốt trong thread shutdown
+            flushRemaining();
+        }
+        log.info("[AuditLog] writer đã dừng");
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    private void drainLoop() {
+        long pollMillis = Math.max(1, properties.getFlushInterval().toMillis());
+        int batchSize = Math.max(1, properties.getBatchSize());
+        List<AuditLog> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                AuditLog first = queue.poll(pollMillis, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                writeBatch(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void flushRemaining() {
+        int batchSize = Math.max(1, properties.getBatchSize());
+        List<AuditLog> batch = new ArrayList<>(batchSize);
+        while (queue.drainTo(batch, batchSize) > 0) {
+            writeBatch(batch);
+            batch.clear();
+        }
+    }
+
+    private void writeBatch(List<AuditLog> batch) {
+        try {
+            repository.insert(batch);
+            batchSizes.record(batch.size());
+        } catch (Exception ex) {
+            failed.increment(batch.size());
+            log.warn("[AuditLog] ghi {} audit log thất bại: {}", batch.size(), ex.getMessage());
+        }
+    }
+
+    private void drop(AuditLog entry) {
+        dropped.increment();
+        log.warn("[AuditLog] hàng đợi đầy, bỏ log {} {} target={}",
+                entry.getTargetType(), entry.getAction(), entry.getTargetId());
+    }
+}
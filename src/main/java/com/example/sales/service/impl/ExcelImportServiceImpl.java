@@ -2,14 +2,16 @@
 package com.example.sales.service.impl;
 
 import com.example.sales.cache.ProductCache;
+import com.example.sales.config.AuditorAwareImpl;
 import com.example.sales.constant.ApiCode;
 import com.example.sales.constant.AppConstants;
+import com.example.sales.dto.product.ProductImportResult;
 import com.example.sales.exception.BusinessException;
+import com.example.sales.export.StreamingExcelReader;
 import com.example.sales.model.Branch;
 import com.example.sales.model.BranchProduct;
 import com.example.sales.model.Product;
 import com.example.sales.model.Shop;
-import com.example.sales.repository.BranchProductRepository;
 import com.example.sales.repository.BranchRepository;
 import com.example.sales.repository.ProductRepository;
 import com.example.sales.repository.ShopRepository;
@@ -17,20 +19,29 @@ import com.example.sales.service.ExcelImportService;
 import com.example.sales.service.SequenceService;
 import com.example.sales.util.CategoryUtils;
 import com.example.sales.util.GtinBarcodeValidator;
+import com.mongodb.bulk.BulkWriteError;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.poi.ss.usermodel.*;
+import org.bson.types.ObjectId;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.StringUtils;
 
 import java.io.IOException;
 import java.io.InputStream;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
-import java.util.List;
-import java.util.Optional;
+import java.util.*;
+import java.util.function.Function;
+import java.util.function.IntConsumer;
+import java.util.stream.Collectors;
 
 /**
  * Import sản phẩm từ Excel.
@@ -53,6 +64,16 @@ import java.util.Optional;
  *   14 Mô tả              (Product.description)
  *   15 Trạng thái SP      (Product.active, TRUE/FALSE)
  *   16 Trạng thái chi nhánh (BranchProduct.activeInBranch, TRUE/FALSE)
+ *
+ * Pipeline (không giữ cả file trong bộ nhớ, không truy vấn theo từng dòng):
+ *   1. {@link StreamingExcelReader} đọc sheet bằng SAX, từng dòng được parse thành {@link ImportRow}.
+ *   2. Cứ {@link #CHUNK_SIZE} dòng: nạp trước Product theo SKU bằng một truy vấn $in, cấp SKU cho
+ *      các dòng để trống bằng một lần đặt trước sequence cho mỗi prefix.
+ *   3. Loại trước các Product có BranchProduct đã xóa mềm (trùng unique productId + branchId — upsert
+ *      sẽ lỗi), rồi ghi Product và BranchProduct (upsert cho mọi chi nhánh) bằng BulkOperations UNORDERED.
+ * Dòng lỗi (thiếu dữ liệu, trùng SKU/barcode...) được ghi vào {@link ProductImportResult#getErrors()}
+ * và không chặn các dòng khác; dòng đã ghi Product nhưng lỗi BranchProduct được báo rõ là vậy.
+ * Cache sản phẩm được evict một lần khi import kết thúc — kể cả khi dừng giữa chừng sau khi đã ghi.
  */
 @Service
 @RequiredArgsConstructor
@@ -61,16 +82,37 @@ public class ExcelImportServiceImpl implements ExcelImportService {
 
     private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd");
 
+    /** Sheet ưu tiên — khớp với ExcelExportService */
+    private static final String PRODUCT_SHEET = "Products";
+
+    /** Row 0 = header, Row 1 = ghi chú ("* Cột đỏ = bắt buộc"), Row 2+ = data */
+    private static final int FIRST_DATA_ROW = 2;
+
+    /** Số dòng Excel xử lý trong một lượt prefetch + bulk write */
+    static final int CHUNK_SIZE = 500;
+
+    /** Giới hạn số lỗi chi tiết trả về (failedCount vẫn đếm đủ) */
+    static final int MAX_REPORTED_ERRORS = 1000;
+
+    private static final int DUPLICATE_KEY = 11000;
+
+    static final String PRODUCT_DUPLICATE_MESSAGE = "SKU hoặc barcode đã tồn tại trong cửa hàng";
+    static final String PRODUCT_WRITE_FAILED_MESSAGE = "Không ghi được sản phẩm";
+    static final String BRANCH_DELETED_MESSAGE = "Sản phẩm đã tồn tại (đã xóa) tại chi nhánh";
+    static final String BRANCH_WRITE_FAILED_MESSAGE = "Đã lưu sản phẩm nhưng không ghi được tồn kho chi nhánh";
+    static final String BRANCH_DUPLICATE_AFTER_WRITE_MESSAGE =
+            "Đã lưu sản phẩm nhưng sản phẩm đã tồn tại (đã xóa) tại chi nhánh";
+
     private final ProductRepository productRepository;
-    private final BranchProductRepository branchProductRepository;
     private final ShopRepository shopRepository;
     private final SequenceService sequenceService;
     private final BranchRepository branchRepository;
     private final ProductCache productCache;
+    private final MongoTemplate mongoTemplate;
+    private final AuditorAwareImpl auditorAware;
 
     @Override
-    @Transactional
-    public int importProducts(String shopId, InputStream inputStream) {
+    public ProductImportResult importProducts(String shopId, InputStream inputStream, IntConsumer progress) {
         // Load shop một lần — cần để sinh SKU theo đúng prefix industry/category
         Shop shop = shopRepository.findByIdAndDeletedFalse(shopId)
                 .orElseThrow(() -> new BusinessException(ApiCode.SHOP_NOT_FOUND));
@@ -79,201 +121,349 @@ public class ExcelImportServiceImpl implements ExcelImportService {
         List<Branch> activeBranches = branchRepository.findAllByShopIdAndDeletedFalse(shopId);
         if (activeBranches.isEmpty()) {
             log.warn("Shop '{}' không có chi nhánh active nào!", shopId);
-            return 0;
+            return new ProductImportResult();
         }
-        int importedCount = 0;
-        try (Workbook workbook = WorkbookFactory.create(inputStream)) {
-            Sheet sheet = findProductSheet(workbook);
-
-            // Row 0 = header, Row 1 = ghi chú ("* Cột đỏ = bắt buộc"), Row 2+ = data
-            for (int i = 2; i <= sheet.getLastRowNum(); i++) {
-                Row row = sheet.getRow(i);
-                if (row == null) continue;
-
-                try {
-                    // ── Product fields ────────────────────────────────────────────
-                    String sku          = getCellValue(row.getCell(0));
-                    String name         = getCellValue(row.getCell(1));
-                    // Lấy value trước dấu '-' nếu có, ví dụ: "value-label" -> "value"
-                    String rawCategory  = getCellValue(row.getCell(2));
-                    String category     = null;
-                    if (rawCategory != null) {
-                        int dashIdx = rawCategory.indexOf('-');
-                        category = dashIdx > 0 ? rawCategory.substring(0, dashIdx).trim() : rawCategory.trim();
-                        category = CategoryUtils.normalize(category);
-                    }
-                    // Lấy value trước dấu '-' nếu có, ví dụ: "value-label" -> "value"
-                    String rawUnit = getCellValue(row.getCell(3));
-                    String unit = null;
-                    if (rawUnit != null) {
-                        int dashIdx = rawUnit.indexOf('-');
-                        unit = dashIdx > 0 ? rawUnit.substring(0, dashIdx).trim() : rawUnit.trim();
-                    }
-                    String barcode      = getCellValue(row.getCell(4));
-                    double costPrice    = getNumericCellValue(row.getCell(5));
-                    double defaultPrice = getNumericCellValue(row.getCell(6));
-                    String description  = getCellValue(row.getCell(14));
-
-                    // ── BranchProduct fields ──────────────────────────────────────
-                    double branchPrice       = getNumericCellValue(row.getCell(7));
-                    double branchCostPrice   = getNumericCellValue(row.getCell(8));
-                    int    quantity          = (int) getNumericCellValue(row.getCell(9));
-                    int    minQuantity       = (int) getNumericCellValue(row.getCell(10));
-                    Double discountPrice     = getNullableNumeric(row.getCell(11));
-                    Double discountPct       = getNullableNumeric(row.getCell(12));
-                    LocalDate expiryDate     = getDateCellValue(row.getCell(13));
-
-                    // Tên sản phẩm và danh mục là bắt buộc
-                    // (danh mục cần thiết để sinh đúng prefix SKU: {INDUSTRY}_{CATEGORY}_XXX)
-                    if (!StringUtils.hasText(name) || !StringUtils.hasText(category)) {
-                        log.warn("Bỏ qua dòng {}: Thiếu tên sản phẩm hoặc danh mục.", i + 1);
-                        continue;
-                    }
-                    if (!StringUtils.hasText(unit)) unit = "cái";
-                    if (defaultPrice <= 0) defaultPrice = branchPrice > 0 ? branchPrice : 1;
-                    if (branchPrice <= 0) branchPrice = defaultPrice;
-
-                    // ── 1. Upsert Product ─────────────────────────────────────────
-                    boolean skuProvided = StringUtils.hasText(sku);
-                    Optional<Product> existingProduct = skuProvided
-                            ? productRepository.findByShopIdAndSkuAndDeletedFalse(shopId, sku)
-                            : Optional.empty();
-
-                    Product product;
-                    if (existingProduct.isPresent()) {
-                        // SKU đã tồn tại → cập nhật thông tin chung
-                        product = existingProduct.get();
-                        product.setName(name);
-                        product.setCategory(category);
-                        product.setUnit(unit);
-                        product.setDescription(description);
-                        if (StringUtils.hasText(barcode)) {
-                            product.setBarcode(safeResolveBarcodeFromExcel(barcode));
-                        }
-                        if (costPrice >= 0) product.setCostPrice(costPrice);
-                        if (defaultPrice > 0) product.setDefaultPrice(defaultPrice);
-                        product.setActive(true);
-                        productRepository.save(product);
-                        log.info("Cập nhật Product cho SKU '{}'", sku);
-                    } else {
-                        // SKU để trống hoặc không tồn tại → tạo mới với SKU auto-gen nếu cần
-                        if (!skuProvided) {
-                            String prefix = generateSkuPrefix(shop, category);
-                            sku = sequenceService.getNextCode(shopId, prefix, AppConstants.SequenceTypes.SEQUENCE_TYPE_SKU);
-                        }
-                        product = Product.builder()
-                                .shopId(shopId)
-                                .sku(sku)
-                                .name(name)
-                                .category(category)
-                                .unit(unit)
-                                .description(description)
-                                .barcode(StringUtils.hasText(barcode) ? safeResolveBarcodeFromExcel(barcode) : null)
-                                .costPrice(costPrice)
-                                .defaultPrice(defaultPrice)
-                                .build();
-                        product = productRepository.save(product);
-                        // Cập nhật sequence sau khi lưu thành công (y hệt ProductServiceImpl)
-                        String prefix = generateSkuPrefix(shop, category);
-                        sequenceService.updateNextSequence(shopId, prefix, AppConstants.SequenceTypes.SEQUENCE_TYPE_SKU);
-                        log.info("Tạo mới Product với SKU '{}'", product.getSku());
-                    }
-
-                    // ── 2. Upsert BranchProduct cho tất cả branch active ──────────
-                    for (Branch branch : activeBranches) {
-                        String branchId = branch.getId();
-                        Optional<BranchProduct> existingBP =
-                                branchProductRepository.findByProductIdAndBranchIdAndDeletedFalse(product.getId(), branchId);
-                        if (existingBP.isPresent()) {
-                            BranchProduct bp = existingBP.get();
-                            bp.setPrice(branchPrice);
-                            bp.setBranchCostPrice(branchCostPrice);
-                            bp.setQuantity(quantity);
-                            bp.setMinQuantity(minQuantity);
-                            bp.setDiscountPrice(discountPrice);
-                            bp.setDiscountPercentage(discountPct);
-                            bp.setExpiryDate(expiryDate);
-                            branchProductRepository.save(bp);
-                            log.info("Cập nhật BranchProduct cho SKU '{}' tại chi nhánh '{}'", product.getSku(), branchId);
-                        } else {
-                            BranchProduct bp = BranchProduct.builder()
-                                    .productId(product.getId())
-                                    .shopId(shopId)
-                                    .branchId(branchId)
-                                    .price(branchPrice)
-                                    .branchCostPrice(branchCostPrice)
-                                    .quantity(quantity)
-                                    .minQuantity(minQuantity)
-                                    .discountPrice(discountPrice)
-                                    .discountPercentage(discountPct)
-                                    .expiryDate(expiryDate)
-                                    .build();
-                            branchProductRepository.save(bp);
-                            log.info("Tạo mới BranchProduct cho SKU '{}' tại chi nhánh '{}'", product.getSku(), branchId);
-                        }
-                    }
-                    importedCount++;
-                } catch (Exception e) {
-                    log.error("Lỗi khi xử lý dòng {}: {}", i + 1, e.getMessage());
-                }
-            }
+
+        ImportJob job = new ImportJob(shop, activeBranches, auditorAware.getCurrentAuditor().orElse(null), progress);
+        try {
+            StreamingExcelReader.read(inputStream, PRODUCT_SHEET, ExcelImportServiceImpl::looksLikeProductHeader,
+                    (rowIndex, cells) -> {
+                        if (rowIndex >= FIRST_DATA_ROW) job.accept(rowIndex + 1, cells);
+                    });
+            job.flush();
         } catch (IOException e) {
             log.error("Lỗi đọc file Excel: {}", e.getMessage());
             throw new BusinessException(ApiCode.VALIDATION_ERROR);
+        } finally {
+            // Các chunk đã ghi vẫn nằm trong DB dù import dừng giữa chừng → cache phải bỏ
+            if (job.written) {
+                productCache.evictByShop(shopId);
+            }
         }
-        if (importedCount > 0) {
-            productCache.evictByShop(shopId);
-        }
-        return importedCount;
+
+        ProductImportResult result = job.result();
+        log.info("Import Excel shop '{}': {} dòng, {} thành công (tạo {}, cập nhật {}), {} lỗi",
+                shopId, result.getTotalRows(), result.getImportedCount(),
+                result.getCreatedCount(), result.getUpdatedCount(), result.getFailedCount());
+        return result;
     }
 
     /**
-     * Tìm đúng sheet chứa dữ liệu sản phẩm.
+     * Nhận diện sheet sản phẩm khi file không có sheet "Products".
      * File Excel mẫu thường có một sheet ẩn ở đầu chứa source data cho dropdown
-     * (danh mục, đơn vị...) — cần bỏ qua sheet đó.
-     *
-     * Ưu tiên theo thứ tự:
-     *   1. Sheet tên "Products" (khớp với ExcelExportService)
-     *   2. Sheet visible đầu tiên có header đúng (col 0 = "SKU" hoặc col 1 = "Tên sản phẩm")
-     *   3. Sheet visible đầu tiên bất kỳ
-     *   4. Sheet index 0 (last resort)
+     * (danh mục, đơn vị...) — sheet đó không có header này.
      */
-    private Sheet findProductSheet(Workbook workbook) {
-        // 1. Sheet tên "Products"
-        Sheet byName = workbook.getSheet("Products");
-        if (byName != null) return byName;
-
-        Sheet firstVisible = null;
-        for (int i = 0; i < workbook.getNumberOfSheets(); i++) {
-            if (workbook.isSheetHidden(i)) continue;
-
-            Sheet s = workbook.getSheetAt(i);
-            if (firstVisible == null) firstVisible = s;
-
-            // 2. Kiểm tra header row: col 0 = "SKU" hoặc col 1 chứa "Tên"
-            Row headerRow = s.getRow(0);
-            if (headerRow != null) {
-                String col0 = getCellValue(headerRow.getCell(0));
-                String col1 = getCellValue(headerRow.getCell(1));
-                boolean looksLikeProductSheet =
-                        "SKU".equalsIgnoreCase(col0) ||
-                        (col1 != null && col1.toLowerCase().contains("tên"));
-                if (looksLikeProductSheet) {
-                    log.debug("Tìm thấy product sheet: '{}' (index {})", s.getSheetName(), i);
-                    return s;
+    private static boolean looksLikeProductHeader(List<String> header) {
+        String col0 = header.size() > 0 ? header.get(0) : null;
+        String col1 = header.size() > 1 ? header.get(1) : null;
+        return "SKU".equalsIgnoreCase(col0) || (col1 != null && col1.toLowerCase().contains("tên"));
+    }
+
+    /** Trạng thái của một lượt import: gom dòng theo chunk, đếm kết quả. */
+    private final class ImportJob {
+        private final Shop shop;
+        private final List<Branch> branches;
+        private final String auditor;
+        private final IntConsumer progress;
+        private final List<ImportRow> chunk = new ArrayList<>(CHUNK_SIZE);
+        private final ProductImportResult result = new ProductImportResult();
+        /** Đã có bulk write được gửi đi (kể cả khi lỗi một phần) */
+        boolean written;
+
+        ImportJob(Shop shop, List<Branch> branches, String auditor, IntConsumer progress) {
+            this.shop = shop;
+            this.branches = branches;
+            this.auditor = auditor;
+            this.progress = progress;
+        }
+
+        void accept(int rowNumber, List<String> cells) {
+            if (cells.stream().allMatch(Objects::isNull)) return;
+            result.setTotalRows(result.getTotalRows() + 1);
+
+            ImportRow row = parseRow(rowNumber, cells);
+            // Tên sản phẩm và danh mục là bắt buộc
+            // (danh mục cần thiết để sinh đúng prefix SKU: {INDUSTRY}_{CATEGORY}_XXX)
+            if (!StringUtils.hasText(row.name) || !StringUtils.hasText(row.category)) {
+                fail(rowNumber, "Thiếu tên sản phẩm hoặc danh mục");
+                return;
+            }
+            chunk.add(row);
+            if (chunk.size() >= CHUNK_SIZE) flush();
+        }
+
+        void flush() {
+            if (!chunk.isEmpty()) {
+                writeChunk(shop, branches, auditor, chunk, this);
+                chunk.clear();
+            }
+            if (progress != null) progress.accept(result.getTotalRows());
+        }
+
+        void fail(int rowNumber, String message) {
+            result.setFailedCount(result.getFailedCount() + 1);
+            if (result.getErrors().size() < MAX_REPORTED_ERRORS) {
+                result.getErrors().add(new ProductImportResult.RowError(rowNumber, message));
+            }
+        }
+
+        ProductImportResult result() {
+            return result;
+        }
+    }
+
+    /**
+     * Ghi một chunk: prefetch SKU → loại Product có BranchProduct đã xóa mềm → bulk Product → bulk upsert BranchProduct.
+     * Các dòng cùng SKU trong chunk được gộp (dòng sau ghi đè) để mỗi Product chỉ có một thao tác,
+     * vì thứ tự thực thi trong bulk UNORDERED không được đảm bảo.
+     */
+    private void writeChunk(Shop shop, List<Branch> branches, String auditor, List<ImportRow> rows, ImportJob job) {
+        String shopId = shop.getId();
+        LocalDateTime now = LocalDateTime.now();
+
+        // ── 1. Prefetch Product theo SKU + cấp SKU cho dòng để trống ─────────
+        Set<String> skus = rows.stream().map(r -> r.sku).filter(StringUtils::hasText).collect(Collectors.toSet());
+        Map<String, Product> existingBySku = skus.isEmpty() ? Map.of()
+                : productRepository.findByShopIdAndSkuInAndDeletedFalse(shopId, skus).stream()
+                        .collect(Collectors.toMap(Product::getSku, Function.identity(), (a, b) -> a));
+        assignGeneratedSkus(shop, rows);
+
+        Map<String, PendingProduct> pendingBySku = new LinkedHashMap<>();
+        for (ImportRow row : rows) {
+            pendingBySku.computeIfAbsent(row.sku, sku -> new PendingProduct(existingBySku.get(sku))).add(row);
+        }
+        List<PendingProduct> pending = new ArrayList<>(pendingBySku.values());
+        rejectSoftDeletedBranchProducts(pending, branches);
+
+        // ── 2. Bulk Product: update theo _id hoặc insert với _id sinh sẵn ────
+        List<PendingProduct> productOwners = new ArrayList<>();
+        BulkOperations productOps = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Product.class);
+        for (PendingProduct p : pending) {
+            if (p.error != null) continue;
+            ImportRow row = p.last;
+            String barcode = StringUtils.hasText(p.barcode) ? safeResolveBarcodeFromExcel(p.barcode) : null;
+            if (p.existing != null) {
+                Update update = new Update()
+                        .set("name", row.name)
+                        .set("category", row.category)
+                        .set("unit", row.unit)
+                        .set("description", row.description)
+                        .set("defaultPrice", row.defaultPrice)
+                        .set("active", true)
+                        .set("updatedAt", now)
+                        .set("updatedBy", auditor);
+                if (barcode != null) update.set("barcode", barcode);
+                if (row.costPrice >= 0) update.set("costPrice", row.costPrice);
+                productOps.updateOne(new Query(Criteria.where("_id").is(p.productId)), update);
+            } else {
+                Product product = Product.builder()
+                        .id(p.productId)
+                        .shopId(shopId)
+                        .sku(row.sku)
+                        .name(row.name)
+                        .category(row.category)
+                        .unit(row.unit)
+                        .description(row.description)
+                        .barcode(barcode)
+                        .costPrice(row.costPrice)
+                        .defaultPrice(row.defaultPrice)
+                        .build();
+                product.setCreatedAt(now);
+                product.setUpdatedAt(now);
+                product.setCreatedBy(auditor);
+                product.setUpdatedBy(auditor);
+                productOps.insert(product);
+            }
+            productOwners.add(p);
+        }
+        if (!productOwners.isEmpty()) {
+            job.written = true;
+            executeBulk(productOps, productOwners, PRODUCT_DUPLICATE_MESSAGE, PRODUCT_WRITE_FAILED_MESSAGE);
+        }
+
+        // ── 3. Bulk upsert BranchProduct cho mọi chi nhánh ──────────────────
+        List<PendingProduct> bpOwners = new ArrayList<>();
+        BulkOperations branchOps = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, BranchProduct.class);
+        for (PendingProduct p : pending) {
+            if (p.error != null) continue;
+            ImportRow row = p.last;
+            for (Branch branch : branches) {
+                Query query = new Query(Criteria.where("productId").is(p.productId)
+                        .and("branchId").is(branch.getId())
+                        .and("deleted").is(false));
+                Update update = new Update()
+                        .set("price", row.branchPrice)
+                        .set("branchCostPrice", row.branchCostPrice)
+                        .set("quantity", row.quantity)
+                        .set("minQuantity", row.minQuantity)
+                        .set("discountPrice", row.discountPrice)
+                        .set("discountPercentage", row.discountPct)
+                        .set("expiryDate", row.expiryDate)
+                        .set("updatedAt", now)
+                        .set("updatedBy", auditor)
+                        .setOnInsert("shopId", shopId)
+                        .setOnInsert("activeInBranch", true)
+                        .setOnInsert("priceHistory", List.of())
+                        .setOnInsert("createdAt", now)
+                        .setOnInsert("createdBy", auditor);
+                branchOps.upsert(query, update);
+                bpOwners.add(p);
+            }
+        }
+        if (!bpOwners.isEmpty()) {
+            // Product của các dòng này đã được ghi ở bước 2 — lỗi ở đây không hoàn tác được
+            executeBulk(branchOps, bpOwners, BRANCH_DUPLICATE_AFTER_WRITE_MESSAGE, BRANCH_WRITE_FAILED_MESSAGE);
+        }
+
+        // ── 4. Tổng hợp kết quả theo dòng ───────────────────────────────────
+        ProductImportResult result = job.result();
+        for (PendingProduct p : pending) {
+            if (p.error != null) {
+                p.rowNumbers.forEach(n -> job.fail(n, p.error));
+                continue;
+            }
+            result.setImportedCount(result.getImportedCount() + p.rowNumbers.size());
+            if (p.existing != null) {
+                result.setUpdatedCount(result.getUpdatedCount() + 1);
+            } else {
+                result.setCreatedCount(result.getCreatedCount() + 1);
+            }
+        }
+        log.debug("Import chunk shop '{}': {} dòng, {} Product, {} BranchProduct",
+                shopId, rows.size(), pending.size(), bpOwners.size());
+    }
+
+    /**
+     * Bỏ các Product đã có BranchProduct xóa mềm tại một chi nhánh của shop: upsert (lọc deleted=false)
+     * sẽ insert bản mới và vi phạm unique productId + branchId sau khi Product đã được ghi.
+     * Product mới có _id vừa sinh nên không thể trùng.
+     */
+    private void rejectSoftDeletedBranchProducts(List<PendingProduct> pending, List<Branch> branches) {
+        Map<String, PendingProduct> existingById = pending.stream()
+                .filter(p -> p.existing != null)
+                .collect(Collectors.toMap(p -> p.productId, Function.identity(), (a, b) -> a));
+        if (existingById.isEmpty()) return;
+
+        Query query = new Query(Criteria.where("productId").in(existingById.keySet())
+                .and("branchId").in(branches.stream().map(Branch::getId).toList())
+                .and("deleted").is(true));
+        query.fields().include("productId");
+        for (BranchProduct deleted : mongoTemplate.find(query, BranchProduct.class)) {
+            PendingProduct owner = existingById.get(deleted.getProductId());
+            if (owner != null) owner.error = BRANCH_DELETED_MESSAGE;
+        }
+    }
+
+    /**
+     * Thực thi bulk; lỗi của từng thao tác (theo index) được gắn vào PendingProduct tương ứng.
+     * {@code owners.get(i)} là Product sở hữu thao tác thứ i. Lỗi khác trùng khóa chỉ được log —
+     * dòng nhận {@code failureMessage} thay vì thông điệp của driver.
+     */
+    private void executeBulk(BulkOperations ops, List<PendingProduct> owners, String duplicateMessage, String failureMessage) {
+        try {
+            ops.execute();
+        } catch (BulkOperationException e) {
+            for (BulkWriteError error : e.getErrors()) {
+                PendingProduct owner = owners.get(error.getIndex());
+                if (owner.error != null) continue;
+                if (error.getCode() == DUPLICATE_KEY) {
+                    owner.error = duplicateMessage;
+                } else {
+                    log.warn("Import: thao tác bulk {} lỗi (code {}): {}", error.getIndex(), error.getCode(), error.getMessage());
+                    owner.error = failureMessage;
                 }
             }
         }
+    }
+
+    /** Cấp SKU cho các dòng để trống: một lần đặt trước sequence cho mỗi prefix trong chunk. */
+    private void assignGeneratedSkus(Shop shop, List<ImportRow> rows) {
+        Map<String, List<ImportRow>> byPrefix = rows.stream()
+                .filter(r -> !StringUtils.hasText(r.sku))
+                .collect(Collectors.groupingBy(r -> generateSkuPrefix(shop, r.category), LinkedHashMap::new, Collectors.toList()));
+        byPrefix.forEach((prefix, group) -> {
+            List<String> codes = sequenceService.nextCodes(
+                    shop.getId(), prefix, AppConstants.SequenceTypes.SEQUENCE_TYPE_SKU, group.size());
+            for (int i = 0; i < group.size(); i++) {
+                group.get(i).sku = codes.get(i);
+            }
+        });
+    }
+
+    private ImportRow parseRow(int rowNumber, List<String> cells) {
+        ImportRow row = new ImportRow();
+        row.rowNumber = rowNumber;
+
+        // ── Product fields ────────────────────────────────────────────
+        row.sku = cell(cells, 0);
+        row.name = cell(cells, 1);
+        // Lấy value trước dấu '-' nếu có, ví dụ: "value-label" -> "value"
+        String rawCategory = cell(cells, 2);
+        if (rawCategory != null) {
+            row.category = CategoryUtils.normalize(beforeDash(rawCategory));
+        }
+        String rawUnit = cell(cells, 3);
+        row.unit = rawUnit != null ? beforeDash(rawUnit) : null;
+        row.barcode = cell(cells, 4);
+        row.costPrice = number(cells, 5);
+        row.defaultPrice = number(cells, 6);
+        row.description = cell(cells, 14);
+
+        // ── BranchProduct fields ──────────────────────────────────────
+        row.branchPrice = number(cells, 7);
+        row.branchCostPrice = number(cells, 8);
+        row.quantity = (int) number(cells, 9);
+        row.minQuantity = (int) number(cells, 10);
+        row.discountPrice = nullableNumber(cells, 11);
+        row.discountPct = nullableNumber(cells, 12);
+        row.expiryDate = date(cells, 13);
+
+        if (!StringUtils.hasText(row.unit)) row.unit = "cái";
+        if (row.defaultPrice <= 0) row.defaultPrice = row.branchPrice > 0 ? row.branchPrice : 1;
+        if (row.branchPrice <= 0) row.branchPrice = row.defaultPrice;
+        return row;
+    }
+
+    /** Một dòng dữ liệu Excel đã parse. */
+    private static final class ImportRow {
+        int rowNumber;
+        String sku;
+        String name;
+        String category;
+        String unit;
+        String barcode;
+        double costPrice;
+        double defaultPrice;
+        String description;
+        double branchPrice;
+        double branchCostPrice;
+        int quantity;
+        int minQuantity;
+        Double discountPrice;
+        Double discountPct;
+        LocalDate expiryDate;
+    }
+
+    /** Product (mới hoặc đã có) cùng các dòng Excel trong chunk trỏ tới nó. */
+    private static final class PendingProduct {
+        final Product existing;
+        final String productId;
+        final List<Integer> rowNumbers = new ArrayList<>();
+        ImportRow last;
+        /** Barcode khác rỗng gần nhất — dòng sau để trống barcode không xóa barcode dòng trước */
+        String barcode;
+        String error;
 
-        // 3. Sheet visible đầu tiên
-        if (firstVisible != null) {
-            log.warn("Không tìm thấy sheet theo header, dùng sheet visible đầu tiên: '{}'", firstVisible.getSheetName());
-            return firstVisible;
+        PendingProduct(Product existing) {
+            this.existing = existing;
+            this.productId = existing != null ? existing.getId() : new ObjectId().toHexString();
         }
 
-        // 4. Last resort
-        log.warn("Không tìm thấy sheet visible, dùng sheet index 0");
-        return workbook.getSheetAt(0);
+        void add(ImportRow row) {
+            rowNumbers.add(row.rowNumber);
+            last = row;
+            if (StringUtils.hasText(row.barcode)) barcode = row.barcode;
+        }
     }
 
     /**
@@ -288,61 +478,36 @@ public class ExcelImportServiceImpl implements ExcelImportService {
 
     // ── Cell helpers ──────────────────────────────────────────────────────────
 
-    private String getCellValue(Cell cell) {
-        if (cell == null) return null;
-        return switch (cell.getCellType()) {
-            case STRING  -> cell.getStringCellValue().trim();
-            case NUMERIC -> DateUtil.isCellDateFormatted(cell)
-                    ? cell.getLocalDateTimeCellValue().toLocalDate().toString()
-                    : String.valueOf((long) cell.getNumericCellValue());
-            case BOOLEAN -> String.valueOf(cell.getBooleanCellValue());
-            case FORMULA -> cell.getCellFormula();
-            default      -> null;
-        };
+    private static String cell(List<String> cells, int index) {
+        return index < cells.size() ? cells.get(index) : null;
     }
 
-    private double getNumericCellValue(Cell cell) {
-        if (cell == null || cell.getCellType() == CellType.BLANK) return 0.0;
-        if (cell.getCellType() == CellType.NUMERIC) return cell.getNumericCellValue();
-        if (cell.getCellType() == CellType.STRING) {
-            try { return Double.parseDouble(cell.getStringCellValue().trim()); }
-            catch (NumberFormatException e) { return 0.0; }
-        }
-        return 0.0;
+    private static String beforeDash(String value) {
+        int dashIdx = value.indexOf('-');
+        return dashIdx > 0 ? value.substring(0, dashIdx).trim() : value.trim();
     }
 
-    private Double getNullableNumeric(Cell cell) {
-        if (cell == null || cell.getCellType() == CellType.BLANK) return null;
-        double v = getNumericCellValue(cell);
-        return v == 0.0 ? null : v;
+    private static double number(List<String> cells, int index) {
+        String value = cell(cells, index);
+        if (value == null) return 0.0;
+        try { return Double.parseDouble(value); }
+        catch (NumberFormatException e) { return 0.0; }
     }
 
-    private boolean getBooleanCellValue(Cell cell, boolean defaultValue) {
-        if (cell == null || cell.getCellType() == CellType.BLANK) return defaultValue;
-        if (cell.getCellType() == CellType.BOOLEAN) return cell.getBooleanCellValue();
-        if (cell.getCellType() == CellType.STRING) {
-            String v = cell.getStringCellValue().trim().toUpperCase();
-            return "TRUE".equals(v) || "CÓ".equals(v) || "1".equals(v);
-        }
-        if (cell.getCellType() == CellType.NUMERIC) return cell.getNumericCellValue() != 0;
-        return defaultValue;
+    private static Double nullableNumber(List<String> cells, int index) {
+        if (cell(cells, index) == null) return null;
+        double v = number(cells, index);
+        return v == 0.0 ? null : v;
     }
 
-    private LocalDate getDateCellValue(Cell cell) {
-        if (cell == null || cell.getCellType() == CellType.BLANK) return null;
-        if (cell.getCellType() == CellType.NUMERIC && DateUtil.isCellDateFormatted(cell)) {
-            return cell.getLocalDateTimeCellValue().toLocalDate();
-        }
-        if (cell.getCellType() == CellType.STRING) {
-            String s = cell.getStringCellValue().trim();
-            if (!StringUtils.hasText(s)) return null;
-            try { return LocalDate.parse(s, DATE_FORMATTER); }
-            catch (DateTimeParseException e) {
-                log.warn("Không thể parse ngày '{}', bỏ qua trường expiryDate.", s);
-                return null;
-            }
+    private LocalDate date(List<String> cells, int index) {
+        String value = cell(cells, index);
+        if (value == null) return null;
+        try { return LocalDate.parse(value, DATE_FORMATTER); }
+        catch (DateTimeParseException e) {
+            log.warn("Không thể parse ngày '{}', bỏ qua trường expiryDate.", value);
+            return null;
         }
-        return null;
     }
 
     private String safeResolveBarcodeFromExcel(String barcode) {
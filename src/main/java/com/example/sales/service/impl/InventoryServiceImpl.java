@@ -3,13 +3,17 @@ package com.example.sales.service.impl;
 
 import com.example.sales.constant.ApiCode;
 import com.example.sales.constant.InventoryType;
+import com.example.sales.dto.CursorPage;
 import com.example.sales.dto.inventory.InventoryTransactionResponse;
 import com.example.sales.exception.BusinessException;
 import com.example.sales.exception.ResourceNotFoundException;
+import com.example.sales.helper.BranchProductStockHelper;
+import com.example.sales.helper.KeysetPager;
 import com.example.sales.model.BranchProduct;
 import com.example.sales.model.BranchProductVariant;
 import com.example.sales.model.InventoryTransaction;
 import com.example.sales.model.Order;
+import com.example.sales.model.OrderItem;
 import com.example.sales.model.Product;
 import com.example.sales.model.ProductVariant;
 import com.example.sales.model.Shop;
@@ -24,17 +28,23 @@ import com.example.sales.service.AuditLogService;
 import com.example.sales.service.InventoryService;
 import com.example.sales.cache.ProductCache;
 import com.example.sales.util.OrderDisplayUtils;
+import com.example.sales.util.WeightUnitConverter;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.StringUtils;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Service
@@ -50,6 +60,8 @@ public class InventoryServiceImpl implements InventoryService {
     private final AuditLogService auditLogService;
     private final ProductCache productCache;
     private final OrderRepository orderRepository;
+    private final BranchProductStockHelper branchProductStockHelper;
+    private final KeysetPager keysetPager;
 
     @Override
     @Transactional
@@ -58,7 +70,7 @@ public class InventoryServiceImpl implements InventoryService {
             throw new BusinessException(ApiCode.VALIDATION_ERROR);
         }
 
-        BranchProduct branchProduct = findBranchProduct(shopId, branchId, branchProductId);
+        BranchProduct branchProduct = findBranchProductForStock(shopId, branchId, branchProductId);
         Product product = getMasterProduct(branchProduct.getProductId(), shopId);
         if (!product.isTrackInventory()) {
             throw new BusinessException(ApiCode.PRODUCT_NOT_TRACK_INVENTORY);
@@ -70,61 +82,47 @@ public class InventoryServiceImpl implements InventoryService {
         }
 
         if (hasVariants && StringUtils.hasText(variantId)) {
-            BranchProductVariant v = requireBranchVariant(branchProduct, variantId);
-            int oldVariantQty = v.getQuantity();
-            v.setQuantity(oldVariantQty + quantity);
-            syncAggregateFromVariants(branchProduct);
-            branchProductRepository.save(branchProduct);
+            requireBranchVariant(branchProduct, variantId);
+            StockChange change = changeQuantity(branchProduct, variantId, quantity);
 
             String snapSku = resolveVariantSku(product, variantId);
             saveInventoryTransaction(
                     shopId, branchId, branchProduct.getId(), variantId,
-                    product, snapSku, InventoryType.IMPORT, quantity, v.getQuantity(),
+                    product, snapSku, InventoryType.IMPORT, quantity, change.after(),
                     note, null
             );
             productCache.evictByBranch(shopId, branchId);
             auditLogService.log(userId, shopId, branchProduct.getId(), "BRANCH_PRODUCT", "INVENTORY_IMPORT",
                     String.format("Nhập %d đơn vị biến thể %s của '%s' (SKU: %s) vào chi nhánh %s. Tồn biến thể cũ: %d, mới: %d. Tổng chi nhánh: %d.",
-                            quantity, variantId, product.getName(), snapSku, branchId, oldVariantQty, v.getQuantity(), branchProduct.getQuantity()));
+                            quantity, variantId, product.getName(), snapSku, branchId, change.before(), change.after(), change.total()));
             log.info("Nhập thành công {} (variant {}) sản phẩm '{}' cho chi nhánh {}. Tổng tồn: {}",
-                    quantity, variantId, product.getName(), branchId, branchProduct.getQuantity());
-            return branchProduct.getQuantity();
+                    quantity, variantId, product.getName(), branchId, change.total());
+            return change.total();
         }
 
-        if (hasVariants && !StringUtils.hasText(variantId)) {
-            int oldQuantity = branchProduct.getQuantity();
-            branchProduct.setQuantity(oldQuantity + quantity);
-            branchProductRepository.save(branchProduct);
-            saveInventoryTransaction(
-                    shopId, branchId, branchProduct.getId(), null,
-                    product, null, InventoryType.IMPORT, quantity, branchProduct.getQuantity(),
-                    note, null
-            );
-            productCache.evictByBranch(shopId, branchId);
-            auditLogService.log(userId, shopId, branchProduct.getId(), "BRANCH_PRODUCT", "INVENTORY_IMPORT",
-                    String.format("Nhập %d đơn vị (tổng, không gán biến thể) '%s' vào chi nhánh %s. Tồn cũ: %d, mới: %d.",
-                            quantity, product.getName(), branchId, oldQuantity, branchProduct.getQuantity()));
-            log.info("Nhập thành công {} sản phẩm '{}' (tổng) cho chi nhánh {}. Số lượng mới: {}",
-                    quantity, product.getName(), branchId, branchProduct.getQuantity());
-            return branchProduct.getQuantity();
-        }
-
-        int oldQuantity = branchProduct.getQuantity();
-        branchProduct.setQuantity(oldQuantity + quantity);
-        branchProductRepository.save(branchProduct);
-
+        StockChange change = changeQuantity(branchProduct, null, quantity);
         saveInventoryTransaction(
                 shopId, branchId, branchProduct.getId(), null,
-                product, null, InventoryType.IMPORT, quantity, branchProduct.getQuantity(),
+                product, null, InventoryType.IMPORT, quantity, change.after(),
                 note, null
         );
         productCache.evictByBranch(shopId, branchId);
+
+        if (hasVariants) {
+            auditLogService.log(userId, shopId, branchProduct.getId(), "BRANCH_PRODUCT", "INVENTORY_IMPORT",
+                    String.format("Nhập %d đơn vị (tổng, không gán biến thể) '%s' vào chi nhánh %s. Tồn cũ: %d, mới: %d.",
+                            quantity, product.getName(), branchId, change.before(), change.after()));
+            log.info("Nhập thành công {} sản phẩm '{}' (tổng) cho chi nhánh {}. Số lượng mới: {}",
+                    quantity, product.getName(), branchId, change.after());
+            return change.total();
+        }
+
         auditLogService.log(userId, shopId, branchProduct.getId(), "BRANCH_PRODUCT", "INVENTORY_IMPORT",
                 String.format("Nhập %d đơn vị sản phẩm '%s' (SKU: %s) vào chi nhánh %s. Tồn kho cũ: %d, Tồn kho mới: %d.",
-                        quantity, product.getName(), product.getSku(), branchId, oldQuantity, branchProduct.getQuantity()));
+                        quantity, product.getName(), product.getSku(), branchId, change.before(), change.after()));
         log.info("Nhập thành công {} sản phẩm '{}' cho chi nhánh {}. Số lượng mới: {}",
-                quantity, product.getName(), branchId, branchProduct.getQuantity());
-        return branchProduct.getQuantity();
+                quantity, product.getName(), branchId, change.after());
+        return change.total();
     }
 
     @Override
@@ -134,7 +132,7 @@ public class InventoryServiceImpl implements InventoryService {
             throw new BusinessException(ApiCode.VALIDATION_ERROR);
         }
 
-        BranchProduct branchProduct = findBranchProduct(shopId, branchId, branchProductId);
+        BranchProduct branchProduct = findBranchProductForStock(shopId, branchId, branchProductId);
         Product masterProduct = getMasterProduct(branchProduct.getProductId(), shopId);
         if (!masterProduct.isTrackInventory()) {
             throw new BusinessException(ApiCode.PRODUCT_NOT_TRACK_INVENTORY);
@@ -146,20 +144,13 @@ public class InventoryServiceImpl implements InventoryService {
         }
 
         if (hasVariants && StringUtils.hasText(variantId)) {
-            BranchProductVariant v = requireBranchVariant(branchProduct, variantId);
-            int oldVariantQty = v.getQuantity();
-            if (oldVariantQty < quantity) {
-                log.warn("Không đủ tồn biến thể {} để xuất. Hiện có: {}, yêu cầu: {}", variantId, oldVariantQty, quantity);
-                throw new BusinessException(ApiCode.INSUFFICIENT_STOCK);
-            }
-            v.setQuantity(oldVariantQty - quantity);
-            syncAggregateFromVariants(branchProduct);
-            branchProductRepository.save(branchProduct);
+            requireBranchVariant(branchProduct, variantId);
+            StockChange change = changeQuantity(branchProduct, variantId, -quantity);
 
             String snapSku = resolveVariantSku(masterProduct, variantId);
             saveInventoryTransaction(
                     shopId, branchId, branchProduct.getId(), variantId,
-                    masterProduct, snapSku, InventoryType.EXPORT, quantity, v.getQuantity(),
+                    masterProduct, snapSku, InventoryType.EXPORT, quantity, change.after(),
                     note, referenceId
             );
 
@@ -167,62 +158,39 @@ public class InventoryServiceImpl implements InventoryService {
 
             auditLogService.log(userId, shopId, branchProduct.getId(), "BRANCH_PRODUCT", "INVENTORY_EXPORT",
                     String.format("Xuất %d đơn vị biến thể %s của '%s' (SKU: %s) khỏi chi nhánh %s. Tồn biến thể cũ: %d, mới: %d. Tham chiếu: %s.",
-                            quantity, variantId, masterProduct.getName(), snapSku, branchId, oldVariantQty, v.getQuantity(), referenceId));
+                            quantity, variantId, masterProduct.getName(), snapSku, branchId, change.before(), change.after(), referenceId));
 
             log.info("Xuất thành công {} (variant {}) sản phẩm '{}' cho chi nhánh {}. Tổng tồn: {}",
-                    quantity, variantId, masterProduct.getName(), branchId, branchProduct.getQuantity());
+                    quantity, variantId, masterProduct.getName(), branchId, change.total());
 
-            return branchProduct.getQuantity();
+            return change.total();
         }
 
-        if (hasVariants && !StringUtils.hasText(variantId)) {
-            int oldQuantity = branchProduct.getQuantity();
-            if (oldQuantity < quantity) {
-                log.warn("Không đủ tồn kho để xuất. Số lượng hiện tại: {}, Số lượng yêu cầu: {}", oldQuantity, quantity);
-                throw new BusinessException(ApiCode.INSUFFICIENT_STOCK);
-            }
-            branchProduct.setQuantity(oldQuantity - quantity);
-            branchProductRepository.save(branchProduct);
-            saveInventoryTransaction(
-                    shopId, branchId, branchProduct.getId(), null,
-                    masterProduct, null, InventoryType.EXPORT, quantity, branchProduct.getQuantity(),
-                    note, referenceId
-            );
-            productCache.evictByBranch(shopId, branchId);
-            auditLogService.log(userId, shopId, branchProduct.getId(), "BRANCH_PRODUCT", "INVENTORY_EXPORT",
-                    String.format("Xuất %d đơn vị (tổng) '%s' khỏi chi nhánh %s. Tồn cũ: %d, mới: %d. Tham chiếu: %s.",
-                            quantity, masterProduct.getName(), branchId, oldQuantity, branchProduct.getQuantity(), referenceId));
-            log.info("Xuất thành công {} sản phẩm '{}' (tổng) cho chi nhánh {}. Số lượng mới: {}",
-                    quantity, masterProduct.getName(), branchId, branchProduct.getQuantity());
-            return branchProduct.getQuantity();
-        }
-
-        int oldQuantity = branchProduct.getQuantity();
-
-        if (oldQuantity < quantity) {
-            log.warn("Không đủ tồn kho để xuất. Số lượng hiện tại: {}, Số lượng yêu cầu: {}", oldQuantity, quantity);
-            throw new BusinessException(ApiCode.INSUFFICIENT_STOCK);
-        }
-
-        branchProduct.setQuantity(oldQuantity - quantity);
-        branchProductRepository.save(branchProduct);
-
+        StockChange change = changeQuantity(branchProduct, null, -quantity);
         saveInventoryTransaction(
                 shopId, branchId, branchProduct.getId(), null,
-                masterProduct, null, InventoryType.EXPORT, quantity, branchProduct.getQuantity(),
+                masterProduct, null, InventoryType.EXPORT, quantity, change.after(),
                 note, referenceId
         );
-
         productCache.evictByBranch(shopId, branchId);
 
+        if (hasVariants) {
+            auditLogService.log(userId, shopId, branchProduct.getId(), "BRANCH_PRODUCT", "INVENTORY_EXPORT",
+                    String.format("Xuất %d đơn vị (tổng) '%s' khỏi chi nhánh %s. Tồn cũ: %d, mới: %d. Tham chiếu: %s.",
+                            quantity, masterProduct.getName(), branchId, change.before(), change.after(), referenceId));
+            log.info("Xuất thành công {} sản phẩm '{}' (tổng) cho chi nhánh {}. Số lượng mới: {}",
+                    quantity, masterProduct.getName(), branchId, change.after());
+            return change.total();
+        }
+
         auditLogService.log(userId, shopId, branchProduct.getId(), "BRANCH_PRODUCT", "INVENTORY_EXPORT",
                 String.format("Xuất %d đơn vị sản phẩm '%s' (SKU: %s) khỏi chi nhánh %s. Tồn kho cũ: %d, Tồn kho mới: %d. Tham chiếu: %s.",
-                        quantity, masterProduct.getName(), masterProduct.getSku(), branchId, oldQuantity, branchProduct.getQuantity(), referenceId));
+                        quantity, masterProduct.getName(), masterProduct.getSku(), branchId, change.before(), change.after(), referenceId));
 
         log.info("Xuất thành công {} sản phẩm '{}' cho chi nhánh {}. Số lượng mới: {}",
-                quantity, masterProduct.getName(), branchId, branchProduct.getQuantity());
+                quantity, masterProduct.getName(), branchId, change.after());
 
-        return branchProduct.getQuantity();
+        return change.total();
     }
 
     @Override
@@ -232,7 +200,7 @@ public class InventoryServiceImpl implements InventoryService {
             throw new BusinessException(ApiCode.VALIDATION_ERROR);
         }
 
-        BranchProduct branchProduct = findBranchProduct(shopId, branchId, branchProductId);
+        BranchProduct branchProduct = findBranchProductForStock(shopId, branchId, branchProductId);
         Product masterProduct = getMasterProduct(branchProduct.getProductId(), shopId);
         if (!masterProduct.isTrackInventory()) {
             throw new BusinessException(ApiCode.PRODUCT_NOT_TRACK_INVENTORY);
@@ -244,17 +212,22 @@ public class InventoryServiceImpl implements InventoryService {
         }
 
         if (hasVariants && StringUtils.hasText(variantId)) {
-            BranchProductVariant v = requireBranchVariant(branchProduct, variantId);
-            int oldVariantQty = v.getQuantity();
+            requireBranchVariant(branchProduct, variantId);
+            // $set tồn biến thể, lấy giá trị cũ từ cùng lệnh rồi $inc tổng chi nhánh theo chênh lệch
+            BranchProduct before = branchProductStockHelper.setVariantQuantity(branchProduct.getId(), variantId, newQuantity);
+            if (before == null) {
+                throw new BusinessException(ApiCode.PRODUCT_VARIANT_NOT_FOUND);
+            }
+            int oldVariantQty = requireBranchVariant(before, variantId).getQuantity();
             int quantityChange = newQuantity - oldVariantQty;
-            v.setQuantity(newQuantity);
-            syncAggregateFromVariants(branchProduct);
-            branchProductRepository.save(branchProduct);
+            int total = quantityChange != 0
+                    ? requireStockUpdate(branchProductStockHelper.incQuantity(branchProduct.getId(), quantityChange)).getQuantity()
+                    : before.getQuantity();
 
             String snapSku = resolveVariantSku(masterProduct, variantId);
             saveInventoryTransaction(
                     shopId, branchId, branchProduct.getId(), variantId,
-                    masterProduct, snapSku, InventoryType.ADJUSTMENT, quantityChange, v.getQuantity(),
+                    masterProduct, snapSku, InventoryType.ADJUSTMENT, quantityChange, newQuantity,
                     note, null
             );
 
@@ -267,42 +240,30 @@ public class InventoryServiceImpl implements InventoryService {
             log.info("Điều chỉnh tồn kho biến thể {} sản phẩm '{}' cho chi nhánh {}. Số lượng cũ: {}, Số lượng mới: {}",
                     variantId, masterProduct.getName(), branchId, oldVariantQty, newQuantity);
 
-            return branchProduct.getQuantity();
-        }
-
-        if (hasVariants && !StringUtils.hasText(variantId)) {
-            int oldQuantity = branchProduct.getQuantity();
-            int quantityChange = newQuantity - oldQuantity;
-            branchProduct.setQuantity(newQuantity);
-            branchProductRepository.save(branchProduct);
-            saveInventoryTransaction(
-                    shopId, branchId, branchProduct.getId(), null,
-                    masterProduct, null, InventoryType.ADJUSTMENT, quantityChange, branchProduct.getQuantity(),
-                    note, null
-            );
-            productCache.evictByBranch(shopId, branchId);
-            auditLogService.log(userId, shopId, branchProduct.getId(), "BRANCH_PRODUCT", "INVENTORY_ADJUSTMENT",
-                    String.format("Điều chỉnh tổng tồn '%s' tại chi nhánh %s từ %d thành %d.",
-                            masterProduct.getName(), branchId, oldQuantity, newQuantity));
-            log.info("Điều chỉnh tổng tồn '{}' cho chi nhánh {}. Số lượng cũ: {}, Số lượng mới: {}",
-                    masterProduct.getName(), branchId, oldQuantity, newQuantity);
-            return branchProduct.getQuantity();
+            return total;
         }
 
-        int oldQuantity = branchProduct.getQuantity();
+        BranchProduct before = requireStockUpdate(branchProductStockHelper.setQuantity(branchProduct.getId(), newQuantity));
+        int oldQuantity = before.getQuantity();
         int quantityChange = newQuantity - oldQuantity;
 
-        branchProduct.setQuantity(newQuantity);
-        branchProductRepository.save(branchProduct);
-
         saveInventoryTransaction(
                 shopId, branchId, branchProduct.getId(), null,
-                masterProduct, null, InventoryType.ADJUSTMENT, quantityChange, branchProduct.getQuantity(),
+                masterProduct, null, InventoryType.ADJUSTMENT, quantityChange, newQuantity,
                 note, null
         );
 
         productCache.evictByBranch(shopId, branchId);
 
+        if (hasVariants) {
+            auditLogService.log(userId, shopId, branchProduct.getId(), "BRANCH_PRODUCT", "INVENTORY_ADJUSTMENT",
+                    String.format("Điều chỉnh tổng tồn '%s' tại chi nhánh %s từ %d thành %d.",
+                            masterProduct.getName(), branchId, oldQuantity, newQuantity));
+            log.info("Điều chỉnh tổng tồn '{}' cho chi nhánh {}. Số lượng cũ: {}, Số lượng mới: {}",
+                    masterProduct.getName(), branchId, oldQuantity, newQuantity);
+            return newQuantity;
+        }
+
         auditLogService.log(userId, shopId, branchProduct.getId(), "BRANCH_PRODUCT", "INVENTORY_ADJUSTMENT",
                 String.format("Điều chỉnh tồn kho sản phẩm '%s' (SKU: %s) tại chi nhánh %s từ %d thành %d. Thay đổi: %s%d.",
                         masterProduct.getName(), masterProduct.getSku(), branchId, oldQuantity, newQuantity, quantityChange > 0 ? "+" : "", quantityChange));
@@ -310,7 +271,7 @@ public class InventoryServiceImpl implements InventoryService {
         log.info("Điều chỉnh tồn kho sản phẩm '{}' cho chi nhánh {}. Số lượng cũ: {}, Số lượng mới: {}",
                 masterProduct.getName(), branchId, oldQuantity, newQuantity);
 
-        return branchProduct.getQuantity();
+        return newQuantity;
     }
 
     @Override
@@ -321,7 +282,7 @@ public class InventoryServiceImpl implements InventoryService {
         if (baseUnits <= 0) {
             throw new BusinessException(ApiCode.VALIDATION_ERROR);
         }
-        BranchProduct bp = findBranchProduct(shopId, branchId, branchProductId);
+        BranchProduct bp = findBranchProductForStock(shopId, branchId, branchProductId);
         Product master = getMasterProduct(bp.getProductId(), shopId);
         if (!master.isTrackInventory()) {
             throw new BusinessException(ApiCode.PRODUCT_NOT_TRACK_INVENTORY);
@@ -330,15 +291,8 @@ public class InventoryServiceImpl implements InventoryService {
             // Caller đã chọn nhầm path — fail rõ ràng thay vì trộn tồn kho.
             throw new BusinessException(ApiCode.VALIDATION_ERROR);
         }
-        long current = bp.getStockInBaseUnits() != null ? bp.getStockInBaseUnits() : 0L;
-        if (current < baseUnits) {
-            log.warn("Không đủ tồn (base units) để xuất SP cân {}: có {}, yêu cầu {}",
-                    master.getName(), current, baseUnits);
-            throw new BusinessException(ApiCode.INSUFFICIENT_STOCK);
-        }
-        long next = current - baseUnits;
-        bp.setStockInBaseUnits(next);
-        branchProductRepository.save(bp);
+        long next = changeStockInBaseUnits(bp, master, -baseUnits);
+        long current = next + baseUnits;
 
         saveInventoryTransaction(
                 shopId, branchId, bp.getId(), null,
@@ -361,7 +315,7 @@ public class InventoryServiceImpl implements InventoryService {
         if (baseUnits <= 0) {
             throw new BusinessException(ApiCode.VALIDATION_ERROR);
         }
-        BranchProduct bp = findBranchProduct(shopId, branchId, branchProductId);
+        BranchProduct bp = findBranchProductForStock(shopId, branchId, branchProductId);
         Product master = getMasterProduct(bp.getProductId(), shopId);
         if (!master.isTrackInventory()) {
             throw new BusinessException(ApiCode.PRODUCT_NOT_TRACK_INVENTORY);
@@ -369,10 +323,8 @@ public class InventoryServiceImpl implements InventoryService {
         if (!master.isSellByWeight()) {
             throw new BusinessException(ApiCode.VALIDATION_ERROR);
         }
-        long current = bp.getStockInBaseUnits() != null ? bp.getStockInBaseUnits() : 0L;
-        long next = current + baseUnits;
-        bp.setStockInBaseUnits(next);
-        branchProductRepository.save(bp);
+        long next = changeStockInBaseUnits(bp, master, baseUnits);
+        long current = next - baseUnits;
 
         saveInventoryTransaction(
                 shopId, branchId, bp.getId(), null,
@@ -423,6 +375,211 @@ public class InventoryServiceImpl implements InventoryService {
         return baseUnits;
     }
 
+    @Override
+    @Transactional
+    public void exportOrderLines(String userId, String shopId, String branchId, List<OrderItem> items,
+                                 String quantityNote, String weightNote, String referenceId) {
+        applyOrderLines(userId, shopId, branchId, items, InventoryType.EXPORT, quantityNote, weightNote, referenceId);
+    }
+
+    @Override
+    @Transactional
+    public void importOrderLines(String userId, String shopId, String branchId, List<OrderItem> items,
+                                 String quantityNote, String weightNote) {
+        applyOrderLines(userId, shopId, branchId, items, InventoryType.IMPORT, quantityNote, weightNote, null);
+    }
+
+    /**
+     * Áp dụng xuất/nhập cho cả lô dòng đơn hàng. Toàn bộ dòng được validate trên snapshot trước,
+     * sau đó mỗi dòng là một lệnh {@code $inc} nguyên tử (lệnh trừ có điều kiện đủ tồn).
+     * Nếu một dòng thiếu tồn, các dòng đã trừ trước đó được cộng trả lại rồi mới ném exception,
+     * nên đơn không bao giờ để lại tồn kho trừ dở.
+     */
+    private void applyOrderLines(String userId, String shopId, String branchId, List<OrderItem> items,
+                                 InventoryType type, String quantityNote, String weightNote, String referenceId) {
+        if (items == null || items.isEmpty()) {
+            return;
+        }
+        boolean export = type == InventoryType.EXPORT;
+
+        Set<String> branchProductIds = items.stream()
+                .map(OrderItem::getBranchProductId)
+                .filter(StringUtils::hasText)
+                .collect(Collectors.toSet());
+        Map<String, BranchProduct> branchProductById = branchProductStockHelper
+                .findAllForStock(branchProductIds, shopId, branchId).stream()
+                .collect(Collectors.toMap(BranchProduct::getId, Function.identity()));
+        Set<String> productIds = branchProductById.values().stream()
+                .map(BranchProduct::getProductId)
+                .collect(Collectors.toSet());
+        Map<String, Product> productById = productRepository
+                .findByIdInAndShopIdAndDeletedFalse(productIds, shopId).stream()
+                .collect(Collectors.toMap(Product::getId, Function.identity()));
+
+        // 1. Validate mọi dòng trước khi chạm vào tồn kho
+        for (OrderItem item : items) {
+            BranchProduct bp = branchProductById.get(item.getBranchProductId());
+            if (bp == null) {
+                throw new ResourceNotFoundException(ApiCode.PRODUCT_NOT_FOUND);
+            }
+            Product master = productById.get(bp.getProductId());
+            if (master == null) {
+                throw new ResourceNotFoundException(ApiCode.PRODUCT_NOT_FOUND);
+            }
+            if (!master.isTrackInventory()) {
+                throw new BusinessException(ApiCode.PRODUCT_NOT_TRACK_INVENTORY);
+            }
+            if (item.isSellByWeight()) {
+                if (!master.isSellByWeight()) {
+                    throw new BusinessException(ApiCode.VALIDATION_ERROR);
+                }
+                continue;
+            }
+            if (item.getQuantity() <= 0) {
+                throw new BusinessException(ApiCode.VALIDATION_ERROR);
+            }
+            boolean hasVariants = hasTrackedVariants(bp);
+            if (!hasVariants && StringUtils.hasText(item.getVariantId())) {
+                throw new BusinessException(ApiCode.ORDER_LINE_VARIANT_NOT_ALLOWED);
+            }
+            if (hasVariants && StringUtils.hasText(item.getVariantId())) {
+                requireBranchVariant(bp, item.getVariantId());
+            }
+        }
+
+        // 2. Mỗi dòng một lệnh $inc nguyên tử; ghi nhận để hoàn lại nếu dòng sau thất bại
+        List<InventoryTransaction> transactions = new ArrayList<>();
+        List<PendingAudit> audits = new ArrayList<>();
+        List<Runnable> compensations = new ArrayList<>();
+        try {
+            for (OrderItem item : items) {
+                BranchProduct bp = branchProductById.get(item.getBranchProductId());
+                Product master = productById.get(bp.getProductId());
+
+                if (item.isSellByWeight()) {
+                    long baseUnits = WeightUnitConverter.toBaseUnits(item.getWeight(), item.getWeightUnit());
+                    if (baseUnits <= 0) {
+                        continue;
+                    }
+                    long delta = export ? -baseUnits : baseUnits;
+                    long next = changeStockInBaseUnits(bp, master, delta);
+                    compensations.add(() -> branchProductStockHelper.incStockInBaseUnits(bp.getId(), -delta));
+                    transactions.add(buildInventoryTransaction(
+                            shopId, branchId, bp.getId(), null,
+                            master, null, type, toIntQuantity(baseUnits), toIntQuantity(next),
+                            weightNote, referenceId));
+                    audits.add(new PendingAudit(bp.getId(),
+                            export ? "INVENTORY_EXPORT_WEIGHT" : "INVENTORY_IMPORT_WEIGHT",
+                            String.format("%s %d %s SP cân '%s' (SKU: %s) tại chi nhánh %s. Tồn cũ: %d, mới: %d. Ref: %s.",
+                                    export ? "Xuất" : "Nhập", baseUnits,
+                                    WeightUnitConverter.baseUnitLabel(master.getUnit()),
+                                    master.getName(), master.getSku(), branchId, next - delta, next, referenceId)));
+                    continue;
+                }
+
+                int quantity = item.getQuantity();
+                int delta = export ? -quantity : quantity;
+                String variantId = hasTrackedVariants(bp) && StringUtils.hasText(item.getVariantId())
+                        ? item.getVariantId()
+                        : null;
+                StockChange change = changeQuantity(bp, variantId, delta);
+                compensations.add(() -> {
+                    if (variantId != null) {
+                        branchProductStockHelper.incVariantQuantity(bp.getId(), variantId, -delta);
+                    } else {
+                        branchProductStockHelper.incQuantity(bp.getId(), -delta);
+                    }
+                });
+                String snapSku = variantId != null ? resolveVariantSku(master, variantId) : null;
+                transactions.add(buildInventoryTransaction(
+                        shopId, branchId, bp.getId(), variantId,
+                        master, snapSku, type, quantity, change.after(),
+                        quantityNote, referenceId));
+                audits.add(new PendingAudit(bp.getId(),
+                        export ? "INVENTORY_EXPORT" : "INVENTORY_IMPORT",
+                        String.format("%s %d đơn vị%s '%s' (SKU: %s) tại chi nhánh %s. Tồn cũ: %d, mới: %d. Tham chiếu: %s.",
+                                export ? "Xuất" : "Nhập", quantity,
+                                variantId != null ? " biến thể " + variantId + " của" : "",
+                                master.getName(), snapSku != null ? snapSku : master.getSku(),
+                                branchId, change.before(), change.after(), referenceId)));
+            }
+        } catch (RuntimeException e) {
+            log.warn("Hoàn lại {} dòng tồn kho đã áp dụng do lỗi ở lô tham chiếu {}: {}",
+                    compensations.size(), referenceId, e.getMessage());
+            compensations.forEach(Runnable::run);
+            throw e;
+        }
+
+        if (transactions.isEmpty()) {
+            return;
+        }
+        inventoryTransactionRepository.saveAll(transactions);
+        productCache.evictByBranch(shopId, branchId);
+        for (PendingAudit a : audits) {
+            auditLogService.log(userId, shopId, a.targetId(), "BRANCH_PRODUCT", a.action(), a.message());
+        }
+        log.info("{} tồn kho theo lô {} dòng tại chi nhánh {}. Tham chiếu: {}",
+                export ? "Xuất" : "Nhập", transactions.size(), branchId, referenceId);
+    }
+
+    private record PendingAudit(String targetId, String action, String message) {
+    }
+
+    /** Tồn trước/sau của trường bị thay đổi (biến thể hoặc tổng) và tổng tồn chi nhánh sau thay đổi. */
+    private record StockChange(int before, int after, int total) {
+    }
+
+    /**
+     * Thay đổi tồn đếm đơn vị bằng một lệnh {@code $inc} nguyên tử — trên biến thể nếu có {@code variantId},
+     * ngược lại trên tổng chi nhánh. Lệnh trừ kèm điều kiện đủ tồn trong filter nên không thể bán âm kho
+     * khi nhiều đơn trừ cùng lúc.
+     */
+    private StockChange changeQuantity(BranchProduct bp, String variantId, int delta) {
+        boolean variantLine = hasTrackedVariants(bp) && StringUtils.hasText(variantId);
+        BranchProduct updated;
+        if (variantLine) {
+            updated = delta < 0
+                    ? branchProductStockHelper.decVariantQuantity(bp.getId(), variantId, -delta)
+                    : branchProductStockHelper.incVariantQuantity(bp.getId(), variantId, delta);
+        } else {
+            updated = delta < 0
+                    ? branchProductStockHelper.decQuantity(bp.getId(), -delta)
+                    : branchProductStockHelper.incQuantity(bp.getId(), delta);
+        }
+        if (updated == null) {
+            if (delta < 0) {
+                log.warn("Không đủ tồn kho để xuất BranchProduct {} (variant {}). Số lượng yêu cầu: {}",
+                        bp.getId(), variantId, -delta);
+                throw new BusinessException(ApiCode.INSUFFICIENT_STOCK);
+            }
+            throw new ResourceNotFoundException(ApiCode.PRODUCT_NOT_FOUND);
+        }
+        int after = variantLine ? requireBranchVariant(updated, variantId).getQuantity() : updated.getQuantity();
+        return new StockChange(after - delta, after, updated.getQuantity());
+    }
+
+    /** Bản {@link #changeQuantity} cho {@code stockInBaseUnits} của SP bán theo cân. Trả về tồn mới. */
+    private long changeStockInBaseUnits(BranchProduct bp, Product master, long delta) {
+        BranchProduct updated = delta < 0
+                ? branchProductStockHelper.decStockInBaseUnits(bp.getId(), -delta)
+                : branchProductStockHelper.incStockInBaseUnits(bp.getId(), delta);
+        if (updated == null) {
+            if (delta < 0) {
+                log.warn("Không đủ tồn (base units) để xuất SP cân {}: yêu cầu {}", master.getName(), -delta);
+                throw new BusinessException(ApiCode.INSUFFICIENT_STOCK);
+            }
+            throw new ResourceNotFoundException(ApiCode.PRODUCT_NOT_FOUND);
+        }
+        return updated.getStockInBaseUnits() != null ? updated.getStockInBaseUnits() : 0L;
+    }
+
+    private BranchProduct requireStockUpdate(BranchProduct updated) {
+        if (updated == null) {
+            throw new ResourceNotFoundException(ApiCode.PRODUCT_NOT_FOUND);
+        }
+        return updated;
+    }
+
     /** InventoryTransaction.quantity/currentStock hiện là int; clamp để tránh overflow. */
     private static int toIntQuantity(long v) {
         if (v > Integer.MAX_VALUE) return Integer.MAX_VALUE;
@@ -433,14 +590,37 @@ public class InventoryServiceImpl implements InventoryService {
     @Override
     public Page<InventoryTransactionResponse> getTransactionHistory(String userId, String shopId, String branchId, String branchProductId, Pageable pageable) {
         BranchProduct bp = findBranchProduct(shopId, branchId, branchProductId);
-
-        auditLogService.log(userId, shopId, branchProductId, "BRANCH_PRODUCT", "INVENTORY_HISTORY_VIEW",
-                String.format("Lấy lịch sử giao dịch tồn kho cho sản phẩm '%s' tại chi nhánh %s.", branchProductId, branchId));
+        logHistoryView(userId, shopId, branchId, branchProductId);
 
         Page<InventoryTransaction> page = inventoryTransactionRepository
                 .findByProductIdAndShopIdAndBranchIdOrderByCreatedAtDesc(branchProductId, shopId, branchId, pageable);
+        return page.map(historyMapper(page.getContent(), bp, shopId));
+    }
 
-        var userIds = page.getContent().stream()
+    @Override
+    public CursorPage<InventoryTransactionResponse> getTransactionHistoryByCursor(
+            String userId, String shopId, String branchId, String branchProductId,
+            String cursor, Integer size, boolean withTotal) {
+        BranchProduct bp = findBranchProduct(shopId, branchId, branchProductId);
+        logHistoryView(userId, shopId, branchId, branchProductId);
+
+        Criteria filter = Criteria.where("productId").is(branchProductId)
+                .and("shopId").is(shopId)
+                .and("branchId").is(branchId);
+        CursorPage<InventoryTransaction> page = keysetPager.fetch(
+                filter, InventoryTransaction.class, InventoryTransaction::getId, cursor, size, withTotal);
+        return page.map(historyMapper(page.getContent(), bp, shopId));
+    }
+
+    private void logHistoryView(String userId, String shopId, String branchId, String branchProductId) {
+        auditLogService.log(userId, shopId, branchProductId, "BRANCH_PRODUCT", "INVENTORY_HISTORY_VIEW",
+                String.format("Lấy lịch sử giao dịch tồn kho cho sản phẩm '%s' tại chi nhánh %s.", branchProductId, branchId));
+    }
+
+    /** Nạp tên người tạo + đơn tham chiếu của cả trang trong một lần rồi trả mapper cho từng giao dịch. */
+    private Function<InventoryTransaction, InventoryTransactionResponse> historyMapper(
+            List<InventoryTransaction> transactions, BranchProduct bp, String shopId) {
+        var userIds = transactions.stream()
                 .map(InventoryTransaction::getCreatedBy)
                 .filter(Objects::nonNull)
                 .filter(StringUtils::hasText)
@@ -449,16 +629,21 @@ public class InventoryServiceImpl implements InventoryService {
         Map<String, String> createdByNameByUserId = userRepository.findAllById(userIds).stream()
                 .collect(Collectors.toMap(User::getId, this::displayNameForUser));
 
-        Map<String, Order> orderByReferenceId = new HashMap<>();
-        page.getContent().stream()
+        var referenceIds = transactions.stream()
                 .map(InventoryTransaction::getReferenceId)
                 .filter(StringUtils::hasText)
-                .distinct()
-                .forEach(refId -> orderRepository.findByIdAndDeletedFalse(refId)
-                        .ifPresent(o -> orderByReferenceId.put(refId, o)));
+                .collect(Collectors.toSet());
+        Map<String, Order> orderByReferenceId = new HashMap<>();
+        if (!referenceIds.isEmpty()) {
+            orderRepository.findAllById(referenceIds).forEach(o -> {
+                if (!o.isDeleted()) {
+                    orderByReferenceId.put(o.getId(), o);
+                }
+            });
+        }
 
         Product masterProduct = getMasterProduct(bp.getProductId(), shopId);
-        return page.map(t -> mapToInventoryTransactionResponse(t, createdByNameByUserId, masterProduct, orderByReferenceId));
+        return t -> mapToInventoryTransactionResponse(t, createdByNameByUserId, masterProduct, orderByReferenceId);
     }
 
     private String displayNameForUser(User u) {
@@ -468,6 +653,11 @@ public class InventoryServiceImpl implements InventoryService {
         return u.getEmail() != null ? u.getEmail() : "";
     }
 
+    private BranchProduct findBranchProductForStock(String shopId, String branchId, String branchProductId) {
+        return branchProductStockHelper.findForStock(shopId, branchId, branchProductId)
+                .orElseThrow(() -> new ResourceNotFoundException(ApiCode.PRODUCT_NOT_FOUND));
+    }
+
     private BranchProduct findBranchProduct(String shopId, String branchId, String branchProductId) {
         return branchProductRepository.findByIdAndShopIdAndBranchIdAndDeletedFalse(branchProductId, shopId, branchId)
                 .orElseThrow(() -> new ResourceNotFoundException(ApiCode.PRODUCT_NOT_FOUND));
@@ -482,9 +672,19 @@ public class InventoryServiceImpl implements InventoryService {
             String shopId, String branchId, String branchProductId, String variantId,
             Product masterProduct, String snapshotSku, InventoryType type, int quantity, int currentStock,
             String note, String referenceId) {
+        inventoryTransactionRepository.save(buildInventoryTransaction(
+                shopId, branchId, branchProductId, variantId,
+                masterProduct, snapshotSku, type, quantity, currentStock,
+                note, referenceId));
+    }
+
+    private InventoryTransaction buildInventoryTransaction(
+            String shopId, String branchId, String branchProductId, String variantId,
+            Product masterProduct, String snapshotSku, InventoryType type, int quantity, int currentStock,
+            String note, String referenceId) {
 
         String sku = StringUtils.hasText(snapshotSku) ? snapshotSku : masterProduct.getSku();
-        InventoryTransaction transaction = InventoryTransaction.builder()
+        return InventoryTransaction.builder()
                 .shopId(shopId)
                 .branchId(branchId)
                 .productId(branchProductId)
@@ -497,21 +697,12 @@ public class InventoryServiceImpl implements InventoryService {
                 .note(note)
                 .referenceId(referenceId)
                 .build();
-        inventoryTransactionRepository.save(transaction);
     }
 
     private boolean hasTrackedVariants(BranchProduct bp) {
         return bp.getVariants() != null && !bp.getVariants().isEmpty();
     }
 
-    private void syncAggregateFromVariants(BranchProduct bp) {
-        if (!hasTrackedVariants(bp)) {
-            return;
-        }
-        int sum = bp.getVariants().stream().mapToInt(BranchProductVariant::getQuantity).sum();
-        bp.setQuantity(sum);
-    }
-
     private BranchProductVariant requireBranchVariant(BranchProduct bp, String variantId) {
         if (!StringUtils.hasText(variantId)) {
             throw new BusinessException(ApiCode.ORDER_LINE_VARIANT_REQUIRED);
@@ -1,15 +1,34 @@
 package com.example.sales.service.impl;
 
+import com.example.sales.config.SequenceProperties;
+import com.example.sales.constant.AppConstants;
 import com.example.sales.model.NextSequence;
 import com.example.sales.repository.NextSequenceRepository;
 import com.example.sales.service.SequenceService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.AggregationUpdate;
+import org.springframework.data.mongodb.core.aggregation.ArithmeticOperators;
+import org.springframework.data.mongodb.core.aggregation.ConditionalOperators;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
 @Service
 @RequiredArgsConstructor
 public class SequenceServiceImpl implements SequenceService {
     private final NextSequenceRepository nextSequenceRepository;
+    private final MongoTemplate mongoTemplate;
+    private final SequenceProperties sequenceProperties;
+
+    /** Khối số thứ tự đã đặt trước trên node này, theo key shopId|prefix|type. */
+    private final Map<String, SequenceBlock> reservedBlocks = new ConcurrentHashMap<>();
 
     @Override
     public String getNextCode(String shopId, String prefix, String type) {
@@ -21,20 +40,84 @@ public class SequenceServiceImpl implements SequenceService {
                         .type(type)
                         .nextSequence(1)
                         .build());
-        return String.format("%s_%03d", prefix, nextSequence.getNextSequence());
+        return formatCode(prefix, nextSequence.getNextSequence());
     }
 
     @Override
     public void updateNextSequence(String shopId, String prefix, String type) {
-        NextSequence nextSequence = nextSequenceRepository
-                .findByShopIdAndPrefixAndType(shopId, prefix, type)
-                .orElse(NextSequence.builder()
-                        .shopId(shopId)
-                        .prefix(prefix)
-                        .type(type)
-                        .nextSequence(1)
-                        .build());
-        nextSequence.setNextSequence(nextSequence.getNextSequence() + 1);
-        nextSequenceRepository.save(nextSequence);
+        reserve(shopId, prefix, type, 1);
+    }
+
+    @Override
+    public String nextCode(String shopId, String prefix, String type) {
+        int blockSize = blockSizeFor(type);
+        if (blockSize <= 1) {
+            return formatCode(prefix, reserve(shopId, prefix, type, 1));
+        }
+        SequenceBlock block = reservedBlocks.computeIfAbsent(key(shopId, prefix, type), k -> new SequenceBlock());
+        synchronized (block) {
+            if (block.next >= block.end) {
+                long start = reserve(shopId, prefix, type, blockSize);
+                block.next = start;
+                block.end = start + blockSize;
+            }
+            return formatCode(prefix, block.next++);
+        }
+    }
+
+    @Override
+    public List<String> nextCodes(String shopId, String prefix, String type, int count) {
+        if (count <= 0) {
+            return List.of();
+        }
+        long start = reserve(shopId, prefix, type, count);
+        List<String> codes = new ArrayList<>(count);
+        for (long seq = start; seq < start + count; seq++) {
+            codes.add(formatCode(prefix, seq));
+        }
+        return codes;
+    }
+
+    /**
+     * Đặt trước {@code count} số thứ tự bằng một lệnh {@code findAndModify} upsert nguyên tử.
+     * {@code nextSequence} trong DB luôn là số kế tiếp chưa phát (document chưa có coi như 1), nên khối được cấp
+     * là {@code [giá trị sau khi cộng - count, giá trị sau khi cộng)}. Lần đầu cho key, upsert tạo luôn document;
+     * hai node upsert cùng lúc được unique index {shopId, prefix, type} (MongoIndexAdvisor tạo) chặn, server tự thử lại.
+     *
+     * @return số đầu tiên của khối.
+     */
+    private long reserve(String shopId, String prefix, String type, int count) {
+        Query query = new Query(Criteria.where("shopId").is(shopId)
+                .and("prefix").is(prefix)
+                .and("type").is(type));
+        AggregationUpdate update = AggregationUpdate.update()
+                .set("nextSequence").toValue(ArithmeticOperators.Add
+                        .valueOf(ConditionalOperators.ifNull("nextSequence").then(1))
+                        .add(count));
+        FindAndModifyOptions options = FindAndModifyOptions.options().upsert(true).returnNew(true);
+
+        NextSequence updated = mongoTemplate.findAndModify(query, update, options, NextSequence.class);
+        return updated.getNextSequence() - count;
+    }
+
+    private int blockSizeFor(String type) {
+        if (AppConstants.SequenceTypes.SEQUENCE_TYPE_ORDER.equals(type)) {
+            return Math.max(1, sequenceProperties.getOrderBlockSize());
+        }
+        return 1;
+    }
+
+    private static String key(String shopId, String prefix, String type) {
+        return shopId + "|" + prefix + "|" + type;
+    }
+
+    private static String formatCode(String prefix, long sequence) {
+        return String.format("%s_%03d", prefix, sequence);
+    }
+
+    /** Khoảng [next, end) số thứ tự còn lại của khối đã đặt trước. */
+    private static final class SequenceBlock {
+        private long next;
+        private long end;
     }
-}
\ No newline at end of file
+}
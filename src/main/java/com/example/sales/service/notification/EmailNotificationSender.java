@@ -9,12 +9,17 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
  * Channel EMAIL — render Thymeleaf template theo plan của router rồi gửi
  * qua {@link MailService#sendTicketEmailAsync} (fire-and-forget, không chặn flow).
+ * Lượt gộp ({@link #sendAll}) nhóm email theo template, mỗi nhóm một lần
+ * {@link MailService#sendTemplateBatchAsync}.
  */
 @Slf4j
 @Component
@@ -51,6 +56,28 @@ public class EmailNotificationSender implements NotificationSender {
         mailService.sendTicketEmailAsync(recipient.getEmail(), subject, template, model);
     }
 
+    @Override
+    public void sendAll(List<NotificationDelivery> deliveries) {
+        Map<String, List<MailService.TemplateMail>> byTemplate = new LinkedHashMap<>();
+        for (NotificationDelivery delivery : deliveries) {
+            User recipient = delivery.recipient();
+            NotificationEnvelope envelope = delivery.envelope();
+            if (recipient.getEmail() == null || recipient.getEmail().isBlank()) {
+                log.debug("Skip email for user {} (no email)", recipient.getId());
+                continue;
+            }
+            String template = delivery.plan().getEmailTemplate();
+            if (template == null || template.isBlank()) {
+                log.warn("No email template configured for {} — skip email for user {}",
+                        envelope.getType(), recipient.getId());
+                continue;
+            }
+            byTemplate.computeIfAbsent(template, t -> new ArrayList<>()).add(new MailService.TemplateMail(
+                    recipient.getEmail(), delivery.plan().resolveSubject(envelope), buildModel(envelope, recipient)));
+        }
+        byTemplate.forEach(mailService::sendTemplateBatchAsync);
+    }
+
     private Map<String, Object> buildModel(NotificationEnvelope envelope, User recipient) {
         Map<String, Object> model = new HashMap<>();
         if (envelope.getTemplateVars() != null) {
@@ -60,8 +87,10 @@ public class EmailNotificationSender implements NotificationSender {
         model.putIfAbsent("recipientName", fullName);
         model.putIfAbsent("recipientEmail", recipient.getEmail());
         // Alias để giữ tương thích ngược với các template cũ (plan-upgraded,
-        // plan-expiry-reminder, plan-downgraded, ...) vốn đang dùng ${fullName}.
+        // plan-expiry-reminder, plan-downgraded, ...) vốn đang dùng ${fullName},
+        // và ticket-created-admin dùng ${adminName}.
         model.putIfAbsent("fullName", fullName);
+        model.putIfAbsent("adminName", fullName);
         model.putIfAbsent("title", envelope.getTitle());
         model.putIfAbsent("message", envelope.getMessage());
         model.putIfAbsent("baseUrl", sanitizeBaseUrl());
@@ -2,15 +2,19 @@ package com.example.sales.service.notification;
 
 import com.example.sales.constant.NotificationChannel;
 import com.example.sales.dto.notification.NotificationEnvelope;
+import com.example.sales.model.Notification;
 import com.example.sales.model.User;
 import com.example.sales.service.NotificationService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Component;
 
+import java.util.List;
+
 /**
  * Channel IN_APP — ủy thác cho {@link NotificationService} hiện có
  * (persist Notification + push WebSocket). Đây chỉ là adapter; không
  * sao chép logic để đảm bảo backward compatibility với code cũ.
+ * Lượt gộp ({@link #sendAll}) lưu toàn bộ notification bằng một insertMany.
  */
 @Component
 @RequiredArgsConstructor
@@ -36,4 +40,25 @@ public class InAppNotificationSender implements NotificationSender {
                 envelope.getActorId(),
                 envelope.getActorName());
     }
+
+    @Override
+    public void sendAll(List<NotificationDelivery> deliveries) {
+        notificationService.sendAll(deliveries.stream()
+                .map(delivery -> {
+                    NotificationEnvelope envelope = delivery.envelope();
+                    return Notification.builder()
+                            .shopId(envelope.getShopId())
+                            .userId(delivery.recipient().getId())
+                            .type(envelope.getType())
+                            .title(envelope.getTitle())
+                            .message(envelope.getMessage())
+                            .read(false)
+                            .referenceId(envelope.getReferenceId())
+                            .referenceType(envelope.getReferenceType())
+                            .actorId(envelope.getActorId())
+                            .actorName(envelope.getActorName())
+                            .build();
+                })
+                .toList());
+    }
 }
@@ -0,0 +1,11 @@
+package com.example.sales.service.notification;
+
+import com.example.sales.dto.notification.NotificationEnvelope;
+import com.example.sales.model.User;
+
+/**
+ * Một lần gửi đã được dispatcher resolve sẵn: envelope + user nhận + plan của channel.
+ * Dùng cho {@link NotificationSender#sendAll} khi dispatcher gom nhiều envelope một lượt.
+ */
+public record NotificationDelivery(NotificationEnvelope envelope, User recipient, NotificationRouter.ChannelPlan plan) {
+}
@@ -8,9 +8,12 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
 import java.util.EnumMap;
 import java.util.EnumSet;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -18,14 +21,15 @@ import java.util.Set;
 /**
  * Điểm vào duy nhất cho mọi notification trong hệ thống.
  *
- * Producer chỉ cần build {@link NotificationEnvelope} và gọi {@link #dispatch}.
+ * Producer chỉ cần build {@link NotificationEnvelope} và gọi {@link #dispatch},
+ * hoặc {@link #dispatchAll} khi có nhiều envelope cùng lúc (scheduler, broadcast).
  * Dispatcher chịu trách nhiệm:
- *   1. Kiểm tra idempotency (nếu envelope có dedupeKey).
+ *   1. Kiểm tra idempotency (nếu envelope có dedupeKey) — một bulk insert cho cả lượt.
  *   2. Tra {@link NotificationRouter} để biết các channel cần kích hoạt.
- *   3. Áp forcedChannels của producer (override config mặc định).
- *   4. Resolve User cho mỗi recipientId (tái dùng cache theo 1 request).
- *   5. Gọi {@link NotificationSender} tương ứng, log lỗi từng cái
- *      mà không làm fail toàn bộ dispatch.
+ *   3. Áp forcedChannels / suppressedChannels của producer (override config mặc định).
+ *   4. Resolve User cho mọi recipientId bằng một query.
+ *   5. Gọi {@link NotificationSender#sendAll} cho từng channel, log lỗi từng
+ *      channel mà không làm fail toàn bộ dispatch.
  */
 @Slf4j
 @Service
@@ -41,67 +45,122 @@ public class NotificationDispatcher {
 
     public void dispatch(NotificationEnvelope envelope) {
         if (envelope == null) return;
-        if (envelope.getType() == null) {
-            log.warn("Dispatch called with null type — skip");
-            return;
-        }
-        List<String> recipients = envelope.getRecipientUserIds();
-        if (recipients == null || recipients.isEmpty()) {
-            log.debug("No recipients for {} — skip", envelope.getType());
-            return;
-        }
+        dispatchAll(List.of(envelope));
+    }
 
-        if (!idempotencyStore.tryAcquire(envelope.getDedupeKey())) {
-            log.debug("Skip duplicate notification dedupeKey={}", envelope.getDedupeKey());
-            return;
-        }
+    /**
+     * Gửi một lượt nhiều envelope: dedupe tất cả dedupeKey bằng một bulk insert, load user một lần,
+     * rồi giao cho mỗi sender toàn bộ delivery của channel đó ({@link NotificationSender#sendAll}) —
+     * in-app là một insertMany, email được nhóm theo template.
+     *
+     * @return số envelope được gửi (không tính envelope rỗng / trùng dedupeKey)
+     */
+    public int dispatchAll(List<NotificationEnvelope> envelopes) {
+        return dispatchAll(envelopes, false);
+    }
 
-        Set<NotificationChannel> channels = resolveChannels(envelope);
-        if (channels.isEmpty()) {
-            log.debug("No channels configured for {} — skip", envelope.getType());
-            return;
+    /**
+     * Như {@link #dispatchAll(List)}; với {@code strict = true}, sender nào lỗi thì sau khi chạy hết các channel
+     * ném {@link IllegalStateException} thay vì chỉ log — cho caller cần gửi lại (broadcast) thay vì đếm là đã gửi.
+     */
+    public int dispatchAll(List<NotificationEnvelope> envelopes, boolean strict) {
+        List<NotificationEnvelope> valid = new ArrayList<>(envelopes.size());
+        for (NotificationEnvelope envelope : envelopes) {
+            if (envelope == null) continue;
+            if (envelope.getType() == null) {
+                log.warn("Dispatch called with null type — skip");
+                continue;
+            }
+            if (envelope.getRecipientUserIds() == null || envelope.getRecipientUserIds().isEmpty()) {
+                log.debug("No recipients for {} — skip", envelope.getType());
+                continue;
+            }
+            valid.add(envelope);
         }
+        if (valid.isEmpty()) return 0;
+
+        List<NotificationEnvelope> accepted = acquire(valid);
 
-        Map<String, User> userCache = loadUsers(recipients);
+        Set<String> recipientIds = new LinkedHashSet<>();
+        accepted.forEach(envelope -> recipientIds.addAll(envelope.getRecipientUserIds()));
+        Map<String, User> userCache = recipientIds.isEmpty() ? Map.of() : loadUsers(recipientIds);
 
-        for (String userId : recipients) {
-            User user = userCache.get(userId);
-            if (user == null) {
-                log.debug("Skip recipient {} (not found/deleted) for {}", userId, envelope.getType());
+        Map<NotificationChannel, List<NotificationDelivery>> byChannel = new EnumMap<>(NotificationChannel.class);
+        for (NotificationEnvelope envelope : accepted) {
+            Set<NotificationChannel> channels = resolveChannels(envelope);
+            if (channels.isEmpty()) {
+                log.debug("No channels configured for {} — skip", envelope.getType());
                 continue;
             }
-
-            for (NotificationChannel channel : channels) {
-                NotificationRouter.ChannelPlan plan = router.plan(envelope.getType(), channel);
-                // forcedChannels có thể bật channel chưa config — dùng plan rỗng fallback.
-                if (plan == null) plan = NotificationRouter.ChannelPlan.inApp();
-
-                NotificationSender sender = senderMap().get(channel);
-                if (sender == null) {
-                    log.debug("No sender registered for channel {} — skip", channel);
+            for (String userId : envelope.getRecipientUserIds()) {
+                User user = userCache.get(userId);
+                if (user == null) {
+                    log.debug("Skip recipient {} (not found/deleted) for {}", userId, envelope.getType());
                     continue;
                 }
-                try {
-                    sender.send(envelope, user, plan);
-                } catch (Exception ex) {
-                    log.warn("Sender {} failed for user {} ({}): {}",
-                            channel, userId, envelope.getType(), ex.getMessage());
+                for (NotificationChannel channel : channels) {
+                    NotificationRouter.ChannelPlan plan = router.plan(envelope.getType(), channel);
+                    // forcedChannels có thể bật channel chưa config — dùng plan rỗng fallback.
+                    if (plan == null) plan = NotificationRouter.ChannelPlan.inApp();
+                    byChannel.computeIfAbsent(channel, c -> new ArrayList<>())
+                            .add(new NotificationDelivery(envelope, user, plan));
                 }
             }
         }
+
+        Set<NotificationChannel> failedChannels = EnumSet.noneOf(NotificationChannel.class);
+        byChannel.forEach((channel, deliveries) -> {
+            NotificationSender sender = senderMap().get(channel);
+            if (sender == null) {
+                log.debug("No sender registered for channel {} — skip", channel);
+                return;
+            }
+            try {
+                sender.sendAll(deliveries);
+            } catch (Exception ex) {
+                failedChannels.add(channel);
+                log.warn("Sender {} failed for {} deliveries: {}", channel, deliveries.size(), ex.getMessage());
+            }
+        });
+        if (strict && !failedChannels.isEmpty()) {
+            throw new IllegalStateException("Sender failed for channels " + failedChannels);
+        }
+        return accepted.size();
     }
 
-    private Set<NotificationChannel> resolveChannels(NotificationEnvelope envelope) {
-        Set<NotificationChannel> fromRouter = router.channelsFor(envelope.getType());
-        Set<NotificationChannel> forced = envelope.getForcedChannels();
-        if (forced == null || forced.isEmpty()) return fromRouter;
+    /** Lọc envelope trùng dedupeKey (đã gửi trước đó, hoặc lặp trong cùng lượt) bằng một bulk insert. */
+    private List<NotificationEnvelope> acquire(List<NotificationEnvelope> envelopes) {
+        Set<String> keys = new LinkedHashSet<>();
+        for (NotificationEnvelope envelope : envelopes) {
+            if (hasDedupeKey(envelope)) keys.add(envelope.getDedupeKey());
+        }
+        if (keys.isEmpty()) return envelopes;
+
+        Set<String> acquired = new HashSet<>(idempotencyStore.tryAcquireAll(keys));
+        List<NotificationEnvelope> accepted = new ArrayList<>(envelopes.size());
+        for (NotificationEnvelope envelope : envelopes) {
+            if (!hasDedupeKey(envelope) || acquired.remove(envelope.getDedupeKey())) {
+                accepted.add(envelope);
+            } else {
+                log.debug("Skip duplicate notification dedupeKey={}", envelope.getDedupeKey());
+            }
+        }
+        return accepted;
+    }
 
-        Set<NotificationChannel> merged = EnumSet.copyOf(fromRouter);
-        merged.addAll(forced);
+    private static boolean hasDedupeKey(NotificationEnvelope envelope) {
+        return envelope.getDedupeKey() != null && !envelope.getDedupeKey().isBlank();
+    }
+
+    private Set<NotificationChannel> resolveChannels(NotificationEnvelope envelope) {
+        Set<NotificationChannel> merged = EnumSet.noneOf(NotificationChannel.class);
+        merged.addAll(router.channelsFor(envelope.getType()));
+        if (envelope.getForcedChannels() != null) merged.addAll(envelope.getForcedChannels());
+        if (envelope.getSuppressedChannels() != null) merged.removeAll(envelope.getSuppressedChannels());
         return merged;
     }
 
-    private Map<String, User> loadUsers(List<String> ids) {
+    private Map<String, User> loadUsers(Set<String> ids) {
         Map<String, User> map = new HashMap<>();
         userRepository.findAllById(ids).forEach(u -> {
             if (!u.isDeleted()) map.put(u.getId(), u);
@@ -3,11 +3,22 @@ package com.example.sales.service.notification;
 import com.example.sales.model.NotificationDedupe;
 import com.example.sales.repository.NotificationDedupeRepository;
 import lombok.RequiredArgsConstructor;
+import com.mongodb.bulk.BulkWriteError;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.stereotype.Component;
 
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
 
 /**
  * Đảm bảo mỗi dedupeKey chỉ gửi 1 lần (trong TTL).
@@ -20,7 +31,10 @@ import java.time.Instant;
 @RequiredArgsConstructor
 public class NotificationIdempotencyStore {
 
+    private static final int DUPLICATE_KEY = 11000;
+
     private final NotificationDedupeRepository repository;
+    private final MongoTemplate mongoTemplate;
 
     /**
      * @return true nếu đây là lần đầu thấy key (caller được phép gửi);
@@ -45,4 +59,61 @@ public class NotificationIdempotencyStore {
             return true;
         }
     }
+
+    /**
+     * Bản bulk của {@link #tryAcquire}: một query {@code $in} bỏ các key đã có, rồi chèn các key còn lại trong một
+     * bulk insert unordered — key bị chèn đồng thời ở node khác bị unique index (MongoIndexAdvisor tạo) từ chối
+     * mà không chặn các key còn lại.
+     *
+     * @return các key lần đầu thấy (caller được phép gửi). Lỗi khác duplicate → fail-open như tryAcquire.
+     */
+    public Set<String> tryAcquireAll(Collection<String> dedupeKeys) {
+        List<String> keys = new ArrayList<>(new LinkedHashSet<>(dedupeKeys));
+        if (keys.isEmpty()) return Set.of();
+
+        try {
+            Query existing = Query.query(Criteria.where("dedupeKey").in(keys));
+            existing.fields().include("dedupeKey");
+            mongoTemplate.find(existing, NotificationDedupe.class)
+                    .forEach(record -> keys.remove(record.getDedupeKey()));
+        } catch (Exception ex) {
+            log.warn("Idempotency store lookup error ({} keys): {}", keys.size(), ex.getMessage());
+        }
+        if (keys.isEmpty()) return Set.of();
+
+        Instant now = Instant.now();
+        List<NotificationDedupe> records = keys.stream()
+                .map(key -> NotificationDedupe.builder().dedupeKey(key).createdAt(now).build())
+                .toList();
+        Set<String> acquired = new LinkedHashSet<>(keys);
+        try {
+            mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, NotificationDedupe.class)
+                    .insert(records)
+                    .execute();
+        } catch (BulkOperationException ex) {
+            for (BulkWriteError error : ex.getErrors()) {
+                if (error.getCode() == DUPLICATE_KEY) {
+                    acquired.remove(keys.get(error.getIndex()));
+                } else {
+                    log.warn("Idempotency store error for key {}: {}", keys.get(error.getIndex()), error.getMessage());
+                }
+            }
+        } catch (Exception ex) {
+            log.warn("Idempotency store bulk error ({} keys): {}", keys.size(), ex.getMessage());
+        }
+        return acquired;
+    }
+
+    /**
+     * Trả lại các key đã acquire khi lượt gửi thất bại, để lượt gửi lại không coi recipient là đã nhận.
+     * Lỗi chỉ log: key còn lại thì lượt sau bỏ qua recipient đó như trước.
+     */
+    public void releaseAll(Collection<String> dedupeKeys) {
+        if (dedupeKeys.isEmpty()) return;
+        try {
+            mongoTemplate.remove(Query.query(Criteria.where("dedupeKey").in(dedupeKeys)), NotificationDedupe.class);
+        } catch (Exception ex) {
+            log.warn("Idempotency store release error ({} keys): {}", dedupeKeys.size(), ex.getMessage());
+        }
+    }
 }
@@ -53,27 +53,28 @@ public class NotificationRouter {
     private Map<NotificationType, RouteConfig> buildDefaultRouteTable() {
         Map<NotificationType, RouteConfig> t = new EnumMap<>(NotificationType.class);
 
-        // Support tickets: luôn in-app; email chỉ khi HIGH/URGENT (producer hiện tại
-        // đã tự lọc priority trước khi dispatch nên router bật EMAIL mặc định).
+        // Support tickets: luôn in-app; email chỉ khi HIGH/URGENT (producer tắt EMAIL
+        // bằng suppressChannel cho ticket thường nên router bật EMAIL mặc định).
         t.put(NotificationType.TICKET_CREATED, RouteConfig.builder()
                 .channel(NotificationChannel.IN_APP, ChannelPlan.inApp())
                 .channel(NotificationChannel.EMAIL,
                         ChannelPlan.email("emails/ticket-created-admin",
-                                env -> "[Hỗ trợ] Yêu cầu mới — " + safe(env.getTitle())))
+                                env -> "[Hỗ trợ] " + templateString(env, "priority")
+                                        + " — " + templateString(env, "subject")))
                 .build());
 
         t.put(NotificationType.TICKET_REPLIED, RouteConfig.builder()
                 .channel(NotificationChannel.IN_APP, ChannelPlan.inApp())
                 .channel(NotificationChannel.EMAIL,
                         ChannelPlan.email("emails/ticket-replied",
-                                env -> "[Hỗ trợ] Phản hồi mới — " + safe(env.getTitle())))
+                                env -> "[Hỗ trợ] Phản hồi mới — " + templateString(env, "subject")))
                 .build());
 
         t.put(NotificationType.TICKET_STATUS_CHANGED, RouteConfig.builder()
                 .channel(NotificationChannel.IN_APP, ChannelPlan.inApp())
                 .channel(NotificationChannel.EMAIL,
                         ChannelPlan.email("emails/ticket-status-changed",
-                                env -> "[Hỗ trợ] Cập nhật trạng thái — " + safe(env.getTitle())))
+                                env -> "[Hỗ trợ] Cập nhật trạng thái — " + templateString(env, "subject")))
                 .build());
 
         // Billing — in-app + email song song
@@ -134,10 +135,6 @@ public class NotificationRouter {
         return t;
     }
 
-    private static String safe(String s) {
-        return s == null ? "" : s;
-    }
-
     private static String templateString(NotificationEnvelope env, String key) {
         Object v = env.getTemplateVars() == null ? null : env.getTemplateVars().get(key);
         return v == null ? "" : v.toString();
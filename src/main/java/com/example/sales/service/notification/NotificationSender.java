@@ -4,10 +4,13 @@ import com.example.sales.constant.NotificationChannel;
 import com.example.sales.dto.notification.NotificationEnvelope;
 import com.example.sales.model.User;
 
+import java.util.List;
+
 /**
  * Strategy cho một channel cụ thể (IN_APP / EMAIL / SMS / PUSH).
  * Dispatcher sẽ iterate các sender được bật cho NotificationType và
- * gọi {@link #send(NotificationEnvelope, User, NotificationRouter.ChannelPlan)}.
+ * gọi {@link #send(NotificationEnvelope, User, NotificationRouter.ChannelPlan)}, hoặc
+ * {@link #sendAll(List)} khi gom nhiều envelope trong một lượt dispatch.
  */
 public interface NotificationSender {
 
@@ -19,4 +22,14 @@ public interface NotificationSender {
      * @param plan      cấu hình channel (template, subject, v.v.) từ router
      */
     void send(NotificationEnvelope envelope, User recipient, NotificationRouter.ChannelPlan plan);
+
+    /**
+     * Gửi cả lượt delivery của channel này. Mặc định gọi {@link #send} từng cái; sender có
+     * cách gửi gộp (insertMany, một kết nối SMTP...) thì override.
+     */
+    default void sendAll(List<NotificationDelivery> deliveries) {
+        for (NotificationDelivery delivery : deliveries) {
+            send(delivery.envelope(), delivery.recipient(), delivery.plan());
+        }
+    }
 }
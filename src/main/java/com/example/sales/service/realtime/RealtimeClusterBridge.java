@@ -0,0 +1,19 @@
+package com.example.sales.service.realtime;
+
+import java.util.function.BiConsumer;
+
+/**
+ * Cầu nối event realtime giữa các node khi chạy nhiều instance sau load balancer.
+ *
+ * Mỗi node vẫn dùng simple broker của mình cho các session đang kết nối tới nó; event do node này publish
+ * được gửi cho broker local và đẩy qua bridge, các node khác nhận lại và gửi vào broker local của chúng.
+ * Payload là JSON đã serialize ở node gốc nên node nhận không serialize lại.
+ */
+public interface RealtimeClusterBridge {
+
+    /** Phát event (destination + JSON) tới các node khác. Best-effort: lỗi chỉ log, không throw. */
+    void publish(String destination, String payloadJson);
+
+    /** Đăng ký handler nhận event do node khác phát (không nhận lại event của chính node này). */
+    void onRemoteMessage(BiConsumer<String, String> handler);
+}
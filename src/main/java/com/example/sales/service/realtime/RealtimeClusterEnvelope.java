@@ -0,0 +1,22 @@
+package com.example.sales.service.realtime;
+
+/**
+ * Message trao đổi giữa các node: {@code origin \n destination \n payloadJson}.
+ * nodeId và destination STOMP không chứa xuống dòng nên tách theo hai ký tự '\n' đầu tiên là đủ.
+ */
+public record RealtimeClusterEnvelope(String origin, String destination, String payload) {
+
+    public String encode() {
+        return origin + '\n' + destination + '\n' + payload;
+    }
+
+    /** @return null nếu message không đúng định dạng */
+    public static RealtimeClusterEnvelope decode(String raw) {
+        if (raw == null) return null;
+        int first = raw.indexOf('\n');
+        int second = first < 0 ? -1 : raw.indexOf('\n', first + 1);
+        if (second < 0) return null;
+        return new RealtimeClusterEnvelope(raw.substring(0, first), raw.substring(first + 1, second),
+                raw.substring(second + 1));
+    }
+}
@@ -0,0 +1,315 @@
+// File: src/main/java/com/example/sales/service/realtime/RealtimeEventDispatcher.java
+package com.example.sales.service.realtime;
+
+import com.example.sales.config.RealtimePublishProperties;
+import com.example.sales.dto.websocket.WebSocketMessage;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.lang.Nullable;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeTypeUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+
+/**
+ * Hàng đợi + thread nền gửi event STOMP cho {@link RealtimeEventPublisher}, để serialize Jackson và
+ * gửi lên broker không chạy trong thread nghiệp vụ.
+ *
+ * Gộp (coalescing): event có {@code coalesceKey} (vd. cập nhật trạng thái của một đơn / bàn) được giữ
+ * tối đa coalesceWindow; event tiếp theo cùng destination + key + loại message trong lúc đó thay payload tại chỗ
+ * (giữ vị trí trong hàng đợi) nên client chỉ nhận bản mới nhất của loại đó. Hai loại khác nhau của cùng entity
+ * (vd. TABLE_UPDATED mang snapshot đầy đủ và TABLE_STATUS_CHANGED chỉ mang vài trường) không bao giờ thay nhau:
+ * loại mới cắt chuỗi gộp của loại cũ và xếp sau nó. Event không gộp được (tạo, xóa, thanh toán...)
+ * giữ nguyên thứ tự FIFO và cắt chuỗi gộp của entity đó, nên cập nhật đến sau vẫn được gửi sau nó.
+ *
+ * Hàng đợi đầy → bỏ event (best-effort như publish trước đây). Khi tắt ứng dụng thread gửi hết hàng đợi.
+ *
+ * Nhiều node: nếu có {@link RealtimeClusterBridge}, event được serialize một lần, gửi cho broker local và
+ * đẩy qua bridge; event nhận từ node khác đi thẳng vào broker local (đã gộp ở node gốc, không qua hàng đợi).
+ * Event chỉ có nghĩa trên node phát (vd. delta board đơn mở, version theo epoch của node) dùng
+ * {@link #submitLocal} để không đi qua bridge.
+ *
+ * Metrics: realtime.publish.queue.depth (gauge), realtime.publish.batch.size (summary),
+ * realtime.publish.coalesced / realtime.publish.dropped / realtime.publish.failed (counter).
+ */
+@Slf4j
+@Component
+public class RealtimeEventDispatcher implements SmartLifecycle {
+
+    private final SimpMessagingTemplate messagingTemplate;
+    private final RealtimePublishProperties properties;
+    private final RealtimeClusterBridge clusterBridge;
+    private final DistributionSummary batchSizes;
+    private final Counter coalesced;
+    private final Counter dropped;
+    private final Counter failed;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+    private final ArrayDeque<Slot> queue = new ArrayDeque<>();
+    /** destination|coalesceKey → slot gộp được mới nhất của entity, chưa gửi; chỉ nhận event cùng loại message */
+    private final Map<String, Slot> open = new HashMap<>();
+
+    /** Nghe event từ node khác (vd. board đơn mở vô hiệu bản nhớ của chi nhánh vừa đổi ở node kia). */
+    private final List<BiConsumer<String, String>> remoteListeners = new CopyOnWriteArrayList<>();
+
+    private volatile boolean running;
+    private Thread worker;
+
+    private static final class Slot {
+        final String destination;
+        final String openKey;
+        final long dueAtNanos;
+        final boolean localOnly;
+        WebSocketMessage<?> message;
+
+        Slot(String destination, String openKey, long dueAtNanos, boolean localOnly, WebSocketMessage<?> message) {
+            this.destination = destination;
+            this.openKey = openKey;
+            this.dueAtNanos = dueAtNanos;
+            this.localOnly = localOnly;
+            this.message = message;
+        }
+    }
+
+    public RealtimeEventDispatcher(SimpMessagingTemplate messagingTemplate,
+                                   RealtimePublishProperties properties,
+                                   MeterRegistry meterRegistry,
+                                   @Nullable RealtimeClusterBridge clusterBridge) {
+        this.messagingTemplate = messagingTemplate;
+        this.properties = properties;
+        this.clusterBridge = clusterBridge;
+        if (clusterBridge != null) {
+            clusterBridge.onRemoteMessage(this::deliverRemote);
+        }
+        Gauge.builder("realtime.publish.queue.depth", this, RealtimeEventDispatcher::queueDepth).register(meterRegistry);
+        this.batchSizes = DistributionSummary.builder("realtime.publish.batch.size").register(meterRegistry);
+        this.coalesced = meterRegistry.counter("realtime.publish.coalesced");
+        this.dropped = meterRegistry.counter("realtime.publish.dropped");
+        this.failed = meterRegistry.counter("realtime.publish.failed");
+    }
+
+    /**
+     * @param coalesceKey id entity (đơn / bàn...) nếu event chỉ mang trạng thái mới nhất và có thể gộp;
+     *                    null nếu phải gửi đủ từng event
+     * @param entityKey   id entity của event (có thể null) — event không gộp được cắt chuỗi gộp của entity này
+     */
+    public void submit(String destination, String coalesceKey, String entityKey, WebSocketMessage<?> message) {
+        enqueue(destination, coalesceKey, entityKey, false, message);
+    }
+
+    /** Như {@link #submit} nhưng chỉ gửi cho client trên node này (không gộp, không qua cluster bridge). */
+    public void submitLocal(String destination, WebSocketMessage<?> message) {
+        enqueue(destination, null, null, true, message);
+    }
+
+    private void enqueue(String destination, String coalesceKey, String entityKey, boolean localOnly,
+                         WebSocketMessage<?> message) {
+        if (!running || !properties.isAsync()) {
+            send(destination, localOnly, message);
+            return;
+        }
+        lock.lock();
+        try {
+            if (coalesceKey != null) {
+                Slot pending = open.get(destination + "|" + coalesceKey);
+                if (pending != null && pending.message.getType() == message.getType()) {
+                    pending.message = message;
+                    coalesced.increment();
+                    return;
+                }
+            } else if (entityKey != null) {
+                open.remove(destination + "|" + entityKey);
+            }
+            if (queue.size() >= Math.max(1, properties.getQueueCapacity())) {
+                dropped.increment();
+                log.warn("Realtime queue đầy, bỏ event {} -> {}", message.getType(), destination);
+                return;
+            }
+            String openKey = coalesceKey != null ? destination + "|" + coalesceKey : null;
+            long dueAt = System.nanoTime() + (openKey != null ? properties.getCoalesceWindow().toNanos() : 0);
+            Slot slot = new Slot(destination, openKey, dueAt, localOnly, message);
+            queue.addLast(slot);
+            if (openKey != null) {
+                open.put(openKey, slot);
+            }
+            changed.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Đăng ký handler (destination, JSON) cho event nhận từ node khác; không có bridge thì không bao giờ được gọi. */
+    public void addRemoteListener(BiConsumer<String, String> listener) {
+        remoteListeners.add(listener);
+    }
+
+    int queueDepth() {
+        lock.lock();
+        try {
+            return queue.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        worker = new Thread(this::drainLoop, "realtime-publisher");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    @Override
+    public synchronized void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        lock.lock();
+        try {
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            worker.join(properties.getShutdownTimeout().toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // Thread nền không kịp gửi hết → gửi nốt trong thread shutdown
+        List<Slot> remaining = takeBatch(Integer.MAX_VALUE, true);
+        remaining.forEach(slot -> send(slot.destination, slot.localOnly, slot.message));
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    private void drainLoop() {
+        int batchSize = Math.max(1, properties.getBatchSize());
+        while (running || queueDepth() > 0) {
+            List<Slot> batch;
+            try {
+                batch = awaitBatch(batchSize);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            if (batch.isEmpty()) {
+                continue;
+            }
+            for (Slot slot : batch) {
+                send(slot.destination, slot.localOnly, slot.message);
+            }
+            batchSizes.record(batch.size());
+        }
+    }
+
+    /** Chờ tới khi đầu hàng đợi đến hạn (hoặc đang dừng) rồi lấy tối đa batchSize slot đến hạn. */
+    private List<Slot> awaitBatch(int batchSize) throws InterruptedException {
+        lock.lock();
+        try {
+            Slot head = queue.peekFirst();
+            if (head == null) {
+                changed.await(100, TimeUnit.MILLISECONDS);
+                return List.of();
+            }
+            long wait = head.dueAtNanos - System.nanoTime();
+            if (wait > 0 && running) {
+                changed.awaitNanos(wait);
+                return List.of();
+            }
+            return takeBatch(batchSize, !running);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private List<Slot> takeBatch(int max, boolean ignoreDue) {
+        lock.lock();
+        try {
+            List<Slot> batch = new ArrayList<>(Math.min(max, queue.size()));
+            long now = System.nanoTime();
+            while (batch.size() < max) {
+                Slot head = queue.peekFirst();
+                if (head == null || (!ignoreDue && head.dueAtNanos - now > 0)) {
+                    break;
+                }
+                queue.pollFirst();
+                if (head.openKey != null) {
+                    open.remove(head.openKey, head);
+                }
+                batch.add(head);
+            }
+            return batch;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void send(String destination, boolean localOnly, WebSocketMessage<?> message) {
+        try {
+            if (clusterBridge == null || localOnly) {
+                messagingTemplate.convertAndSend(destination, message);
+                return;
+            }
+            // Serialize một lần, dùng chung cho broker local và các node khác
+            Message<?> converted = messagingTemplate.getMessageConverter().toMessage(message, null);
+            if (converted == null) {
+                throw new IllegalStateException("Không chuyển được payload sang message");
+            }
+            messagingTemplate.send(destination, converted);
+            Object payload = converted.getPayload();
+            clusterBridge.publish(destination, payload instanceof byte[] bytes
+                    ? new String(bytes, StandardCharsets.UTF_8)
+                    : payload.toString());
+        } catch (Exception ex) {
+            failed.increment();
+            log.warn("Realtime publish failed ({} -> {}): {}", message.getType(), destination, ex.getMessage());
+        }
+    }
+
+    /** Event từ node khác: JSON đã serialize sẵn, gửi thẳng cho các session trên node này. */
+    void deliverRemote(String destination, String payloadJson) {
+        try {
+            messagingTemplate.send(destination, MessageBuilder
+                    .withPayload(payloadJson.getBytes(StandardCharsets.UTF_8))
+                    .setHeader(MessageHeaders.CONTENT_TYPE, MimeTypeUtils.APPLICATION_JSON)
+                    .build());
+        } catch (Exception ex) {
+            failed.increment();
+            log.warn("Realtime remote delivery failed ({}): {}", destination, ex.getMessage());
+        }
+        for (BiConsumer<String, String> listener : remoteListeners) {
+            try {
+                listener.accept(destination, payloadJson);
+            } catch (Exception ex) {
+                log.warn("Realtime remote listener failed ({}): {}", destination, ex.getMessage());
+            }
+        }
+    }
+}
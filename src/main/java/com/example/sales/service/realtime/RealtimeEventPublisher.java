@@ -1,13 +1,19 @@
 package com.example.sales.service.realtime;
 
 import com.example.sales.constant.WebSocketMessageType;
+import com.example.sales.dto.order.OrderResponse;
+import com.example.sales.dto.product.ProductImportJobResponse;
+import com.example.sales.dto.table.TableResponse;
 import com.example.sales.dto.websocket.WebSocketMessage;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
 
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+
 /**
  * Điểm vào duy nhất để producer push event realtime tới client.
  *
@@ -21,19 +27,50 @@ import org.springframework.util.StringUtils;
  *
  * <p>Publish là best-effort: nếu broker gặp lỗi thì log warn, không throw để
  * tránh làm fail transaction gốc (DB đã commit trước khi publish).
+ *
+ * <p>Việc gửi do {@link RealtimeEventDispatcher} làm ở thread nền. Các event chỉ mang trạng thái mới nhất
+ * ({@link #COALESCABLE}) của cùng một đơn / bàn / job và cùng loại được gộp trong cửa sổ ngắn, ví dụ gộp bàn hay
+ * tách đơn phát nhiều ORDER_UPDATED liên tiếp thì client chỉ nhận bản cuối.
+ * Payload được serialize muộn nên producer không được sửa payload sau khi publish.
  */
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class RealtimeEventPublisher {
 
-    private final SimpMessagingTemplate messagingTemplate;
+    /**
+     * Event mà bản sau thay thế hoàn toàn bản trước <b>cùng loại</b> của entity. Payload giữa các loại khác nhau
+     * (vd. TableResponse đầy đủ của TABLE_UPDATED với map {id, status, currentOrderId...} của TABLE_STATUS_CHANGED)
+     * nên dispatcher chỉ gộp event cùng loại.
+     */
+    static final Set<WebSocketMessageType> COALESCABLE = EnumSet.of(
+            WebSocketMessageType.ORDER_UPDATED,
+            WebSocketMessageType.ORDER_STATUS_CHANGED,
+            WebSocketMessageType.TABLE_UPDATED,
+            WebSocketMessageType.TABLE_STATUS_CHANGED,
+            WebSocketMessageType.PRODUCT_IMPORT_PROGRESS);
+
+    private final RealtimeEventDispatcher dispatcher;
 
     public <T> void publishOrderEvent(String shopId, String branchId,
                                       WebSocketMessageType type, T payload) {
         publishBranch(shopId, branchId, "orders", type, payload);
     }
 
+    /**
+     * Event đơn hàng chỉ gửi cho client đang kết nối tới node này — không qua cluster bridge.
+     * Dùng cho payload chỉ đúng trên node phát, như delta board đơn mở (version theo epoch của node).
+     */
+    public <T> void publishLocalOrderEvent(String shopId, String branchId,
+                                           WebSocketMessageType type, T payload) {
+        if (!StringUtils.hasText(shopId) || !StringUtils.hasText(branchId)) {
+            log.debug("Skip realtime publish ({}): missing shopId/branchId", type);
+            return;
+        }
+        dispatcher.submitLocal("/topic/shops/" + shopId + "/branches/" + branchId + "/orders",
+                new WebSocketMessage<>(type, payload));
+    }
+
     public <T> void publishTableEvent(String shopId, String branchId,
                                       WebSocketMessageType type, T payload) {
         publishBranch(shopId, branchId, "tables", type, payload);
@@ -66,11 +103,17 @@ public class RealtimeEventPublisher {
     }
 
     private <T> void publish(String destination, WebSocketMessageType type, T payload) {
-        try {
-            messagingTemplate.convertAndSend(destination,
-                    new WebSocketMessage<>(type, payload));
-        } catch (Exception ex) {
-            log.warn("Realtime publish failed ({} -> {}): {}", type, destination, ex.getMessage());
-        }
+        String entityKey = entityKey(payload);
+        String coalesceKey = COALESCABLE.contains(type) ? entityKey : null;
+        dispatcher.submit(destination, coalesceKey, entityKey, new WebSocketMessage<>(type, payload));
+    }
+
+    /** Id của entity trong payload (đơn, bàn, job import); null nếu không xác định được → không gộp. */
+    static String entityKey(Object payload) {
+        if (payload instanceof OrderResponse order) return order.getId();
+        if (payload instanceof TableResponse table) return table.getId();
+        if (payload instanceof ProductImportJobResponse job) return job.getJobId();
+        if (payload instanceof Map<?, ?> map && map.get("id") instanceof String id) return id;
+        return null;
     }
 }
@@ -0,0 +1,61 @@
+// File: src/main/java/com/example/sales/service/realtime/RedisRealtimeClusterBridge.java
+package com.example.sales.service.realtime;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+import java.util.function.BiConsumer;
+
+/**
+ * {@link RealtimeClusterBridge} qua Redis pub/sub: mọi node publish và subscribe cùng một kênh,
+ * message do chính node phát (cùng nodeId) bị bỏ qua khi nhận lại.
+ *
+ * Pub/sub không lưu message: node đang mất kết nối Redis sẽ lỡ event trong thời gian đó — cùng mức
+ * best-effort với simple broker (client reconnect đằng nào cũng tải lại trạng thái qua REST).
+ */
+@Slf4j
+public class RedisRealtimeClusterBridge implements RealtimeClusterBridge, MessageListener {
+
+    private final StringRedisTemplate redisTemplate;
+    private final String channel;
+    private final String nodeId = UUID.randomUUID().toString();
+
+    private volatile BiConsumer<String, String> handler = (destination, payload) -> { };
+
+    public RedisRealtimeClusterBridge(StringRedisTemplate redisTemplate, String channel) {
+        this.redisTemplate = redisTemplate;
+        this.channel = channel;
+    }
+
+    @Override
+    public void publish(String destination, String payloadJson) {
+        try {
+            redisTemplate.convertAndSend(channel, new RealtimeClusterEnvelope(nodeId, destination, payloadJson).encode());
+        } catch (Exception ex) {
+            log.warn("Realtime cluster publish failed ({}): {}", destination, ex.getMessage());
+        }
+    }
+
+    @Override
+    public void onRemoteMessage(BiConsumer<String, String> handler) {
+        this.handler = handler;
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        RealtimeClusterEnvelope envelope = RealtimeClusterEnvelope.decode(
+                new String(message.getBody(), StandardCharsets.UTF_8));
+        if (envelope == null || nodeId.equals(envelope.origin())) {
+            return;
+        }
+        handler.accept(envelope.destination(), envelope.payload());
+    }
+
+    public String getChannel() {
+        return channel;
+    }
+}
@@ -0,0 +1,112 @@
+package com.example.sales.service.tax;
+
+import com.example.sales.cache.TwoLevelCacheManager;
+import com.example.sales.model.tax.TaxPolicy;
+import com.example.sales.repository.TaxPolicyRepository;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+/**
+ * Chỉ mục trong bộ nhớ các tax policy đang active, theo shop → branch (null = mặc định của shop).
+ *
+ * Mỗi branch giữ mảng khoảng [effectiveFrom, effectiveTo] sắp theo (effectiveFrom, priority) tăng dần;
+ * tra cứu tìm nhị phân khoảng cuối cùng bắt đầu trước {@code atTime} rồi lùi dần tới khoảng đầu tiên
+ * còn hiệu lực — cùng thứ tự ưu tiên "effectiveFrom mới nhất" với truy vấn
+ * {@link TaxPolicyRepository#findEffectivePolicy}, priority cao hơn thắng khi trùng effectiveFrom.
+ * Vì createPolicy chặn chồng lấn, bước lùi thường dừng ngay ở phần tử đầu tiên.
+ *
+ * TaxPolicyService gọi {@link #evictShop(String)} khi tạo / vô hiệu policy; với near-cache Redis, lần evict
+ * được phát qua kênh pub/sub của {@link TwoLevelCacheManager} tới các node khác như PromotionIndex.
+ * {@link #RELOAD_AFTER} chỉ giới hạn độ cũ khi lỡ message.
+ */
+@Component
+public class TaxPolicyIndex {
+
+    static final Duration RELOAD_AFTER = Duration.ofMinutes(5);
+    static final String INVALIDATION_NAME = "index:tax-policies";
+
+    private static final Comparator<TaxPolicy> BY_START_THEN_PRIORITY =
+            Comparator.comparing(TaxPolicyIndex::startOf).thenComparingInt(TaxPolicy::getPriority);
+
+    private final TaxPolicyRepository taxPolicyRepository;
+    private final ObjectProvider<TwoLevelCacheManager> nearCacheProvider;
+    private final LoadingCache<String, Map<String, TaxPolicy[]>> byShop;
+
+    public TaxPolicyIndex(TaxPolicyRepository taxPolicyRepository,
+                          ObjectProvider<TwoLevelCacheManager> nearCacheProvider) {
+        this.taxPolicyRepository = taxPolicyRepository;
+        this.nearCacheProvider = nearCacheProvider;
+        this.byShop = Caffeine.newBuilder()
+                .maximumSize(10_000)
+                .expireAfterWrite(RELOAD_AFTER)
+                .build(this::load);
+        nearCacheProvider.ifAvailable(nearCache -> nearCache.registerLocalIndex(INVALIDATION_NAME, this::invalidateLocal));
+    }
+
+    /** Policy hiệu lực của đúng scope {@code branchId} (null = mặc định shop), không fallback. */
+    public Optional<TaxPolicy> find(String shopId, String branchId, LocalDateTime atTime) {
+        TaxPolicy[] intervals = byShop.get(shopId).get(branchId);
+        if (intervals == null) {
+            return Optional.empty();
+        }
+        // Phần tử cuối cùng có effectiveFrom <= atTime
+        int lo = 0;
+        int hi = intervals.length - 1;
+        int last = -1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            if (!startOf(intervals[mid]).isAfter(atTime)) {
+                last = mid;
+                lo = mid + 1;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        for (int i = last; i >= 0; i--) {
+            TaxPolicy p = intervals[i];
+            if (p.getEffectiveTo() == null || !p.getEffectiveTo().isBefore(atTime)) {
+                return Optional.of(p);
+            }
+        }
+        return Optional.empty();
+    }
+
+    public void evictShop(String shopId) {
+        byShop.invalidate(shopId);
+        nearCacheProvider.ifAvailable(nearCache -> nearCache.publishLocalIndexInvalidation(INVALIDATION_NAME, shopId));
+    }
+
+    private void invalidateLocal(String shopId) {
+        if (shopId == null) {
+            byShop.invalidateAll();
+        } else {
+            byShop.invalidate(shopId);
+        }
+    }
+
+    private Map<String, TaxPolicy[]> load(String shopId) {
+        // HashMap chấp nhận key null (policy mặc định của shop)
+        Map<String, List<TaxPolicy>> grouped = taxPolicyRepository.findByShopIdAndActiveTrue(shopId).stream()
+                .collect(Collectors.groupingBy(p -> Optional.ofNullable(p.getBranchId()).orElse(""),
+                        HashMap::new, Collectors.toList()));
+        Map<String, TaxPolicy[]> index = new HashMap<>();
+        grouped.forEach((branch, policies) -> index.put(branch.isEmpty() ? null : branch,
+                policies.stream().sorted(BY_START_THEN_PRIORITY).toArray(TaxPolicy[]::new)));
+        return index;
+    }
+
+    private static LocalDateTime startOf(TaxPolicy p) {
+        return p.getEffectiveFrom() != null ? p.getEffectiveFrom() : LocalDateTime.MIN;
+    }
+}
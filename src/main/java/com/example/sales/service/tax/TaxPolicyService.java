@@ -28,9 +28,11 @@ public class TaxPolicyService {
 
     private final TaxPolicyRepository taxPolicyRepository;
     private final AuditLogService auditLogService;
+    private final TaxPolicyIndex taxPolicyIndex;
 
     /**
      * Tìm tax policy đang hiệu lực (empty nếu shop chưa cấu hình).
+     * Đọc từ {@link TaxPolicyIndex} trong bộ nhớ thay vì truy vấn DB mỗi lần tạo đơn / preview.
      */
     public Optional<TaxPolicy> findEffectivePolicy(
             String shopId,
@@ -41,13 +43,13 @@ public class TaxPolicyService {
 
         if (branchId != null) {
             Optional<TaxPolicy> branchPolicy =
-                    taxPolicyRepository.findEffectivePolicy(shopId, branchId, time);
+                    taxPolicyIndex.find(shopId, branchId, time);
             if (branchPolicy.isPresent()) {
                 return branchPolicy;
             }
         }
 
-        return taxPolicyRepository.findEffectivePolicy(shopId, null, time);
+        return taxPolicyIndex.find(shopId, null, time);
     }
 
     /**
@@ -82,6 +84,7 @@ public class TaxPolicyService {
 
         policy.setActive(false);
         taxPolicyRepository.save(policy);
+        taxPolicyIndex.evictShop(policy.getShopId());
 
         auditLogService.log(
                 userId,
@@ -121,6 +124,7 @@ public class TaxPolicyService {
 
         policy.setActive(true);
         TaxPolicy saved = taxPolicyRepository.save(policy);
+        taxPolicyIndex.evictShop(saved.getShopId());
 
         auditLogService.log(
                 userId,
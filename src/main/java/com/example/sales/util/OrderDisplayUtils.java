@@ -1,12 +1,13 @@
 package com.example.sales.util;
 
+import com.example.sales.constant.PaymentStatus;
 import com.example.sales.model.Order;
 import org.springframework.util.StringUtils;
 
 import java.util.Locale;
 
 /**
- * Mã đơn hàng hiển thị (lưu {@link Order#getOrderCode()} hoặc suy từ id đơn cũ).
+ * Mã đơn hàng hiển thị (lưu {@link Order#getOrderCode()} hoặc suy từ id đơn cũ) và trạng thái thanh toán hiển thị.
  */
 public final class OrderDisplayUtils {
 
@@ -31,6 +32,17 @@ public final class OrderDisplayUtils {
         return "DH-" + t.substring(t.length() - 8).toUpperCase(Locale.ROOT);
     }
 
+    /**
+     * Trạng thái thanh toán hiển thị: đơn cũ chưa có {@code paymentStatus} suy từ {@code isPaid}.
+     * Nơi đọc đơn bằng projection phải lấy cả hai field.
+     */
+    public static PaymentStatus resolvePaymentStatus(Order order) {
+        if (order.getPaymentStatus() != null) {
+            return order.getPaymentStatus();
+        }
+        return order.isPaid() ? PaymentStatus.PAID : PaymentStatus.UNPAID;
+    }
+
     /**
      * Thay id đơn trong ghi chú kho bằng mã đơn hàng hiển thị (nếu tra được {@link Order}).
      */
@@ -0,0 +1,152 @@
+package com.example.sales.cache;
+
+import com.example.sales.dto.product.ProductSearchRequest;
+import com.example.sales.helper.ProductSearchHelper;
+import com.example.sales.repository.BranchProductRepository;
+import com.example.sales.repository.ProductRepository;
+import com.example.sales.repository.ShopRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Evict theo shop/chi nhánh chỉ vô hiệu cache của đúng tenant đó; hit/miss được đếm (không gắn tag shop).
+ */
+class ProductCacheEvictionTest {
+
+    private AnnotationConfigApplicationContext context;
+    private ProductCache productCache;
+    private ProductCacheMetrics metrics;
+    private BranchProductRepository branchProductRepository;
+    private ProductRepository productRepository;
+    private ProductSearchHelper productSearchHelper;
+
+    @BeforeEach
+    void setUp() {
+        context = new AnnotationConfigApplicationContext(TestConfig.class);
+        productCache = context.getBean(ProductCache.class);
+        metrics = context.getBean(ProductCacheMetrics.class);
+        branchProductRepository = context.getBean(BranchProductRepository.class);
+        productRepository = context.getBean(ProductRepository.class);
+        productSearchHelper = context.getBean(ProductSearchHelper.class);
+        when(branchProductRepository.findByShopIdAndBranchIdAndDeletedFalse(anyString(), anyString(), any(Pageable.class)))
+                .thenAnswer(inv -> new PageImpl<>(List.of(), inv.getArgument(2), 0));
+        when(productRepository.findByShopIdAndDeletedFalse(anyString(), any(Pageable.class)))
+                .thenAnswer(inv -> new PageImpl<>(List.of(), inv.getArgument(1), 0));
+    }
+
+    @AfterEach
+    void tearDown() {
+        context.close();
+    }
+
+    @Test
+    void evictByBranchKeepsOtherShopsCached() {
+        Pageable page = Pageable.ofSize(20);
+        productCache.getAllByBranch("shopA", "b1", null, page);
+        productCache.getAllByBranch("shopB", "b1", null, page);
+
+        productCache.evictByBranch("shopA", "b1");
+
+        productCache.getAllByBranch("shopA", "b1", null, page);
+        productCache.getAllByBranch("shopB", "b1", null, page);
+
+        verify(branchProductRepository, times(2)).findByShopIdAndBranchIdAndDeletedFalse("shopA", "b1", page);
+        verify(branchProductRepository, times(1)).findByShopIdAndBranchIdAndDeletedFalse("shopB", "b1", page);
+        assertThat(metrics.missCount()).isEqualTo(3);
+        assertThat(metrics.hitCount()).isEqualTo(1);
+    }
+
+    @Test
+    void evictByBranchKeepsOtherBranchesOfSameShop() {
+        Pageable page = Pageable.ofSize(20);
+        productCache.getAllByBranch("shopA", "b1", null, page);
+        productCache.getAllByBranch("shopA", "b2", null, page);
+
+        productCache.evictByBranch("shopA", "b1");
+        productCache.getAllByBranch("shopA", "b2", null, page);
+        verify(branchProductRepository, times(1)).findByShopIdAndBranchIdAndDeletedFalse("shopA", "b2", page);
+
+        productCache.evictByShop("shopA");
+        productCache.getAllByBranch("shopA", "b2", null, page);
+        verify(branchProductRepository, times(2)).findByShopIdAndBranchIdAndDeletedFalse("shopA", "b2", page);
+    }
+
+    @Test
+    void evictByBranchRefreshesShopKeywordListButKeepsPlainShopList() {
+        Pageable page = Pageable.ofSize(20);
+        productCache.getAllByShop("shopA", null, page);
+        productCache.getAllByShop("shopA", "ca phe", page);
+
+        // Kết quả theo keyword gộp tồn mọi chi nhánh → phải đọc lại sau khi tồn một chi nhánh đổi
+        productCache.evictByBranch("shopA", "b1");
+        productCache.getAllByShop("shopA", null, page);
+        productCache.getAllByShop("shopA", "ca phe", page);
+
+        verify(productRepository, times(1)).findByShopIdAndDeletedFalse("shopA", page);
+        verify(productSearchHelper, times(2)).findMatchingProductIds(eq("shopA"), any(ProductSearchRequest.class));
+    }
+
+    @Configuration
+    @EnableCaching
+    @Import({ProductCache.class, ProductCacheKeys.class, ProductCacheMetrics.class})
+    static class TestConfig {
+
+        @Bean
+        CacheManager cacheManager() {
+            return new ConcurrentMapCacheManager();
+        }
+
+        @Bean
+        MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+
+        @Bean
+        BranchProductRepository branchProductRepository() {
+            return mock(BranchProductRepository.class);
+        }
+
+        @Bean
+        ProductRepository productRepository() {
+            return mock(ProductRepository.class);
+        }
+
+        @Bean
+        ShopRepository shopRepository() {
+            return mock(ShopRepository.class);
+        }
+
+        @Bean
+        ProductMapper productMapper() {
+            return mock(ProductMapper.class);
+        }
+
+        @Bean
+        ProductSearchHelper productSearchHelper() {
+            return mock(ProductSearchHelper.class);
+        }
+    }
+}
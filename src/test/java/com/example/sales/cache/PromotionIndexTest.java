@@ -0,0 +1,103 @@
+package com.example.sales.cache;
+
+import com.example.sales.config.NearCacheProperties;
+import com.example.sales.model.Promotion;
+import com.example.sales.repository.PromotionRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Kết quả tra chỉ mục phải giống cách lọc tuần tự cũ: promotion đầu tiên theo thứ tự DB
+ * khớp chi nhánh, khung thời gian và sản phẩm.
+ */
+class PromotionIndexTest {
+
+    private static final String SHOP = "shop-1";
+    private static final LocalDateTime NOW = LocalDateTime.of(2026, 5, 1, 12, 0);
+
+    private PromotionRepository promotionRepository;
+    private PromotionIndex index;
+
+    @BeforeEach
+    void setUp() {
+        promotionRepository = mock(PromotionRepository.class);
+        index = new PromotionIndex(promotionRepository,
+                new StaticListableBeanFactory().getBeanProvider(TwoLevelCacheManager.class));
+    }
+
+    private static Promotion promo(String id, String branchId, List<String> productIds,
+                                   LocalDateTime start, LocalDateTime end) {
+        return Promotion.builder().id(id).shopId(SHOP).branchId(branchId).active(true)
+                .applicableProductIds(productIds).startDate(start).endDate(end).build();
+    }
+
+    @Test
+    void picksFirstMatchingPromotionInDatabaseOrder() {
+        when(promotionRepository.findByShopIdAndActiveTrueAndDeletedFalse(SHOP)).thenReturn(List.of(
+                promo("expired", null, List.of("p1"), NOW.minusDays(10), NOW.minusDays(1)),
+                promo("otherBranch", "b2", List.of("p1"), NOW.minusDays(1), NOW.plusDays(1)),
+                promo("allProducts", null, List.of(), NOW.minusDays(1), NOW.plusDays(1)),
+                promo("p1Only", "b1", List.of("p1"), NOW.minusDays(1), NOW.plusDays(1))
+        ));
+
+        assertThat(index.findApplicable(SHOP, "b1", "p1", NOW).getId()).isEqualTo("allProducts");
+        assertThat(index.findApplicable(SHOP, "b2", "p1", NOW).getId()).isEqualTo("otherBranch");
+        assertThat(index.findApplicable(SHOP, "b1", "p1", NOW.plusDays(2))).isNull();
+    }
+
+    @Test
+    void loadsOncePerShopUntilEvicted() {
+        when(promotionRepository.findByShopIdAndActiveTrueAndDeletedFalse(SHOP)).thenReturn(List.of(
+                promo("p1Only", null, List.of("p1"), NOW.minusDays(1), NOW.plusDays(1))));
+
+        assertThat(index.findApplicable(SHOP, "b1", "p1", NOW).getId()).isEqualTo("p1Only");
+        assertThat(index.findApplicable(SHOP, "b1", "p2", NOW)).isNull();
+        verify(promotionRepository, times(1)).findByShopIdAndActiveTrueAndDeletedFalse(SHOP);
+
+        index.evictShop(SHOP);
+        index.findApplicable(SHOP, "b1", "p1", NOW);
+        verify(promotionRepository, times(2)).findByShopIdAndActiveTrueAndDeletedFalse(SHOP);
+    }
+
+    @Test
+    void evictOnOneNodeReloadsIndexOnOtherNodes() {
+        when(promotionRepository.findByShopIdAndActiveTrueAndDeletedFalse(SHOP)).thenReturn(List.of(
+                promo("p1Only", null, List.of("p1"), NOW.minusDays(1), NOW.plusDays(1))));
+        // Hai node dùng chung bus pub/sub của near-cache
+        List<TwoLevelCacheManager> bus = new CopyOnWriteArrayList<>();
+        PromotionIndex nodeA = new PromotionIndex(promotionRepository, nearCache(bus));
+        PromotionIndex nodeB = new PromotionIndex(promotionRepository, nearCache(bus));
+        nodeA.findApplicable(SHOP, "b1", "p1", NOW);
+        nodeB.findApplicable(SHOP, "b1", "p1", NOW);
+        verify(promotionRepository, times(2)).findByShopIdAndActiveTrueAndDeletedFalse(SHOP);
+
+        when(promotionRepository.findByShopIdAndActiveTrueAndDeletedFalse(SHOP)).thenReturn(List.of());
+        nodeA.evictShop(SHOP);
+
+        assertThat(nodeB.findApplicable(SHOP, "b1", "p1", NOW)).isNull();
+        verify(promotionRepository, times(3)).findByShopIdAndActiveTrueAndDeletedFalse(SHOP);
+    }
+
+    private static ObjectProvider<TwoLevelCacheManager> nearCache(List<TwoLevelCacheManager> bus) {
+        TwoLevelCacheManager manager = new TwoLevelCacheManager(new ConcurrentMapCacheManager(),
+                new NearCacheProperties(), new SimpleMeterRegistry(),
+                message -> bus.forEach(node -> node.handleInvalidation(message)));
+        bus.add(manager);
+        return new StaticListableBeanFactory(Map.of("cacheManager", manager)).getBeanProvider(TwoLevelCacheManager.class);
+    }
+}
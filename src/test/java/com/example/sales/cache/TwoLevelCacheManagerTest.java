@@ -0,0 +1,99 @@
+package com.example.sales.cache;
+
+import com.example.sales.config.NearCacheProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.Cache;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Hai "node" dùng chung một L2 (ConcurrentMapCacheManager thay cho Redis) và một bus pub/sub trong bộ nhớ:
+ * ghi/xóa ở node A phải làm node B bỏ bản L1 cũ.
+ */
+class TwoLevelCacheManagerTest {
+
+    private final ConcurrentMapCacheManager sharedL2 = new ConcurrentMapCacheManager();
+    private final List<TwoLevelCacheManager> nodes = new CopyOnWriteArrayList<>();
+    private MeterRegistry meterRegistry;
+    private TwoLevelCacheManager nodeA;
+    private TwoLevelCacheManager nodeB;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        NearCacheProperties properties = new NearCacheProperties();
+        nodeA = new TwoLevelCacheManager(sharedL2, properties, meterRegistry, this::broadcast);
+        nodeB = new TwoLevelCacheManager(sharedL2, properties, new SimpleMeterRegistry(), this::broadcast);
+        nodes.add(nodeA);
+        nodes.add(nodeB);
+    }
+
+    private void broadcast(String message) {
+        nodes.forEach(node -> node.handleInvalidation(message));
+    }
+
+    @Test
+    void readsAreServedFromL1AfterFirstL2Hit() {
+        Cache a = nodeA.getCache("shops");
+        sharedL2.getCache("shops").put("s1", "Shop 1");
+
+        assertThat(a.get("s1").get()).isEqualTo("Shop 1");
+        // L2 đổi trực tiếp (không qua near-cache) → node A vẫn đọc bản L1
+        sharedL2.getCache("shops").put("s1", "changed");
+        assertThat(a.get("s1").get()).isEqualTo("Shop 1");
+
+        assertThat(meterRegistry.get("cache.l2.lookups").tags("cache", "shops", "result", "hit").counter().count())
+                .isEqualTo(1);
+        assertThat(meterRegistry.get("cache.gets").tags("cache", "shops", "result", "hit").functionCounter().count())
+                .isEqualTo(1);
+    }
+
+    @Test
+    void evictOnOneNodeInvalidatesOtherNodesL1() {
+        Cache a = nodeA.getCache("orders");
+        Cache b = nodeB.getCache("orders");
+        a.put("shop:o1", "v1");
+        assertThat(b.get("shop:o1").get()).isEqualTo("v1");
+
+        a.evict("shop:o1");
+
+        assertThat(b.get("shop:o1")).isNull();
+    }
+
+    @Test
+    void putOnOneNodeReplacesStaleL1OnOtherNodes() {
+        Cache a = nodeA.getCache("shopUsers");
+        Cache b = nodeB.getCache("shopUsers");
+        a.put("s-u", "STAFF");
+        assertThat(b.get("s-u").get()).isEqualTo("STAFF");
+
+        a.put("s-u", "OWNER");
+        assertThat(b.get("s-u").get()).isEqualTo("OWNER");
+
+        a.clear();
+        assertThat(b.get("s-u")).isNull();
+    }
+
+    @Test
+    void callersGetTheirOwnCopyFromL1() {
+        Cache a = nodeA.getCache("orders");
+        List<String> items = new ArrayList<>(List.of("p1"));
+        a.put("shop:o1", items);
+        items.add("changed-after-put");
+
+        @SuppressWarnings("unchecked")
+        List<String> first = a.get("shop:o1", List.class);
+        first.add("changed-by-caller");
+
+        assertThat(a.get("shop:o1").get()).isEqualTo(List.of("p1"));
+        assertThat(a.get("shop:o1").get()).isNotSameAs(a.get("shop:o1").get());
+    }
+}
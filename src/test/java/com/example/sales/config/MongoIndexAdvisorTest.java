@@ -0,0 +1,87 @@
+package com.example.sales.config;
+
+import com.example.sales.model.Product;
+import com.example.sales.model.ProductImportJob;
+import org.bson.Document;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+import org.springframework.data.mongodb.core.index.IndexDefinition;
+import org.springframework.data.mongodb.core.index.IndexResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MongoIndexAdvisorTest {
+
+    @Test
+    void everyHotQueryHasAnIndexLedByItsEqualityFields() {
+        MongoMappingContext mappingContext = new MongoMappingContext();
+        mappingContext.setSimpleTypeHolder(new MongoCustomConversions(List.of()).getSimpleTypeHolder());
+        IndexResolver resolver = IndexResolver.create(mappingContext);
+        Map<Class<?>, List<IndexDefinition>> created = MongoIndexAdvisor.indexesToCreate(resolver);
+
+        for (MongoIndexAdvisor.HotQuery query : MongoIndexAdvisor.hotQueries()) {
+            Set<String> equalityFields = new HashSet<>();
+            query.filter().forEach((field, value) -> {
+                // $and/$or (cursor keyset) là điều kiện khoảng, không phải equality
+                if (!field.startsWith("$") && !(value instanceof Document) && !(value instanceof Pattern)) equalityFields.add(field);
+            });
+
+            boolean covered = false;
+            for (IndexDefinition index : created.getOrDefault(query.type(), List.of())) {
+                List<String> keys = new ArrayList<>(index.getIndexKeys().keySet());
+                if (keys.size() >= equalityFields.size()
+                        && new HashSet<>(keys.subList(0, equalityFields.size())).equals(equalityFields)) {
+                    covered = true;
+                }
+            }
+            assertThat(covered).as(query.name()).isTrue();
+        }
+    }
+
+    @Test
+    void createsOnlySelectedIndexesForProducts() {
+        MongoMappingContext mappingContext = new MongoMappingContext();
+        mappingContext.setSimpleTypeHolder(new MongoCustomConversions(List.of()).getSimpleTypeHolder());
+
+        List<IndexDefinition> products = MongoIndexAdvisor.indexesToCreate(IndexResolver.create(mappingContext))
+                .get(Product.class);
+        assertThat(products).extracting(index -> index.getIndexOptions().getString("name"))
+                .containsExactly("idx_shop_updated");
+        assertThat(products).allSatisfy(index -> assertThat(index.getIndexOptions().get("unique")).isNull());
+    }
+
+    @Test
+    void createsImportJobTtlIndex() {
+        MongoMappingContext mappingContext = new MongoMappingContext();
+        mappingContext.setSimpleTypeHolder(new MongoCustomConversions(List.of()).getSimpleTypeHolder());
+
+        List<IndexDefinition> jobs = MongoIndexAdvisor.indexesToCreate(IndexResolver.create(mappingContext))
+                .get(ProductImportJob.class);
+        assertThat(jobs).anySatisfy(index -> {
+            assertThat(index.getIndexKeys()).containsOnlyKeys("finishedAt");
+            assertThat(index.getIndexOptions().get("expireAfterSeconds")).isEqualTo(7L * 24 * 60 * 60);
+        });
+    }
+
+    @Test
+    void detectsCollscanNestedInClassicAndSbePlans() {
+        Document classic = Document.parse("""
+                {"stage": "SORT", "inputStage": {"stage": "FETCH", "inputStage": {"stage": "COLLSCAN"}}}""");
+        Document sbe = Document.parse("""
+                {"queryPlan": {"stage": "OR", "inputStages": [{"stage": "IXSCAN"}, {"stage": "COLLSCAN"}]}}""");
+        Document indexed = Document.parse("""
+                {"stage": "FETCH", "inputStage": {"stage": "IXSCAN", "indexName": "idx_shop_deleted_created"}}""");
+
+        assertThat(MongoIndexAdvisor.hasCollscan(classic)).isTrue();
+        assertThat(MongoIndexAdvisor.hasCollscan(sbe)).isTrue();
+        assertThat(MongoIndexAdvisor.hasCollscan(indexed)).isFalse();
+    }
+}
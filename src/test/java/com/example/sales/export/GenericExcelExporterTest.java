@@ -0,0 +1,40 @@
+package com.example.sales.export;
+
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class GenericExcelExporterTest {
+
+    @Test
+    void streamingExportWritesAllRowsBeyondTheWindow() throws Exception {
+        int rows = GenericExcelExporter.ROW_WINDOW * 5 + 7;
+        AtomicBoolean closed = new AtomicBoolean();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        try (Stream<Integer> data = IntStream.range(0, rows).boxed().onClose(() -> closed.set(true))) {
+            new GenericExcelExporter<Integer>().exportStreaming("Sheet", List.of("Mã", "Tên"), "ghi chú",
+                    data, i -> List.of("SP" + i, "Sản phẩm " + i), out);
+        }
+
+        try (Workbook wb = new XSSFWorkbook(new ByteArrayInputStream(out.toByteArray()))) {
+            Sheet sheet = wb.getSheet("Sheet");
+            assertThat(sheet.getLastRowNum()).isEqualTo(rows + 1);
+            assertThat(sheet.getRow(0).getCell(1).getStringCellValue()).isEqualTo("Tên");
+            assertThat(sheet.getRow(1).getCell(0).getStringCellValue()).isEqualTo("ghi chú");
+            assertThat(sheet.getRow(rows + 1).getCell(0).getStringCellValue()).isEqualTo("SP" + (rows - 1));
+            assertThat(sheet.getColumnWidth(1)).isEqualTo(("Sản phẩm " + (rows - 1)).length() * 256 + 2 * 256);
+        }
+        assertThat(closed).isTrue();
+    }
+}
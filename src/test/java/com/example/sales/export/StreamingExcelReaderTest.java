@@ -0,0 +1,81 @@
+package com.example.sales.export;
+
+import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class StreamingExcelReaderTest {
+
+    @Test
+    void readsXlsxSkippingHiddenSheetAndKeepsRawValues() throws Exception {
+        Map<Integer, List<String>> rows = read(new XSSFWorkbook());
+
+        assertThat(rows.get(0)).containsExactly("SKU", "Tên sản phẩm");
+        assertThat(rows.get(2)).containsExactly("SP_001", "Cà phê", "25000", "1234.5", "2030-01-31", "TRUE");
+        assertThat(rows.get(3)).containsExactly(null, "Trà", "0.75");
+    }
+
+    @Test
+    void readsXlsWithTheSameValueConventions() throws Exception {
+        Map<Integer, List<String>> rows = read(new HSSFWorkbook());
+
+        assertThat(rows.get(2)).containsExactly("SP_001", "Cà phê", "25000", "1234.5", "2030-01-31", "TRUE");
+        assertThat(rows.get(3)).containsExactly(null, "Trà", "0.75");
+    }
+
+    private static Map<Integer, List<String>> read(Workbook wb) throws Exception {
+        Sheet data = wb.createSheet("Data");
+        data.createRow(0).createCell(0).setCellValue("Danh mục");
+        wb.setSheetHidden(0, true);
+
+        Sheet sheet = wb.createSheet("Sheet2");
+        Row header = sheet.createRow(0);
+        header.createCell(0).setCellValue("SKU");
+        header.createCell(1).setCellValue("Tên sản phẩm");
+        sheet.createRow(1).createCell(0).setCellValue("* ghi chú");
+
+        CellStyle money = wb.createCellStyle();
+        money.setDataFormat(wb.createDataFormat().getFormat("#,##0"));
+        CellStyle date = wb.createCellStyle();
+        date.setDataFormat(wb.createDataFormat().getFormat("dd/mm/yyyy"));
+
+        Row r2 = sheet.createRow(2);
+        r2.createCell(0).setCellValue(" SP_001 ");
+        r2.createCell(1).setCellValue("Cà phê");
+        r2.createCell(2).setCellValue(25000);
+        r2.getCell(2).setCellStyle(money);
+        r2.createCell(3).setCellValue(1234.5);
+        r2.createCell(4).setCellValue(LocalDate.of(2030, 1, 31));
+        r2.getCell(4).setCellStyle(date);
+        r2.createCell(5).setCellValue(true);
+
+        Row r3 = sheet.createRow(3);
+        r3.createCell(1).setCellValue("Trà");
+        r3.createCell(2).setCellValue(0.75);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        wb.write(out);
+        wb.close();
+
+        Map<Integer, List<String>> rows = new TreeMap<>();
+        StreamingExcelReader.read(new ByteArrayInputStream(out.toByteArray()), "Products",
+                h -> !h.isEmpty() && "SKU".equals(h.get(0)),
+                (rowIndex, cells) -> rows.put(rowIndex, new ArrayList<>(cells)));
+        assertThat(rows.keySet()).containsExactly(0, 1, 2, 3);
+        return rows;
+    }
+}
@@ -0,0 +1,97 @@
+package com.example.sales.helper;
+
+import com.example.sales.model.BranchProduct;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.UpdateDefinition;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Lệnh trừ tồn phải là một findAndModify có điều kiện đủ tồn trong filter (Mongo tự chặn bán âm kho),
+ * chỉ {@code $inc} đúng trường tồn và chỉ trả về các trường tồn kho.
+ */
+class BranchProductStockHelperTest {
+
+    private MongoTemplate mongoTemplate;
+    private BranchProductStockHelper helper;
+
+    @BeforeEach
+    void setUp() {
+        mongoTemplate = mock(MongoTemplate.class);
+        helper = new BranchProductStockHelper(mongoTemplate);
+    }
+
+    private record Command(Document filter, Document update, Document fields, FindAndModifyOptions options) {
+    }
+
+    private Command captured() {
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<UpdateDefinition> update = ArgumentCaptor.forClass(UpdateDefinition.class);
+        ArgumentCaptor<FindAndModifyOptions> options = ArgumentCaptor.forClass(FindAndModifyOptions.class);
+        verify(mongoTemplate).findAndModify(query.capture(), update.capture(), options.capture(), eq(BranchProduct.class));
+        return new Command(query.getValue().getQueryObject(), update.getValue().getUpdateObject(),
+                query.getValue().getFieldsObject(), options.getValue());
+    }
+
+    @Test
+    void decQuantityMatchesOnlyWhenStockCoversTheAmount() {
+        helper.decQuantity("bp-1", 3);
+
+        Command command = captured();
+        assertThat(command.filter().get("_id")).isEqualTo("bp-1");
+        assertThat(command.filter().get("quantity")).isEqualTo(new Document("$gte", 3));
+        assertThat(command.update().get("$inc")).isEqualTo(new Document("quantity", -3));
+        assertThat(command.update().get("$set", Document.class)).containsOnlyKeys("updatedAt");
+        assertThat(command.options().isReturnNew()).isTrue();
+        assertThat(command.fields()).containsKeys("quantity", "variants").doesNotContainKey("priceHistory");
+    }
+
+    @Test
+    void decVariantQuantityGuardsTheVariantAndMovesTheBranchTotalTogether() {
+        helper.decVariantQuantity("bp-1", "v1", 2);
+
+        Command command = captured();
+        assertThat(command.filter().get("variants")).isEqualTo(new Document("$elemMatch",
+                new Document("variantId", "v1").append("quantity", new Document("$gte", 2))));
+        assertThat(command.update().get("$inc")).isEqualTo(new Document("variants.$.quantity", -2).append("quantity", -2));
+        assertThat(command.options().isReturnNew()).isTrue();
+    }
+
+    @Test
+    void decStockInBaseUnitsMatchesOnlyWhenWeightStockCoversTheAmount() {
+        helper.decStockInBaseUnits("bp-1", 1_500L);
+
+        Command command = captured();
+        assertThat(command.filter().get("stockInBaseUnits")).isEqualTo(new Document("$gte", 1_500L));
+        assertThat(command.update().get("$inc")).isEqualTo(new Document("stockInBaseUnits", -1_500L));
+    }
+
+    @Test
+    void incQuantityIsUnconditional() {
+        helper.incQuantity("bp-1", 4);
+
+        Command command = captured();
+        assertThat(command.filter()).containsOnlyKeys("_id");
+        assertThat(command.update().get("$inc")).isEqualTo(new Document("quantity", 4));
+    }
+
+    @Test
+    void setQuantityReturnsTheDocumentBeforeTheChange() {
+        helper.setQuantity("bp-1", 10);
+
+        Command command = captured();
+        assertThat(command.update().get("$set", Document.class)).containsEntry("quantity", 10);
+        assertThat(command.options().isReturnNew()).isFalse();
+        assertThat(command.fields().keySet())
+                .containsExactlyInAnyOrder("productId", "shopId", "branchId", "quantity", "variants", "stockInBaseUnits");
+    }
+}
@@ -0,0 +1,116 @@
+package com.example.sales.helper;
+
+import com.example.sales.constant.ApiCode;
+import com.example.sales.dto.CursorPage;
+import com.example.sales.exception.BusinessException;
+import com.example.sales.model.AuditLog;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Trang theo cursor: lấy dư 1 bản ghi để biết còn trang sau, trang sau lọc theo (createdAt, _id) của bản ghi cuối,
+ * không skip và không count trừ khi được yêu cầu ở trang đầu.
+ */
+class KeysetPagerTest {
+
+    private static final LocalDateTime T0 = LocalDateTime.of(2026, 10, 1, 8, 30, 15, 123_000_000);
+
+    private MongoTemplate mongoTemplate;
+    private KeysetPager pager;
+
+    @BeforeEach
+    void setUp() {
+        mongoTemplate = mock(MongoTemplate.class);
+        pager = new KeysetPager(mongoTemplate);
+    }
+
+    private static List<AuditLog> logs(int count) {
+        List<AuditLog> rows = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            AuditLog log = AuditLog.builder().id(String.format("65f0000000000000000000%02d", 99 - i)).build();
+            log.setCreatedAt(T0.minusSeconds(i / 2)); // hai bản ghi cùng createdAt → cần _id làm tie-break
+            rows.add(log);
+        }
+        return rows;
+    }
+
+    @Test
+    void firstPageFetchesOneExtraRowAndSkipsCountByDefault() {
+        when(mongoTemplate.find(any(Query.class), eq(AuditLog.class))).thenReturn(logs(4));
+
+        CursorPage<AuditLog> page = pager.fetch(Criteria.where("deleted").ne(true), AuditLog.class,
+                AuditLog::getId, null, 3, false);
+
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate).find(query.capture(), eq(AuditLog.class));
+        assertThat(query.getValue().getLimit()).isEqualTo(4);
+        assertThat(query.getValue().getSkip()).isZero();
+        assertThat(query.getValue().getSortObject())
+                .isEqualTo(new Document("createdAt", -1).append("_id", -1));
+        verify(mongoTemplate, never()).count(any(Query.class), eq(AuditLog.class));
+
+        assertThat(page.getContent()).hasSize(3);
+        assertThat(page.isHasNext()).isTrue();
+        assertThat(page.getTotal()).isNull();
+        KeysetPager.Cursor next = KeysetPager.decode(page.getNextCursor());
+        assertThat(next.createdAt()).isEqualTo(T0.minusSeconds(1));
+        assertThat(next.id()).isEqualTo(page.getContent().get(2).getId());
+    }
+
+    @Test
+    void nextPageSeeksPastTheCursorWithoutSkipOrCount() {
+        when(mongoTemplate.find(any(Query.class), eq(AuditLog.class))).thenReturn(logs(2));
+        String cursor = KeysetPager.encode(T0, "65f000000000000000000099");
+
+        CursorPage<AuditLog> page = pager.fetch(Criteria.where("deleted").ne(true), AuditLog.class,
+                AuditLog::getId, cursor, 20, true);
+
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate).find(query.capture(), eq(AuditLog.class));
+        Document seek = (Document) query.getValue().getQueryObject().getList("$and", Document.class).get(1);
+        assertThat(seek.getList("$or", Document.class)).containsExactly(
+                new Document("createdAt", new Document("$lt", T0)),
+                new Document("createdAt", T0).append("_id", new Document("$lt", "65f000000000000000000099")));
+        assertThat(query.getValue().getSkip()).isZero();
+        // total chỉ tính ở trang đầu
+        verify(mongoTemplate, never()).count(any(Query.class), eq(AuditLog.class));
+
+        assertThat(page.isHasNext()).isFalse();
+        assertThat(page.getNextCursor()).isNull();
+    }
+
+    @Test
+    void countsOnlyWhenAskedOnTheFirstPageAndClampsSize() {
+        when(mongoTemplate.find(any(Query.class), eq(AuditLog.class))).thenReturn(List.of());
+        when(mongoTemplate.count(any(Query.class), eq(AuditLog.class))).thenReturn(42L);
+
+        CursorPage<AuditLog> page = pager.fetch(new Criteria(), AuditLog.class, AuditLog::getId, "", 10_000, true);
+
+        assertThat(page.getTotal()).isEqualTo(42L);
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate).find(query.capture(), eq(AuditLog.class));
+        assertThat(query.getValue().getLimit()).isEqualTo(KeysetPager.MAX_SIZE + 1);
+    }
+
+    @Test
+    void rejectsTamperedCursor() {
+        assertThatThrownBy(() -> pager.fetch(new Criteria(), AuditLog.class, AuditLog::getId, "not-a-cursor", 20, false))
+                .isInstanceOfSatisfying(BusinessException.class,
+                        e -> assertThat(e.getError()).isEqualTo(ApiCode.INVALID_CURSOR));
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.sales.helper;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Độ trễ tìm kiếm trên index n-gram với 1k / 10k / 100k sản phẩm một shop (tên tiếng Việt có dấu sinh ngẫu nhiên).
+ * Số đo được log; ngưỡng p99 để rộng cho máy CI chậm — thực tế keyword từ 2 ký tự trở lên tìm dưới vài ms.
+ * Không chạy trong bộ test thường (tag "benchmark"): {@code mvn test -Pbenchmark -Dtest=ProductNgramIndexBenchmarkTest}.
+ */
+@Slf4j
+@Tag("benchmark")
+class ProductNgramIndexBenchmarkTest {
+
+    private static final String[] WORDS = {
+            "Cà", "phê", "sữa", "đá", "Trà", "đào", "cam", "sả", "Bánh", "mì", "phô", "mai", "Nước", "ép",
+            "dưa", "hấu", "Sinh", "tố", "bơ", "xoài", "Kem", "dừa", "Mì", "ly", "Hảo", "Hảo", "Gạo", "thơm",
+            "Nước", "mắm", "Phú", "Quốc", "Dầu", "ăn", "Bột", "giặt", "Khăn", "giấy", "Bia", "Sài", "Gòn",
+            "Xúc", "xích", "Đường", "trắng", "Muối", "tôm", "Hạt", "điều", "rang", "Kẹo", "gừng", "Sô", "cô", "la"
+    };
+    private static final String[] SIZES = {"", " 250ml", " 500ml", " 1L", " 200g", " 1kg", " lon", " gói"};
+    private static final List<String> QUERIES = List.of(
+            "ca phe", "sữa", "banh mi pho", "tra dao", "nuoc mam phu quoc", "b", "xo", "0000217", "sp_217");
+    private static final int ROUNDS = 50;
+    private static final int LIMIT = Integer.MAX_VALUE;
+
+    @ParameterizedTest(name = "{0} sản phẩm")
+    @ValueSource(ints = {1_000, 10_000, 100_000})
+    void searchStaysInMilliseconds(int products) {
+        Random random = new Random(42);
+        ProductNgramIndex index = new ProductNgramIndex();
+        long buildStart = System.nanoTime();
+        for (int i = 0; i < products; i++) {
+            StringBuilder name = new StringBuilder();
+            int words = 2 + random.nextInt(3);
+            for (int w = 0; w < words; w++) {
+                name.append(w == 0 ? "" : " ").append(WORDS[random.nextInt(WORDS.length)]);
+            }
+            name.append(SIZES[random.nextInt(SIZES.length)]);
+            index.put(new ProductNgramIndex.Entry("p" + i, name.toString(), "SP_" + i,
+                    String.format("893%010d", i), "C" + random.nextInt(20)));
+        }
+        long buildMs = (System.nanoTime() - buildStart) / 1_000_000;
+
+        // Làm nóng JIT
+        for (int r = 0; r < 20; r++) {
+            QUERIES.forEach(q -> index.search(q, null, LIMIT));
+        }
+
+        long[] samples = new long[ROUNDS * QUERIES.size()];
+        int n = 0;
+        int hits = 0;
+        for (int r = 0; r < ROUNDS; r++) {
+            for (String query : QUERIES) {
+                long start = System.nanoTime();
+                hits += index.search(query, null, LIMIT).size();
+                samples[n++] = System.nanoTime() - start;
+            }
+        }
+        Arrays.sort(samples);
+        double p50 = samples[samples.length / 2] / 1e6;
+        double p99 = samples[(int) (samples.length * 0.99)] / 1e6;
+        log.info("[ProductNgramIndex] {} sản phẩm: dựng {} ms, tìm p50={} ms p99={} ms, {} kết quả / lượt",
+                products, buildMs, String.format("%.3f", p50), String.format("%.3f", p99), hits / ROUNDS);
+
+        assertThat(index.search("SP_217", null, LIMIT)).first().isEqualTo("p217");
+        assertThat(p99).isLessThan(100);
+    }
+}
@@ -0,0 +1,85 @@
+package com.example.sales.helper;
+
+import com.example.sales.config.ProductSearchProperties;
+import com.example.sales.dto.product.ProductSearchRequest;
+import com.example.sales.model.BranchProduct;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationResults;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Keyword khớp nhiều hơn {@code maxRankedResults} sản phẩm: bộ lọc vẫn chứa mọi id (tổng / phân trang đủ),
+ * chỉ mảng xếp hạng bị giới hạn.
+ */
+class ProductSearchHelperTest {
+
+    private MongoTemplate mongoTemplate;
+    private ProductSearchIndex productSearchIndex;
+    private ProductSearchHelper helper;
+
+    @BeforeEach
+    void setUp() {
+        mongoTemplate = mock(MongoTemplate.class);
+        productSearchIndex = mock(ProductSearchIndex.class);
+        ProductSearchProperties properties = new ProductSearchProperties();
+        properties.setMaxRankedResults(3);
+        helper = new ProductSearchHelper(mongoTemplate, productSearchIndex, properties);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void relevanceSortFiltersEveryMatchButRanksOnlyTheTop() {
+        List<String> matches = IntStream.range(0, 5).mapToObj(i -> "p" + i).toList();
+        when(productSearchIndex.isEnabled()).thenReturn(true);
+        when(productSearchIndex.search("s1", "ca phe", null)).thenReturn(matches);
+        when(mongoTemplate.aggregate(any(Aggregation.class), eq("branch_products"), eq(BranchProduct.class)))
+                .thenReturn(new AggregationResults<>(List.of(), new Document()));
+        ProductSearchRequest req = new ProductSearchRequest();
+        req.setKeyword("ca phe");
+        req.setSortBy(ProductSearchHelper.SORT_RELEVANCE);
+
+        Set<String> ids = helper.findMatchingProductIds("s1", req);
+        assertThat(ids).containsExactlyElementsOf(matches);
+        helper.searchBranchProducts("s1", "b1", ids, req, PageRequest.of(1, 2));
+
+        ArgumentCaptor<Aggregation> aggregation = ArgumentCaptor.forClass(Aggregation.class);
+        verify(mongoTemplate).aggregate(aggregation.capture(), eq("branch_products"), eq(BranchProduct.class));
+        List<Document> pipeline = aggregation.getValue().toPipeline(Aggregation.DEFAULT_CONTEXT);
+        assertThat(pipeline.get(0).toJson()).contains("\"$in\": [\"p0\", \"p1\", \"p2\", \"p3\", \"p4\"]");
+        assertThat(pipeline.get(1).toJson())
+                .contains("[\"p0\", \"p1\", \"p2\"]")
+                .doesNotContain("\"p3\"");
+        assertThat(pipeline.get(3)).isEqualTo(new Document("$skip", 2L));
+    }
+
+    @Test
+    void rankedPrefixIsTheWholeSetWhenUnderTheCap() {
+        Set<String> ids = new LinkedHashSet<>(List.of("p1", "p0"));
+        when(mongoTemplate.aggregate(any(Aggregation.class), eq("branch_products"), eq(BranchProduct.class)))
+                .thenReturn(new AggregationResults<>(List.of(), new Document()));
+        ProductSearchRequest req = new ProductSearchRequest();
+        req.setSortBy(ProductSearchHelper.SORT_RELEVANCE);
+
+        helper.searchBranchProducts("s1", null, ids, req, PageRequest.of(0, 20));
+
+        ArgumentCaptor<Aggregation> aggregation = ArgumentCaptor.forClass(Aggregation.class);
+        verify(mongoTemplate).aggregate(aggregation.capture(), eq("branch_products"), eq(BranchProduct.class));
+        assertThat(aggregation.getValue().toPipeline(Aggregation.DEFAULT_CONTEXT).get(1).toJson())
+                .contains("[\"p1\", \"p0\"]");
+    }
+}
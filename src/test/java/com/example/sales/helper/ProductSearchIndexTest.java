@@ -0,0 +1,90 @@
+package com.example.sales.helper;
+
+import com.example.sales.cache.ProductCacheKeys;
+import com.example.sales.config.ProductSearchProperties;
+import com.example.sales.model.Product;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tìm không phân biệt dấu, xếp hạng theo độ liên quan, và chỉ đọc delta từ DB khi generation của shop đổi.
+ */
+class ProductSearchIndexTest {
+
+    private MongoTemplate mongoTemplate;
+    private ProductCacheKeys productCacheKeys;
+    private ProductSearchIndex index;
+
+    @BeforeEach
+    void setUp() {
+        mongoTemplate = mock(MongoTemplate.class);
+        productCacheKeys = mock(ProductCacheKeys.class);
+        index = new ProductSearchIndex(mongoTemplate, productCacheKeys, new ProductSearchProperties());
+    }
+
+    private static Product product(String id, String name, String sku, String barcode, String category) {
+        Product product = Product.builder().id(id).name(name).sku(sku).barcode(barcode).category(category).build();
+        product.setDeleted(false);
+        return product;
+    }
+
+    @Test
+    void matchesWithoutDiacriticsAndRanksCloserMatchesFirst() {
+        ProductNgramIndex ngrams = new ProductNgramIndex();
+        ngrams.put(new ProductNgramIndex.Entry("p1", "Cà phê sữa đá", "CA_PHE_SUA_DA", "8930000000011", "Đồ uống"));
+        ngrams.put(new ProductNgramIndex.Entry("p2", "Cà phê", "CA_PHE", "8930000000028", "Đồ uống"));
+        ngrams.put(new ProductNgramIndex.Entry("p3", "Bánh mì phô mai", "BANH_MI", "8930000000035", "Đồ ăn"));
+        ngrams.put(new ProductNgramIndex.Entry("p4", "Trà đào cam sả", "TRA_DAO", "8930000000042", "Đồ uống"));
+
+        assertThat(ngrams.search("ca phe", null, 10)).containsExactly("p2", "p1");
+        assertThat(ngrams.search("CÀ PHÊ SỮA", null, 10)).containsExactly("p1");
+        assertThat(ngrams.search("phe", "Đồ uống", 10)).containsExactly("p2", "p1");
+        assertThat(ngrams.search("phe", "Đồ ăn", 10)).isEmpty();
+        // tiền tố ngắn chỉ khớp đầu token, chuỗi con ≥ 3 ký tự khớp giữa token
+        assertThat(ngrams.search("da", null, 10)).containsExactly("p1", "p4");
+        assertThat(ngrams.search("ao", null, 10)).isEmpty();
+        assertThat(ngrams.search("0000035", null, 10)).containsExactly("p3");
+        // trùng SKU đứng trước mọi khớp theo tên
+        assertThat(ngrams.search("banh_mi", null, 10)).containsExactly("p3");
+        assertThat(ngrams.search("mai", null, 10)).containsExactly("p3");
+        assertThat(ngrams.search("%%", null, 10)).isEmpty();
+
+        ngrams.put(new ProductNgramIndex.Entry("p2", "Cà phê đen", "CA_PHE", "8930000000028", "Đồ uống"));
+        ngrams.remove("p1");
+        assertThat(ngrams.search("ca phe", null, 10)).containsExactly("p2");
+        assertThat(ngrams.search("den", null, 10)).containsExactly("p2");
+        assertThat(ngrams.size()).isEqualTo(3);
+    }
+
+    @Test
+    void readsOnlyChangedProductsWhenShopGenerationMoves() {
+        when(productCacheKeys.shopGeneration("s1")).thenReturn(0L);
+        when(mongoTemplate.stream(any(Query.class), eq(Product.class)))
+                .thenReturn(Stream.of(product("p1", "Cà phê sữa", "CA_PHE_SUA", "111", "Đồ uống"),
+                        product("p2", "Trà sữa", "TRA_SUA", "222", "Đồ uống")));
+
+        assertThat(index.search("s1", "sua", null)).containsExactlyInAnyOrder("p1", "p2");
+        assertThat(index.search("s1", "tra", null)).containsExactly("p2");
+        verify(mongoTemplate, times(1)).stream(any(Query.class), eq(Product.class));
+
+        // Ghi sản phẩm → generation tăng → chỉ đọc sản phẩm đổi theo updatedAt
+        Product deleted = product("p2", "Trà sữa", "TRA_SUA", "222", "Đồ uống");
+        deleted.setDeleted(true);
+        when(productCacheKeys.shopGeneration("s1")).thenReturn(1L);
+        when(mongoTemplate.stream(any(Query.class), eq(Product.class)))
+                .thenReturn(Stream.of(deleted, product("p3", "Trà đào", "TRA_DAO", "333", "Đồ uống")));
+
+        assertThat(index.search("s1", "tra", null)).containsExactly("p3");
+        assertThat(index.search("s1", "sua", null)).containsExactly("p1");
+        verify(mongoTemplate, times(2)).stream(any(Query.class), eq(Product.class));
+    }
+}
@@ -0,0 +1,64 @@
+package com.example.sales.scheduler;
+
+import com.example.sales.constant.SubscriptionStatus;
+import com.example.sales.dto.notification.NotificationEnvelope;
+import com.example.sales.model.Shop;
+import com.example.sales.model.Subscription;
+import com.example.sales.repository.ShopRepository;
+import com.example.sales.repository.SubscriptionRepository;
+import com.example.sales.service.notification.NotificationDispatcher;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Nhắc nhở gửi theo chunk; lỗi của một shop hay một lần dispatch không kéo theo nhắc của shop khác.
+ */
+class PlanReminderSchedulerTest {
+
+    @Test
+    void failuresOnlyDropTheAffectedReminders() {
+        SubscriptionRepository subscriptionRepository = mock(SubscriptionRepository.class);
+        ShopRepository shopRepository = mock(ShopRepository.class);
+        NotificationDispatcher dispatcher = mock(NotificationDispatcher.class);
+        LocalDateTime inThreeDays = LocalDateTime.now().plusDays(3);
+        int count = PlanReminderScheduler.DISPATCH_CHUNK_SIZE + 2;
+        List<Subscription> active = IntStream.range(0, count)
+                .mapToObj(i -> Subscription.builder().shopId("shop-" + i).ownerId("owner-" + i)
+                        .status(SubscriptionStatus.ACTIVE).currentPeriodEnd(inThreeDays).build())
+                .toList();
+        when(subscriptionRepository.findByStatus(SubscriptionStatus.ACTIVE)).thenReturn(active);
+        when(subscriptionRepository.findByStatus(SubscriptionStatus.TRIAL)).thenReturn(List.of());
+        when(shopRepository.findByIdAndDeletedFalse(anyString()))
+                .thenAnswer(inv -> Optional.of(Shop.builder().name(inv.getArgument(0)).build()));
+        // Shop cuối: tra shop lỗi giữa lượt
+        when(shopRepository.findByIdAndDeletedFalse("shop-" + (count - 1)))
+                .thenThrow(new IllegalStateException("mongo down"));
+        List<List<String>> dispatched = new ArrayList<>();
+        doAnswer(inv -> {
+            List<NotificationEnvelope> envelopes = inv.getArgument(0);
+            dispatched.add(envelopes.stream().map(NotificationEnvelope::getShopId).toList());
+            if (dispatched.size() == 1) {
+                throw new IllegalStateException("dedupe store down");
+            }
+            return envelopes.size();
+        }).when(dispatcher).dispatchAll(anyList());
+
+        new PlanReminderScheduler(subscriptionRepository, shopRepository, dispatcher).remindExpiringSubscriptions();
+
+        assertThat(dispatched).hasSize(2);
+        assertThat(dispatched.get(0)).hasSize(PlanReminderScheduler.DISPATCH_CHUNK_SIZE);
+        assertThat(dispatched.get(1)).containsExactly("shop-" + PlanReminderScheduler.DISPATCH_CHUNK_SIZE);
+    }
+}
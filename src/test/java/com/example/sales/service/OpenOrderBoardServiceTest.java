@@ -0,0 +1,111 @@
+package com.example.sales.service;
+
+import com.example.sales.config.OrderBoardProperties;
+import com.example.sales.constant.OrderStatus;
+import com.example.sales.constant.WebSocketMessageType;
+import com.example.sales.dto.order.OpenOrderBoardResponse;
+import com.example.sales.dto.order.OrderSummary;
+import com.example.sales.model.Order;
+import com.example.sales.service.realtime.RealtimeEventDispatcher;
+import com.example.sales.service.realtime.RealtimeEventPublisher;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Board nạp DB một lần, sau đó trả snapshot / delta từ bộ nhớ và push delta theo version.
+ */
+class OpenOrderBoardServiceTest {
+
+    private OrderSummaryService orderSummaryService;
+    private RealtimeEventPublisher publisher;
+    private OpenOrderBoardService board;
+
+    @BeforeEach
+    void setUp() {
+        orderSummaryService = mock(OrderSummaryService.class);
+        publisher = mock(RealtimeEventPublisher.class);
+        when(orderSummaryService.findOpenOrders("s1", "b1"))
+                .thenReturn(List.of(OrderSummaryService.toSummary(order("o1", OrderStatus.PENDING, false))));
+        board = new OpenOrderBoardService(orderSummaryService, publisher, mock(RealtimeEventDispatcher.class),
+                new OrderBoardProperties());
+    }
+
+    private static Order order(String id, OrderStatus status, boolean paid) {
+        Order order = Order.builder().id(id).shopId("s1").branchId("b1").tableId("t-" + id)
+                .status(status).totalPrice(50_000).build();
+        order.setPaid(paid);
+        return order;
+    }
+
+    @Test
+    void servesDeltasSinceVersionAndPushesEachChange() {
+        OpenOrderBoardResponse first = board.getBoard("s1", "b1", null, null);
+        assertThat(first.isFull()).isTrue();
+        assertThat(first.getOrders()).extracting(OrderSummary::getId).containsExactly("o1");
+
+        board.apply(order("o2", OrderStatus.PENDING, false));
+        board.apply(order("o1", OrderStatus.COMPLETED, true));
+
+        OpenOrderBoardResponse delta = board.getBoard("s1", "b1", first.getVersion(), first.getEpoch());
+        assertThat(delta.isFull()).isFalse();
+        assertThat(delta.getPreviousVersion()).isEqualTo(first.getVersion());
+        assertThat(delta.getOrders()).extracting(OrderSummary::getId).containsExactly("o2");
+        assertThat(delta.getRemovedIds()).containsExactly("o1");
+
+        // Hai push liên tiếp nối version với nhau
+        ArgumentCaptor<OpenOrderBoardResponse> pushed = ArgumentCaptor.forClass(OpenOrderBoardResponse.class);
+        verify(publisher, times(2)).publishLocalOrderEvent(eq("s1"), eq("b1"),
+                eq(WebSocketMessageType.ORDER_BOARD_DELTA), pushed.capture());
+        assertThat(pushed.getAllValues().get(0).getPreviousVersion()).isEqualTo(first.getVersion());
+        assertThat(pushed.getAllValues().get(1).getPreviousVersion())
+                .isEqualTo(pushed.getAllValues().get(0).getVersion());
+        assertThat(pushed.getAllValues().get(1).getVersion()).isEqualTo(delta.getVersion());
+
+        // Đọc lại không chạm DB
+        verify(orderSummaryService, times(1)).findOpenOrders("s1", "b1");
+    }
+
+    @Test
+    void foreignEpochOrRemoteChangeFallsBackToSnapshot() {
+        OpenOrderBoardResponse first = board.getBoard("s1", "b1", null, null);
+
+        OpenOrderBoardResponse otherNode = board.getBoard("s1", "b1", first.getVersion(), "other");
+        assertThat(otherNode.isFull()).isTrue();
+
+        board.onRemoteEvent("/topic/shops/s1/branches/b1/orders", "{}");
+        OpenOrderBoardResponse afterRemote = board.getBoard("s1", "b1", first.getVersion(), first.getEpoch());
+        assertThat(afterRemote.isFull()).isTrue();
+        assertThat(afterRemote.getVersion()).isGreaterThan(first.getVersion());
+        verify(orderSummaryService, times(2)).findOpenOrders("s1", "b1");
+        // Delta không bao giờ đi qua cluster bridge
+        verify(publisher, never()).publishOrderEvent(any(), any(), any(), any());
+    }
+
+    @Test
+    void remoteChangePushesResyncHintToLocalClients() {
+        OpenOrderBoardResponse first = board.getBoard("s1", "b1", null, null);
+
+        board.onRemoteEvent("/topic/shops/s1/branches/b1/orders", "{}");
+        board.onRemoteEvent("/topic/shops/s1/branches/b1/tables", "{}");
+
+        ArgumentCaptor<OpenOrderBoardResponse> hint = ArgumentCaptor.forClass(OpenOrderBoardResponse.class);
+        verify(publisher).publishLocalOrderEvent(eq("s1"), eq("b1"),
+                eq(WebSocketMessageType.ORDER_BOARD_DELTA), hint.capture());
+        assertThat(hint.getValue().getEpoch()).isEqualTo(first.getEpoch());
+        assertThat(hint.getValue().getPreviousVersion()).isNull();
+        assertThat(hint.getValue().getOrders()).isEmpty();
+
+        // Client đồng bộ lại bằng since của mình → snapshot nạp mới từ DB
+        OpenOrderBoardResponse resync = board.getBoard("s1", "b1", first.getVersion(), first.getEpoch());
+        assertThat(resync.isFull()).isTrue();
+        verify(orderSummaryService, times(2)).findOpenOrders("s1", "b1");
+    }
+}
@@ -0,0 +1,139 @@
+package com.example.sales.service;
+
+import com.example.sales.cache.OrderCache;
+import com.example.sales.cache.PromotionIndex;
+import com.example.sales.dto.order.OrderResponse;
+import com.example.sales.helper.KeysetPager;
+import com.example.sales.model.Customer;
+import com.example.sales.model.Order;
+import com.example.sales.model.OrderItem;
+import com.example.sales.model.Product;
+import com.example.sales.model.Promotion;
+import com.example.sales.repository.BranchProductRepository;
+import com.example.sales.repository.CustomerRepository;
+import com.example.sales.repository.OrderRepository;
+import com.example.sales.repository.ProductRepository;
+import com.example.sales.repository.PromotionRepository;
+import com.example.sales.repository.ShopRepository;
+import com.example.sales.repository.TableGroupRepository;
+import com.example.sales.repository.TableRepository;
+import com.example.sales.service.realtime.RealtimeEventPublisher;
+import com.example.sales.service.tax.OrderTaxApplier;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Hồi quy N+1: một trang 50 đơn × 8 sản phẩm chỉ tốn 1 query đơn + 1 query $in cho mỗi
+ * collection tham chiếu (product / promotion / customer), không phụ thuộc số đơn hay số dòng.
+ */
+class OrderServiceQueryCountTest {
+
+    private static final String SHOP = "shop-1";
+
+    private OrderRepository orderRepository;
+    private ProductRepository productRepository;
+    private PromotionRepository promotionRepository;
+    private CustomerRepository customerRepository;
+    private OrderService service;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        orderRepository = mock(OrderRepository.class);
+        productRepository = mock(ProductRepository.class);
+        promotionRepository = mock(PromotionRepository.class);
+        customerRepository = mock(CustomerRepository.class);
+        when(productRepository.findByIdInAndDeletedFalse(anyCollection())).thenAnswer(inv ->
+                ((Collection<String>) inv.getArgument(0)).stream()
+                        .map(id -> Product.builder().id(id).name("P " + id).build()).toList());
+        when(promotionRepository.findByIdInAndDeletedFalse(anyCollection())).thenAnswer(inv ->
+                ((Collection<String>) inv.getArgument(0)).stream()
+                        .map(id -> Promotion.builder().id(id).name("KM " + id).build()).toList());
+        when(customerRepository.findByIdInAndDeletedFalse(anyCollection())).thenAnswer(inv ->
+                ((Collection<String>) inv.getArgument(0)).stream()
+                        .map(id -> Customer.builder().id(id).shopId(SHOP).name("KH " + id).build()).toList());
+
+        service = new OrderService(orderRepository, mock(TableRepository.class), mock(TableGroupRepository.class),
+                productRepository, mock(BranchProductRepository.class), promotionRepository,
+                mock(PromotionIndex.class), mock(AuditLogService.class), mock(ShopRepository.class),
+                mock(InventoryService.class), mock(OrderCache.class), mock(OrderTaxApplier.class),
+                mock(LoyaltyService.class), customerRepository, mock(SequenceService.class),
+                mock(RealtimeEventPublisher.class), mock(KeysetPager.class), mock(OpenOrderBoardService.class));
+    }
+
+    private static Page<Order> page(int orders, int linesPerOrder, Pageable pageable) {
+        List<Order> content = new ArrayList<>();
+        for (int o = 0; o < orders; o++) {
+            int order = o;
+            List<OrderItem> items = IntStream.range(0, linesPerOrder)
+                    .mapToObj(l -> OrderItem.builder()
+                            .productId("p-" + (order * linesPerOrder + l))
+                            .productName("line " + l)
+                            .appliedPromotionId("promo-" + (l % 3))
+                            .quantity(1)
+                            .build())
+                    .toList();
+            content.add(Order.builder()
+                    .id("o-" + o)
+                    .shopId(SHOP)
+                    .customerId("c-" + o)
+                    .items(items)
+                    .build());
+        }
+        return new PageImpl<>(content, pageable, orders);
+    }
+
+    @Test
+    void shopOrderPageLoadsReferencesOncePerCollection() {
+        Pageable pageable = PageRequest.of(0, 50);
+        when(orderRepository.findByShopIdAndDeletedFalseOrderByCreatedAtDesc(SHOP, pageable))
+                .thenReturn(page(50, 8, pageable));
+
+        Page<OrderResponse> result = service.getShopOrders(SHOP, null, pageable);
+
+        assertThat(result.getContent()).hasSize(50);
+        assertThat(result.getContent().get(7).getCustomerName()).isEqualTo("KH c-7");
+        assertThat(result.getContent().get(7).getItems().get(1).getPromotionName()).isEqualTo("KM promo-1");
+        assertThat(queries()).isEqualTo(4);
+        verify(productRepository, never()).findByIdAndDeletedFalse(anyString());
+        verify(promotionRepository, never()).findByIdAndDeletedFalse(anyString());
+        verify(customerRepository, never()).findByIdAndDeletedFalse(anyString());
+    }
+
+    @Test
+    void queryCountDoesNotGrowWithPageSize() {
+        Pageable small = PageRequest.of(0, 5);
+        Pageable large = PageRequest.of(0, 200);
+        when(orderRepository.findByShopIdAndDeletedFalseOrderByCreatedAtDesc(SHOP, small))
+                .thenReturn(page(5, 2, small));
+        when(orderRepository.findByShopIdAndDeletedFalseOrderByCreatedAtDesc(SHOP, large))
+                .thenReturn(page(200, 12, large));
+
+        service.getShopOrders(SHOP, null, small);
+        int smallPage = queries();
+        clearInvocations(orderRepository, productRepository, promotionRepository, customerRepository);
+        service.getShopOrders(SHOP, null, large);
+
+        assertThat(queries()).isEqualTo(smallPage);
+    }
+
+    private int queries() {
+        return mockingDetails(orderRepository).getInvocations().size()
+                + mockingDetails(productRepository).getInvocations().size()
+                + mockingDetails(promotionRepository).getInvocations().size()
+                + mockingDetails(customerRepository).getInvocations().size();
+    }
+}
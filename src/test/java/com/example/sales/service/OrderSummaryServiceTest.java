@@ -0,0 +1,94 @@
+package com.example.sales.service;
+
+import com.example.sales.constant.ApiCode;
+import com.example.sales.constant.OrderStatus;
+import com.example.sales.constant.PaymentStatus;
+import com.example.sales.dto.order.OrderSummary;
+import com.example.sales.exception.BusinessException;
+import com.example.sales.model.Order;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Summary chỉ đọc các field được chọn (projection), không bao giờ tải items / taxSnapshot.
+ */
+class OrderSummaryServiceTest {
+
+    private MongoTemplate mongoTemplate;
+    private OrderSummaryService service;
+
+    @BeforeEach
+    void setUp() {
+        mongoTemplate = mock(MongoTemplate.class);
+        service = new OrderSummaryService(mongoTemplate);
+        Order order = Order.builder().id("65f000000000000000000001").tableId("t1")
+                .status(OrderStatus.PENDING).totalPrice(120_000).build();
+        when(mongoTemplate.find(any(Query.class), eq(Order.class))).thenReturn(List.of(order));
+    }
+
+    @Test
+    void boardProjectsOnlySelectedFields() {
+        Page<OrderSummary> page = service.getOpenOrders("s1", "b1", "orderCode,tableId,status,totalPrice",
+                PageRequest.of(0, 50));
+
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate).find(query.capture(), eq(Order.class));
+        assertThat(query.getValue().getFieldsObject()).isEqualTo(new Document("orderCode", 1)
+                .append("tableId", 1).append("status", 1).append("totalPrice", 1));
+        // trang đầu chưa đầy → không cần count
+        verify(mongoTemplate, never()).count(any(Query.class), eq(Order.class));
+
+        OrderSummary summary = page.getContent().get(0);
+        assertThat(summary.getId()).isEqualTo("65f000000000000000000001");
+        assertThat(summary.getOrderCode()).isEqualTo("DH-00000001");
+        assertThat(summary.getTotalPrice()).isEqualTo(120_000);
+        assertThat(summary.getPaid()).isNull();
+        assertThat(summary.getCreatedAt()).isNull();
+    }
+
+    @Test
+    void summaryKeywordSelectsEveryFieldButNeverItems() {
+        service.getShopOrders("s1", null, null, "summary", PageRequest.of(0, 20));
+
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate).find(query.capture(), eq(Order.class));
+        Document projection = query.getValue().getFieldsObject();
+        assertThat(projection).containsKeys("orderCode", "isPaid", "totalAmount", "createdAt")
+                .doesNotContainKeys("items", "taxSnapshot");
+        assertThat(query.getValue().getSortObject()).isEqualTo(new Document("createdAt", -1));
+    }
+
+    @Test
+    void legacyPaymentStatusFallsBackToIsPaidLikeTheFullResponse() {
+        Order legacy = Order.builder().id("65f000000000000000000002").isPaid(true).paymentStatus(null).build();
+        when(mongoTemplate.find(any(Query.class), eq(Order.class))).thenReturn(List.of(legacy));
+
+        Page<OrderSummary> page = service.getShopOrders("s1", null, null, "paymentStatus", PageRequest.of(0, 20));
+
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate).find(query.capture(), eq(Order.class));
+        assertThat(query.getValue().getFieldsObject()).isEqualTo(new Document("paymentStatus", 1).append("isPaid", 1));
+        assertThat(page.getContent().get(0).getPaymentStatus()).isEqualTo(PaymentStatus.PAID);
+    }
+
+    @Test
+    void rejectsUnknownField() {
+        assertThatThrownBy(() -> service.getShopOrders("s1", null, null, "items", PageRequest.of(0, 20)))
+                .isInstanceOfSatisfying(BusinessException.class,
+                        e -> assertThat(e.getError()).isEqualTo(ApiCode.VALIDATION_ERROR));
+    }
+}
@@ -0,0 +1,191 @@
+package com.example.sales.service;
+
+import com.example.sales.config.ProductImportProperties;
+import com.example.sales.constant.ApiCode;
+import com.example.sales.constant.ProductImportJobStatus;
+import com.example.sales.constant.WebSocketMessageType;
+import com.example.sales.dto.product.ProductImportJobResponse;
+import com.example.sales.dto.product.ProductImportResult;
+import com.example.sales.exception.BusinessException;
+import com.example.sales.model.ProductImportJob;
+import com.example.sales.repository.ProductImportJobRepository;
+import com.example.sales.service.realtime.RealtimeEventPublisher;
+import com.mongodb.client.result.UpdateResult;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.mock.web.MockMultipartFile;
+
+import java.io.InputStream;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Job được xếp hàng trên executor riêng, giới hạn theo shop, và báo tiến độ qua STOMP.
+ */
+class ProductImportJobServiceTest {
+
+    private final List<Runnable> queued = new ArrayList<>();
+    private ProductImportJobRepository jobRepository;
+    private ExcelImportService excelImportService;
+    private RealtimeEventPublisher publisher;
+    private MongoTemplate mongoTemplate;
+    private ProductImportJobService service;
+
+    @BeforeEach
+    void setUp() {
+        jobRepository = mock(ProductImportJobRepository.class);
+        when(jobRepository.save(any(ProductImportJob.class))).thenAnswer(inv -> {
+            ProductImportJob job = inv.getArgument(0);
+            job.setId("job-" + job.getShopId());
+            return job;
+        });
+        when(jobRepository.findById(anyString()))
+                .thenAnswer(inv -> Optional.of(ProductImportJob.builder().id(inv.getArgument(0)).build()));
+        excelImportService = mock(ExcelImportService.class);
+        publisher = mock(RealtimeEventPublisher.class);
+        mongoTemplate = mock(MongoTemplate.class);
+        when(mongoTemplate.updateFirst(any(Query.class), any(Update.class), eq(ProductImportJob.class)))
+                .thenReturn(UpdateResult.acknowledged(1, 1L, null));
+        service = new ProductImportJobService(jobRepository, mongoTemplate, excelImportService,
+                publisher, new ProductImportProperties(), queued::add);
+    }
+
+    private static MockMultipartFile file() {
+        return new MockMultipartFile("file", "products.xlsx", null, new byte[]{1, 2, 3});
+    }
+
+    @Test
+    void capsPendingJobsPerShopUntilTheJobFinishes() {
+        ProductImportJobResponse first = service.submit("s1", "u1", file());
+        assertThat(first.getStatus()).isEqualTo(ProductImportJobStatus.PENDING);
+
+        assertThatThrownBy(() -> service.submit("s1", "u1", file()))
+                .isInstanceOfSatisfying(BusinessException.class,
+                        e -> assertThat(e.getError()).isEqualTo(ApiCode.PRODUCT_IMPORT_JOB_LIMIT));
+        // shop khác không bị ảnh hưởng
+        service.submit("s2", "u2", file());
+
+        when(excelImportService.importProducts(eq("s1"), any(InputStream.class), any(IntConsumer.class)))
+                .thenAnswer(inv -> {
+                    inv.<IntConsumer>getArgument(2).accept(500);
+                    return ProductImportResult.builder().totalRows(500).importedCount(500).build();
+                });
+        queued.get(0).run();
+
+        verify(publisher).publishShopEvent(eq("s1"), eq("product-imports"),
+                eq(WebSocketMessageType.PRODUCT_IMPORT_PROGRESS),
+                argThat(p -> p instanceof ProductImportJobResponse r && r.getProcessedRows() == 500));
+        verify(publisher).publishShopEvent(eq("s1"), eq("product-imports"),
+                eq(WebSocketMessageType.PRODUCT_IMPORT_COMPLETED), any());
+        // job xong → shop được submit tiếp
+        service.submit("s1", "u1", file());
+        assertThat(queued).hasSize(3);
+    }
+
+    @Test
+    void concurrentSubmitsNeverRunMoreJobsThanTheShopLimit() throws Exception {
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        when(excelImportService.importProducts(eq("s1"), any(InputStream.class), any(IntConsumer.class)))
+                .thenAnswer(inv -> {
+                    maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                    Thread.yield();
+                    running.decrementAndGet();
+                    return ProductImportResult.builder().build();
+                });
+        // Chạy job ngay trên thread submit: release của job này xen với tryAcquire của thread khác
+        service = new ProductImportJobService(jobRepository, mongoTemplate, excelImportService,
+                publisher, new ProductImportProperties(), Runnable::run);
+
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        for (int i = 0; i < 400; i++) {
+            pool.execute(() -> {
+                try {
+                    service.submit("s1", "u1", file());
+                } catch (BusinessException e) {
+                    assertThat(e.getError()).isEqualTo(ApiCode.PRODUCT_IMPORT_JOB_LIMIT);
+                }
+            });
+        }
+        pool.shutdown();
+        assertThat(pool.awaitTermination(30, TimeUnit.SECONDS)).isTrue();
+
+        assertThat(maxRunning.get()).isEqualTo(1);
+        // mọi job đã nhả slot → shop submit tiếp được
+        service.submit("s1", "u1", file());
+    }
+
+    @Test
+    void storesAGenericMessageInsteadOfTheRawExceptionMessage() {
+        service.submit("s1", "u1", file());
+        when(excelImportService.importProducts(eq("s1"), any(InputStream.class), any(IntConsumer.class)))
+                .thenThrow(new IllegalStateException("Timed out after 30000 ms while waiting for mongo-0:27017"));
+
+        queued.get(0).run();
+
+        verify(mongoTemplate).updateFirst(any(Query.class), argThat(u ->
+                        ProductImportJobStatus.FAILED.equals(u.getUpdateObject().get("$set", Document.class).get("status"))
+                                && ApiCode.PRODUCT_IMPORT_JOB_FAILED.getMessage().equals(
+                                u.getUpdateObject().get("$set", Document.class).get("errorMessage"))),
+                eq(ProductImportJob.class));
+        verify(publisher).publishShopEvent(eq("s1"), eq("product-imports"),
+                eq(WebSocketMessageType.PRODUCT_IMPORT_FAILED), any());
+    }
+
+    @Test
+    void skipsAJobThatIsNoLongerPending() {
+        service.submit("s1", "u1", file());
+        when(mongoTemplate.updateFirst(any(Query.class), any(Update.class), eq(ProductImportJob.class)))
+                .thenReturn(UpdateResult.acknowledged(1, 0L, null));
+
+        queued.get(0).run();
+
+        verifyNoInteractions(excelImportService);
+        // slot đã nhả → shop submit tiếp được
+        service.submit("s1", "u1", file());
+    }
+
+    @Test
+    void failsJobsLeftPendingOrRunningByADeadNode() {
+        when(mongoTemplate.find(any(Query.class), eq(ProductImportJob.class))).thenReturn(List.of(
+                ProductImportJob.builder().id("j1").shopId("s1").build(),
+                ProductImportJob.builder().id("j2").shopId("s2").build()));
+        // j2 đã được node khác / lần quét khác xử lý
+        when(mongoTemplate.updateFirst(argThat(q -> q != null && "j2".equals(q.getQueryObject().get("_id"))),
+                any(Update.class), eq(ProductImportJob.class))).thenReturn(UpdateResult.acknowledged(1, 0L, null));
+
+        assertThat(service.failStaleJobs()).isEqualTo(1);
+
+        verify(mongoTemplate).find(argThat(q -> {
+            String filter = q.getQueryObject().toString();
+            return filter.contains("RUNNING") && filter.contains("heartbeatAt")
+                    && filter.contains("PENDING") && filter.contains("createdAt");
+        }), eq(ProductImportJob.class));
+        verify(mongoTemplate).updateFirst(argThat(q -> q != null && "j1".equals(q.getQueryObject().get("_id"))),
+                argThat(u -> {
+                    Document set = u.getUpdateObject().get("$set", Document.class);
+                    return ProductImportJobStatus.FAILED.equals(set.get("status"))
+                            && ApiCode.PRODUCT_IMPORT_JOB_INTERRUPTED.getMessage().equals(set.get("errorMessage"))
+                            && set.get("finishedAt") instanceof LocalDateTime;
+                }), eq(ProductImportJob.class));
+        verify(publisher).publishShopEvent(eq("s1"), eq("product-imports"),
+                eq(WebSocketMessageType.PRODUCT_IMPORT_FAILED), any());
+        verify(publisher, never()).publishShopEvent(eq("s2"), any(), any(), any());
+    }
+}
@@ -0,0 +1,89 @@
+package com.example.sales.service;
+
+import com.example.sales.model.SalesDailyRollup;
+import com.example.sales.model.Shop;
+import com.example.sales.repository.ShopRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Backfill chạy nền, một job mỗi node và một node trong cluster (khóa backfill), chỉ dựng shop chưa có rollup.
+ */
+class SalesRollupBackfillServiceTest {
+
+    private ShopRepository shopRepository;
+    private MongoTemplate mongoTemplate;
+    private SalesRollupService salesRollupService;
+    private final List<Runnable> queued = new ArrayList<>();
+    private SalesRollupBackfillService service;
+
+    @BeforeEach
+    void setUp() {
+        shopRepository = mock(ShopRepository.class);
+        mongoTemplate = mock(MongoTemplate.class);
+        salesRollupService = mock(SalesRollupService.class);
+        service = new SalesRollupBackfillService(shopRepository, mongoTemplate, salesRollupService, queued::add);
+    }
+
+    @Test
+    void runsInTheBackgroundOncePerNode() {
+        assertThat(service.start()).isTrue();
+        assertThat(service.start()).isFalse();
+        verify(shopRepository, never()).findAll();
+
+        when(salesRollupService.acquireLock(eq(SalesRollupBackfillService.LOCK_ID), anyString(), eq(false)))
+                .thenReturn(true);
+        queued.get(0).run();
+
+        verify(shopRepository).findAll();
+        assertThat(service.start()).isTrue();
+    }
+
+    @Test
+    void skipsWhenAnotherNodeHoldsTheBackfillLock() {
+        when(salesRollupService.acquireLock(anyString(), anyString(), anyBoolean())).thenReturn(false);
+
+        assertThat(service.backfillMissing()).isEqualTo(-1);
+        verify(shopRepository, never()).findAll();
+        verify(salesRollupService, never()).releaseLock(anyString(), anyString());
+    }
+
+    @Test
+    void rebuildsOnlyShopsWithoutRollupsAndRenewsTheLease() {
+        when(salesRollupService.acquireLock(eq(SalesRollupBackfillService.LOCK_ID), anyString(), eq(false)))
+                .thenReturn(true);
+        when(salesRollupService.renewLock(eq(SalesRollupBackfillService.LOCK_ID), anyString())).thenReturn(true);
+        when(shopRepository.findAll()).thenReturn(List.of(Shop.builder().id("s1").build(), Shop.builder().id("s2").build()));
+        when(mongoTemplate.exists(argThat((Query q) -> q != null && "s1".equals(q.getQueryObject().get("shopId"))),
+                eq(SalesDailyRollup.class))).thenReturn(true);
+        LocalDateTime firstOrder = LocalDateTime.of(2024, 3, 1, 9, 0);
+        com.example.sales.model.Order first = new com.example.sales.model.Order();
+        first.setCreatedAt(firstOrder);
+        when(mongoTemplate.findOne(any(Query.class), eq(com.example.sales.model.Order.class))).thenReturn(first);
+
+        assertThat(service.backfillMissing()).isEqualTo(1);
+
+        verify(salesRollupService).rebuildShop("s2", firstOrder.toLocalDate(), LocalDate.now());
+        verify(salesRollupService, never()).rebuildShop(eq("s1"), any(), any());
+        verify(salesRollupService).renewLock(eq(SalesRollupBackfillService.LOCK_ID), anyString());
+        verify(salesRollupService).releaseLock(eq(SalesRollupBackfillService.LOCK_ID), anyString());
+    }
+}
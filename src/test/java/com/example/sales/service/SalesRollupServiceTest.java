@@ -0,0 +1,142 @@
+package com.example.sales.service;
+
+import com.example.sales.config.SalesRollupProperties;
+import com.example.sales.constant.OrderStatus;
+import com.example.sales.model.Order;
+import com.example.sales.model.ProductDailyRollup;
+import com.example.sales.model.SalesDailyRollup;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Lưu đơn chỉ đánh dấu ngày bẩn; flush dựng lại đúng bucket đó từ aggregate trên orders.
+ */
+class SalesRollupServiceTest {
+
+    private static final LocalDate DAY = LocalDate.of(2026, 3, 14);
+
+    private MongoTemplate mongoTemplate;
+    private BulkOperations bulk;
+    private SalesRollupService service;
+
+    @BeforeEach
+    void setUp() {
+        mongoTemplate = mock(MongoTemplate.class);
+        bulk = mock(BulkOperations.class);
+        when(mongoTemplate.bulkOps(any(BulkOperations.BulkMode.class), any(Class.class))).thenReturn(bulk);
+        service = new SalesRollupService(mongoTemplate, new SalesRollupProperties());
+    }
+
+    private static Order order(String shopId) {
+        Order order = Order.builder().shopId(shopId).branchId("b1").status(OrderStatus.COMPLETED).build();
+        order.setCreatedAt(DAY.atTime(10, 30));
+        return order;
+    }
+
+    @Test
+    void flushShopRebuildsOnlyThatShopsDirtyDays() {
+        when(mongoTemplate.aggregateStream(any(Aggregation.class), eq(Order.class), eq(Document.class)))
+                .thenAnswer(inv -> Stream.of(new Document("_id", new Document("branchId", "b1")
+                        .append("day", DAY.toString())
+                        .append("status", "COMPLETED"))
+                        .append("orderCount", 3)
+                        .append("productsSold", 7L)
+                        .append("revenue", 150_000.0)
+                        .append("amount", 162_000.0)))
+                .thenAnswer(inv -> Stream.empty());
+
+        service.markDirty(order("s1"));
+        service.markDirty(order("s1"));
+        service.markDirty(order("s2"));
+        service.flushShop("s1");
+
+        ArgumentCaptor<Object> rows = ArgumentCaptor.forClass(Object.class);
+        verify(bulk).replaceOne(any(Query.class), rows.capture(), any());
+        SalesDailyRollup rollup = (SalesDailyRollup) rows.getValue();
+        assertThat(rollup.getId()).isEqualTo("s1|b1|2026-03-14|COMPLETED");
+        assertThat(rollup.getDate()).isEqualTo(DAY);
+        assertThat(rollup.getOrderCount()).isEqualTo(3);
+        assertThat(rollup.getProductsSold()).isEqualTo(7);
+        assertThat(rollup.getRevenue()).isEqualTo(150_000.0);
+        assertThat(rollup.getRevision()).isNotBlank();
+        verify(mongoTemplate).remove(any(Query.class), eq(SalesDailyRollup.class));
+        verify(mongoTemplate).remove(any(Query.class), eq(ProductDailyRollup.class));
+
+        // s2 vẫn chờ flush định kỳ; s1 đã sạch nên flush lại không aggregate thêm
+        service.flushShop("s1");
+        verify(mongoTemplate, times(2)).aggregateStream(any(Aggregation.class), eq(Order.class), eq(Document.class));
+    }
+
+    @Test
+    void failedRebuildStaysDirtyForTheNextFlush() {
+        when(mongoTemplate.aggregateStream(any(Aggregation.class), eq(Order.class), eq(Document.class)))
+                .thenThrow(new IllegalStateException("mongo down"))
+                .thenAnswer(inv -> Stream.empty());
+        Order order = order("s1");
+        order.setCreatedAt(LocalDateTime.of(2026, 3, 14, 23, 59));
+
+        service.markDirty(order);
+        service.flush();
+        service.flush();
+
+        verify(mongoTemplate, times(3)).aggregateStream(any(Aggregation.class), eq(Order.class), eq(Document.class));
+        verify(mongoTemplate).remove(any(Query.class), eq(SalesDailyRollup.class));
+    }
+
+    @Test
+    void flushSkipsShopWhileAnotherRebuildHoldsTheLock() {
+        when(mongoTemplate.aggregateStream(any(Aggregation.class), eq(Order.class), eq(Document.class)))
+                .thenAnswer(inv -> Stream.empty());
+        when(mongoTemplate.upsert(any(Query.class), any(Update.class), eq(SalesRollupService.LOCK_COLLECTION)))
+                .thenThrow(new DuplicateKeyException("E11000 duplicate key error: _id s1"))
+                .thenReturn(null);
+
+        service.markDirty(order("s1"));
+        service.flush();
+
+        // Khóa đang bị giữ: không aggregate, không xóa gì, bucket vẫn bẩn
+        verify(mongoTemplate, never()).aggregateStream(any(Aggregation.class), eq(Order.class), eq(Document.class));
+        verify(mongoTemplate, never()).remove(any(Query.class), eq(SalesDailyRollup.class));
+
+        service.flush();
+
+        verify(mongoTemplate, times(2)).aggregateStream(any(Aggregation.class), eq(Order.class), eq(Document.class));
+        verify(mongoTemplate).remove(any(Query.class), eq(SalesDailyRollup.class));
+        ArgumentCaptor<Query> released = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate).remove(released.capture(), eq(SalesRollupService.LOCK_COLLECTION));
+        assertThat(released.getValue().getQueryObject().getString("_id")).isEqualTo("s1");
+        assertThat(released.getValue().getQueryObject().getString("owner")).isNotBlank();
+    }
+
+    @Test
+    void onDemandRebuildGivesUpAfterLockWait() {
+        SalesRollupProperties properties = new SalesRollupProperties();
+        properties.setLockWait(Duration.ZERO);
+        service = new SalesRollupService(mongoTemplate, properties);
+        when(mongoTemplate.upsert(any(Query.class), any(Update.class), eq(SalesRollupService.LOCK_COLLECTION)))
+                .thenThrow(new DuplicateKeyException("E11000 duplicate key error: _id s1"));
+
+        assertThatThrownBy(() -> service.rebuildShop("s1", DAY, DAY))
+                .isInstanceOf(IllegalStateException.class);
+        verify(mongoTemplate, never()).aggregateStream(any(Aggregation.class), eq(Order.class), eq(Document.class));
+        verify(mongoTemplate, never()).remove(any(Query.class), eq(SalesRollupService.LOCK_COLLECTION));
+    }
+}
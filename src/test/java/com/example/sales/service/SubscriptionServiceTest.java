@@ -0,0 +1,94 @@
+package com.example.sales.service;
+
+import com.example.sales.cache.SubscriptionStatusCache;
+import com.example.sales.constant.SubscriptionStatus;
+import com.example.sales.dto.notification.NotificationEnvelope;
+import com.example.sales.model.Subscription;
+import com.example.sales.model.SubscriptionHistory;
+import com.example.sales.repository.PaymentTransactionRepository;
+import com.example.sales.repository.ShopRepository;
+import com.example.sales.repository.SubscriptionHistoryRepository;
+import com.example.sales.repository.SubscriptionRepository;
+import com.example.sales.repository.UserRepository;
+import com.example.sales.service.notification.NotificationDispatcher;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Lỗi giữa lượt expire không được làm mất thông báo của subscription đã lưu EXPIRED
+ * (lượt sau không chọn lại chúng nữa).
+ */
+class SubscriptionServiceTest {
+
+    private SubscriptionRepository subscriptionRepository;
+    private SubscriptionHistoryRepository historyRepository;
+    private NotificationDispatcher notificationDispatcher;
+    private SubscriptionService service;
+    private final List<List<String>> dispatched = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        subscriptionRepository = mock(SubscriptionRepository.class);
+        historyRepository = mock(SubscriptionHistoryRepository.class);
+        notificationDispatcher = mock(NotificationDispatcher.class);
+        service = new SubscriptionService(subscriptionRepository, historyRepository, mock(ShopRepository.class),
+                mock(UserRepository.class), notificationDispatcher, mock(PaymentTransactionRepository.class),
+                mock(SubscriptionStatusCache.class));
+        doAnswer(inv -> {
+            List<NotificationEnvelope> envelopes = inv.getArgument(0);
+            dispatched.add(envelopes.stream().map(NotificationEnvelope::getShopId).toList());
+            return envelopes.size();
+        }).when(notificationDispatcher).dispatchAll(anyList());
+    }
+
+    private static Subscription sub(String shopId) {
+        return Subscription.builder().id("sub-" + shopId).shopId(shopId).ownerId("owner-" + shopId)
+                .status(SubscriptionStatus.TRIAL).build();
+    }
+
+    @Test
+    void failingSubscriptionDoesNotDropNotificationsOfSavedOnes() {
+        // shop-2: đã lưu EXPIRED nhưng ghi history lỗi → vẫn phải báo; shop-3: lưu lỗi → không báo
+        when(historyRepository.save(argThat((SubscriptionHistory h) -> h != null && "shop-2".equals(h.getShopId()))))
+                .thenThrow(new IllegalStateException("history down"));
+        when(subscriptionRepository.save(argThat((Subscription s) -> s != null && "shop-3".equals(s.getShopId()))))
+                .thenThrow(new IllegalStateException("mongo down"));
+
+        service.markExpiredAll(List.of(sub("shop-1"), sub("shop-2"), sub("shop-3"), sub("shop-4")), true);
+
+        assertThat(dispatched).containsExactly(List.of("shop-1", "shop-2", "shop-4"));
+    }
+
+    @Test
+    void failedDispatchOfOneChunkDoesNotStopLaterChunks() {
+        List<Subscription> subs = IntStream.range(0, SubscriptionService.EXPIRE_CHUNK_SIZE + 1)
+                .mapToObj(i -> sub("shop-" + i)).toList();
+        doAnswer(inv -> {
+            List<NotificationEnvelope> envelopes = inv.getArgument(0);
+            dispatched.add(envelopes.stream().map(NotificationEnvelope::getShopId).toList());
+            if (dispatched.size() == 1) {
+                throw new IllegalStateException("dedupe store down");
+            }
+            return envelopes.size();
+        }).when(notificationDispatcher).dispatchAll(anyList());
+
+        service.markExpiredAll(subs, false);
+
+        assertThat(dispatched).hasSize(2);
+        assertThat(dispatched.get(0)).hasSize(SubscriptionService.EXPIRE_CHUNK_SIZE);
+        assertThat(dispatched.get(1)).containsExactly("shop-" + SubscriptionService.EXPIRE_CHUNK_SIZE);
+        assertThat(subs).allMatch(s -> s.getStatus() == SubscriptionStatus.EXPIRED);
+    }
+}
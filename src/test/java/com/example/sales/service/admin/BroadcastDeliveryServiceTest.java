@@ -0,0 +1,227 @@
+package com.example.sales.service.admin;
+
+import com.example.sales.config.BroadcastProperties;
+import com.example.sales.constant.BroadcastAudience;
+import com.example.sales.constant.NotificationChannel;
+import com.example.sales.dto.notification.NotificationEnvelope;
+import com.example.sales.model.Broadcast;
+import com.example.sales.model.Notification;
+import com.example.sales.model.NotificationDedupe;
+import com.example.sales.model.User;
+import com.example.sales.repository.NotificationDedupeRepository;
+import com.example.sales.service.notification.NotificationDispatcher;
+import com.example.sales.service.notification.NotificationIdempotencyStore;
+import com.mongodb.client.result.UpdateResult;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.core.task.SyncTaskExecutor;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Một chunk broadcast là một lượt dispatchAll (mỗi user một dedupeKey); lượt gửi tiếp sau crash
+ * bù in-app cho user đã có key nhưng chưa có notification, không gửi lại email cho họ.
+ */
+class BroadcastDeliveryServiceTest {
+
+    private MongoTemplate mongoTemplate;
+    private NotificationIdempotencyStore idempotencyStore;
+    private NotificationDispatcher dispatcher;
+    private BroadcastDeliveryService service;
+
+    private final Broadcast broadcast = Broadcast.builder().id("b1").title("T").message("M").emailEnabled(true).build();
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        mongoTemplate = mock(MongoTemplate.class);
+        idempotencyStore = mock(NotificationIdempotencyStore.class);
+        // u2 đã có dedupe key từ lượt trước
+        when(idempotencyStore.tryAcquireAll(anyCollection())).thenAnswer(inv -> ((Collection<String>) inv.getArgument(0))
+                .stream().filter(key -> !key.endsWith(":u2")).collect(Collectors.toSet()));
+        dispatcher = mock(NotificationDispatcher.class);
+        when(dispatcher.dispatchAll(anyList(), eq(true))).thenAnswer(inv -> inv.<List<?>>getArgument(0).size());
+        service = new BroadcastDeliveryService(mongoTemplate, idempotencyStore, dispatcher,
+                new BroadcastProperties(), new SyncTaskExecutor(), Runnable::run);
+    }
+
+    private static List<BroadcastDeliveryService.Recipient> chunk() {
+        return List.of(new BroadcastDeliveryService.Recipient("s1", "u1"),
+                new BroadcastDeliveryService.Recipient("s2", "u2"),
+                new BroadcastDeliveryService.Recipient("s3", "u1"),
+                new BroadcastDeliveryService.Recipient("s4", null));
+    }
+
+    @Test
+    void dispatchesOneEnvelopePerDistinctRecipientWithItsOwnDedupeKey() {
+        BroadcastDeliveryService.ChunkResult result = service.deliverChunk(broadcast, chunk(), false);
+
+        List<NotificationEnvelope> envelopes = dispatched();
+        assertThat(envelopes).extracting(NotificationEnvelope::getDedupeKey)
+                .containsExactly("broadcast:b1:u1", "broadcast:b1:u2");
+        assertThat(envelopes).allSatisfy(e -> assertThat(e.getForcedChannels()).contains(NotificationChannel.EMAIL));
+        assertThat(result).isEqualTo(new BroadcastDeliveryService.ChunkResult(4, 2));
+        verifyNoInteractions(idempotencyStore);
+        verify(mongoTemplate, never()).findDistinct(any(Query.class), anyString(), eq(Notification.class), eq(String.class));
+    }
+
+    @Test
+    void resumedChunkFillsInMissingNotificationsWithoutResendingEmail() {
+        when(mongoTemplate.findDistinct(any(Query.class), eq("userId"), eq(Notification.class), eq(String.class)))
+                .thenReturn(List.of());
+
+        BroadcastDeliveryService.ChunkResult result = service.deliverChunk(broadcast, chunk(), true);
+
+        List<NotificationEnvelope> envelopes = dispatched();
+        assertThat(envelopes).extracting(e -> e.getRecipientUserIds().get(0)).containsExactly("u1", "u2");
+        assertThat(envelopes).allSatisfy(e -> assertThat(e.getDedupeKey()).isNull());
+        assertThat(envelopes.get(0).getSuppressedChannels()).isEmpty();
+        assertThat(envelopes.get(1).getSuppressedChannels()).containsExactly(NotificationChannel.EMAIL);
+        assertThat(result.sent()).isEqualTo(2);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void resumingTwiceNeverDuplicatesInAppNotifications() {
+        // Trạng thái DB sau crash giữa chunk: u1 đủ key + notification, u2 mới có key, u3 chưa có gì
+        Set<String> storedKeys = new HashSet<>(Set.of("broadcast:b1:u1", "broadcast:b1:u2"));
+        Set<String> notified = new HashSet<>(Set.of("u1"));
+        Map<String, Integer> inApp = new HashMap<>();
+        List<String> emailed = new ArrayList<>();
+
+        MongoTemplate db = mock(MongoTemplate.class);
+        when(db.findDistinct(any(Query.class), eq("userId"), eq(Notification.class), eq(String.class)))
+                .thenAnswer(inv -> inValues(inv.getArgument(0), "userId").stream().filter(notified::contains).toList());
+        when(db.find(any(Query.class), eq(NotificationDedupe.class)))
+                .thenAnswer(inv -> inValues(inv.getArgument(0), "dedupeKey").stream().filter(storedKeys::contains)
+                        .map(key -> NotificationDedupe.builder().dedupeKey(key).build()).toList());
+        BulkOperations bulk = mock(BulkOperations.class);
+        when(db.bulkOps(BulkOperations.BulkMode.UNORDERED, NotificationDedupe.class)).thenReturn(bulk);
+        when(bulk.insert(anyList())).thenAnswer(inv -> {
+            inv.<List<NotificationDedupe>>getArgument(0).forEach(record -> storedKeys.add(record.getDedupeKey()));
+            return bulk;
+        });
+        NotificationDispatcher recording = mock(NotificationDispatcher.class);
+        when(recording.dispatchAll(anyList(), eq(true))).thenAnswer(inv -> {
+            List<NotificationEnvelope> envelopes = inv.getArgument(0);
+            for (NotificationEnvelope e : envelopes) {
+                String userId = e.getRecipientUserIds().get(0);
+                inApp.merge(userId, 1, Integer::sum);
+                notified.add(userId);
+                if (!e.getSuppressedChannels().contains(NotificationChannel.EMAIL)) emailed.add(userId);
+            }
+            return envelopes.size();
+        });
+        BroadcastDeliveryService resumed = new BroadcastDeliveryService(db,
+                new NotificationIdempotencyStore(mock(NotificationDedupeRepository.class), db), recording,
+                new BroadcastProperties(), new SyncTaskExecutor(), Runnable::run);
+        List<BroadcastDeliveryService.Recipient> chunk = List.of(new BroadcastDeliveryService.Recipient("s1", "u1"),
+                new BroadcastDeliveryService.Recipient("s2", "u2"),
+                new BroadcastDeliveryService.Recipient("s3", "u3"));
+
+        resumed.deliverChunk(broadcast, chunk, true);
+        // Node nhận lại cũng chết trước khi lưu cursor → chunk được gửi tiếp lần nữa
+        BroadcastDeliveryService.ChunkResult second = resumed.deliverChunk(broadcast, chunk, true);
+
+        assertThat(inApp).containsOnly(entry("u2", 1), entry("u3", 1));
+        assertThat(emailed).containsExactly("u3");
+        assertThat(second.sent()).isZero();
+    }
+
+    @Test
+    void failedChunkReleasesItsKeysAndIsNotCountedAsSent() {
+        when(dispatcher.dispatchAll(anyList(), eq(true))).thenThrow(new IllegalStateException("Sender failed for channels [IN_APP]"));
+
+        BroadcastDeliveryService.ChunkResult result = service.deliverChunk(broadcast, chunk(), false);
+
+        assertThat(result).isEqualTo(new BroadcastDeliveryService.ChunkResult(4, 0, 2, false));
+        verify(idempotencyStore).releaseAll(List.of("broadcast:b1:u1", "broadcast:b1:u2"));
+    }
+
+    @Test
+    void failedChunkStopsTheCursorAndHandsTheBroadcastBackForRetry() {
+        Update retry = runTwoChunksWhereTheFirstFails(0);
+
+        Document set = retry.getUpdateObject().get("$set", Document.class);
+        Document inc = retry.getUpdateObject().get("$inc", Document.class);
+        // Cursor giữ trước chunk lỗi; chunk sau đã gửi xong vẫn được đếm là đã gửi
+        assertThat(set).containsEntry("lastCursor", null);
+        assertThat(inc).containsEntry("retryCount", 1).containsEntry("recipientCount", 1)
+                .containsEntry("processedCount", 0).containsEntry("failedCount", 0);
+        assertThat(retry.getUpdateObject().get("$unset", Document.class)).containsKeys("claimedBy", "leaseUntil");
+    }
+
+    @Test
+    void chunkIsCountedAsFailedOnceRetriesAreUsedUp() {
+        Update progress = runTwoChunksWhereTheFirstFails(new BroadcastProperties().getMaxRetries());
+
+        assertThat(progress.getUpdateObject().get("$set", Document.class)).containsEntry("lastCursor", "u3");
+        assertThat(progress.getUpdateObject().get("$inc", Document.class))
+                .containsEntry("processedCount", 3).containsEntry("recipientCount", 1).containsEntry("failedCount", 2)
+                .doesNotContainKey("retryCount");
+    }
+
+    /** Chunk [u1, u2] gửi lỗi, chunk [u3] gửi được (chunkSize 2, chạy song song); trả về update lưu tiến độ. */
+    private Update runTwoChunksWhereTheFirstFails(int retryCount) {
+        BroadcastProperties properties = new BroadcastProperties();
+        properties.setChunkSize(2);
+        properties.setParallelism(2);
+        service = new BroadcastDeliveryService(mongoTemplate, idempotencyStore, dispatcher,
+                properties, new SyncTaskExecutor(), Runnable::run);
+        Broadcast claimed = Broadcast.builder().id("b1").title("T").message("M")
+                .audience(BroadcastAudience.ALL_USERS).retryCount(retryCount).build();
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class),
+                eq(Broadcast.class))).thenReturn(claimed);
+        when(mongoTemplate.find(any(Query.class), eq(User.class)))
+                .thenReturn(List.of(User.builder().id("u1").build(), User.builder().id("u2").build()))
+                .thenReturn(List.of(User.builder().id("u3").build()));
+        when(mongoTemplate.updateFirst(any(Query.class), any(Update.class), eq(Broadcast.class)))
+                .thenReturn(UpdateResult.acknowledged(1, 1L, null));
+        when(dispatcher.dispatchAll(anyList(), eq(true))).thenAnswer(inv -> {
+            List<NotificationEnvelope> envelopes = inv.getArgument(0);
+            if (envelopes.get(0).getRecipientUserIds().contains("u1")) {
+                throw new IllegalStateException("insertMany timeout");
+            }
+            return envelopes.size();
+        });
+
+        service.run("b1");
+
+        ArgumentCaptor<Update> updates = ArgumentCaptor.forClass(Update.class);
+        verify(mongoTemplate, atLeastOnce()).updateFirst(any(Query.class), updates.capture(), eq(Broadcast.class));
+        return updates.getAllValues().stream()
+                .filter(u -> u.getUpdateObject().get("$inc") != null)
+                .findFirst().orElseThrow();
+    }
+
+    private static List<String> inValues(Query query, String field) {
+        Collection<?> values = (Collection<?>) query.getQueryObject().get(field, Document.class).get("$in");
+        return values.stream().map(String::valueOf).toList();
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<NotificationEnvelope> dispatched() {
+        ArgumentCaptor<List<NotificationEnvelope>> captor = ArgumentCaptor.forClass(List.class);
+        verify(dispatcher).dispatchAll(captor.capture(), eq(true));
+        return captor.getValue();
+    }
+}
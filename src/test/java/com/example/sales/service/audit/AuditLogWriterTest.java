@@ -0,0 +1,91 @@
+package com.example.sales.service.audit;
+
+import com.example.sales.config.AuditLogProperties;
+import com.example.sales.model.AuditLog;
+import com.example.sales.repository.AuditLogRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Writer gom log thành lô insertMany, ghi hết hàng đợi khi stop và đếm log bị bỏ khi đầy.
+ */
+class AuditLogWriterTest {
+
+    private final AtomicInteger inserted = new AtomicInteger();
+    private final AtomicInteger insertCalls = new AtomicInteger();
+    private AuditLogRepository repository;
+    private AuditLogProperties properties;
+    private MeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() {
+        repository = mock(AuditLogRepository.class);
+        when(repository.insert(anyList())).thenAnswer(inv -> {
+            List<AuditLog> batch = inv.getArgument(0);
+            inserted.addAndGet(batch.size());
+            insertCalls.incrementAndGet();
+            return batch;
+        });
+        properties = new AuditLogProperties();
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    private static AuditLog entry(int i) {
+        return AuditLog.builder().action("TEST").targetId("t" + i).build();
+    }
+
+    @Test
+    void batchesInsertsAndFlushesOnStop() {
+        properties.setBatchSize(50);
+        AuditLogWriter writer = new AuditLogWriter(repository, properties, meterRegistry);
+        writer.start();
+
+        for (int i = 0; i < 1_000; i++) {
+            writer.submit(entry(i));
+        }
+        writer.stop();
+
+        assertThat(inserted.get()).isEqualTo(1_000);
+        assertThat(insertCalls.get()).isLessThan(1_000);
+        assertThat(writer.queueDepth()).isZero();
+        assertThat(meterRegistry.get("audit.log.batch.size").summary().max()).isLessThanOrEqualTo(50);
+    }
+
+    @Test
+    void dropPolicyCountsRejectedEntriesWhenQueueIsFull() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        when(repository.insert(anyList())).thenAnswer(inv -> {
+            release.await();
+            List<AuditLog> batch = inv.getArgument(0);
+            inserted.addAndGet(batch.size());
+            return batch;
+        });
+        properties.setQueueCapacity(10);
+        properties.setBatchSize(1);
+        properties.setOverflowPolicy(AuditLogProperties.OverflowPolicy.DROP);
+        AuditLogWriter writer = new AuditLogWriter(repository, properties, meterRegistry);
+        writer.start();
+
+        for (int i = 0; i < 100; i++) {
+            writer.submit(entry(i));
+        }
+        double dropped = meterRegistry.get("audit.log.dropped").counter().count();
+        release.countDown();
+        writer.stop();
+
+        // Tối đa 10 log trong hàng đợi + 1 log thread nền đang ghi
+        assertThat(dropped).isGreaterThanOrEqualTo(89);
+        assertThat(inserted.get() + dropped).isEqualTo(100);
+    }
+}
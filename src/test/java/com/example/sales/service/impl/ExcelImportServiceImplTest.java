@@ -0,0 +1,147 @@
+package com.example.sales.service.impl;
+
+import com.example.sales.cache.ProductCache;
+import com.example.sales.config.AuditorAwareImpl;
+import com.example.sales.dto.product.ProductImportResult;
+import com.example.sales.model.Branch;
+import com.example.sales.model.BranchProduct;
+import com.example.sales.model.Product;
+import com.example.sales.model.Shop;
+import com.example.sales.repository.BranchRepository;
+import com.example.sales.repository.ProductRepository;
+import com.example.sales.repository.ShopRepository;
+import com.example.sales.service.SequenceService;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.ServerAddress;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.bson.BsonDocument;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Lỗi bulk được gắn đúng dòng Excel; Product có BranchProduct đã xóa mềm bị loại trước khi ghi;
+ * cache được evict kể cả khi import dừng giữa chừng.
+ */
+class ExcelImportServiceImplTest {
+
+    private ProductRepository productRepository;
+    private ProductCache productCache;
+    private MongoTemplate mongoTemplate;
+    private BulkOperations productOps;
+    private BulkOperations branchOps;
+    private ExcelImportServiceImpl service;
+
+    @BeforeEach
+    void setUp() {
+        productRepository = mock(ProductRepository.class);
+        ShopRepository shopRepository = mock(ShopRepository.class);
+        when(shopRepository.findByIdAndDeletedFalse("s1")).thenReturn(Optional.of(Shop.builder().id("s1").build()));
+        BranchRepository branchRepository = mock(BranchRepository.class);
+        when(branchRepository.findAllByShopIdAndDeletedFalse("s1")).thenReturn(List.of(Branch.builder().id("b1").build()));
+        productCache = mock(ProductCache.class);
+        mongoTemplate = mock(MongoTemplate.class);
+        productOps = mock(BulkOperations.class);
+        branchOps = mock(BulkOperations.class);
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Product.class)).thenReturn(productOps);
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, BranchProduct.class)).thenReturn(branchOps);
+        service = new ExcelImportServiceImpl(productRepository, shopRepository, mock(SequenceService.class),
+                branchRepository, productCache, mongoTemplate, mock(AuditorAwareImpl.class));
+    }
+
+    @Test
+    void mapsBulkErrorsBackToTheirRows() throws Exception {
+        // B, C đã có; C còn BranchProduct xóa mềm tại b1
+        when(productRepository.findByShopIdAndSkuInAndDeletedFalse(eq("s1"), anyCollection())).thenReturn(List.of(
+                Product.builder().id("pB").sku("B").build(),
+                Product.builder().id("pC").sku("C").build()));
+        when(mongoTemplate.find(any(Query.class), eq(BranchProduct.class)))
+                .thenReturn(List.of(BranchProduct.builder().productId("pC").build()));
+        // Thao tác Product: A (insert, trùng barcode), B (update), D (insert) — C không được ghi
+        when(productOps.execute()).thenThrow(bulkError(11000, 0));
+        // Thao tác BranchProduct: B, D — B lỗi validation
+        when(branchOps.execute()).thenThrow(bulkError(121, 0));
+
+        ProductImportResult result = service.importProducts("s1", xlsx("A", "B", "C", "D"), null);
+
+        assertThat(result.getTotalRows()).isEqualTo(4);
+        assertThat(result.getImportedCount()).isEqualTo(1);
+        assertThat(result.getCreatedCount()).isEqualTo(1);
+        assertThat(result.getFailedCount()).isEqualTo(3);
+        assertThat(result.getErrors()).extracting(ProductImportResult.RowError::getRow, ProductImportResult.RowError::getMessage)
+                .containsExactly(
+                        tuple(3, ExcelImportServiceImpl.PRODUCT_DUPLICATE_MESSAGE),
+                        tuple(4, ExcelImportServiceImpl.BRANCH_WRITE_FAILED_MESSAGE),
+                        tuple(5, ExcelImportServiceImpl.BRANCH_DELETED_MESSAGE));
+
+        // C bị loại trước khi ghi Product; chỉ B được update
+        ArgumentCaptor<Query> updated = ArgumentCaptor.forClass(Query.class);
+        verify(productOps).updateOne(updated.capture(), any(Update.class));
+        assertThat(updated.getValue().getQueryObject().get("_id")).isEqualTo("pB");
+        verify(productOps, times(2)).insert(any(Product.class));
+        verify(branchOps, times(2)).upsert(any(Query.class), any(Update.class));
+        verify(productCache).evictByShop("s1");
+    }
+
+    @Test
+    void evictsCacheWhenTheImportStopsAfterAWrite() throws Exception {
+        when(productRepository.findByShopIdAndSkuInAndDeletedFalse(eq("s1"), anyCollection())).thenReturn(List.of());
+        when(branchOps.execute()).thenThrow(new DataAccessResourceFailureException("connection reset"));
+
+        assertThatThrownBy(() -> service.importProducts("s1", xlsx("A"), null))
+                .isInstanceOf(DataAccessResourceFailureException.class);
+
+        verify(productCache).evictByShop("s1");
+    }
+
+    private static BulkOperationException bulkError(int code, int index) {
+        return new BulkOperationException("bulk", new MongoBulkWriteException(BulkWriteResult.unacknowledged(),
+                List.of(new BulkWriteError(code, "driver message", new BsonDocument(), index)),
+                null, new ServerAddress(), Set.of()));
+    }
+
+    /** Sheet "Products": header, dòng ghi chú, rồi mỗi SKU một dòng (bắt đầu từ dòng Excel 3). */
+    private static InputStream xlsx(String... skus) throws Exception {
+        try (XSSFWorkbook wb = new XSSFWorkbook(); ByteArrayOutputStream out = new ByteArrayOutputStream()) {
+            Sheet sheet = wb.createSheet("Products");
+            Row header = sheet.createRow(0);
+            header.createCell(0).setCellValue("SKU");
+            header.createCell(1).setCellValue("Tên sản phẩm");
+            header.createCell(2).setCellValue("Danh mục");
+            sheet.createRow(1).createCell(0).setCellValue("* Cột đỏ = bắt buộc");
+            for (int i = 0; i < skus.length; i++) {
+                Row row = sheet.createRow(i + 2);
+                row.createCell(0).setCellValue(skus[i]);
+                row.createCell(1).setCellValue("Sản phẩm " + skus[i]);
+                row.createCell(2).setCellValue("Đồ uống");
+            }
+            wb.write(out);
+            return new ByteArrayInputStream(out.toByteArray());
+        }
+    }
+}
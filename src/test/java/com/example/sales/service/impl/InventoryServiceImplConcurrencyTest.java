@@ -0,0 +1,169 @@
+package com.example.sales.service.impl;
+
+import com.example.sales.cache.ProductCache;
+import com.example.sales.constant.ApiCode;
+import com.example.sales.exception.BusinessException;
+import com.example.sales.helper.BranchProductStockHelper;
+import com.example.sales.helper.KeysetPager;
+import com.example.sales.model.BranchProduct;
+import com.example.sales.model.OrderItem;
+import com.example.sales.model.Product;
+import com.example.sales.repository.BranchProductRepository;
+import com.example.sales.repository.InventoryTransactionRepository;
+import com.example.sales.repository.OrderRepository;
+import com.example.sales.repository.ProductRepository;
+import com.example.sales.repository.ShopRepository;
+import com.example.sales.repository.UserRepository;
+import com.example.sales.service.AuditLogService;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Nhiều đơn xuất kho song song qua {@link InventoryServiceImpl} và {@link BranchProductStockHelper} thật.
+ * MongoTemplate được thay bằng kho trong bộ nhớ thực thi đúng lệnh findAndModify mà helper gửi đi
+ * (filter {@code quantity >= n} + {@code $inc}) nguyên tử trên từng document, như Mongo.
+ */
+class InventoryServiceImplConcurrencyTest {
+
+    private static final String SHOP = "shop-1";
+    private static final String BRANCH = "branch-1";
+    private static final int THREADS = 16;
+
+    /** Tồn {@code quantity} theo _id; compute() trên một key là nguyên tử như cập nhật một document. */
+    private final Map<String, Integer> quantities = new ConcurrentHashMap<>();
+    private final AtomicInteger lowestQuantity = new AtomicInteger(Integer.MAX_VALUE);
+    private InventoryServiceImpl service;
+
+    @BeforeEach
+    void setUp() {
+        MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+        when(mongoTemplate.find(any(Query.class), eq(BranchProduct.class))).thenAnswer(inv -> quantities.keySet().stream()
+                .map(id -> BranchProduct.builder().id(id).productId("p-" + id).shopId(SHOP).branchId(BRANCH).build())
+                .toList());
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class), eq(BranchProduct.class)))
+                .thenAnswer(inv -> findAndModify(inv.getArgument(0), inv.getArgument(1), inv.getArgument(2)));
+
+        ProductRepository productRepository = mock(ProductRepository.class);
+        when(productRepository.findByIdInAndShopIdAndDeletedFalse(anyCollection(), eq(SHOP))).thenAnswer(inv -> quantities.keySet().stream()
+                .map(id -> {
+                    Product product = Product.builder().id("p-" + id).name("SP " + id).sku("SKU_" + id).trackInventory(true).build();
+                    product.setDeleted(false);
+                    return product;
+                })
+                .toList());
+
+        service = new InventoryServiceImpl(
+                mock(BranchProductRepository.class), productRepository,
+                mock(InventoryTransactionRepository.class), mock(ShopRepository.class),
+                mock(UserRepository.class), mock(AuditLogService.class), mock(ProductCache.class),
+                mock(OrderRepository.class), new BranchProductStockHelper(mongoTemplate), mock(KeysetPager.class));
+    }
+
+    private BranchProduct findAndModify(Query query, Update update, FindAndModifyOptions options) {
+        Document filter = query.getQueryObject();
+        String id = filter.getString("_id");
+        int min = filter.get("quantity") instanceof Document condition
+                ? ((Number) condition.get("$gte")).intValue()
+                : Integer.MIN_VALUE;
+        int delta = ((Number) update.getUpdateObject().get("$inc", Document.class).get("quantity")).intValue();
+
+        Integer[] result = {null};
+        quantities.computeIfPresent(id, (key, current) -> {
+            if (current < min) return current;
+            int next = current + delta;
+            lowestQuantity.accumulateAndGet(next, Math::min);
+            result[0] = options.isReturnNew() ? next : current;
+            return next;
+        });
+        return result[0] == null ? null : BranchProduct.builder().id(id).quantity(result[0]).build();
+    }
+
+    /** Chạy mọi đơn cùng lúc; trả về số đơn xuất kho thành công. Lỗi khác INSUFFICIENT_STOCK làm test fail. */
+    private int sellConcurrently(List<List<OrderItem>> orders) throws Exception {
+        AtomicInteger sold = new AtomicInteger();
+        Queue<Throwable> unexpected = new ConcurrentLinkedQueue<>();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        for (int i = 0; i < orders.size(); i++) {
+            List<OrderItem> lines = orders.get(i);
+            String ref = "ORD-" + i;
+            pool.execute(() -> {
+                try {
+                    start.await();
+                    service.exportOrderLines("u", SHOP, BRANCH, lines, "Bán", "Bán cân", ref);
+                    sold.incrementAndGet();
+                } catch (BusinessException e) {
+                    if (e.getError() != ApiCode.INSUFFICIENT_STOCK) unexpected.add(e);
+                } catch (Throwable e) {
+                    unexpected.add(e);
+                }
+            });
+        }
+        start.countDown();
+        pool.shutdown();
+        assertThat(pool.awaitTermination(30, TimeUnit.SECONDS)).isTrue();
+        assertThat(unexpected).isEmpty();
+        return sold.get();
+    }
+
+    private static OrderItem line(String branchProductId, int quantity) {
+        return OrderItem.builder().branchProductId(branchProductId).quantity(quantity).build();
+    }
+
+    @Test
+    void parallelOrdersNeverOversell() throws Exception {
+        quantities.put("bp-1", 100);
+        List<List<OrderItem>> orders = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            orders.add(List.of(line("bp-1", 3)));
+        }
+
+        int sold = sellConcurrently(orders);
+
+        assertThat(sold).isEqualTo(33);
+        assertThat(quantities.get("bp-1")).isEqualTo(1);
+        assertThat(lowestQuantity.get()).isGreaterThanOrEqualTo(0);
+    }
+
+    @Test
+    void rejectedOrdersGiveBackTheirEarlierLines() throws Exception {
+        // bp-2 hết trước: đơn bị từ chối ở dòng 2 đã trừ bp-1 ở dòng 1 và phải trả lại
+        quantities.put("bp-1", 500);
+        quantities.put("bp-2", 30);
+        List<List<OrderItem>> orders = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            orders.add(List.of(line("bp-1", 2), line("bp-2", 1)));
+        }
+
+        int sold = sellConcurrently(orders);
+
+        assertThat(sold).isEqualTo(30);
+        assertThat(quantities.get("bp-2")).isZero();
+        assertThat(quantities.get("bp-1")).isEqualTo(500 - 2 * 30);
+        assertThat(lowestQuantity.get()).isGreaterThanOrEqualTo(0);
+    }
+}
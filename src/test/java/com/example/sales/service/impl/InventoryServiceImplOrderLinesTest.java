@@ -0,0 +1,156 @@
+package com.example.sales.service.impl;
+
+import com.example.sales.cache.ProductCache;
+import com.example.sales.constant.ApiCode;
+import com.example.sales.exception.BusinessException;
+import com.example.sales.helper.BranchProductStockHelper;
+import com.example.sales.helper.KeysetPager;
+import com.example.sales.model.BranchProduct;
+import com.example.sales.model.BranchProductVariant;
+import com.example.sales.model.OrderItem;
+import com.example.sales.model.Product;
+import com.example.sales.repository.BranchProductRepository;
+import com.example.sales.repository.InventoryTransactionRepository;
+import com.example.sales.repository.OrderRepository;
+import com.example.sales.repository.ProductRepository;
+import com.example.sales.repository.ShopRepository;
+import com.example.sales.repository.UserRepository;
+import com.example.sales.service.AuditLogService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+/**
+ * Xuất kho theo lô dòng đơn: mỗi dòng là một lệnh trừ có điều kiện của {@link BranchProductStockHelper}
+ * (filter của lệnh được kiểm tra trong BranchProductStockHelperTest). Dòng N thiếu tồn thì các dòng 1..N-1
+ * đã trừ phải được cộng trả lại đúng trường, và không ghi lịch sử / audit nào.
+ */
+class InventoryServiceImplOrderLinesTest {
+
+    private static final String SHOP = "shop-1";
+    private static final String BRANCH = "branch-1";
+
+    private BranchProductStockHelper stockHelper;
+    private ProductRepository productRepository;
+    private InventoryTransactionRepository transactionRepository;
+    private AuditLogService auditLogService;
+    private ProductCache productCache;
+    private InventoryServiceImpl service;
+
+    @BeforeEach
+    void setUp() {
+        stockHelper = mock(BranchProductStockHelper.class);
+        productRepository = mock(ProductRepository.class);
+        transactionRepository = mock(InventoryTransactionRepository.class);
+        auditLogService = mock(AuditLogService.class);
+        productCache = mock(ProductCache.class);
+        service = new InventoryServiceImpl(
+                mock(BranchProductRepository.class), productRepository,
+                transactionRepository, mock(ShopRepository.class),
+                mock(UserRepository.class), auditLogService, productCache,
+                mock(OrderRepository.class), stockHelper, mock(KeysetPager.class));
+    }
+
+    private static BranchProduct branchProduct(String id, String productId, List<BranchProductVariant> variants) {
+        return BranchProduct.builder().id(id).productId(productId).shopId(SHOP).branchId(BRANCH)
+                .variants(variants).build();
+    }
+
+    private static Product product(String id, boolean sellByWeight) {
+        Product product = Product.builder().id(id).name("SP " + id).sku("SKU_" + id)
+                .trackInventory(true).sellByWeight(sellByWeight).unit(sellByWeight ? "kg" : null).build();
+        product.setDeleted(false);
+        return product;
+    }
+
+    private void stock(List<BranchProduct> branchProducts, List<Product> products) {
+        when(stockHelper.findAllForStock(anyCollection(), eq(SHOP), eq(BRANCH))).thenReturn(branchProducts);
+        when(productRepository.findByIdInAndShopIdAndDeletedFalse(anyCollection(), eq(SHOP))).thenReturn(products);
+    }
+
+    @Test
+    void failingLineRollsBackEveryEarlierLine() {
+        stock(List.of(
+                        branchProduct("bp-1", "p-1", null),
+                        branchProduct("bp-2", "p-2", List.of(BranchProductVariant.builder().variantId("v1").quantity(5).build())),
+                        branchProduct("bp-3", "p-3", null),
+                        branchProduct("bp-4", "p-4", null)),
+                List.of(product("p-1", false), product("p-2", false), product("p-3", true), product("p-4", false)));
+        when(stockHelper.decQuantity("bp-1", 2)).thenReturn(BranchProduct.builder().id("bp-1").quantity(8).build());
+        when(stockHelper.decVariantQuantity("bp-2", "v1", 1)).thenReturn(BranchProduct.builder().id("bp-2").quantity(4)
+                .variants(List.of(BranchProductVariant.builder().variantId("v1").quantity(4).build())).build());
+        when(stockHelper.decStockInBaseUnits("bp-3", 1_500L))
+                .thenReturn(BranchProduct.builder().id("bp-3").stockInBaseUnits(500L).build());
+        // Dòng 4: filter quantity >= 3 không match
+        when(stockHelper.decQuantity("bp-4", 3)).thenReturn(null);
+
+        List<OrderItem> lines = List.of(
+                OrderItem.builder().branchProductId("bp-1").quantity(2).build(),
+                OrderItem.builder().branchProductId("bp-2").variantId("v1").quantity(1).build(),
+                OrderItem.builder().branchProductId("bp-3").sellByWeight(true).weight(1.5).weightUnit("kg").build(),
+                OrderItem.builder().branchProductId("bp-4").quantity(3).build());
+
+        assertThatThrownBy(() -> service.exportOrderLines("u", SHOP, BRANCH, lines, "Bán", "Bán cân", "ORD-1"))
+                .isInstanceOfSatisfying(BusinessException.class,
+                        e -> assertThat(e.getError()).isEqualTo(ApiCode.INSUFFICIENT_STOCK));
+
+        var order = inOrder(stockHelper);
+        order.verify(stockHelper).decQuantity("bp-1", 2);
+        order.verify(stockHelper).decVariantQuantity("bp-2", "v1", 1);
+        order.verify(stockHelper).decStockInBaseUnits("bp-3", 1_500L);
+        order.verify(stockHelper).decQuantity("bp-4", 3);
+        // Hoàn lại đúng trường đã trừ: tổng, biến thể (kèm tổng), tồn theo cân
+        order.verify(stockHelper).incQuantity("bp-1", 2);
+        order.verify(stockHelper).incVariantQuantity("bp-2", "v1", 1);
+        order.verify(stockHelper).incStockInBaseUnits("bp-3", 1_500L);
+        verify(stockHelper, never()).incQuantity(eq("bp-4"), anyInt());
+        verify(transactionRepository, never()).saveAll(any());
+        verifyNoInteractions(auditLogService, productCache);
+    }
+
+    @Test
+    void failingFirstLineHasNothingToRollBack() {
+        stock(List.of(branchProduct("bp-1", "p-1", null), branchProduct("bp-2", "p-2", null)),
+                List.of(product("p-1", false), product("p-2", false)));
+        when(stockHelper.decQuantity("bp-1", 5)).thenReturn(null);
+
+        assertThatThrownBy(() -> service.exportOrderLines("u", SHOP, BRANCH, List.of(
+                OrderItem.builder().branchProductId("bp-1").quantity(5).build(),
+                OrderItem.builder().branchProductId("bp-2").quantity(1).build()), "Bán", "Bán cân", "ORD-2"))
+                .isInstanceOf(BusinessException.class);
+
+        verify(stockHelper, never()).decQuantity(eq("bp-2"), anyInt());
+        verify(stockHelper, never()).incQuantity(anyString(), anyInt());
+        verify(transactionRepository, never()).saveAll(any());
+    }
+
+    @Test
+    void exportMoreThanStockIsRejected() {
+        BranchProduct snapshot = branchProduct("bp-1", "p-1", null);
+        when(stockHelper.findForStock(SHOP, BRANCH, "bp-1")).thenReturn(Optional.of(snapshot));
+        when(productRepository.findByIdAndShopIdAndDeletedFalse("p-1", SHOP)).thenReturn(Optional.of(product("p-1", false)));
+        when(stockHelper.decQuantity("bp-1", 5)).thenReturn(null);
+        when(stockHelper.decQuantity("bp-1", 3)).thenReturn(BranchProduct.builder().id("bp-1").quantity(0).build());
+
+        assertThatThrownBy(() -> service.exportProductQuantity("u", SHOP, BRANCH, "bp-1", null, 5, "test", "ref"))
+                .isInstanceOfSatisfying(BusinessException.class,
+                        e -> assertThat(e.getError()).isEqualTo(ApiCode.INSUFFICIENT_STOCK));
+        assertThat(service.exportProductQuantity("u", SHOP, BRANCH, "bp-1", null, 3, "test", "ref")).isZero();
+    }
+}
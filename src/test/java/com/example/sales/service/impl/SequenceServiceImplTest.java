@@ -0,0 +1,116 @@
+package com.example.sales.service.impl;
+
+import com.example.sales.config.SequenceProperties;
+import com.example.sales.constant.AppConstants;
+import com.example.sales.model.NextSequence;
+import com.example.sales.repository.NextSequenceRepository;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationUpdate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Bộ sinh mã đơn hàng: mô phỏng {@code findAndModify $inc} bằng một AtomicInteger
+ * để kiểm tra mã không trùng khi nhiều thread gọi đồng thời và số round trip khi đặt trước khối.
+ */
+class SequenceServiceImplTest {
+
+    private static final String SHOP = "shop-1";
+    private static final String ORDER = AppConstants.SequenceTypes.SEQUENCE_TYPE_ORDER;
+
+    private final AtomicInteger stored = new AtomicInteger(1);
+    private MongoTemplate mongoTemplate;
+    private SequenceProperties properties;
+    private SequenceServiceImpl service;
+
+    @BeforeEach
+    void setUp() {
+        mongoTemplate = mock(MongoTemplate.class);
+        when(mongoTemplate.findAndModify(any(Query.class), any(AggregationUpdate.class),
+                any(FindAndModifyOptions.class), eq(NextSequence.class)))
+                .thenAnswer(inv -> NextSequence.builder()
+                        .nextSequence(stored.addAndGet(increment(inv.getArgument(1)))).build());
+        properties = new SequenceProperties();
+        service = new SequenceServiceImpl(mock(NextSequenceRepository.class), mongoTemplate, properties);
+    }
+
+    /** {$set: {nextSequence: {$add: [{$ifNull: ["$nextSequence", 1]}, count]}}} → count */
+    private static int increment(AggregationUpdate update) {
+        Document add = update.toPipeline(Aggregation.DEFAULT_CONTEXT).get(0)
+                .get("$set", Document.class).get("nextSequence", Document.class);
+        return ((Number) add.getList("$add", Object.class).get(1)).intValue();
+    }
+
+    @Test
+    void reserve_isOneUpsertThatTreatsMissingCounterAsOne() {
+        service.nextCodes(SHOP, "SP", AppConstants.SequenceTypes.SEQUENCE_TYPE_SKU, 3);
+
+        ArgumentCaptor<AggregationUpdate> update = ArgumentCaptor.forClass(AggregationUpdate.class);
+        ArgumentCaptor<FindAndModifyOptions> options = ArgumentCaptor.forClass(FindAndModifyOptions.class);
+        verify(mongoTemplate).findAndModify(any(Query.class), update.capture(), options.capture(),
+                eq(NextSequence.class));
+        assertThat(options.getValue().isUpsert()).isTrue();
+        assertThat(options.getValue().isReturnNew()).isTrue();
+        Document add = update.getValue().toPipeline(Aggregation.DEFAULT_CONTEXT).get(0)
+                .get("$set", Document.class).get("nextSequence", Document.class);
+        assertThat(add.getList("$add", Object.class).get(0))
+                .isEqualTo(new Document("$ifNull", List.of("$nextSequence", 1)));
+    }
+
+    @Test
+    void nextCode_withoutBlock_isContiguousAndHitsDbOncePerCode() {
+        assertThat(service.nextCode(SHOP, "DH", ORDER)).isEqualTo("DH_001");
+        assertThat(service.nextCode(SHOP, "DH", ORDER)).isEqualTo("DH_002");
+        verify(mongoTemplate, times(2)).findAndModify(any(Query.class), any(AggregationUpdate.class),
+                any(FindAndModifyOptions.class), eq(NextSequence.class));
+    }
+
+    @Test
+    void nextCode_withBlock_servesFromMemoryAndStaysUniqueUnderConcurrency() throws Exception {
+        properties.setOrderBlockSize(50);
+        int threads = 8;
+        int perThread = 100;
+        List<String> codes = Collections.synchronizedList(new ArrayList<>());
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        for (int t = 0; t < threads; t++) {
+            pool.submit(() -> {
+                for (int i = 0; i < perThread; i++) {
+                    codes.add(service.nextCode(SHOP, "DH", ORDER));
+                }
+            });
+        }
+        pool.shutdown();
+        assertThat(pool.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+
+        Set<String> unique = new HashSet<>(codes);
+        assertThat(codes).hasSize(threads * perThread);
+        assertThat(unique).hasSize(threads * perThread);
+        // 800 mã / khối 50 = 16 lần $inc
+        verify(mongoTemplate, times(16)).findAndModify(any(Query.class), any(AggregationUpdate.class),
+                any(FindAndModifyOptions.class), eq(NextSequence.class));
+    }
+}
@@ -0,0 +1,109 @@
+package com.example.sales.service.notification;
+
+import com.example.sales.constant.NotificationChannel;
+import com.example.sales.constant.NotificationType;
+import com.example.sales.dto.notification.NotificationEnvelope;
+import com.example.sales.model.User;
+import com.example.sales.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * dispatchAll: một bulk dedupe, một lần load user, mỗi channel một lần sendAll.
+ */
+class NotificationDispatcherTest {
+
+    private NotificationIdempotencyStore idempotencyStore;
+    private UserRepository userRepository;
+    private NotificationSender inApp;
+    private NotificationSender email;
+    private NotificationDispatcher dispatcher;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        idempotencyStore = mock(NotificationIdempotencyStore.class);
+        // "k-sent" đã được gửi ở lượt trước
+        when(idempotencyStore.tryAcquireAll(anyCollection())).thenAnswer(inv -> ((Collection<String>) inv.getArgument(0))
+                .stream().filter(key -> !key.equals("k-sent")).collect(Collectors.toSet()));
+        userRepository = mock(UserRepository.class);
+        when(userRepository.findAllById(anyIterable())).thenAnswer(inv -> {
+            Iterable<String> ids = inv.getArgument(0);
+            List<User> users = new ArrayList<>();
+            ids.forEach(id -> users.add(User.builder().id(id).email(id + "@x.vn").build()));
+            return users;
+        });
+        inApp = mock(NotificationSender.class);
+        when(inApp.channel()).thenReturn(NotificationChannel.IN_APP);
+        email = mock(NotificationSender.class);
+        when(email.channel()).thenReturn(NotificationChannel.EMAIL);
+        dispatcher = new NotificationDispatcher(new NotificationRouter(), idempotencyStore, userRepository,
+                List.of(inApp, email));
+    }
+
+    private static NotificationEnvelope envelope(String key, String... recipients) {
+        return NotificationEnvelope.builder()
+                .type(NotificationType.BILLING_PLAN_EXPIRED)
+                .recipientUserIds(List.of(recipients))
+                .title("t")
+                .dedupeKey(key)
+                .build();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void dedupesInOneBulkAndSendsEachChannelOnce() {
+        int sent = dispatcher.dispatchAll(List.of(
+                envelope("k1", "u1"),
+                envelope("k1", "u1"),          // trùng trong cùng lượt
+                envelope("k-sent", "u2"),      // đã gửi trước đó
+                envelope(null, "u3", "u4")));
+
+        assertThat(sent).isEqualTo(2);
+        ArgumentCaptor<Collection<String>> keys = ArgumentCaptor.forClass(Collection.class);
+        verify(idempotencyStore).tryAcquireAll(keys.capture());
+        assertThat(keys.getValue()).containsExactly("k1", "k-sent");
+        verify(userRepository, times(1)).findAllById(anyIterable());
+
+        assertThat(recipients(inApp)).containsExactlyInAnyOrder("u1", "u3", "u4");
+        assertThat(recipients(email)).containsExactlyInAnyOrder("u1", "u3", "u4");
+    }
+
+    @Test
+    void suppressedChannelIsSkipped() {
+        dispatcher.dispatch(envelope(null, "u1").toBuilder().suppressChannel(NotificationChannel.EMAIL).build());
+
+        assertThat(recipients(inApp)).containsExactly("u1");
+        verify(email, never()).sendAll(anyList());
+    }
+
+    @Test
+    void strictDispatchReportsSenderFailuresAfterRunningEveryChannel() {
+        doThrow(new IllegalStateException("insertMany timeout")).when(inApp).sendAll(anyList());
+
+        assertThat(dispatcher.dispatchAll(List.of(envelope("k1", "u1")))).isEqualTo(1);
+        assertThatThrownBy(() -> dispatcher.dispatchAll(List.of(envelope("k2", "u2")), true))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("IN_APP");
+        verify(email, times(2)).sendAll(anyList());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Set<String> recipients(NotificationSender sender) {
+        ArgumentCaptor<List<NotificationDelivery>> captor = ArgumentCaptor.forClass(List.class);
+        verify(sender, times(1)).sendAll(captor.capture());
+        return captor.getValue().stream().map(d -> d.recipient().getId()).collect(Collectors.toSet());
+    }
+}
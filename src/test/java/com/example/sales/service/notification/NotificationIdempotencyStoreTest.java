@@ -0,0 +1,72 @@
+package com.example.sales.service.notification;
+
+import com.example.sales.model.NotificationDedupe;
+import com.example.sales.repository.NotificationDedupeRepository;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.ServerAddress;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
+import org.bson.BsonDocument;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Key đã gửi bị bỏ ngay từ query $in; key bị node khác chèn đồng thời bị unique index từ chối.
+ */
+class NotificationIdempotencyStoreTest {
+
+    private MongoTemplate mongoTemplate;
+    private BulkOperations bulk;
+    private NotificationIdempotencyStore store;
+
+    @BeforeEach
+    void setUp() {
+        mongoTemplate = mock(MongoTemplate.class);
+        bulk = mock(BulkOperations.class);
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, NotificationDedupe.class)).thenReturn(bulk);
+        when(bulk.insert(anyList())).thenReturn(bulk);
+        store = new NotificationIdempotencyStore(mock(NotificationDedupeRepository.class), mongoTemplate);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void suppressesKeysAlreadyStoredAndKeysLostToAConcurrentInsert() {
+        when(mongoTemplate.find(any(Query.class), eq(NotificationDedupe.class)))
+                .thenReturn(List.of(NotificationDedupe.builder().dedupeKey("k1").build()));
+        // k3 được node khác chèn giữa query và bulk insert → duplicate key ở vị trí 1 của lượt insert
+        when(bulk.execute()).thenThrow(new BulkOperationException("dup", new MongoBulkWriteException(
+                BulkWriteResult.unacknowledged(),
+                List.of(new BulkWriteError(11000, "E11000 duplicate key", new BsonDocument(), 1)),
+                null, new ServerAddress(), Set.of())));
+
+        Set<String> acquired = store.tryAcquireAll(List.of("k1", "k2", "k3", "k2"));
+
+        assertThat(acquired).containsExactly("k2");
+        ArgumentCaptor<List<NotificationDedupe>> inserted = ArgumentCaptor.forClass(List.class);
+        verify(bulk).insert(inserted.capture());
+        assertThat(inserted.getValue()).extracting(NotificationDedupe::getDedupeKey).containsExactly("k2", "k3");
+    }
+
+    @Test
+    void skipsInsertWhenEveryKeyWasAlreadySent() {
+        when(mongoTemplate.find(any(Query.class), eq(NotificationDedupe.class)))
+                .thenReturn(List.of(NotificationDedupe.builder().dedupeKey("k1").build()));
+
+        assertThat(store.tryAcquireAll(List.of("k1"))).isEmpty();
+        verify(mongoTemplate, never()).bulkOps(any(BulkOperations.BulkMode.class), eq(NotificationDedupe.class));
+    }
+}
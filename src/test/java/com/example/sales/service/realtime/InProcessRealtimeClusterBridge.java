@@ -0,0 +1,55 @@
+package com.example.sales.service.realtime;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BiConsumer;
+
+/**
+ * Thay Redis pub/sub trong test: các node trong cùng JVM dùng chung một {@link Bus}.
+ * Cùng ngữ nghĩa với {@link RedisRealtimeClusterBridge} — message đi qua envelope đã encode và
+ * node phát không nhận lại message của chính nó.
+ */
+class InProcessRealtimeClusterBridge implements RealtimeClusterBridge {
+
+    static final class Bus {
+        private final List<InProcessRealtimeClusterBridge> nodes = new CopyOnWriteArrayList<>();
+
+        InProcessRealtimeClusterBridge join() {
+            InProcessRealtimeClusterBridge node = new InProcessRealtimeClusterBridge(this);
+            nodes.add(node);
+            return node;
+        }
+
+        private void broadcast(String raw) {
+            for (InProcessRealtimeClusterBridge node : nodes) {
+                node.receive(raw);
+            }
+        }
+    }
+
+    private final Bus bus;
+    private final String nodeId = UUID.randomUUID().toString();
+    private volatile BiConsumer<String, String> handler = (destination, payload) -> { };
+
+    private InProcessRealtimeClusterBridge(Bus bus) {
+        this.bus = bus;
+    }
+
+    @Override
+    public void publish(String destination, String payloadJson) {
+        bus.broadcast(new RealtimeClusterEnvelope(nodeId, destination, payloadJson).encode());
+    }
+
+    @Override
+    public void onRemoteMessage(BiConsumer<String, String> handler) {
+        this.handler = handler;
+    }
+
+    private void receive(String raw) {
+        RealtimeClusterEnvelope envelope = RealtimeClusterEnvelope.decode(raw);
+        if (envelope != null && !nodeId.equals(envelope.origin())) {
+            handler.accept(envelope.destination(), envelope.payload());
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.example.sales.service.realtime;
+
+import com.example.sales.config.RealtimePublishProperties;
+import com.example.sales.constant.WebSocketMessageType;
+import com.example.sales.dto.websocket.WebSocketMessage;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.broker.SimpleBrokerMessageHandler;
+import org.springframework.messaging.support.ExecutorSubscribableChannel;
+import org.springframework.messaging.support.MessageBuilder;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Hai node, mỗi node simple broker riêng với 2.500 subscription (tổng 5.000) trên 50 topic chi nhánh,
+ * nối với nhau qua {@link InProcessRealtimeClusterBridge}. Event publish ở node nào cũng phải tới đủ
+ * subscriber của cả hai node, đúng một lần.
+ */
+class RealtimeClusterLoadTest {
+
+    private static final int BRANCHES = 50;
+    private static final int SUBSCRIBERS_PER_BRANCH_PER_NODE = 50;
+
+    private final List<Node> nodes = new ArrayList<>();
+
+    /** Một instance ứng dụng thu nhỏ: simple broker + dispatcher + outbound channel đếm frame. */
+    private static final class Node {
+        final SimpleBrokerMessageHandler broker;
+        final RealtimeEventDispatcher dispatcher;
+        final Map<String, AtomicInteger> deliveredBySession = new ConcurrentHashMap<>();
+        final AtomicInteger delivered = new AtomicInteger();
+
+        Node(String name, RealtimeClusterBridge bridge) {
+            ExecutorSubscribableChannel inbound = new ExecutorSubscribableChannel();
+            ExecutorSubscribableChannel outbound = new ExecutorSubscribableChannel();
+            ExecutorSubscribableChannel brokerChannel = new ExecutorSubscribableChannel();
+            outbound.subscribe(message -> {
+                String body = new String((byte[]) message.getPayload(), StandardCharsets.UTF_8);
+                if (body.contains("ORDER_CREATED")) {
+                    delivered.incrementAndGet();
+                    deliveredBySession.computeIfAbsent(SimpMessageHeaderAccessor.getSessionId(message.getHeaders()),
+                            k -> new AtomicInteger()).incrementAndGet();
+                }
+            });
+            broker = new SimpleBrokerMessageHandler(inbound, outbound, brokerChannel, List.of("/topic"));
+            broker.start();
+
+            SimpMessagingTemplate template = new SimpMessagingTemplate(brokerChannel);
+            template.setMessageConverter(new MappingJackson2MessageConverter());
+            RealtimePublishProperties properties = new RealtimePublishProperties();
+            dispatcher = new RealtimeEventDispatcher(template, properties, new SimpleMeterRegistry(), bridge);
+            dispatcher.start();
+
+            for (int b = 0; b < BRANCHES; b++) {
+                for (int i = 0; i < SUBSCRIBERS_PER_BRANCH_PER_NODE; i++) {
+                    String sessionId = name + "-b" + b + "-" + i;
+                    SimpMessageHeaderAccessor connect = SimpMessageHeaderAccessor.create(SimpMessageType.CONNECT);
+                    connect.setSessionId(sessionId);
+                    broker.handleMessage(MessageBuilder.createMessage(new byte[0], connect.getMessageHeaders()));
+
+                    SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.SUBSCRIBE);
+                    accessor.setSessionId(sessionId);
+                    accessor.setSubscriptionId("sub-0");
+                    accessor.setDestination(destination(b));
+                    broker.handleMessage(MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders()));
+                }
+            }
+        }
+
+        void stop() {
+            dispatcher.stop();
+            broker.stop();
+        }
+    }
+
+    private static String destination(int branch) {
+        return "/topic/shops/s1/branches/b" + branch + "/orders";
+    }
+
+    @AfterEach
+    void tearDown() {
+        nodes.forEach(Node::stop);
+    }
+
+    @Test
+    void eventsReachSubscribersOnEveryNodeExactlyOnce() throws Exception {
+        InProcessRealtimeClusterBridge.Bus bus = new InProcessRealtimeClusterBridge.Bus();
+        Node a = new Node("a", bus.join());
+        Node b = new Node("b", bus.join());
+        nodes.add(a);
+        nodes.add(b);
+
+        // Mỗi chi nhánh: một đơn tạo ở node a và một đơn tạo ở node b, publish song song
+        ExecutorService producers = Executors.newFixedThreadPool(8);
+        for (int branch = 0; branch < BRANCHES; branch++) {
+            int br = branch;
+            producers.submit(() -> a.dispatcher.submit(destination(br), null, "a" + br,
+                    new WebSocketMessage<>(WebSocketMessageType.ORDER_CREATED, Map.of("id", "a" + br))));
+            producers.submit(() -> b.dispatcher.submit(destination(br), null, "b" + br,
+                    new WebSocketMessage<>(WebSocketMessageType.ORDER_CREATED, Map.of("id", "b" + br))));
+        }
+        producers.shutdown();
+        assertThat(producers.awaitTermination(30, TimeUnit.SECONDS)).isTrue();
+        a.dispatcher.stop();
+        b.dispatcher.stop();
+
+        int subscriptionsPerNode = BRANCHES * SUBSCRIBERS_PER_BRANCH_PER_NODE;
+        assertThat(a.deliveredBySession).hasSize(subscriptionsPerNode);
+        assertThat(b.deliveredBySession).hasSize(subscriptionsPerNode);
+        // mỗi subscriber nhận 2 event của chi nhánh mình: một từ node local, một qua bridge
+        assertThat(a.delivered.get()).isEqualTo(2 * subscriptionsPerNode);
+        assertThat(b.delivered.get()).isEqualTo(2 * subscriptionsPerNode);
+        assertThat(a.deliveredBySession.values()).allMatch(count -> count.get() == 2);
+        assertThat(b.deliveredBySession.values()).allMatch(count -> count.get() == 2);
+    }
+}
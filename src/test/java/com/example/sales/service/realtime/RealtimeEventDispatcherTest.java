@@ -0,0 +1,129 @@
+package com.example.sales.service.realtime;
+
+import com.example.sales.config.RealtimePublishProperties;
+import com.example.sales.constant.WebSocketMessageType;
+import com.example.sales.dto.websocket.WebSocketMessage;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Cập nhật liên tiếp cùng loại của cùng entity chỉ gửi bản cuối; event không gộp được giữ thứ tự; hàng đợi đầy thì bỏ.
+ */
+class RealtimeEventDispatcherTest {
+
+    private static final String ORDERS = "/topic/shops/s1/branches/b1/orders";
+
+    private final List<String> sent = Collections.synchronizedList(new ArrayList<>());
+    private SimpMessagingTemplate template;
+    private RealtimePublishProperties properties;
+    private MeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() {
+        template = mock(SimpMessagingTemplate.class);
+        doAnswer(inv -> {
+            WebSocketMessage<?> message = inv.getArgument(1);
+            sent.add(message.getType() + ":" + message.getData());
+            return null;
+        }).when(template).convertAndSend(anyString(), any(Object.class));
+        properties = new RealtimePublishProperties();
+        properties.setCoalesceWindow(Duration.ofSeconds(5));
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    private static WebSocketMessage<String> msg(WebSocketMessageType type, String data) {
+        return new WebSocketMessage<>(type, data);
+    }
+
+    @Test
+    void coalescesUpdatesOfTheSameOrderButKeepsLifecycleOrder() {
+        RealtimeEventDispatcher dispatcher = new RealtimeEventDispatcher(template, properties, meterRegistry, null);
+        dispatcher.start();
+
+        dispatcher.submit(ORDERS, null, "o1", msg(WebSocketMessageType.ORDER_CREATED, "v0"));
+        dispatcher.submit(ORDERS, "o1", "o1", msg(WebSocketMessageType.ORDER_UPDATED, "v1"));
+        dispatcher.submit(ORDERS, "o2", "o2", msg(WebSocketMessageType.ORDER_UPDATED, "x1"));
+        dispatcher.submit(ORDERS, "o1", "o1", msg(WebSocketMessageType.ORDER_UPDATED, "v2"));
+        dispatcher.submit(ORDERS, "o1", "o1", msg(WebSocketMessageType.ORDER_STATUS_CHANGED, "v3"));
+        // Event không gộp được cắt chuỗi gộp: cập nhật sau nó phải đi sau nó
+        dispatcher.submit(ORDERS, null, "o1", msg(WebSocketMessageType.ORDER_DELETED, "v4"));
+        dispatcher.submit(ORDERS, "o1", "o1", msg(WebSocketMessageType.ORDER_UPDATED, "v5"));
+        dispatcher.stop();
+
+        assertThat(sent).containsExactly(
+                "ORDER_CREATED:v0",
+                "ORDER_UPDATED:v2",
+                "ORDER_UPDATED:x1",
+                "ORDER_STATUS_CHANGED:v3",
+                "ORDER_DELETED:v4",
+                "ORDER_UPDATED:v5");
+        assertThat(meterRegistry.counter("realtime.publish.coalesced").count()).isEqualTo(1);
+    }
+
+    @Test
+    void mergesOnlyFramesOfTheSameTypeForOneEntity() {
+        String tables = "/topic/shops/s1/branches/b1/tables";
+        RealtimeEventDispatcher dispatcher = new RealtimeEventDispatcher(template, properties, meterRegistry, null);
+        dispatcher.start();
+
+        // Snapshot đầy đủ rồi các thay đổi trạng thái (payload một phần) của cùng bàn trong một cửa sổ gộp
+        dispatcher.submit(tables, "t1", "t1", msg(WebSocketMessageType.TABLE_UPDATED, "full"));
+        dispatcher.submit(tables, "t1", "t1", msg(WebSocketMessageType.TABLE_STATUS_CHANGED, "occupied"));
+        dispatcher.submit(tables, "t1", "t1", msg(WebSocketMessageType.TABLE_STATUS_CHANGED, "available"));
+        // Loại khác đến sau không được nhập vào slot TABLE_UPDATED đã xếp trước status
+        dispatcher.submit(tables, "t1", "t1", msg(WebSocketMessageType.TABLE_UPDATED, "full2"));
+        dispatcher.stop();
+
+        assertThat(sent).containsExactly(
+                "TABLE_UPDATED:full",
+                "TABLE_STATUS_CHANGED:available",
+                "TABLE_UPDATED:full2");
+        assertThat(meterRegistry.counter("realtime.publish.coalesced").count()).isEqualTo(1);
+    }
+
+    @Test
+    void dropsWhenQueueIsFullAndSendsInlineWhenNotStarted() {
+        properties.setQueueCapacity(1);
+        RealtimeEventDispatcher dispatcher = new RealtimeEventDispatcher(template, properties, meterRegistry, null);
+
+        dispatcher.submit(ORDERS, "o1", "o1", msg(WebSocketMessageType.ORDER_UPDATED, "inline"));
+        assertThat(sent).containsExactly("ORDER_UPDATED:inline");
+
+        dispatcher.start();
+        dispatcher.submit(ORDERS, "o1", "o1", msg(WebSocketMessageType.ORDER_UPDATED, "a"));
+        dispatcher.submit(ORDERS, "o2", "o2", msg(WebSocketMessageType.ORDER_UPDATED, "b"));
+        dispatcher.stop();
+
+        assertThat(sent).containsExactly("ORDER_UPDATED:inline", "ORDER_UPDATED:a");
+        assertThat(meterRegistry.counter("realtime.publish.dropped").count()).isEqualTo(1);
+    }
+
+    @Test
+    void localOnlyEventsSkipTheClusterBridge() {
+        RealtimeClusterBridge bridge = mock(RealtimeClusterBridge.class);
+        RealtimeEventDispatcher dispatcher = new RealtimeEventDispatcher(template, properties, meterRegistry, bridge);
+        dispatcher.start();
+
+        dispatcher.submitLocal(ORDERS, msg(WebSocketMessageType.ORDER_BOARD_DELTA, "v1"));
+        dispatcher.stop();
+
+        assertThat(sent).containsExactly("ORDER_BOARD_DELTA:v1");
+        verify(bridge, never()).publish(anyString(), anyString());
+    }
+}
@@ -0,0 +1,85 @@
+package com.example.sales.service.tax;
+
+import com.example.sales.cache.TwoLevelCacheManager;
+import com.example.sales.config.NearCacheProperties;
+import com.example.sales.model.tax.TaxPolicy;
+import com.example.sales.repository.TaxPolicyRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tra cứu theo khoảng hiệu lực phải cho cùng kết quả với truy vấn findEffectivePolicy
+ * (effectiveFrom mới nhất còn hiệu lực, đúng scope branch).
+ */
+class TaxPolicyIndexTest {
+
+    private static final String SHOP = "shop-1";
+    private static final LocalDateTime JAN = LocalDateTime.of(2026, 1, 1, 0, 0);
+
+    private static TaxPolicy policy(String name, String branchId, LocalDateTime from, LocalDateTime to) {
+        return TaxPolicy.builder().name(name).shopId(SHOP).branchId(branchId)
+                .effectiveFrom(from).effectiveTo(to).build();
+    }
+
+    @Test
+    void resolvesLatestEffectiveIntervalPerScope() {
+        TaxPolicyRepository repository = mock(TaxPolicyRepository.class);
+        when(repository.findByShopIdAndActiveTrue(SHOP)).thenReturn(List.of(
+                policy("VAT 8%", null, JAN.plusMonths(6), null),
+                policy("VAT 10%", null, null, JAN.plusMonths(6).minusSeconds(1)),
+                policy("Branch VAT 5%", "b1", JAN.plusMonths(2), JAN.plusMonths(3))
+        ));
+        TaxPolicyIndex index = new TaxPolicyIndex(repository,
+                new StaticListableBeanFactory().getBeanProvider(TwoLevelCacheManager.class));
+
+        assertThat(index.find(SHOP, null, JAN).map(TaxPolicy::getName)).contains("VAT 10%");
+        assertThat(index.find(SHOP, null, JAN.plusMonths(7)).map(TaxPolicy::getName)).contains("VAT 8%");
+        assertThat(index.find(SHOP, "b1", JAN.plusMonths(2).plusDays(1)).map(TaxPolicy::getName)).contains("Branch VAT 5%");
+        assertThat(index.find(SHOP, "b1", JAN.plusMonths(4))).isEmpty();
+        assertThat(index.find(SHOP, "b2", JAN)).isEmpty();
+        verify(repository, times(1)).findByShopIdAndActiveTrue(SHOP);
+
+        index.evictShop(SHOP);
+        index.find(SHOP, null, JAN);
+        verify(repository, times(2)).findByShopIdAndActiveTrue(SHOP);
+    }
+
+    @Test
+    void evictOnOneNodeReloadsOtherNodes() {
+        TaxPolicyRepository repository = mock(TaxPolicyRepository.class);
+        when(repository.findByShopIdAndActiveTrue(SHOP)).thenReturn(List.of(policy("VAT 10%", null, null, null)));
+        List<TwoLevelCacheManager> bus = new CopyOnWriteArrayList<>();
+        TaxPolicyIndex nodeA = new TaxPolicyIndex(repository, nearCache(bus));
+        TaxPolicyIndex nodeB = new TaxPolicyIndex(repository, nearCache(bus));
+        nodeA.find(SHOP, null, JAN);
+        assertThat(nodeB.find(SHOP, null, JAN).map(TaxPolicy::getName)).contains("VAT 10%");
+
+        when(repository.findByShopIdAndActiveTrue(SHOP)).thenReturn(List.of(policy("VAT 8%", null, null, null)));
+        nodeA.evictShop(SHOP);
+
+        assertThat(nodeB.find(SHOP, null, JAN).map(TaxPolicy::getName)).contains("VAT 8%");
+        verify(repository, times(3)).findByShopIdAndActiveTrue(SHOP);
+    }
+
+    private static ObjectProvider<TwoLevelCacheManager> nearCache(List<TwoLevelCacheManager> bus) {
+        TwoLevelCacheManager manager = new TwoLevelCacheManager(new ConcurrentMapCacheManager(),
+                new NearCacheProperties(), new SimpleMeterRegistry(),
+                message -> bus.forEach(node -> node.handleInvalidation(message)));
+        bus.add(manager);
+        return new StaticListableBeanFactory(Map.of("cacheManager", manager)).getBeanProvider(TwoLevelCacheManager.class);
+    }
+}